@@ -39,6 +39,22 @@ public class AopAdviceChainInvocation {
     // 责任链执行记录索引号
     private int i = 0;
 
+    /**
+     * 获取实际调用的方法，环绕通知拿到的是增强链的invoke方法
+     * @return 实际调用的方法
+     */
+    public Method getMethod() {
+        return method;
+    }
+
+    /**
+     * 获取目标对象
+     * @return 目标对象
+     */
+    public Object getTarget() {
+        return target;
+    }
+
     public Object invoke() throws Throwable {
         if (i < this.advices.size()) {
             Object advice = this.advices.get(i++);
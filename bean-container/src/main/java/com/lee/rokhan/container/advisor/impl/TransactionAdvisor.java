@@ -0,0 +1,50 @@
+package com.lee.rokhan.container.advisor.impl;
+
+import com.lee.rokhan.container.advisor.Advisor;
+import com.lee.rokhan.container.factory.BeanFactory;
+import com.lee.rokhan.container.pointcut.impl.TransactionPointcut;
+import com.lee.rokhan.container.transaction.impl.TransactionInterceptor;
+import lombok.Getter;
+
+import java.lang.reflect.Method;
+
+/**
+ * 内置的事务增强器，处理@Transactional
+ * 通知对象由增强器直接持有，不注册为Bean
+ * @author lichujun
+ * @date 2019/8/11 14:40
+ */
+@Getter
+public class TransactionAdvisor implements Advisor {
+
+    private static final String EXPRESSION = "@annotation(com.lee.rokhan.container.annotation.Transactional)";
+
+    private final TransactionPointcut pointcut;
+
+    private final TransactionInterceptor advice;
+
+    public TransactionAdvisor(BeanFactory beanFactory) {
+        this.pointcut = new TransactionPointcut();
+        this.advice = new TransactionInterceptor(pointcut, beanFactory);
+    }
+
+    @Override
+    public String getAdviceBeanName() {
+        return null;
+    }
+
+    @Override
+    public String getExpression() {
+        return EXPRESSION;
+    }
+
+    /**
+     * 目标类的方法是否需要事务
+     * @param method 调用的方法
+     * @param targetClass 目标类
+     * @return 是否需要事务
+     */
+    public boolean matches(Method method, Class<?> targetClass) {
+        return pointcut.getDefinition(method, targetClass) != null;
+    }
+}
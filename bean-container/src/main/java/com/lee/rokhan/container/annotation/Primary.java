@@ -0,0 +1,14 @@
+package com.lee.rokhan.container.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 同一类型存在多个Bean时，优先注入标注了该注解的Bean
+ * @author lichujun
+ * @date 2019/8/2 10:12
+ */
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Primary {
+}
@@ -0,0 +1,42 @@
+package com.lee.rokhan.container.annotation;
+
+import com.lee.rokhan.container.transaction.Propagation;
+
+import java.lang.annotation.*;
+
+/**
+ * 声明式事务，标注在类上时对类中所有方法生效，方法上的注解优先
+ * 需要注册TransactionManager的Bean
+ * @author lichujun
+ * @date 2019/8/11 14:00
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Transactional {
+
+    /**
+     * 事务的传播行为
+     */
+    Propagation propagation() default Propagation.REQUIRED;
+
+    /**
+     * 是否只读事务，只读事务的连接设置为只读，数据库可以据此优化
+     */
+    boolean readOnly() default false;
+
+    /**
+     * 事务的超时时间，事务中的每条SQL只能使用剩余的时间，小于等于0表示不限制，单位：秒
+     */
+    int timeout() default -1;
+
+    /**
+     * 需要回滚的异常，默认RuntimeException和Error回滚
+     */
+    Class<? extends Throwable>[] rollbackFor() default {};
+
+    /**
+     * 不需要回滚的异常，优先于rollbackFor
+     */
+    Class<? extends Throwable>[] noRollbackFor() default {};
+}
@@ -16,7 +16,7 @@ import java.util.Set;
  * @author lichujun
  * @date 2019/6/26 10:25
  */
-public interface ApplicationContext extends BeanFactory {
+public interface ApplicationContext extends BeanFactory, AutoCloseable {
 
     /**
      * 处理扫描出的所有Class对象
@@ -86,18 +86,21 @@ public interface ApplicationContext extends BeanFactory {
      */
     void initScanClass() throws Throwable;
 
-    /**
-     * 通过接口类型获取实现的Bean对象的Bean名称
-     * @param type 接口类型
-     * @return Bean名称数组
-     */
-    Set<String> getBeanNamesByType(Class<?> type);
-
     /**
      * 注册监视Bean的生命周期的对象
      * @param beanPostProcessor 监视Bean的生命周期的对象
      */
     void registerBeanPostProcessor(BeanPostProcessor beanPostProcessor);
 
+    /**
+     * 关闭应用上下文，按依赖关系的逆序销毁所有单例Bean，重复调用无效
+     */
+    @Override
+    void close();
+
+    /**
+     * 注册JVM关闭钩子，JVM退出时关闭应用上下文
+     */
+    void registerShutdownHook();
 
 }
@@ -1,8 +1,9 @@
 package com.lee.rokhan.container.context.impl;
 
-import com.lee.rokhan.common.utils.ReflectionUtils;
+import com.lee.rokhan.common.collection.FreezableArray;
 import com.lee.rokhan.common.utils.ScanUtils;
 import com.lee.rokhan.common.utils.throwable.ThrowConsumer;
+import com.lee.rokhan.common.utils.throwable.ThrowRunnable;
 import com.lee.rokhan.container.advice.Advice;
 import com.lee.rokhan.container.advisor.Advisor;
 import com.lee.rokhan.container.annotation.Autowired;
@@ -10,7 +11,9 @@ import com.lee.rokhan.container.annotation.Component;
 import com.lee.rokhan.container.context.ApplicationContext;
 import com.lee.rokhan.container.definition.BeanDefinition;
 import com.lee.rokhan.container.factory.impl.AbstractBeanFactory;
+import com.lee.rokhan.container.index.BeanTypeIndex;
 import com.lee.rokhan.container.pojo.BeanReference;
+import com.lee.rokhan.container.pojo.BeanTypeReference;
 import com.lee.rokhan.container.pojo.ComponentProperty;
 import com.lee.rokhan.container.pojo.InjectionProperty;
 import com.lee.rokhan.container.pojo.PropertyValue;
@@ -18,10 +21,14 @@ import com.lee.rokhan.container.processor.BeanPostProcessor;
 import com.lee.rokhan.container.processor.ContextPostProcessor;
 import com.lee.rokhan.container.processor.impl.AdvisorAutoProxyCreator;
 import com.lee.rokhan.container.proxy.AopProxyFactories;
+import com.lee.rokhan.container.startup.StartupRecorder;
+import com.lee.rokhan.container.startup.StartupStep;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.collections4.MapUtils;
 import org.apache.commons.lang3.StringUtils;
 import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -35,41 +42,86 @@ public abstract class AbstractApplicationContext extends AbstractBeanFactory imp
     /**
      * 应用上下文初始化前后增强
      */
-    private final List<ContextPostProcessor> contextPostProcessors = new ArrayList<>();
+    private final FreezableArray<ContextPostProcessor> contextPostProcessors = FreezableArray.create();
 
     /**
      * 扫描包扫出来的所有类
      */
-    private final Set<Class<?>> classSet = new HashSet<>();
+    private final FreezableArray<Class<?>> classSet = FreezableArray.distinct();
 
     /**
      * 增强器集合
      */
-    private final List<Advisor> advisors = new ArrayList<>();
+    private final FreezableArray<Advisor> advisors = FreezableArray.create();
 
     /**
-     * 接口类型所实现的Bean对象的Bean名称
+     * 类型（类、父类和接口）与Bean名称的索引
      */
-    private final Map<Class<?>, Set<String>> typeToBeanNames = new ConcurrentHashMap<>(DEFAULT_SIZE);
+    private final BeanTypeIndex beanTypeIndex = new BeanTypeIndex();
 
     /**
      * 组件属性
      */
-    private Map<Class<?>, Set<ComponentProperty>> componentPropertyMap = new HashMap<>();
+    private final Map<Class<?>, FreezableArray<ComponentProperty>> componentPropertyMap = new ConcurrentHashMap<>();
 
     AbstractApplicationContext() throws Throwable {
-        // 初始化扫描所有的Class
-        initScanClass();
-        // 扫描所有的组件
-        scanAllComponent();
-        // 扫描所有上下文初始化增强
-        scanAllContextPostProcessor();
-        // 应用上下文初始化前增强
-        initContextBefore();
-        // 应用上下文初始化
-        initContext();
-        // 应用上下文初始化后增强
-        initContextAfter();
+        StartupRecorder startupRecorder = getStartupRecorder();
+        StartupStep refreshStep = startupRecorder.start("context.refresh");
+        try {
+            // 初始化扫描所有的Class
+            recordPhase("context.initScanClass", this::initScanClass);
+            // 扫描所有的组件
+            recordPhase("context.scanAllComponent", this::scanAllComponent);
+            // 扫描所有上下文初始化增强
+            recordPhase("context.scanAllContextPostProcessor", this::scanAllContextPostProcessor);
+            // 应用上下文初始化前增强
+            recordPhase("context.initContextBefore", this::initContextBefore);
+            // 应用上下文初始化
+            recordPhase("context.initContext", this::initContext);
+            // 应用上下文初始化后增强
+            recordPhase("context.initContextAfter", this::initContextAfter);
+            // 冻结启动期间构建的数据结构，之后的查询和遍历无锁
+            freeze();
+        } finally {
+            refreshStep.end();
+            // 启动失败时也结束记录，输出已经完成的步骤并清理当前线程的步骤栈
+            startupRecorder.finish();
+        }
+    }
+
+    @Override
+    public void registerShutdownHook() {
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "context-shutdown"));
+    }
+
+    /**
+     * 冻结启动期间构建的数据结构，发布为不可变的数组，之后的注册会写时复制
+     */
+    @Override
+    protected void freeze() {
+        super.freeze();
+        classSet.freeze();
+        advisors.freeze();
+        contextPostProcessors.freeze();
+        for (FreezableArray<ComponentProperty> componentPropertySet : componentPropertyMap.values()) {
+            componentPropertySet.freeze();
+        }
+        beanTypeIndex.freeze();
+    }
+
+    /**
+     * 记录启动阶段的耗时
+     * @param phaseName 阶段名称
+     * @param phase 阶段
+     * @throws Throwable 异常
+     */
+    private void recordPhase(String phaseName, ThrowRunnable<Throwable> phase) throws Throwable {
+        StartupStep step = getStartupRecorder().start(phaseName);
+        try {
+            phase.run();
+        } finally {
+            step.end();
+        }
     }
 
     @Override
@@ -77,8 +129,8 @@ public abstract class AbstractApplicationContext extends AbstractBeanFactory imp
         if (MapUtils.isEmpty(componentPropertyMap)) {
             return;
         }
-        Set<ComponentProperty> componentPropertySet = componentPropertyMap.get(componentClass);
-        if (CollectionUtils.isNotEmpty(componentPropertySet)) {
+        FreezableArray<ComponentProperty> componentPropertySet = componentPropertyMap.get(componentClass);
+        if (componentPropertySet != null) {
             for (ComponentProperty componentProperty : componentPropertySet) {
                 consumer.accept(componentProperty);
             }
@@ -90,9 +142,9 @@ public abstract class AbstractApplicationContext extends AbstractBeanFactory imp
         if (MapUtils.isEmpty(componentPropertyMap)) {
             return;
         }
-        for (Map.Entry<Class<?>, Set<ComponentProperty>> componentPropertyEntry : componentPropertyMap.entrySet()) {
-            Set<ComponentProperty> componentPropertySet = componentPropertyEntry.getValue();
-            if (CollectionUtils.isNotEmpty(componentPropertySet)) {
+        for (Map.Entry<Class<?>, FreezableArray<ComponentProperty>> componentPropertyEntry : componentPropertyMap.entrySet()) {
+            FreezableArray<ComponentProperty> componentPropertySet = componentPropertyEntry.getValue();
+            if (componentPropertySet != null) {
                 for (ComponentProperty componentProperty : componentPropertySet) {
                     consumer.accept(componentProperty);
                 }
@@ -102,7 +154,12 @@ public abstract class AbstractApplicationContext extends AbstractBeanFactory imp
 
     @Override
     public Set<String> getBeanNamesByType(Class<?> type) {
-        return typeToBeanNames.get(type);
+        return beanTypeIndex.getBeanNames(type);
+    }
+
+    @Override
+    public String getBeanNameByType(Class<?> type) {
+        return beanTypeIndex.getUniqueBeanName(type);
     }
 
     @Override
@@ -114,9 +171,9 @@ public abstract class AbstractApplicationContext extends AbstractBeanFactory imp
 
     @Override
     public void registerBeanDefinition(String beanName, BeanDefinition beanDefinition) {
-        Class<?> returnType = beanDefinition.getReturnType();
-        addTypeToName(beanName, returnType);
         super.registerBeanDefinition(beanName, beanDefinition);
+        // 注册成功后再建立类型索引
+        beanTypeIndex.register(beanName, beanDefinition.getReturnType(), beanDefinition.isPrimary());
     }
 
     @Override
@@ -139,40 +196,13 @@ public abstract class AbstractApplicationContext extends AbstractBeanFactory imp
         }
     }
 
-    /**
-     * 添加接口与它的实现的对应关系
-     * @param beanName Bean名称
-     * @param clazz 接口
-     */
-    private void addTypeToName(String beanName, Class<?> clazz) {
-        if (clazz.isInterface()) {
-            Set<String> beanNames = typeToBeanNames.computeIfAbsent(clazz, k -> new HashSet<>());
-            beanNames.add(beanName);
-        } else {
-            // 获取Bean对象实现的所有接口
-            Set<Class<?>> typeInterfaces = Optional.of(clazz)
-                    .map(ReflectionUtils::getInterfaces)
-                    .orElse(null);
-            if (CollectionUtils.isEmpty(typeInterfaces)) {
-                return;
-            }
-            // 将接口和它的所有实现注册到容器中
-            for (Class<?> typeInterface : typeInterfaces) {
-                Set<String> beanNames = typeToBeanNames.computeIfAbsent(typeInterface, k -> new HashSet<>());
-                beanNames.add(beanName);
-            }
-        }
-    }
-
     /**
      * 应用上下文初始化前增强
      * @throws Throwable 异常
      */
     private void initContextBefore() throws Throwable {
-        if (CollectionUtils.isNotEmpty(contextPostProcessors)) {
-            for (ContextPostProcessor contextPostProcessor : contextPostProcessors) {
-                contextPostProcessor.postProcessBeforeInitialization(this);
-            }
+        for (ContextPostProcessor contextPostProcessor : contextPostProcessors) {
+            contextPostProcessor.postProcessBeforeInitialization(this);
         }
     }
 
@@ -181,10 +211,8 @@ public abstract class AbstractApplicationContext extends AbstractBeanFactory imp
      * @throws Throwable 异常
      */
     private void initContextAfter() throws Throwable {
-        if (CollectionUtils.isNotEmpty(contextPostProcessors)) {
-            for (ContextPostProcessor contextPostProcessor : contextPostProcessors) {
-                contextPostProcessor.postProcessAfterInitialization(this);
-            }
+        for (ContextPostProcessor contextPostProcessor : contextPostProcessors) {
+            contextPostProcessor.postProcessAfterInitialization(this);
         }
     }
 
@@ -250,7 +278,7 @@ public abstract class AbstractApplicationContext extends AbstractBeanFactory imp
      * 初始化Ioc容器
      */
     private void initContext() throws Throwable {
-        if (CollectionUtils.isEmpty(classSet)) {
+        if (classSet.isEmpty()) {
             return;
         }
         // 注册Bean的信息
@@ -270,11 +298,9 @@ public abstract class AbstractApplicationContext extends AbstractBeanFactory imp
      * @throws Throwable 异常
      */
     private void loadAdvisors() throws Throwable {
-        processAllBeanDefinition((beanName, beanDefinition) -> {
-            if (Advice.class.isAssignableFrom(beanDefinition.getReturnType())) {
-                getBean(beanName);
-            }
-        });
+        for (String beanName : getBeanNamesByType(Advice.class)) {
+            getBean(beanName);
+        }
     }
 
     /**
@@ -287,8 +313,8 @@ public abstract class AbstractApplicationContext extends AbstractBeanFactory imp
             if (injectionProperty != null) {
                 ComponentProperty componentProperty = new ComponentProperty(clazz, injectionProperty);
                 Class<?> componentClass = injectionProperty.getComponentClass();
-                Set<ComponentProperty> componentPropertySet = componentPropertyMap
-                        .computeIfAbsent(componentClass, it -> new HashSet<>());
+                FreezableArray<ComponentProperty> componentPropertySet = componentPropertyMap
+                        .computeIfAbsent(componentClass, it -> FreezableArray.distinct());
                 componentPropertySet.add(componentProperty);
             }
         });
@@ -307,16 +333,47 @@ public abstract class AbstractApplicationContext extends AbstractBeanFactory imp
         }
         String propertyBeanName = autowired.value();
         if (StringUtils.isBlank(propertyBeanName)) {
-            propertyBeanName = getDIValueByType(field.getType());
+            // List<T>和Map<String, T>注入该类型的所有Bean
+            BeanTypeReference beanTypeReference = getBeanTypeReference(field);
+            if (beanTypeReference != null) {
+                beanDefinition.addPropertyValue(new PropertyValue(field.getName(), beanTypeReference, null));
+                return;
+            }
+            propertyBeanName = getDIValueByType(field.getType(), field.getName());
         }
         registerBeanRelationship(beanDefinition, beanName, field.getName(), propertyBeanName);
     }
 
+    /**
+     * 获取List&lt;T&gt;或Map&lt;String, T&gt;类型的集合依赖
+     * @param field field字段
+     * @return 集合依赖，不是集合依赖则返回null
+     */
+    private BeanTypeReference getBeanTypeReference(Field field) {
+        Class<?> fieldType = field.getType();
+        if (fieldType != List.class && fieldType != Map.class) {
+            return null;
+        }
+        Type genericType = field.getGenericType();
+        if (!(genericType instanceof ParameterizedType)) {
+            return null;
+        }
+        Type[] typeArguments = ((ParameterizedType) genericType).getActualTypeArguments();
+        Type beanType = typeArguments[typeArguments.length - 1];
+        if (!(beanType instanceof Class)) {
+            return null;
+        }
+        if (fieldType == Map.class && typeArguments[0] != String.class) {
+            return null;
+        }
+        return new BeanTypeReference(fieldType, (Class<?>) beanType);
+    }
+
     private void registerBeanRelationship(BeanDefinition beanDefinition, String beanName, String propertyName, String propertyBeanName) {
         BeanReference beanReference = new BeanReference(propertyBeanName);
         PropertyValue propertyValue = new PropertyValue(propertyName, beanReference, propertyBeanName);
         beanDefinition.addPropertyValue(propertyValue);
-        Set<String> relationships = beanRelationship.computeIfAbsent(beanName, name -> Collections.synchronizedSet(new HashSet<>()));
+        Set<String> relationships = beanRelationship.computeIfAbsent(beanName, name -> ConcurrentHashMap.newKeySet());
         relationships.add(propertyBeanName);
     }
 
@@ -336,7 +393,9 @@ public abstract class AbstractApplicationContext extends AbstractBeanFactory imp
         String propertyBeanName = autowired.value();
         if (StringUtils.isBlank(propertyBeanName)) {
             if (injectionProperty == null || StringUtils.isBlank(propertyBeanName = injectionProperty.getBeanName())) {
-                propertyBeanName = StringUtils.uncapitalize(field.getType().getSimpleName());
+                // 不是组件，则通过类型索引查找，如工厂方法注册的Bean
+                propertyBeanName = Optional.ofNullable(getBeanNameByType(clazz))
+                        .orElse(StringUtils.uncapitalize(clazz.getSimpleName()));
             }
         }
         registerBeanRelationship(beanDefinition, beanName, field.getName(), propertyBeanName);
@@ -350,17 +409,33 @@ public abstract class AbstractApplicationContext extends AbstractBeanFactory imp
      * @return Bean名称
      */
     String getDIValueByType(Class<?> type) {
+        return getDIValueByType(type, null);
+    }
+
+    /**
+     * 通过类型获取依赖注入的Bean名称
+     * 优先级：唯一的Bean > 标注了@Primary的Bean > Bean名称与限定名相同的Bean
+     *
+     * @param type 类型
+     * @param qualifier 限定名，一般为字段名称，可以为空
+     * @return Bean名称
+     */
+    String getDIValueByType(Class<?> type, String qualifier) {
+        String beanName = getBeanNameByType(type);
+        if (beanName != null) {
+            return beanName;
+        }
         // 获取接口实现的所有Bean对象的bean名称
         Set<String> beanNames = getBeanNamesByType(type);
         // 没有实现的Bean对象，则抛出异常，停止运行
         if (CollectionUtils.isEmpty(beanNames)) {
             throw new RuntimeException("找不到" + type.getSimpleName() + "的Bean");
         }
-        // 如果有多个实现，但是没有指定Bean名称，则抛出异常，停止运行
-        else if (beanNames.size() > 1) {
-            throw new RuntimeException("该接口" + type.getSimpleName() + "有多个实现，请指定Bean名称");
+        if (qualifier != null && beanNames.contains(qualifier)) {
+            return qualifier;
         }
-        return beanNames.toArray(new String[0])[0];
+        // 如果有多个实现，但是没有指定Bean名称，则抛出异常，停止运行
+        throw new RuntimeException("该类型" + type.getSimpleName() + "有多个实现" + beanNames + "，请指定Bean名称或使用@Primary");
     }
 
 }
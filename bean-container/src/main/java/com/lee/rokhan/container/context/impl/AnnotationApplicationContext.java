@@ -99,7 +99,8 @@ public class AnnotationApplicationContext extends AbstractApplicationContext {
             if (node != null) {
                 Set<Field> fields = ReflectionUtils.getDeclaredFields(clazz);
                 for (Field field : fields) {
-                    if (!field.isAnnotationPresent(Autowired.class)) {
+                    // 配置文件中没有的配置项保留默认值
+                    if (!field.isAnnotationPresent(Autowired.class) && node.get(field.getName()) != null) {
                         Object fieldValue = node.getObject(field.getName(), field.getGenericType());
                         PropertyValue fieldProperty = new PropertyValue(field.getName(), fieldValue, null);
                         beanDefinition.addPropertyValue(fieldProperty);
@@ -142,6 +143,7 @@ public class AnnotationApplicationContext extends AbstractApplicationContext {
         BeanDefinition beanDefinition = new IocBeanDefinition();
         beanDefinition.setBeanClass(clazz);
         beanDefinition.setReturnType(clazz);
+        beanDefinition.setPrimary(clazz.isAnnotationPresent(Primary.class));
         String beanName = injectionProperty.getBeanName();
         // 注册Bean的信息
         registerBeanDefinition(beanName, beanDefinition);
@@ -160,6 +162,7 @@ public class AnnotationApplicationContext extends AbstractApplicationContext {
                 methodBeanDefinition.setFactoryBeanName(beanName);
                 methodBeanDefinition.setFactoryMethodName(method.getName());
                 methodBeanDefinition.setReturnType(returnType);
+                methodBeanDefinition.setPrimary(method.isAnnotationPresent(Primary.class));
                 // 注册init方法和destroy方法
                 String initMethod = bean.initMethod();
                 String destroyMethod = bean.destroyMethod();
@@ -42,6 +42,10 @@ public interface BeanDefinition {
 
     boolean isPrototype();
 
+    boolean isPrimary();
+
+    void setPrimary(boolean primary);
+
     String getFactoryBeanName();
 
     void setFactoryBeanName(String factoryBeanName);
@@ -36,6 +36,11 @@ public class IocBeanDefinition implements BeanDefinition {
      */
     private String scope = BeanDefinition.SCOPE_SINGLETON;
 
+    /**
+     * 同类型存在多个Bean时，是否优先注入
+     */
+    private boolean primary;
+
     /**
      * 工厂Bean名称，用于通过方法或静态方法实例化对象
      */
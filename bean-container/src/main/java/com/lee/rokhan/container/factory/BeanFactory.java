@@ -3,6 +3,9 @@ package com.lee.rokhan.container.factory;
 import com.lee.rokhan.common.utils.throwable.ThrowBiConsumer;
 import com.lee.rokhan.container.definition.BeanDefinition;
 import com.lee.rokhan.container.processor.BeanPostProcessor;
+import com.lee.rokhan.container.startup.StartupRecorder;
+
+import java.util.Set;
 
 /**
  * 创建和获取Bean对象
@@ -19,6 +22,27 @@ public interface BeanFactory {
      */
     Object getBean(String beanName) throws Throwable;
 
+    /**
+     * 通过类型获取Bean名称，类型可以是Bean的类、父类或接口
+     * @param type 类型
+     * @return Bean名称集合，不存在则返回空集合
+     */
+    Set<String> getBeanNamesByType(Class<?> type);
+
+    /**
+     * 通过类型获取唯一可注入的Bean名称
+     * 存在多个Bean时，返回唯一标注了@Primary的Bean名称
+     * @param type 类型
+     * @return Bean名称，不存在或无法确定时返回null
+     */
+    String getBeanNameByType(Class<?> type);
+
+    /**
+     * 获取启动记录器，记录启动阶段和Bean创建的耗时
+     * @return 启动记录器
+     */
+    StartupRecorder getStartupRecorder();
+
     /**
      * 注册Bean信息
      * 不能存在相同的Bean名称
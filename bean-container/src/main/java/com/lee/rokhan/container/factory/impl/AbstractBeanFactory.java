@@ -1,5 +1,6 @@
 package com.lee.rokhan.container.factory.impl;
 
+import com.lee.rokhan.common.collection.FreezableArray;
 import com.lee.rokhan.common.utils.ReflectionUtils;
 import com.lee.rokhan.common.utils.throwable.ThrowBiConsumer;
 import com.lee.rokhan.container.aware.ApplicationContextAware;
@@ -11,16 +12,21 @@ import com.lee.rokhan.container.factory.BeanFactory;
 import com.lee.rokhan.container.instance.BeanInstance;
 import com.lee.rokhan.container.instance.BeanInstances;
 import com.lee.rokhan.container.pojo.BeanReference;
+import com.lee.rokhan.container.pojo.BeanTypeReference;
 import com.lee.rokhan.container.pojo.PropertyValue;
 import com.lee.rokhan.container.processor.BeanPostProcessor;
+import com.lee.rokhan.container.startup.StartupRecorder;
+import com.lee.rokhan.container.startup.StartupRecorders;
+import com.lee.rokhan.container.startup.StartupStep;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Bean工厂抽象类
@@ -33,6 +39,9 @@ public abstract class AbstractBeanFactory implements BeanFactory, AutoCloseable
     // 考虑并发情况，默认256，防止扩容
     protected static final int DEFAULT_SIZE = 256;
 
+    // 销毁方法超时时间的系统属性
+    private static final String DESTROY_TIMEOUT_PROPERTY = "rokhan.shutdown.destroy-timeout";
+
     // 存放Bean对象的容器，一级缓存
     private final Map<String, Object> singletonObjects = new ConcurrentHashMap<>(DEFAULT_SIZE);
 
@@ -42,19 +51,46 @@ public abstract class AbstractBeanFactory implements BeanFactory, AutoCloseable
     // 存放Bean注册信息的容器
     private final Map<String, BeanDefinition> beanDefinitionMap = new ConcurrentHashMap<>(DEFAULT_SIZE);
 
-    // Bean初始化前后处理
-    private final List<BeanPostProcessor> beanPostProcessors = Collections.synchronizedList(new ArrayList<>());
+    // Bean初始化前后处理，每次创建Bean都会遍历，冻结后遍历无锁
+    private final FreezableArray<BeanPostProcessor> beanPostProcessors = FreezableArray.create();
 
     /**
      * 依赖关系
      */
     protected final Map<String, Set<String>> beanRelationship = new ConcurrentHashMap<>(DEFAULT_SIZE);
 
+    /**
+     * 是否已经关闭
+     */
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    /**
+     * 单个Bean的销毁方法的超时时间，可以通过-Drokhan.shutdown.destroy-timeout=毫秒数配置
+     */
+    private volatile long destroyTimeoutMillis = Long.getLong(DESTROY_TIMEOUT_PROPERTY, 10000L);
+
+    /**
+     * 启动记录器，未开启时不做任何事
+     */
+    private final StartupRecorder startupRecorder = StartupRecorders.create();
+
+    @Override
+    public StartupRecorder getStartupRecorder() {
+        return startupRecorder;
+    }
+
     @Override
     public void registerBeanPostProcessor(BeanPostProcessor beanPostProcessor) {
         beanPostProcessors.add(beanPostProcessor);
     }
 
+    /**
+     * 冻结启动期间构建的数据结构，之后的注册会写时复制
+     */
+    protected void freeze() {
+        beanPostProcessors.freeze();
+    }
+
 
     @Override
     public void registerBeanDefinition(String beanName, BeanDefinition beanDefinition) {
@@ -68,11 +104,10 @@ public abstract class AbstractBeanFactory implements BeanFactory, AutoCloseable
             throw new RuntimeException("Bean名称为[" + beanName + "]的注册信息不合法");
         }
         // 判断是否已经存在了Bean名称的注册信息，如果有，就停止运行
-        else if (containsBeanDefinition(beanName)) {
+        // 判断和写入是原子的，运行期间并发注册也不会覆盖
+        else if (beanDefinitionMap.putIfAbsent(beanName, beanDefinition) != null) {
             log.error("已经存在了Bean名称为[{}]的注册信息", beanName);
             throw new RuntimeException("已经存在了Bean名称为[" + beanName + "]的注册信息");
-        } else {
-            beanDefinitionMap.put(beanName, beanDefinition);
         }
     }
 
@@ -87,26 +122,209 @@ public abstract class AbstractBeanFactory implements BeanFactory, AutoCloseable
     }
 
     /**
-     * 执行单例实例的销毁方法
+     * 按依赖关系的逆序销毁单例Bean：依赖它的Bean全部销毁之后，才销毁它自己。
+     * 同一轮中互不依赖的Bean并行执行销毁方法，每个销毁方法从开始执行起最多等待destroyTimeoutMillis，
+     * 超时后不再等待，继续销毁下一轮
      */
     @Override
     public void close() {
-        // 遍历map把bean都取出来然后调用每个bean的销毁方法
-        for (Map.Entry<String, BeanDefinition> entry : this.beanDefinitionMap.entrySet()) {
-            String beanName = entry.getKey();
-            BeanDefinition beanDefinition = entry.getValue();
-            if (beanDefinition.isSingleton() && StringUtils.isNotBlank(beanDefinition.getDestroyMethodName())) {
-                Object instance = this.singletonObjects.get(beanName);
-                try {
-                    Method method = ReflectionUtils.getDeclaredMethod(instance.getClass(), beanDefinition.getDestroyMethodName());
-                    if (method != null) {
-                        method.invoke(instance);
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        // Bean名称 -> 它依赖的Bean名称
+        Map<String, Set<String>> dependencies = new HashMap<>(singletonObjects.size() * 2);
+        // Bean名称 -> 依赖它并且还未销毁的Bean数量
+        Map<String, Integer> dependentCounts = new HashMap<>(singletonObjects.size() * 2);
+        for (String beanName : singletonObjects.keySet()) {
+            dependentCounts.putIfAbsent(beanName, 0);
+            Set<String> beanDependencies = getDependencies(beanName);
+            dependencies.put(beanName, beanDependencies);
+            for (String dependency : beanDependencies) {
+                dependentCounts.merge(dependency, 1, Integer::sum);
+            }
+        }
+        dependentCounts.keySet().retainAll(dependencies.keySet());
+        // 每个销毁方法提交后立即有线程执行，不会因为前面的销毁方法超时而一直排队
+        ExecutorService destroyExecutor = Executors.newCachedThreadPool(new DestroyThreadFactory());
+        try {
+            int wave = 0;
+            while (!dependentCounts.isEmpty()) {
+                List<String> waveBeanNames = new ArrayList<>();
+                for (Map.Entry<String, Integer> entry : dependentCounts.entrySet()) {
+                    if (entry.getValue() == 0) {
+                        waveBeanNames.add(entry.getKey());
+                    }
+                }
+                if (waveBeanNames.isEmpty()) {
+                    // 存在循环依赖，剩余的Bean一起销毁
+                    log.warn("Bean{}之间存在循环依赖，无法确定销毁顺序，将同时销毁", dependentCounts.keySet());
+                    waveBeanNames.addAll(dependentCounts.keySet());
+                }
+                destroyWave(++wave, waveBeanNames, destroyExecutor);
+                for (String beanName : waveBeanNames) {
+                    dependentCounts.remove(beanName);
+                    for (String dependency : dependencies.get(beanName)) {
+                        dependentCounts.computeIfPresent(dependency, (k, count) -> count - 1);
                     }
-                } catch (SecurityException | IllegalAccessException
-                        | IllegalArgumentException | InvocationTargetException e) {
-                    log.error("执行bean[" + beanName + "] " + beanDefinition + "的销毁方法异常", e);
                 }
             }
+        } finally {
+            destroyExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * 设置单个Bean的销毁方法的超时时间
+     * @param timeout 超时时间
+     * @param unit 时间单位
+     */
+    public void setDestroyTimeout(long timeout, TimeUnit unit) {
+        this.destroyTimeoutMillis = unit.toMillis(timeout);
+    }
+
+    /**
+     * 获取Bean依赖的单例Bean：属性依赖、构造函数参数依赖和工厂Bean
+     * @param beanName Bean名称
+     * @return 依赖的Bean名称
+     */
+    private Set<String> getDependencies(String beanName) {
+        BeanDefinition beanDefinition = getBeanDefinition(beanName);
+        if (beanDefinition == null) {
+            return Collections.emptySet();
+        }
+        Set<String> beanDependencies = new HashSet<>();
+        if (StringUtils.isNotBlank(beanDefinition.getFactoryBeanName())) {
+            beanDependencies.add(beanDefinition.getFactoryBeanName());
+        }
+        if (CollectionUtils.isNotEmpty(beanDefinition.getPropertyValues())) {
+            for (PropertyValue propertyValue : beanDefinition.getPropertyValues()) {
+                Object value = propertyValue.getValue();
+                if (value instanceof BeanReference) {
+                    beanDependencies.add(((BeanReference) value).getBeanName());
+                } else if (value instanceof BeanTypeReference) {
+                    beanDependencies.addAll(getBeanNamesByType(((BeanTypeReference) value).getBeanType()));
+                }
+            }
+        }
+        if (CollectionUtils.isNotEmpty(beanDefinition.getArgumentValues())) {
+            for (Object argumentValue : beanDefinition.getArgumentValues()) {
+                if (argumentValue instanceof BeanReference) {
+                    beanDependencies.add(((BeanReference) argumentValue).getBeanName());
+                }
+            }
+        }
+        beanDependencies.remove(beanName);
+        beanDependencies.retainAll(singletonObjects.keySet());
+        return beanDependencies;
+    }
+
+    /**
+     * 并行执行一轮Bean的销毁方法，等待全部完成或者超时
+     * @param wave 第几轮
+     * @param waveBeanNames 本轮销毁的Bean名称
+     * @param destroyExecutor 执行销毁方法的线程池
+     */
+    private void destroyWave(int wave, List<String> waveBeanNames, ExecutorService destroyExecutor) {
+        Map<String, DestroyTask> destroyTaskMap = new LinkedHashMap<>();
+        for (String beanName : waveBeanNames) {
+            BeanDefinition beanDefinition = getBeanDefinition(beanName);
+            Object instance = singletonObjects.remove(beanName);
+            earlySingletonObjects.remove(beanName);
+            if (instance == null || beanDefinition == null
+                    || StringUtils.isBlank(beanDefinition.getDestroyMethodName())) {
+                continue;
+            }
+            Method method = ReflectionUtils.getDeclaredMethod(instance.getClass(), beanDefinition.getDestroyMethodName());
+            if (method == null) {
+                continue;
+            }
+            destroyTaskMap.put(beanName, new DestroyTask(instance, method));
+        }
+        if (destroyTaskMap.isEmpty()) {
+            return;
+        }
+        log.info("第{}轮销毁Bean{}", wave, destroyTaskMap.keySet());
+        Map<String, Future<?>> futureMap = new LinkedHashMap<>(destroyTaskMap.size() * 2);
+        destroyTaskMap.forEach((beanName, task) -> futureMap.put(beanName, destroyExecutor.submit(task)));
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(destroyTimeoutMillis);
+        for (Map.Entry<String, Future<?>> entry : futureMap.entrySet()) {
+            String beanName = entry.getKey();
+            awaitDestroy(beanName, destroyTaskMap.get(beanName), entry.getValue(), timeoutNanos);
+        }
+    }
+
+    /**
+     * 等待单个Bean的销毁方法，超时时间从销毁方法开始执行时计算，还没开始执行时继续等待
+     * @param beanName Bean名称
+     * @param task 销毁任务
+     * @param future 销毁任务的结果
+     * @param timeoutNanos 超时时间，单位：纳秒
+     */
+    private void awaitDestroy(String beanName, DestroyTask task, Future<?> future, long timeoutNanos) {
+        while (true) {
+            boolean started = task.started;
+            long waitNanos = started ? task.startNanos + timeoutNanos - System.nanoTime() : timeoutNanos;
+            try {
+                future.get(Math.max(0, waitNanos), TimeUnit.NANOSECONDS);
+                return;
+            } catch (TimeoutException e) {
+                if (started) {
+                    future.cancel(true);
+                    log.error("执行bean[{}]的销毁方法超过{}ms，不再等待", beanName, destroyTimeoutMillis);
+                    return;
+                }
+            } catch (ExecutionException e) {
+                log.error("执行bean[" + beanName + "]的销毁方法异常", e.getCause());
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.error("等待bean[{}]的销毁方法时被中断", beanName);
+                return;
+            }
+        }
+    }
+
+    /**
+     * 执行Bean的销毁方法，记录开始执行的时间
+     */
+    private static class DestroyTask implements Callable<Object> {
+
+        private final Object instance;
+
+        private final Method method;
+
+        private volatile long startNanos;
+
+        private volatile boolean started;
+
+        private DestroyTask(Object instance, Method method) {
+            this.instance = instance;
+            this.method = method;
+        }
+
+        @Override
+        public Object call() throws Exception {
+            startNanos = System.nanoTime();
+            started = true;
+            if (!method.isAccessible()) {
+                method.setAccessible(true);
+            }
+            return method.invoke(instance);
+        }
+    }
+
+    /**
+     * 销毁线程的工厂，使用守护线程，超时的销毁方法不会阻止JVM退出
+     */
+    private static class DestroyThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "bean-destroy-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
         }
     }
 
@@ -114,11 +332,14 @@ public abstract class AbstractBeanFactory implements BeanFactory, AutoCloseable
      * Bean初始化前的处理
      */
     private Object applyPostProcessBeforeInitialization(String beanName, Object beanObject, Class<?> objectClass) throws Throwable {
-        if (CollectionUtils.isEmpty(beanPostProcessors)) {
-            return beanObject;
-        }
         for (BeanPostProcessor bpp : beanPostProcessors) {
-            beanObject = bpp.postProcessBeforeInitialization(beanName, beanObject, objectClass);
+            StartupStep step = startupRecorder.start("bean.postProcessBeforeInitialization")
+                    .tag("processor", bpp.getClass().getName());
+            try {
+                beanObject = bpp.postProcessBeforeInitialization(beanName, beanObject, objectClass);
+            } finally {
+                step.end();
+            }
         }
         return beanObject;
     }
@@ -127,11 +348,17 @@ public abstract class AbstractBeanFactory implements BeanFactory, AutoCloseable
      * Bean初始化后的处理
      */
     private Object applyPostProcessAfterInitialization(String beanName, Object beanObject, Class<?> objectClass) throws Throwable {
-        if (CollectionUtils.isEmpty(beanPostProcessors)) {
+        if (beanPostProcessors.isEmpty()) {
             return beanObject;
         }
         for (BeanPostProcessor bpp : beanPostProcessors) {
-            beanObject = bpp.postProcessAfterInitialization(beanName, beanObject, objectClass);
+            StartupStep step = startupRecorder.start("bean.postProcessAfterInitialization")
+                    .tag("processor", bpp.getClass().getName());
+            try {
+                beanObject = bpp.postProcessAfterInitialization(beanName, beanObject, objectClass);
+            } finally {
+                step.end();
+            }
         }
         // 设置最新依赖
         setLatestDI(beanName, beanObject);
@@ -152,10 +379,15 @@ public abstract class AbstractBeanFactory implements BeanFactory, AutoCloseable
             if (StringUtils.isBlank(fieldName)) {
                 continue;
             }
-            // 获取Field对象，并设置为可操作
+            // 获取Field对象（包括父类的Field），并设置为可操作
             Class<?> beanClass = beanObject.getClass();
-            Field field = beanClass.getDeclaredField(fieldName);
-            field.setAccessible(true);
+            Field field = ReflectionUtils.getDeclaredField(beanClass, fieldName);
+            if (field == null) {
+                throw new NoSuchFieldException(beanClass.getName() + "." + fieldName);
+            }
+            if (!field.isAccessible()) {
+                field.setAccessible(true);
+            }
 
             Object fieldValue = propertyValue.getValue();
             Object realFieldValue;
@@ -166,6 +398,10 @@ public abstract class AbstractBeanFactory implements BeanFactory, AutoCloseable
             else if (fieldValue instanceof BeanReference) {
                 realFieldValue = getBean(((BeanReference) fieldValue).getBeanName());
             }
+            // 注入该类型的所有Bean
+            else if (fieldValue instanceof BeanTypeReference) {
+                realFieldValue = getBeansByType((BeanTypeReference) fieldValue);
+            }
             else {
                 realFieldValue = fieldValue;
             }
@@ -173,6 +409,28 @@ public abstract class AbstractBeanFactory implements BeanFactory, AutoCloseable
         }
     }
 
+    /**
+     * 获取集合依赖的所有Bean，List按注册顺序排列，Map的键为Bean名称
+     * @param beanTypeReference 集合依赖
+     * @return Bean对象集合
+     * @throws Throwable 异常
+     */
+    private Object getBeansByType(BeanTypeReference beanTypeReference) throws Throwable {
+        Set<String> beanNames = getBeanNamesByType(beanTypeReference.getBeanType());
+        if (beanTypeReference.getCollectionType() == Map.class) {
+            Map<String, Object> beanMap = new LinkedHashMap<>(Math.max(beanNames.size() * 2, 4));
+            for (String name : beanNames) {
+                beanMap.put(name, getBean(name));
+            }
+            return beanMap;
+        }
+        List<Object> beanList = new ArrayList<>(beanNames.size());
+        for (String name : beanNames) {
+            beanList.add(getBean(name));
+        }
+        return beanList;
+    }
+
     @Override
     public Object getBean(String beanName) throws Throwable {
         Objects.requireNonNull(beanName, "注册Bean需要输入beanName");
@@ -201,6 +459,23 @@ public abstract class AbstractBeanFactory implements BeanFactory, AutoCloseable
 
         BeanDefinition beanDefinition = getBeanDefinition(beanName);
         Objects.requireNonNull(beanDefinition, "Bean名称为" + beanName + "的beanDefinition为空");
+        // 嵌套创建的依赖Bean会记录为当前步骤的子步骤
+        StartupStep step = startupRecorder.start("bean.create").tag("beanName", beanName);
+        try {
+            return createBean(beanName, beanDefinition);
+        } finally {
+            step.end();
+        }
+    }
+
+    /**
+     * 创建Bean对象：实例化、依赖注入、初始化前后处理
+     * @param beanName Bean名称
+     * @param beanDefinition Bean注册信息
+     * @return Bean对象
+     * @throws Throwable 异常
+     */
+    private Object createBean(String beanName, BeanDefinition beanDefinition) throws Throwable {
         Class<?> beanClass = beanDefinition.getBeanClass();
         // 获取实例生成器
         BeanInstance beanInstance;
@@ -217,10 +492,21 @@ public abstract class AbstractBeanFactory implements BeanFactory, AutoCloseable
             beanInstance = BeanInstances.getFactoryBeanInstance();
         }
         // 实例化对象
-        beanObject = beanInstance.instance(beanDefinition, this);
+        Object beanObject;
+        StartupStep instanceStep = startupRecorder.start("bean.instantiate");
+        try {
+            beanObject = beanInstance.instance(beanDefinition, this);
+        } finally {
+            instanceStep.end();
+        }
         earlySingletonObjects.put(beanName, beanObject);
         // 进行依赖注入
-        setPropertyDIValues(beanDefinition, beanObject);
+        StartupStep injectStep = startupRecorder.start("bean.inject");
+        try {
+            setPropertyDIValues(beanDefinition, beanObject);
+        } finally {
+            injectStep.end();
+        }
         Class<?> beanObjectClass = beanObject.getClass();
         // 对实现了Aware接口的Bean设置外界属性
         if (BeanNameAware.class.isAssignableFrom(beanObjectClass)) {
@@ -255,7 +541,12 @@ public abstract class AbstractBeanFactory implements BeanFactory, AutoCloseable
         if (StringUtils.isNotBlank(beanDefinition.getInitMethodName())) {
             Method method = ReflectionUtils.getDeclaredMethod(beanObject.getClass(), beanDefinition.getInitMethodName());
             if (method != null) {
-                method.invoke(beanObject);
+                StartupStep step = startupRecorder.start("bean.init").tag("method", beanDefinition.getInitMethodName());
+                try {
+                    method.invoke(beanObject);
+                } finally {
+                    step.end();
+                }
             }
         }
     }
@@ -0,0 +1,175 @@
+package com.lee.rokhan.container.index;
+
+import lombok.AllArgsConstructor;
+
+import java.util.*;
+
+/**
+ * Bean类型索引
+ * 记录类型（Bean的类、所有父类和所有接口）与Bean名称的对应关系。
+ * 应用上下文刷新期间加锁写入，刷新结束后冻结为不可变的快照，查询无锁且不产生新对象；
+ * 冻结后仍可注册Bean，此时写时复制出新的快照
+ * @author lichujun
+ * @date 2019/8/2 10:20
+ */
+public class BeanTypeIndex {
+
+    /**
+     * 默认容量，防止扩容
+     */
+    private static final int DEFAULT_SIZE = 256;
+
+    /**
+     * 类型对应的候选Bean，读写都需要持有this锁
+     */
+    private final Map<Class<?>, List<Candidate>> candidateMap = new HashMap<>(DEFAULT_SIZE);
+
+    /**
+     * 冻结后的快照，为null时表示还未冻结
+     */
+    private volatile Map<Class<?>, TypeEntry> snapshot;
+
+    /**
+     * 注册Bean的类型
+     * @param beanName Bean名称
+     * @param beanType Bean的类型
+     * @param primary 是否优先注入
+     */
+    public synchronized void register(String beanName, Class<?> beanType, boolean primary) {
+        Objects.requireNonNull(beanName, "beanName不能为空");
+        Objects.requireNonNull(beanType, "beanType不能为空");
+        Set<Class<?>> types = resolveTypes(beanType);
+        Candidate candidate = new Candidate(beanName, primary);
+        for (Class<?> type : types) {
+            candidateMap.computeIfAbsent(type, k -> new ArrayList<>(1)).add(candidate);
+        }
+        Map<Class<?>, TypeEntry> current = snapshot;
+        if (current != null) {
+            // 已经冻结，写时复制
+            Map<Class<?>, TypeEntry> copy = new HashMap<>(current);
+            for (Class<?> type : types) {
+                copy.put(type, buildEntry(candidateMap.get(type)));
+            }
+            snapshot = Collections.unmodifiableMap(copy);
+        }
+    }
+
+    /**
+     * 冻结索引，生成不可变的快照
+     */
+    public synchronized void freeze() {
+        if (snapshot != null) {
+            return;
+        }
+        Map<Class<?>, TypeEntry> frozen = new HashMap<>(Math.max(DEFAULT_SIZE, candidateMap.size() * 2));
+        for (Map.Entry<Class<?>, List<Candidate>> entry : candidateMap.entrySet()) {
+            frozen.put(entry.getKey(), buildEntry(entry.getValue()));
+        }
+        snapshot = Collections.unmodifiableMap(frozen);
+    }
+
+    /**
+     * 是否已经冻结
+     * @return 是否已经冻结
+     */
+    public boolean isFrozen() {
+        return snapshot != null;
+    }
+
+    /**
+     * 获取该类型的所有Bean名称，按注册顺序排列
+     * @param type 类型
+     * @return Bean名称集合，不存在则返回空集合
+     */
+    public Set<String> getBeanNames(Class<?> type) {
+        TypeEntry entry = getEntry(type);
+        return entry == null ? Collections.emptySet() : entry.beanNames;
+    }
+
+    /**
+     * 获取该类型唯一可注入的Bean名称
+     * 只有一个候选Bean则返回该Bean，有多个候选Bean则返回唯一标注了@Primary的Bean
+     * @param type 类型
+     * @return Bean名称，不存在或者无法确定时返回null
+     */
+    public String getUniqueBeanName(Class<?> type) {
+        TypeEntry entry = getEntry(type);
+        return entry == null ? null : entry.uniqueBeanName;
+    }
+
+    private TypeEntry getEntry(Class<?> type) {
+        Map<Class<?>, TypeEntry> current = snapshot;
+        if (current != null) {
+            return current.get(type);
+        }
+        // 刷新期间直接从候选Bean计算
+        synchronized (this) {
+            List<Candidate> candidates = candidateMap.get(type);
+            return candidates == null ? null : buildEntry(candidates);
+        }
+    }
+
+    private static TypeEntry buildEntry(List<Candidate> candidates) {
+        Set<String> beanNames = new LinkedHashSet<>(candidates.size() * 2);
+        String primaryBeanName = null;
+        int primaryCount = 0;
+        for (Candidate candidate : candidates) {
+            beanNames.add(candidate.beanName);
+            if (candidate.primary) {
+                primaryBeanName = candidate.beanName;
+                primaryCount++;
+            }
+        }
+        String uniqueBeanName;
+        if (beanNames.size() == 1) {
+            uniqueBeanName = beanNames.iterator().next();
+        } else {
+            uniqueBeanName = primaryCount == 1 ? primaryBeanName : null;
+        }
+        return new TypeEntry(Collections.unmodifiableSet(beanNames), uniqueBeanName);
+    }
+
+    /**
+     * 获取类型本身、所有父类（不包括Object）和所有接口（包括父接口）
+     * @param beanType Bean的类型
+     * @return 所有可匹配的类型
+     */
+    private static Set<Class<?>> resolveTypes(Class<?> beanType) {
+        Set<Class<?>> types = new LinkedHashSet<>();
+        for (Class<?> clazz = beanType; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+            types.add(clazz);
+            addInterfaces(clazz, types);
+        }
+        return types;
+    }
+
+    private static void addInterfaces(Class<?> clazz, Set<Class<?>> types) {
+        for (Class<?> typeInterface : clazz.getInterfaces()) {
+            if (types.add(typeInterface)) {
+                addInterfaces(typeInterface, types);
+            }
+        }
+    }
+
+    /**
+     * 候选Bean
+     */
+    @AllArgsConstructor
+    private static class Candidate {
+
+        private final String beanName;
+
+        private final boolean primary;
+    }
+
+    /**
+     * 类型对应的不可变的查询结果
+     */
+    @AllArgsConstructor
+    private static class TypeEntry {
+
+        private final Set<String> beanNames;
+
+        private final String uniqueBeanName;
+    }
+}
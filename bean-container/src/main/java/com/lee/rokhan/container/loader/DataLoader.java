@@ -0,0 +1,150 @@
+package com.lee.rokhan.container.loader;
+
+import com.lee.rokhan.common.utils.throwable.ThrowFunction;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 合并单个key的加载为批量加载
+ * load(key)只登记key并返回未完成的Future，dispatch()时把登记的key按maxBatchSize分批交给批量加载函数，再把结果按key分发；
+ * 对load返回的Future调用join()或者get()时自动dispatch，因此循环中先load所有key、再逐个join只会批量加载一次。
+ * 同一个key只加载一次，之后返回缓存的Future，加载失败的key不缓存。
+ * 注意：thenApply等派生出的Future不会触发dispatch，需要先join原始的Future或者调用dispatch()
+ * @author lichujun
+ * @date 2019/8/12 15:00
+ */
+public class DataLoader<K, V> {
+
+    /**
+     * 批量加载函数，返回key对应的值，没有返回的key对应的值为null
+     */
+    private final ThrowFunction<List<K>, Map<K, V>, Throwable> batchFunction;
+
+    /**
+     * 每批最多加载的key数量
+     */
+    private final int maxBatchSize;
+
+    /**
+     * 已经加载或者正在等待加载的key对应的Future
+     */
+    private final Map<K, CompletableFuture<V>> cache = new HashMap<>();
+
+    /**
+     * 等待加载的key，按登记顺序
+     */
+    private Map<K, CompletableFuture<V>> pending = new LinkedHashMap<>();
+
+    public DataLoader(ThrowFunction<List<K>, Map<K, V>, Throwable> batchFunction, int maxBatchSize) {
+        if (maxBatchSize <= 0) {
+            throw new RuntimeException("maxBatchSize必须大于0");
+        }
+        this.batchFunction = batchFunction;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * 登记需要加载的key
+     * @param key key
+     * @return key对应的值的Future
+     */
+    public synchronized CompletableFuture<V> load(K key) {
+        CompletableFuture<V> future = cache.get(key);
+        if (future == null) {
+            future = new BatchFuture<>(this);
+            cache.put(key, future);
+            pending.put(key, future);
+        }
+        return future;
+    }
+
+    /**
+     * 批量加载所有等待加载的key
+     */
+    public synchronized void dispatch() {
+        while (!pending.isEmpty()) {
+            Map<K, CompletableFuture<V>> batch = pending;
+            pending = new LinkedHashMap<>();
+            List<K> keys = new ArrayList<>(batch.keySet());
+            for (int from = 0; from < keys.size(); from += maxBatchSize) {
+                loadBatch(keys.subList(from, Math.min(keys.size(), from + maxBatchSize)), batch);
+            }
+        }
+    }
+
+    /**
+     * 等待加载的key的数量
+     * @return key的数量
+     */
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * 清空缓存，已经登记的key仍会加载
+     */
+    public synchronized void clear() {
+        cache.clear();
+        cache.putAll(pending);
+    }
+
+    private void loadBatch(List<K> keys, Map<K, CompletableFuture<V>> batch) {
+        Map<K, V> values;
+        try {
+            values = batchFunction.apply(new ArrayList<>(keys));
+        } catch (Throwable e) {
+            for (K key : keys) {
+                cache.remove(key);
+                batch.get(key).completeExceptionally(e);
+            }
+            return;
+        }
+        for (K key : keys) {
+            batch.get(key).complete(values == null ? null : values.get(key));
+        }
+    }
+
+    /**
+     * 等待结果前先批量加载的Future
+     */
+    private static final class BatchFuture<V> extends CompletableFuture<V> {
+
+        private final DataLoader<?, V> loader;
+
+        private BatchFuture(DataLoader<?, V> loader) {
+            this.loader = loader;
+        }
+
+        @Override
+        public V join() {
+            dispatchIfPending();
+            return super.join();
+        }
+
+        @Override
+        public V get() throws InterruptedException, ExecutionException {
+            dispatchIfPending();
+            return super.get();
+        }
+
+        @Override
+        public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            dispatchIfPending();
+            return super.get(timeout, unit);
+        }
+
+        private void dispatchIfPending() {
+            if (!isDone()) {
+                loader.dispatch();
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.lee.rokhan.container.loader;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 一次请求内的DataLoader，请求结束前dispatchAll()加载剩余的key
+ * @author lichujun
+ * @date 2019/8/12 15:10
+ */
+public class DataLoaderRegistry {
+
+    private final Map<Object, DataLoader<?, ?>> loaders = new LinkedHashMap<>();
+
+    /**
+     * 获取标识对应的DataLoader，不存在则新建
+     * @param id 标识
+     * @param factory 创建DataLoader
+     * @return DataLoader
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <K, V> DataLoader<K, V> getDataLoader(Object id, Supplier<DataLoader<K, V>> factory) {
+        return (DataLoader<K, V>) loaders.computeIfAbsent(id, k -> factory.get());
+    }
+
+    /**
+     * 加载所有DataLoader中等待加载的key，加载时登记的新key也会加载
+     */
+    public void dispatchAll() {
+        boolean dispatched = true;
+        while (dispatched) {
+            dispatched = false;
+            for (DataLoader<?, ?> loader : snapshot()) {
+                if (loader.getPendingCount() > 0) {
+                    loader.dispatch();
+                    dispatched = true;
+                }
+            }
+        }
+    }
+
+    private synchronized List<DataLoader<?, ?>> snapshot() {
+        return new ArrayList<>(loaders.values());
+    }
+}
@@ -0,0 +1,83 @@
+package com.lee.rokhan.container.pointcut.impl;
+
+import com.lee.rokhan.container.annotation.Transactional;
+import com.lee.rokhan.container.pointcut.Pointcut;
+import com.lee.rokhan.container.transaction.TransactionDefinition;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 匹配标注了@Transactional的方法或者类
+ * JDK动态代理拿到的是接口的方法，需要结合目标类找到实现类的方法再解析注解，解析结果按方法和目标类缓存
+ * @author lichujun
+ * @date 2019/8/11 14:20
+ */
+public class TransactionPointcut implements Pointcut {
+
+    private final Map<MethodClassKey, Optional<TransactionDefinition>> definitionCache = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean matchClass(Class<?> targetClass) {
+        return true;
+    }
+
+    @Override
+    public boolean matchMethod(Method targetMethod) {
+        return getDefinition(targetMethod, targetMethod.getDeclaringClass()) != null;
+    }
+
+    /**
+     * 获取方法的事务定义
+     * @param method 调用的方法
+     * @param targetClass 目标类
+     * @return 事务定义，不需要事务时为null
+     */
+    public TransactionDefinition getDefinition(Method method, Class<?> targetClass) {
+        return definitionCache.computeIfAbsent(new MethodClassKey(method, targetClass),
+                key -> Optional.ofNullable(resolveDefinition(method, targetClass)))
+                .orElse(null);
+    }
+
+    private TransactionDefinition resolveDefinition(Method method, Class<?> targetClass) {
+        if (method.getDeclaringClass() == Object.class) {
+            return null;
+        }
+        Method specificMethod = method;
+        if (method.getDeclaringClass() != targetClass) {
+            try {
+                specificMethod = targetClass.getMethod(method.getName(), method.getParameterTypes());
+            } catch (NoSuchMethodException e) {
+                // 非public方法，直接使用调用的方法
+            }
+        }
+        // 实现类的方法 > 调用的方法 > 目标类 > 方法所在的类和接口
+        Transactional transactional = specificMethod.getAnnotation(Transactional.class);
+        if (transactional == null) {
+            transactional = method.getAnnotation(Transactional.class);
+        }
+        if (transactional == null) {
+            transactional = targetClass.getAnnotation(Transactional.class);
+        }
+        if (transactional == null) {
+            transactional = specificMethod.getDeclaringClass().getAnnotation(Transactional.class);
+        }
+        if (transactional == null) {
+            transactional = method.getDeclaringClass().getAnnotation(Transactional.class);
+        }
+        return transactional == null ? null : new TransactionDefinition(transactional);
+    }
+
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    private static class MethodClassKey {
+
+        private final Method method;
+
+        private final Class<?> targetClass;
+    }
+}
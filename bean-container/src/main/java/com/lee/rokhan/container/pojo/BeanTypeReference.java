@@ -0,0 +1,24 @@
+package com.lee.rokhan.container.pojo;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 描述按类型注入的集合依赖，如List&lt;T&gt;或Map&lt;String, T&gt;
+ * @author lichujun
+ * @date 2019/8/2 10:40
+ */
+@Getter
+@AllArgsConstructor
+public class BeanTypeReference {
+
+    /**
+     * 集合类型：List或Map
+     */
+    private final Class<?> collectionType;
+
+    /**
+     * 集合元素的Bean类型
+     */
+    private final Class<?> beanType;
+}
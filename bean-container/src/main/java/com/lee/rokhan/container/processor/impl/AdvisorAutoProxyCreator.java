@@ -1,13 +1,14 @@
 package com.lee.rokhan.container.processor.impl;
 
+import com.lee.rokhan.common.collection.FreezableArray;
 import com.lee.rokhan.common.utils.ReflectionUtils;
 import com.lee.rokhan.container.advisor.Advisor;
 import com.lee.rokhan.container.advisor.impl.AspectJPointcutAdvisor;
+import com.lee.rokhan.container.advisor.impl.TransactionAdvisor;
 import com.lee.rokhan.container.factory.BeanFactory;
 import com.lee.rokhan.container.pointcut.Pointcut;
 import com.lee.rokhan.container.processor.BeanPostProcessor;
 import com.lee.rokhan.container.proxy.AopProxyFactories;
-import lombok.AllArgsConstructor;
 import org.apache.commons.collections4.CollectionUtils;
 import java.lang.reflect.Method;
 import java.util.*;
@@ -16,19 +17,29 @@ import java.util.*;
  * @author lichujun
  * @date 2019/6/18 16:58
  */
-@AllArgsConstructor
 public class AdvisorAutoProxyCreator implements BeanPostProcessor {
 
     /**
      * 增强器集合
      */
-    private final List<Advisor> advisors;
+    private final FreezableArray<Advisor> advisors;
 
     /**
      * Bean工厂
      */
     private final BeanFactory beanFactory;
 
+    /**
+     * 内置的事务增强器
+     */
+    private final TransactionAdvisor transactionAdvisor;
+
+    public AdvisorAutoProxyCreator(FreezableArray<Advisor> advisors, BeanFactory beanFactory) {
+        this.advisors = advisors;
+        this.beanFactory = beanFactory;
+        this.transactionAdvisor = new TransactionAdvisor(beanFactory);
+    }
+
     @Override
     public Object postProcessBeforeInitialization(String beanName, Object bean, Class<?> beanClass) {
         return bean;
@@ -50,15 +61,18 @@ public class AdvisorAutoProxyCreator implements BeanPostProcessor {
      * @return 匹配到的所有增强器
      */
     private List<Advisor> getMatchedAdvisors(Class<?> beanClass) {
-        if (CollectionUtils.isEmpty(advisors)) {
-            return null;
-        }
-
         // 得到类、所有的方法
         Set<Method> allMethods = ReflectionUtils.getDeclaredMethods(beanClass);
 
         // 存放匹配的Advisor的list
         List<Advisor> matchAdvisors = new ArrayList<>();
+        // 事务增强器放在最前面，其他增强都在事务中执行
+        if (isPointcutMatchBean(transactionAdvisor, beanClass, allMethods)) {
+            matchAdvisors.add(transactionAdvisor);
+        }
+        if (advisors.isEmpty()) {
+            return matchAdvisors;
+        }
         // 遍历Advisor来找匹配的
         for (Advisor ad : advisors) {
             if (ad instanceof AspectJPointcutAdvisor) {
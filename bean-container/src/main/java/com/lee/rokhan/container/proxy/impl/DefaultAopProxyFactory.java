@@ -6,9 +6,9 @@ import com.lee.rokhan.container.proxy.AopProxy;
 import com.lee.rokhan.container.proxy.AopProxyFactory;
 import org.apache.commons.lang3.ArrayUtils;
 
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Aop动态代理工厂类
@@ -20,9 +20,9 @@ import java.util.Set;
 public class DefaultAopProxyFactory implements AopProxyFactory {
 
     /**
-     * 通过类去匹配Bean对象
+     * 通过类去匹配Bean对象，运行期间也可能注册，需要线程安全
      */
-    private final Set<String> classBeanNames = new HashSet<>();
+    private final Set<String> classBeanNames = ConcurrentHashMap.newKeySet();
 
     @Override
     public AopProxy createAopProxy(Object bean, String beanName, List<Advisor> matchAdvisors, BeanFactory beanFactory) {
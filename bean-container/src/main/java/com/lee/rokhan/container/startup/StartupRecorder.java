@@ -0,0 +1,39 @@
+package com.lee.rokhan.container.startup;
+
+/**
+ * 应用上下文启动记录器，记录各个阶段和每个Bean创建的耗时树
+ * @author lichujun
+ * @date 2019/8/3 15:00
+ */
+public interface StartupRecorder {
+
+    /**
+     * 开始一个步骤
+     * @param name 步骤名称
+     * @return 启动步骤
+     */
+    StartupStep start(String name);
+
+    /**
+     * 是否开启了记录
+     * @return 是否开启
+     */
+    boolean isEnabled();
+
+    /**
+     * 导出耗时树，格式为JSON
+     * @return JSON字符串
+     */
+    String toJson();
+
+    /**
+     * 导出Chrome Trace格式（可以在chrome://tracing或者Perfetto中以火焰图查看）
+     * @return JSON字符串
+     */
+    String toChromeTrace();
+
+    /**
+     * 启动完成，输出耗时报告
+     */
+    void finish();
+}
@@ -0,0 +1,63 @@
+package com.lee.rokhan.container.startup;
+
+import com.lee.rokhan.container.startup.impl.DefaultStartupRecorder;
+import com.lee.rokhan.container.startup.impl.NoopStartupRecorder;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * 启动记录器的工厂方法
+ * 通过-Drokhan.startup.recorder=true开启记录，-Drokhan.startup.dump=目录 指定耗时报告的输出目录
+ * @author lichujun
+ * @date 2019/8/3 15:10
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class StartupRecorders {
+
+    /**
+     * 是否开启启动记录的系统属性
+     */
+    public static final String ENABLED_PROPERTY = "rokhan.startup.recorder";
+
+    /**
+     * 耗时报告输出目录的系统属性
+     */
+    public static final String DUMP_PROPERTY = "rokhan.startup.dump";
+
+    /**
+     * 根据系统属性创建启动记录器，未开启时返回不做任何事的记录器
+     * @return 启动记录器
+     */
+    public static StartupRecorder create() {
+        String dumpDir = System.getProperty(DUMP_PROPERTY);
+        if (Boolean.getBoolean(ENABLED_PROPERTY) || StringUtils.isNotBlank(dumpDir)) {
+            return new DefaultStartupRecorder(dumpDir);
+        }
+        return getNoopStartupRecorder();
+    }
+
+    /**
+     * 获取不做任何事的启动记录器
+     * @return 启动记录器
+     */
+    public static StartupRecorder getNoopStartupRecorder() {
+        return StartupRecorderHolder.NOOP_RECORDER.startupRecorder;
+    }
+
+    /**
+     * 枚举生成单例对象
+     */
+    @AllArgsConstructor
+    private enum StartupRecorderHolder {
+
+        /**
+         * 不做任何事的启动记录器
+         */
+        NOOP_RECORDER(new NoopStartupRecorder()),
+        ;
+
+        private StartupRecorder startupRecorder;
+    }
+}
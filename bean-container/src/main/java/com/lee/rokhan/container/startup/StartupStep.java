@@ -0,0 +1,22 @@
+package com.lee.rokhan.container.startup;
+
+/**
+ * 启动过程中的一个计时步骤，同一线程内未结束的步骤会成为后续步骤的父步骤
+ * @author lichujun
+ * @date 2019/8/3 15:02
+ */
+public interface StartupStep {
+
+    /**
+     * 添加标签，如Bean名称
+     * @param key 标签名称
+     * @param value 标签值
+     * @return 当前步骤
+     */
+    StartupStep tag(String key, String value);
+
+    /**
+     * 结束计时，需要在finally中调用
+     */
+    void end();
+}
@@ -0,0 +1,280 @@
+package com.lee.rokhan.container.startup.impl;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.lee.rokhan.container.startup.StartupRecorder;
+import com.lee.rokhan.container.startup.StartupRecorders;
+import com.lee.rokhan.container.startup.StartupStep;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 记录启动耗时树的启动记录器
+ * 每个线程维护自己正在进行的步骤栈，新步骤的父步骤为栈顶步骤，
+ * 因此getBean中嵌套创建依赖Bean时，依赖Bean的创建步骤会挂在外层Bean的下面；
+ * 启动完成后不再记录新的步骤，避免运行期间创建的原型Bean和延迟加载的Bean使步骤无限增长
+ * @author lichujun
+ * @date 2019/8/3 15:20
+ */
+@Slf4j
+public class DefaultStartupRecorder implements StartupRecorder {
+
+    /**
+     * 耗时报告中打印最慢的Bean的数量
+     */
+    private static final int SLOWEST_BEAN_SIZE = 10;
+
+    /**
+     * 创建Bean的步骤名称
+     */
+    private static final String BEAN_STEP_NAME = "bean.create";
+
+    /**
+     * 计时起点
+     */
+    private final long originNanos = System.nanoTime();
+
+    /**
+     * 步骤的ID生成器
+     */
+    private final AtomicInteger idGenerator = new AtomicInteger();
+
+    /**
+     * 所有步骤，按开始顺序排列
+     */
+    private final List<DefaultStartupStep> steps = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * 每个线程正在进行的步骤
+     */
+    private final ThreadLocal<Deque<DefaultStartupStep>> currentSteps = ThreadLocal.withInitial(ArrayDeque::new);
+
+    /**
+     * 耗时报告的输出目录，为空则只打印日志
+     */
+    private final String dumpDir;
+
+    /**
+     * 是否已经启动完成
+     */
+    private volatile boolean finished;
+
+    public DefaultStartupRecorder(String dumpDir) {
+        this.dumpDir = dumpDir;
+    }
+
+    @Override
+    public StartupStep start(String name) {
+        if (finished) {
+            return StartupRecorders.getNoopStartupRecorder().start(name);
+        }
+        Deque<DefaultStartupStep> stack = currentSteps.get();
+        DefaultStartupStep parent = stack.peek();
+        Thread thread = Thread.currentThread();
+        DefaultStartupStep step = new DefaultStartupStep(idGenerator.incrementAndGet(),
+                parent == null ? 0 : parent.id, name, thread.getName(), thread.getId(), stack);
+        stack.push(step);
+        steps.add(step);
+        return step;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return !finished;
+    }
+
+    @Override
+    public String toJson() {
+        List<DefaultStartupStep> snapshot = snapshot();
+        Map<Integer, JSONObject> nodeMap = new HashMap<>(snapshot.size() * 2);
+        JSONArray roots = new JSONArray();
+        for (DefaultStartupStep step : snapshot) {
+            JSONObject node = new JSONObject(true);
+            node.put("name", step.name);
+            if (step.tags != null) {
+                node.put("tags", step.tags);
+            }
+            node.put("thread", step.threadName);
+            node.put("startMs", toMillis(step.startNanos - originNanos));
+            node.put("durationMs", toMillis(step.getDurationNanos()));
+            nodeMap.put(step.id, node);
+            JSONObject parentNode = nodeMap.get(step.parentId);
+            if (parentNode == null) {
+                roots.add(node);
+            } else {
+                JSONArray children = parentNode.getJSONArray("children");
+                if (children == null) {
+                    children = new JSONArray();
+                    parentNode.put("children", children);
+                }
+                children.add(node);
+            }
+        }
+        return JSON.toJSONString(roots, true);
+    }
+
+    @Override
+    public String toChromeTrace() {
+        JSONArray traceEvents = new JSONArray();
+        for (DefaultStartupStep step : snapshot()) {
+            // 完整事件（ph = X），时间单位为微秒
+            JSONObject event = new JSONObject(true);
+            event.put("name", step.getDisplayName());
+            event.put("cat", "startup");
+            event.put("ph", "X");
+            event.put("ts", TimeUnit.NANOSECONDS.toMicros(step.startNanos - originNanos));
+            event.put("dur", TimeUnit.NANOSECONDS.toMicros(step.getDurationNanos()));
+            event.put("pid", 1);
+            event.put("tid", step.threadId);
+            if (step.tags != null) {
+                event.put("args", step.tags);
+            }
+            traceEvents.add(event);
+        }
+        JSONObject trace = new JSONObject(true);
+        trace.put("traceEvents", traceEvents);
+        trace.put("displayTimeUnit", "ms");
+        return trace.toJSONString();
+    }
+
+    @Override
+    public void finish() {
+        // 启动完成后不再记录步骤，清理调用线程的步骤栈，避免线程池中的线程一直持有
+        currentSteps.remove();
+        if (finished) {
+            return;
+        }
+        finished = true;
+        List<DefaultStartupStep> snapshot = snapshot();
+        long totalNanos = System.nanoTime() - originNanos;
+        List<DefaultStartupStep> beanSteps = new ArrayList<>();
+        for (DefaultStartupStep step : snapshot) {
+            if (BEAN_STEP_NAME.equals(step.name)) {
+                beanSteps.add(step);
+            }
+        }
+        beanSteps.sort(Comparator.comparingLong(DefaultStartupStep::getDurationNanos).reversed());
+        StringBuilder report = new StringBuilder();
+        report.append("应用上下文启动耗时").append(toMillis(totalNanos)).append("ms，共创建")
+                .append(beanSteps.size()).append("个Bean");
+        for (DefaultStartupStep step : snapshot) {
+            if (step.parentId == 0) {
+                report.append("\n  ").append(step.name).append(": ")
+                        .append(toMillis(step.getDurationNanos())).append("ms");
+            }
+        }
+        for (int i = 0; i < Math.min(SLOWEST_BEAN_SIZE, beanSteps.size()); i++) {
+            DefaultStartupStep step = beanSteps.get(i);
+            report.append("\n  ").append(step.getDisplayName()).append(": ")
+                    .append(toMillis(step.getDurationNanos())).append("ms（包含依赖）");
+        }
+        log.info(report.toString());
+        if (StringUtils.isBlank(dumpDir)) {
+            return;
+        }
+        try {
+            Path dir = Paths.get(dumpDir);
+            Files.createDirectories(dir);
+            Files.write(dir.resolve("startup.json"), toJson().getBytes(StandardCharsets.UTF_8));
+            Files.write(dir.resolve("startup-trace.json"), toChromeTrace().getBytes(StandardCharsets.UTF_8));
+            log.info("启动耗时报告已输出到{}", dir.toAbsolutePath());
+        } catch (IOException e) {
+            log.error("输出启动耗时报告发生异常", e);
+        }
+    }
+
+    private List<DefaultStartupStep> snapshot() {
+        synchronized (steps) {
+            return new ArrayList<>(steps);
+        }
+    }
+
+    private static double toMillis(long nanos) {
+        return Math.round(nanos / 1000.0) / 1000.0;
+    }
+
+    /**
+     * 启动步骤
+     */
+    private static class DefaultStartupStep implements StartupStep {
+
+        private final int id;
+
+        private final int parentId;
+
+        private final String name;
+
+        private final String threadName;
+
+        private final long threadId;
+
+        /**
+         * 所属线程的步骤栈
+         */
+        private final Deque<DefaultStartupStep> stack;
+
+        private final long startNanos = System.nanoTime();
+
+        private volatile long endNanos;
+
+        private Map<String, String> tags;
+
+        private DefaultStartupStep(int id, int parentId, String name, String threadName, long threadId,
+                                   Deque<DefaultStartupStep> stack) {
+            this.id = id;
+            this.parentId = parentId;
+            this.name = name;
+            this.threadName = threadName;
+            this.threadId = threadId;
+            this.stack = stack;
+        }
+
+        @Override
+        public StartupStep tag(String key, String value) {
+            if (tags == null) {
+                tags = new LinkedHashMap<>(4);
+            }
+            tags.put(key, value);
+            return this;
+        }
+
+        @Override
+        public void end() {
+            if (endNanos != 0) {
+                return;
+            }
+            endNanos = System.nanoTime();
+            // 正常情况下当前步骤就是栈顶
+            if (stack.peek() == this) {
+                stack.pop();
+            } else {
+                stack.remove(this);
+            }
+        }
+
+        /**
+         * 耗时，未结束的步骤计算到当前时间
+         */
+        private long getDurationNanos() {
+            long end = endNanos;
+            return (end == 0 ? System.nanoTime() : end) - startNanos;
+        }
+
+        /**
+         * 火焰图中显示的名称，Bean的步骤显示Bean名称
+         */
+        private String getDisplayName() {
+            String beanName = tags == null ? null : tags.get("beanName");
+            return beanName == null ? name : name + "[" + beanName + "]";
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.lee.rokhan.container.startup.impl;
+
+import com.lee.rokhan.container.startup.StartupRecorder;
+import com.lee.rokhan.container.startup.StartupStep;
+
+/**
+ * 未开启启动记录时使用，所有方法都是空实现，不产生新对象
+ * @author lichujun
+ * @date 2019/8/3 15:12
+ */
+public class NoopStartupRecorder implements StartupRecorder {
+
+    private static final StartupStep NOOP_STEP = new StartupStep() {
+        @Override
+        public StartupStep tag(String key, String value) {
+            return this;
+        }
+
+        @Override
+        public void end() {
+        }
+    };
+
+    @Override
+    public StartupStep start(String name) {
+        return NOOP_STEP;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return false;
+    }
+
+    @Override
+    public String toJson() {
+        return "[]";
+    }
+
+    @Override
+    public String toChromeTrace() {
+        return "{\"traceEvents\":[]}";
+    }
+
+    @Override
+    public void finish() {
+    }
+}
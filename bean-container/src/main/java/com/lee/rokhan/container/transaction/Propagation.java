@@ -0,0 +1,11 @@
+package com.lee.rokhan.container.transaction;
+
+/**
+ * 事务的传播行为
+ * @author lichujun
+ * @date 2019/8/11 14:00
+ */
+public enum Propagation {
+    // 已经存在事务时加入，否则开启新的事务；挂起已经存在的事务，开启新的事务
+    REQUIRED, REQUIRES_NEW, ;
+}
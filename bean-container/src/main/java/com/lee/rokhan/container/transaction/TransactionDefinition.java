@@ -0,0 +1,53 @@
+package com.lee.rokhan.container.transaction;
+
+import com.lee.rokhan.container.annotation.Transactional;
+import lombok.Getter;
+
+/**
+ * 事务定义，由@Transactional解析而来
+ * @author lichujun
+ * @date 2019/8/11 14:10
+ */
+@Getter
+public class TransactionDefinition {
+
+    private final Propagation propagation;
+
+    private final boolean readOnly;
+
+    /**
+     * 超时时间，小于等于0表示不限制，单位：秒
+     */
+    private final int timeout;
+
+    private final Class<? extends Throwable>[] rollbackFor;
+
+    private final Class<? extends Throwable>[] noRollbackFor;
+
+    public TransactionDefinition(Transactional transactional) {
+        this.propagation = transactional.propagation();
+        this.readOnly = transactional.readOnly();
+        this.timeout = transactional.timeout();
+        this.rollbackFor = transactional.rollbackFor();
+        this.noRollbackFor = transactional.noRollbackFor();
+    }
+
+    /**
+     * 发生该异常时是否回滚，noRollbackFor优先，都没有配置时RuntimeException和Error回滚
+     * @param e 异常
+     * @return 是否回滚
+     */
+    public boolean rollbackOn(Throwable e) {
+        for (Class<? extends Throwable> clazz : noRollbackFor) {
+            if (clazz.isInstance(e)) {
+                return false;
+            }
+        }
+        for (Class<? extends Throwable> clazz : rollbackFor) {
+            if (clazz.isInstance(e)) {
+                return true;
+            }
+        }
+        return e instanceof RuntimeException || e instanceof Error;
+    }
+}
@@ -0,0 +1,28 @@
+package com.lee.rokhan.container.transaction;
+
+/**
+ * 事务管理器，注册为Bean后@Transactional生效
+ * @author lichujun
+ * @date 2019/8/11 14:05
+ */
+public interface TransactionManager {
+
+    /**
+     * 按事务定义开启新的事务或者加入已经存在的事务
+     * @param definition 事务定义
+     * @return 事务的状态
+     */
+    TransactionStatus getTransaction(TransactionDefinition definition);
+
+    /**
+     * 提交事务，加入已经存在的事务时由最外层提交
+     * @param status 事务的状态
+     */
+    void commit(TransactionStatus status);
+
+    /**
+     * 回滚事务，加入已经存在的事务时标记为只能回滚
+     * @param status 事务的状态
+     */
+    void rollback(TransactionStatus status);
+}
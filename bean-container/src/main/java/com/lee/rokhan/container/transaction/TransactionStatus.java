@@ -0,0 +1,15 @@
+package com.lee.rokhan.container.transaction;
+
+/**
+ * 事务的状态，由TransactionManager创建，提交或者回滚时传回
+ * @author lichujun
+ * @date 2019/8/11 14:05
+ */
+public interface TransactionStatus {
+
+    /**
+     * 是否是新开启的事务，加入已经存在的事务时为false
+     * @return 是否是新开启的事务
+     */
+    boolean isNewTransaction();
+}
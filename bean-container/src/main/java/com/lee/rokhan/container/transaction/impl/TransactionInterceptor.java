@@ -0,0 +1,88 @@
+package com.lee.rokhan.container.transaction.impl;
+
+import com.lee.rokhan.container.advice.AopAdviceChainInvocation;
+import com.lee.rokhan.container.advice.MethodSurroundAdvice;
+import com.lee.rokhan.container.factory.BeanFactory;
+import com.lee.rokhan.container.pointcut.impl.TransactionPointcut;
+import com.lee.rokhan.container.transaction.TransactionDefinition;
+import com.lee.rokhan.container.transaction.TransactionManager;
+import com.lee.rokhan.container.transaction.TransactionStatus;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * 事务的环绕通知
+ * 方法正常返回时提交，抛出需要回滚的异常时回滚，否则提交后再抛出异常
+ * @author lichujun
+ * @date 2019/8/11 14:30
+ */
+@Slf4j
+public class TransactionInterceptor implements MethodSurroundAdvice {
+
+    private final TransactionPointcut pointcut;
+
+    private final BeanFactory beanFactory;
+
+    private volatile TransactionManager transactionManager;
+
+    public TransactionInterceptor(TransactionPointcut pointcut, BeanFactory beanFactory) {
+        this.pointcut = pointcut;
+        this.beanFactory = beanFactory;
+    }
+
+    @Override
+    public Object invoke(Method method, Object[] args, Object target) throws Throwable {
+        // 环绕通知拿到的是增强链，从增强链中获取实际调用的方法和目标对象
+        AopAdviceChainInvocation chain = (AopAdviceChainInvocation) target;
+        TransactionDefinition definition = pointcut.getDefinition(chain.getMethod(), chain.getTarget().getClass());
+        if (definition == null) {
+            return method.invoke(target, args);
+        }
+        TransactionManager manager = getTransactionManager();
+        TransactionStatus status = manager.getTransaction(definition);
+        Object returnValue;
+        try {
+            returnValue = method.invoke(target, args);
+        } catch (Throwable e) {
+            Throwable cause = unwrap(e);
+            try {
+                if (definition.rollbackOn(cause)) {
+                    manager.rollback(status);
+                } else {
+                    manager.commit(status);
+                }
+            } catch (RuntimeException | Error te) {
+                log.error("事务结束失败，方法{}抛出的异常", chain.getMethod(), cause);
+                throw te;
+            }
+            throw e;
+        }
+        manager.commit(status);
+        return returnValue;
+    }
+
+    private TransactionManager getTransactionManager() throws Throwable {
+        TransactionManager manager = transactionManager;
+        if (manager == null) {
+            String beanName = beanFactory.getBeanNameByType(TransactionManager.class);
+            if (beanName == null) {
+                throw new RuntimeException("使用@Transactional需要注册唯一的TransactionManager");
+            }
+            manager = (TransactionManager) beanFactory.getBean(beanName);
+            transactionManager = manager;
+        }
+        return manager;
+    }
+
+    /**
+     * 增强链通过反射调用，异常可能被多层InvocationTargetException包装
+     */
+    private static Throwable unwrap(Throwable e) {
+        while (e instanceof InvocationTargetException && e.getCause() != null) {
+            e = e.getCause();
+        }
+        return e;
+    }
+}
@@ -3,6 +3,7 @@ package com.lee.rokhan.container.utils;
 import com.lee.rokhan.container.advice.AopAdviceChainInvocation;
 import com.lee.rokhan.container.advisor.Advisor;
 import com.lee.rokhan.container.advisor.impl.AspectJPointcutAdvisor;
+import com.lee.rokhan.container.advisor.impl.TransactionAdvisor;
 import com.lee.rokhan.container.factory.BeanFactory;
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
@@ -61,7 +62,11 @@ public class AopProxyUtils {
         }
         List<Object> advices = new ArrayList<>();
         for (Advisor ad : matchAdvisors) {
-            if (ad instanceof AspectJPointcutAdvisor) {
+            if (ad instanceof TransactionAdvisor) {
+                if (((TransactionAdvisor) ad).matches(method, target.getClass())) {
+                    advices.add(((TransactionAdvisor) ad).getAdvice());
+                }
+            } else if (ad instanceof AspectJPointcutAdvisor) {
                 if (ad.getPointcut().matchMethod(method)) {
                     advices.add(beanFactory.getBean(ad.getAdviceBeanName()));
                 }
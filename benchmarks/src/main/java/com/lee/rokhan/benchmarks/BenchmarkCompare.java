@@ -0,0 +1,101 @@
+package com.lee.rokhan.benchmarks;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 对比两次JMH的JSON结果，输出每个基准的变化，变差超过阈值的标记为回退
+ * 吞吐量模式分数越大越好，其余模式分数越小越好；存在回退时以状态码1退出，方便在构建脚本中使用
+ * 运行：java -cp benchmarks/target/benchmarks.jar com.lee.rokhan.benchmarks.BenchmarkCompare 基准结果.json 当前结果.json [阈值百分比，默认10]
+ * @author lichujun
+ * @date 2019/8/12 15:00
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class BenchmarkCompare {
+
+    private static final double DEFAULT_THRESHOLD = 10;
+
+    private static final String THROUGHPUT_MODE = "thrpt";
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("用法：BenchmarkCompare 基准结果.json 当前结果.json [阈值百分比]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_THRESHOLD;
+        Map<String, JSONObject> baseline = load(args[0]);
+        Map<String, JSONObject> current = load(args[1]);
+        int regressions = 0;
+        System.out.println(String.format("%-70s %14s %14s %9s", "Benchmark", "Baseline", "Current", "Change"));
+        for (Map.Entry<String, JSONObject> entry : current.entrySet()) {
+            JSONObject result = entry.getValue();
+            JSONObject metric = result.getJSONObject("primaryMetric");
+            double score = metric.getDoubleValue("score");
+            String unit = metric.getString("scoreUnit");
+            JSONObject baselineResult = baseline.get(entry.getKey());
+            if (baselineResult == null) {
+                System.out.println(String.format("%-70s %14s %14.3f %9s  %s", entry.getKey(), "-", score, "new", unit));
+                continue;
+            }
+            double baselineScore = baselineResult.getJSONObject("primaryMetric").getDoubleValue("score");
+            double change = baselineScore == 0 ? 0 : (score - baselineScore) / baselineScore * 100;
+            // 统一成正数表示变好
+            double improvement = THROUGHPUT_MODE.equals(result.getString("mode")) ? change : -change;
+            String flag = "";
+            if (improvement < -threshold) {
+                flag = "  REGRESSION";
+                regressions++;
+            }
+            System.out.println(String.format("%-70s %14.3f %14.3f %+8.1f%%  %s%s",
+                    entry.getKey(), baselineScore, score, change, unit, flag));
+        }
+        for (String key : baseline.keySet()) {
+            if (!current.containsKey(key)) {
+                System.out.println(String.format("%-70s %14s %14s %9s", key, "", "-", "removed"));
+            }
+        }
+        if (regressions > 0) {
+            System.out.println(String.format("%d个基准变差超过%.1f%%", regressions, threshold));
+            System.exit(1);
+        }
+    }
+
+    /**
+     * 读取JMH的JSON结果
+     * @param file 结果文件
+     * @return 基准名称加参数、模式对应的结果
+     */
+    private static Map<String, JSONObject> load(String file) throws IOException {
+        String content = new String(Files.readAllBytes(Paths.get(file)), StandardCharsets.UTF_8);
+        JSONArray results = JSON.parseArray(content);
+        Map<String, JSONObject> resultMap = new LinkedHashMap<>();
+        for (int i = 0; i < results.size(); i++) {
+            JSONObject result = results.getJSONObject(i);
+            resultMap.put(key(result), result);
+        }
+        return resultMap;
+    }
+
+    private static String key(JSONObject result) {
+        StringBuilder key = new StringBuilder(result.getString("benchmark")
+                .replace("com.lee.rokhan.benchmarks.", ""));
+        JSONObject params = result.getJSONObject("params");
+        if (params != null) {
+            // 参数按名称排序，和JMH的输出顺序无关
+            Map<String, Object> sortedParams = new TreeMap<>(params);
+            key.append(sortedParams);
+        }
+        return key.append(':').append(result.getString("mode")).toString();
+    }
+}
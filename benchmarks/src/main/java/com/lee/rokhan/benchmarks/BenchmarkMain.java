@@ -0,0 +1,37 @@
+package com.lee.rokhan.benchmarks;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.openjdk.jmh.Main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * benchmarks.jar的入口，参数和JMH一致
+ * 没有指定-rf和-rff时默认把结果输出为JSON文件jmh-result.json，不同提交的结果可以用BenchmarkCompare对比
+ * 运行：java -jar benchmarks/target/benchmarks.jar [JMH参数]
+ * @author lichujun
+ * @date 2019/8/12 15:00
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class BenchmarkMain {
+
+    private static final String RESULT_FORMAT = "-rf";
+
+    private static final String RESULT_FILE = "-rff";
+
+    public static void main(String[] args) throws Exception {
+        List<String> argList = new ArrayList<>(Arrays.asList(args));
+        if (!argList.contains(RESULT_FORMAT)) {
+            argList.add(RESULT_FORMAT);
+            argList.add("json");
+        }
+        if (!argList.contains(RESULT_FILE)) {
+            argList.add(RESULT_FILE);
+            argList.add("jmh-result.json");
+        }
+        Main.main(argList.toArray(new String[0]));
+    }
+}
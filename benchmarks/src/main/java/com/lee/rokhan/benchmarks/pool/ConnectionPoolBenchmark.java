@@ -0,0 +1,112 @@
+package com.lee.rokhan.benchmarks.pool;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import com.lee.rokhan.mybatis.mapping.Environment;
+import com.lee.rokhan.mybatis.pool.DataSourcePool;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 连接池在竞争下的借出和归还，连接数少于线程数，借用线程需要等待其他线程归还连接
+ * 数据库为内存模式的H2，排除网络开销，只比较连接池本身的开销
+ * 运行：java -jar benchmarks/target/benchmarks.jar ConnectionPoolBenchmark -t 32
+ * @author lichujun
+ * @date 2019/8/5 15:30
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(16)
+@State(Scope.Benchmark)
+public class ConnectionPoolBenchmark {
+
+    private static final String URL = "jdbc:h2:mem:pool;DB_CLOSE_DELAY=-1";
+
+    @Param({"rokhan", "druid"})
+    private String pool;
+
+    @Param({"8"})
+    private int maxPoolSize;
+
+    private DataSource dataSource;
+
+    @Setup
+    public void setup() throws SQLException {
+        switch (pool) {
+            case "rokhan":
+                Environment environment = new Environment();
+                environment.setDriver("org.h2.Driver");
+                environment.setUrl(URL);
+                environment.setUserName("sa");
+                environment.setPassword("");
+                environment.setMaxPoolSize(maxPoolSize);
+                environment.setMinIdle(maxPoolSize);
+                dataSource = new DataSourcePool(environment);
+                break;
+            case "druid":
+                DruidDataSource druid = new DruidDataSource();
+                druid.setDriverClassName("org.h2.Driver");
+                druid.setUrl(URL);
+                druid.setUsername("sa");
+                druid.setPassword("");
+                druid.setInitialSize(maxPoolSize);
+                druid.setMinIdle(maxPoolSize);
+                druid.setMaxActive(maxPoolSize);
+                druid.setMaxWait(30000);
+                druid.setTestOnBorrow(false);
+                druid.setTestWhileIdle(true);
+                druid.setValidationQuery("SELECT 1");
+                druid.init();
+                dataSource = druid;
+                break;
+            default:
+                throw new RuntimeException("不支持的连接池：" + pool);
+        }
+        // 预热到最大连接数
+        Connection[] connections = new Connection[maxPoolSize];
+        for (int i = 0; i < maxPoolSize; i++) {
+            connections[i] = dataSource.getConnection();
+        }
+        for (Connection connection : connections) {
+            connection.close();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        ((Closeable) dataSource).close();
+    }
+
+    /**
+     * 只借出和归还连接
+     */
+    @Benchmark
+    public void borrowAndReturn(Blackhole blackhole) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            blackhole.consume(connection);
+        }
+    }
+
+    /**
+     * 借出连接后执行一条简单的查询
+     */
+    @Benchmark
+    public void borrowAndQuery(Blackhole blackhole) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT 1");
+             ResultSet resultSet = statement.executeQuery()) {
+            resultSet.next();
+            blackhole.consume(resultSet.getInt(1));
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.lee.rokhan.benchmarks.reflection;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import org.apache.commons.lang3.ArrayUtils;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.*;
+
+/**
+ * 未加缓存时的ReflectionUtils实现，每次调用都遍历类的继承结构，作为基准测试的对照组
+ * @author lichujun
+ * @date 2019/8/3 11:05
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+class LegacyReflectionUtils {
+
+    static Set<Method> getDeclaredMethods(Class<?> clazz) {
+        Set<Method> methodSet = new LinkedHashSet<>();
+        Set<MethodSignature> methodSignatureSet = new HashSet<>();
+        for (; clazz != Object.class; clazz = clazz.getSuperclass()) {
+            if (clazz == null) {
+                break;
+            }
+            for (Method method : clazz.getDeclaredMethods()) {
+                MethodSignature methodSignature = new MethodSignature(method.getName(), method.getParameterTypes());
+                if (methodSignatureSet.add(methodSignature)) {
+                    methodSet.add(method);
+                }
+            }
+        }
+        return methodSet;
+    }
+
+    static Set<Field> getDeclaredFields(Class<?> clazz) {
+        Set<Field> fieldSet = new LinkedHashSet<>();
+        Set<String> fieldNameSet = new HashSet<>();
+        for (; clazz != Object.class; clazz = clazz.getSuperclass()) {
+            if (clazz == null) {
+                break;
+            }
+            for (Field field : clazz.getDeclaredFields()) {
+                if (fieldNameSet.add(field.getName())) {
+                    fieldSet.add(field);
+                }
+            }
+        }
+        return fieldSet;
+    }
+
+    static Set<Class<?>> getInterfaces(Class<?> clazz) {
+        Set<Class<?>> interfaceSet = new LinkedHashSet<>();
+        for (; clazz != Object.class; clazz = clazz.getSuperclass()) {
+            if (clazz == null) {
+                break;
+            }
+            Class<?>[] interfaceArr = clazz.getInterfaces();
+            if (ArrayUtils.isEmpty(interfaceArr)) {
+                continue;
+            }
+            interfaceSet.addAll(Arrays.asList(interfaceArr));
+        }
+        return interfaceSet;
+    }
+
+    static Method getDeclaredMethod(Class<?> clazz, String methodName, Class<?>... parameterTypes) {
+        for (; clazz != Object.class; clazz = clazz.getSuperclass()) {
+            try {
+                return clazz.getDeclaredMethod(methodName, parameterTypes);
+            } catch (NoSuchMethodException e) {
+                // 这里甚么都不需要做
+            }
+        }
+        return null;
+    }
+
+    static Field getDeclaredField(Class<?> clazz, String fieldName) {
+        for (; clazz != Object.class; clazz = clazz.getSuperclass()) {
+            if (clazz == null) {
+                break;
+            }
+            try {
+                return clazz.getDeclaredField(fieldName);
+            } catch (Exception e) {
+                // 这里甚么都不需要做
+            }
+        }
+        return null;
+    }
+
+    @AllArgsConstructor
+    private static class MethodSignature {
+        private final String methodName;
+        private final Class<?>[] methodParameters;
+
+        @Override
+        public int hashCode() {
+            int result = Objects.hash(methodName);
+            return 31 * result + 37 * Optional.ofNullable(methodParameters)
+                    .map(it -> it.length)
+                    .orElse(0);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            MethodSignature that = (MethodSignature) o;
+            return methodName.equals(that.methodName) &&
+                    Arrays.equals(methodParameters, that.methodParameters);
+        }
+    }
+}
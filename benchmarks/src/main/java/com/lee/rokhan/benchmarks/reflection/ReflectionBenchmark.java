@@ -0,0 +1,150 @@
+package com.lee.rokhan.benchmarks.reflection;
+
+import com.lee.rokhan.common.utils.ReflectionUtils;
+import org.openjdk.jmh.annotations.*;
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ReflectionUtils加缓存前后的对比，模拟容器对同一个类反复获取方法、成员变量和接口
+ * 运行：java -jar benchmarks/target/benchmarks.jar ReflectionBenchmark
+ * @author lichujun
+ * @date 2019/8/3 11:20
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReflectionBenchmark {
+
+    private final Class<?> beanClass = SampleService.class;
+
+    @Benchmark
+    public Set<Method> legacyGetDeclaredMethods() {
+        return LegacyReflectionUtils.getDeclaredMethods(beanClass);
+    }
+
+    @Benchmark
+    public Set<Method> cachedGetDeclaredMethods() {
+        return ReflectionUtils.getDeclaredMethods(beanClass);
+    }
+
+    @Benchmark
+    public Set<Field> legacyGetDeclaredFields() {
+        return LegacyReflectionUtils.getDeclaredFields(beanClass);
+    }
+
+    @Benchmark
+    public Set<Field> cachedGetDeclaredFields() {
+        return ReflectionUtils.getDeclaredFields(beanClass);
+    }
+
+    @Benchmark
+    public Set<Class<?>> legacyGetInterfaces() {
+        return LegacyReflectionUtils.getInterfaces(beanClass);
+    }
+
+    @Benchmark
+    public Set<Class<?>> cachedGetInterfaces() {
+        return ReflectionUtils.getInterfaces(beanClass);
+    }
+
+    /**
+     * 方法声明在父类，需要向上查找
+     */
+    @Benchmark
+    public Method legacyGetDeclaredMethod() {
+        return LegacyReflectionUtils.getDeclaredMethod(beanClass, "init");
+    }
+
+    @Benchmark
+    public Method cachedGetDeclaredMethod() {
+        return ReflectionUtils.getDeclaredMethod(beanClass, "init");
+    }
+
+    /**
+     * 成员变量声明在父类的父类，需要向上查找
+     */
+    @Benchmark
+    public Field legacyGetDeclaredField() {
+        return LegacyReflectionUtils.getDeclaredField(beanClass, "id");
+    }
+
+    @Benchmark
+    public Field cachedGetDeclaredField() {
+        return ReflectionUtils.getDeclaredField(beanClass, "id");
+    }
+
+    public interface Identified {
+        long getId();
+    }
+
+    public static class BaseEntity implements Identified, Serializable {
+        private long id;
+        private long createTime;
+        private long updateTime;
+
+        @Override
+        public long getId() {
+            return id;
+        }
+
+        public long getCreateTime() {
+            return createTime;
+        }
+
+        public long getUpdateTime() {
+            return updateTime;
+        }
+    }
+
+    public static class BaseService extends BaseEntity implements Runnable {
+        private String name;
+        private int order;
+
+        public void init() {
+            order = 0;
+        }
+
+        public void destroy() {
+            name = null;
+        }
+
+        @Override
+        public void run() {
+            init();
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    public static class SampleService extends BaseService implements Comparable<SampleService> {
+        private String host;
+        private int port;
+        private boolean enabled;
+
+        public String getHost() {
+            return host;
+        }
+
+        public int getPort() {
+            return port;
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        @Override
+        public int compareTo(SampleService o) {
+            return Integer.compare(port, o.port);
+        }
+    }
+}
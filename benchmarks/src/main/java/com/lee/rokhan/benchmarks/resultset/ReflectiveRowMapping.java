@@ -0,0 +1,65 @@
+package com.lee.rokhan.benchmarks.resultset;
+
+import com.lee.rokhan.mybatis.type.TypeHandlers;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 编译行映射前的结果集转换实现，按列名匹配成员变量后，每一行每一列按类型分支读取并通过Field.set设置，
+ * 作为基准测试的对照组
+ * @author lichujun
+ * @date 2019/8/7 14:10
+ */
+class ReflectiveRowMapping {
+
+    private final Constructor<?> constructor;
+
+    private final int[] columns;
+
+    private final Field[] fields;
+
+    ReflectiveRowMapping(ResultSet resultSet, Class<?> resultType) throws SQLException, NoSuchMethodException {
+        constructor = resultType.getDeclaredConstructor();
+        constructor.setAccessible(true);
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        List<Integer> columnList = new ArrayList<>();
+        List<Field> fieldList = new ArrayList<>();
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            String label = normalize(metaData.getColumnLabel(i));
+            for (Field field : resultType.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers()) && normalize(field.getName()).equals(label)) {
+                    field.setAccessible(true);
+                    columnList.add(i);
+                    fieldList.add(field);
+                    break;
+                }
+            }
+        }
+        columns = columnList.stream().mapToInt(Integer::intValue).toArray();
+        fields = fieldList.toArray(new Field[0]);
+    }
+
+    Object mapRow(ResultSet resultSet) throws SQLException, ReflectiveOperationException {
+        Object bean = constructor.newInstance();
+        for (int i = 0; i < fields.length; i++) {
+            Field field = fields[i];
+            Object value = TypeHandlers.getResult(resultSet, columns[i], field.getType());
+            if (value != null) {
+                field.set(bean, value);
+            }
+        }
+        return bean;
+    }
+
+    private static String normalize(String name) {
+        return name.replace("_", "").toLowerCase(Locale.ENGLISH);
+    }
+}
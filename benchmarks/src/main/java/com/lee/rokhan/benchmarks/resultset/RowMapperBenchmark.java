@@ -0,0 +1,89 @@
+package com.lee.rokhan.benchmarks.resultset;
+
+import com.lee.rokhan.mybatis.executor.resultset.ResultShape;
+import com.lee.rokhan.mybatis.executor.resultset.RowMapper;
+import com.lee.rokhan.mybatis.executor.resultset.impl.RowMapperCompiler;
+import lombok.Data;
+import org.h2.tools.SimpleResultSet;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 编译的行映射和反射的行映射转换100万行的耗时对比
+ * 结果集为内存中的H2 SimpleResultSet，排除数据库和网络开销，只比较行映射本身
+ * 运行：java -jar benchmarks/target/benchmarks.jar RowMapperBenchmark
+ * @author lichujun
+ * @date 2019/8/7 14:20
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class RowMapperBenchmark {
+
+    @Param({"1000000"})
+    private int rows;
+
+    private SimpleResultSet resultSet;
+
+    private RowMapper<?> compiledMapper;
+
+    private ReflectiveRowMapping reflectiveMapping;
+
+    @Setup
+    public void setup() throws Exception {
+        resultSet = new SimpleResultSet();
+        resultSet.setAutoClose(false);
+        resultSet.addColumn("ID", Types.BIGINT, 19, 0);
+        resultSet.addColumn("USER_NAME", Types.VARCHAR, 32, 0);
+        resultSet.addColumn("AGE", Types.INTEGER, 10, 0);
+        resultSet.addColumn("SCORE", Types.DOUBLE, 17, 0);
+        resultSet.addColumn("LEVEL", Types.INTEGER, 10, 0);
+        resultSet.addColumn("CREATED_AT", Types.TIMESTAMP, 23, 0);
+        Timestamp createdAt = new Timestamp(System.currentTimeMillis());
+        for (int i = 0; i < rows; i++) {
+            resultSet.addRow((long) i, "user" + i, i % 100, i * 0.5, i % 7 == 0 ? null : i % 10, createdAt);
+        }
+        compiledMapper = RowMapperCompiler.compile(UserRow.class, ResultShape.of(resultSet.getMetaData()));
+        reflectiveMapping = new ReflectiveRowMapping(resultSet, UserRow.class);
+    }
+
+    @Benchmark
+    public void compiled(Blackhole blackhole) throws SQLException {
+        resultSet.beforeFirst();
+        while (resultSet.next()) {
+            blackhole.consume(compiledMapper.mapRow(resultSet));
+        }
+    }
+
+    @Benchmark
+    public void reflective(Blackhole blackhole) throws Exception {
+        resultSet.beforeFirst();
+        while (resultSet.next()) {
+            blackhole.consume(reflectiveMapping.mapRow(resultSet));
+        }
+    }
+
+    @Data
+    public static class UserRow {
+
+        private long id;
+
+        private String userName;
+
+        private int age;
+
+        private double score;
+
+        private Integer level;
+
+        private Timestamp createdAt;
+    }
+}
@@ -0,0 +1,68 @@
+package com.lee.rokhan.benchmarks.session;
+
+import com.lee.rokhan.mybatis.mapper.DemoUser;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 通过SqlSession执行DemoMapper.xml中的SQL，分别由本项目的mybatis和上游MyBatis实现，用同样的操作对比两者
+ * @author lichujun
+ * @date 2019/8/12 18:10
+ */
+public interface DemoDataLayer extends Closeable {
+
+    /**
+     * 建表
+     */
+    void createTable();
+
+    /**
+     * 删除id大于等于指定值的行
+     * @param id id
+     * @return 删除的行数
+     */
+    int deleteFrom(long id);
+
+    /**
+     * 在一个事务中批量插入
+     * @param users 插入的行
+     */
+    void insertBatch(List<DemoUser> users);
+
+    /**
+     * 按id查询
+     * @param id id
+     * @return 查询结果，不存在时为null
+     */
+    DemoUser selectById(long id);
+
+    /**
+     * 用游标按id顺序遍历所有行
+     * @param consumer 处理每一行
+     * @return 行数
+     */
+    long streamAll(Consumer<DemoUser> consumer);
+
+    /**
+     * 行数
+     * @return 行数
+     */
+    long count();
+
+    /**
+     * 最大的id
+     * @return 最大的id，没有数据时为0
+     */
+    long maxId();
+
+    /**
+     * 执行select 1，主要是借出和归还连接的开销
+     * @return 1
+     */
+    int ping();
+
+    @Override
+    void close();
+}
@@ -0,0 +1,69 @@
+package com.lee.rokhan.benchmarks.session;
+
+import com.lee.rokhan.mybatis.mapper.DemoUser;
+import com.lee.rokhan.mybatis.mapping.Configuration;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 集成检查：两种实现在同一个内存数据库上执行相同的操作，结果不一致时抛出异常
+ * 运行基准测试前确认两者做的是同样的工作：java -cp benchmarks/target/benchmarks.jar
+ * com.lee.rokhan.benchmarks.session.DemoDataLayerCheck
+ * @author lichujun
+ * @date 2019/8/12 19:00
+ */
+@Slf4j
+public class DemoDataLayerCheck {
+
+    private static final int ROWS = 2000;
+
+    public static void main(String[] args) {
+        Configuration configuration = DemoDataLayers.loadConfiguration();
+        try (DemoDataLayer rokhan = DemoDataLayers.create(DemoDataLayers.ROKHAN, configuration);
+             DemoDataLayer mybatis = DemoDataLayers.create(DemoDataLayers.MYBATIS, configuration)) {
+            DemoDataLayers.seed(rokhan, ROWS / 2);
+            mybatis.insertBatch(DemoDataLayers.newUsers(ROWS / 2, ROWS / 2));
+            check("ping", rokhan.ping(), mybatis.ping());
+            check("count", (long) ROWS, rokhan.count());
+            check("count", rokhan.count(), mybatis.count());
+            long maxId = rokhan.maxId();
+            check("maxId", maxId, mybatis.maxId());
+            for (long id = maxId - ROWS; id <= maxId + 1; id += 97) {
+                checkUser(id, rokhan.selectById(id), mybatis.selectById(id));
+            }
+            List<DemoUser> rokhanRows = new ArrayList<>(ROWS);
+            List<DemoUser> mybatisRows = new ArrayList<>(ROWS);
+            check("streamAll", rokhan.streamAll(rokhanRows::add), mybatis.streamAll(mybatisRows::add));
+            for (int i = 0; i < rokhanRows.size(); i++) {
+                checkUser(rokhanRows.get(i).getId(), rokhanRows.get(i), mybatisRows.get(i));
+            }
+            check("deleteFrom", rokhan.deleteFrom(maxId - 9), 10);
+            check("count", mybatis.count(), (long) ROWS - 10);
+        }
+        log.info("两种实现的结果一致，行数：{}", ROWS);
+    }
+
+    private static void check(String name, Object expected, Object actual) {
+        if (!Objects.equals(expected, actual)) {
+            throw new RuntimeException(name + "的结果不一致：" + expected + "，" + actual);
+        }
+    }
+
+    /**
+     * 逐个属性比较，时间只比较毫秒数（两者返回的Date子类可能不同）
+     */
+    private static void checkUser(long id, DemoUser expected, DemoUser actual) {
+        if (expected == null || actual == null) {
+            check("selectById(" + id + ")", expected, actual);
+            return;
+        }
+        check("id", expected.getId(), actual.getId());
+        check("userName", expected.getUserName(), actual.getUserName());
+        check("age", expected.getAge(), actual.getAge());
+        check("score", expected.getScore(), actual.getScore());
+        check("createdAt", expected.getCreatedAt().getTime(), actual.getCreatedAt().getTime());
+    }
+}
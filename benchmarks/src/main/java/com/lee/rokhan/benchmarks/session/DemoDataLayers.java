@@ -0,0 +1,101 @@
+package com.lee.rokhan.benchmarks.session;
+
+import com.lee.rokhan.benchmarks.session.impl.MybatisDataLayer;
+import com.lee.rokhan.benchmarks.session.impl.RokhanDataLayer;
+import com.lee.rokhan.mybatis.builder.XmlConfigBuilder;
+import com.lee.rokhan.mybatis.mapper.DemoUser;
+import com.lee.rokhan.mybatis.mapping.Configuration;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 创建DemoDataLayer并准备数据
+ * 两种实现使用同一个配置文件中的数据库和连接池参数，数据库为内存模式的H2，不依赖外部环境
+ * @author lichujun
+ * @date 2019/8/12 18:40
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class DemoDataLayers {
+
+    public static final String ROKHAN = "rokhan";
+
+    public static final String MYBATIS = "mybatis";
+
+    private static final String CONFIG_RESOURCE = "benchmark-mybatis-config.xml";
+
+    /**
+     * 准备数据时每批插入的行数
+     */
+    private static final int SEED_BATCH_SIZE = 1000;
+
+    /**
+     * 解析基准测试的mybatis配置
+     * @return 配置
+     */
+    public static Configuration loadConfiguration() {
+        try (InputStream input = DemoDataLayers.class.getClassLoader().getResourceAsStream(CONFIG_RESOURCE)) {
+            if (input == null) {
+                throw new RuntimeException("找不到配置文件" + CONFIG_RESOURCE);
+            }
+            return new XmlConfigBuilder(input).parse();
+        } catch (IOException e) {
+            throw new RuntimeException("读取配置文件" + CONFIG_RESOURCE + "发生异常", e);
+        }
+    }
+
+    /**
+     * 创建DemoDataLayer
+     * @param name rokhan或者mybatis
+     * @param configuration 配置
+     * @return DemoDataLayer
+     */
+    public static DemoDataLayer create(String name, Configuration configuration) {
+        switch (name) {
+            case ROKHAN:
+                return new RokhanDataLayer(configuration);
+            case MYBATIS:
+                return new MybatisDataLayer(configuration.getEnvironment());
+            default:
+                throw new RuntimeException("不支持的实现：" + name);
+        }
+    }
+
+    /**
+     * 建表并清空后插入指定行数的数据
+     * @param dataLayer DemoDataLayer
+     * @param rows 行数
+     */
+    public static void seed(DemoDataLayer dataLayer, int rows) {
+        dataLayer.createTable();
+        dataLayer.deleteFrom(0);
+        for (int from = 0; from < rows; from += SEED_BATCH_SIZE) {
+            dataLayer.insertBatch(newUsers(from, Math.min(SEED_BATCH_SIZE, rows - from)));
+        }
+    }
+
+    /**
+     * 生成插入的数据
+     * @param from 起始序号
+     * @param count 行数
+     * @return 数据
+     */
+    public static List<DemoUser> newUsers(int from, int count) {
+        List<DemoUser> users = new ArrayList<>(count);
+        long now = System.currentTimeMillis();
+        for (int i = from; i < from + count; i++) {
+            DemoUser user = new DemoUser();
+            user.setUserName("user" + i);
+            user.setAge(i % 100);
+            user.setScore(i * 0.5);
+            user.setCreatedAt(new Date(now - i * 1000L));
+            users.add(user);
+        }
+        return users;
+    }
+}
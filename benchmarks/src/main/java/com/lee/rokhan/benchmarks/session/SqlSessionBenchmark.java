@@ -0,0 +1,90 @@
+package com.lee.rokhan.benchmarks.session;
+
+import com.lee.rokhan.mybatis.mapper.DemoUser;
+import com.lee.rokhan.mybatis.mapping.Configuration;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 通过SqlSessionFactoryBuilder创建的SqlSession执行DemoMapper.xml中的SQL，对比本项目的mybatis和上游MyBatis+Druid：
+ * 借出归还连接执行select 1、按主键查询一行、批量插入、游标遍历所有行。
+ * 数据库为内存模式的H2，每次运行的数据相同，可以离线复现
+ * 运行：java -jar benchmarks/target/benchmarks.jar SqlSessionBenchmark，加上-t 8可以测试连接池竞争
+ * @author lichujun
+ * @date 2019/8/12 18:50
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SqlSessionBenchmark {
+
+    @Param({DemoDataLayers.ROKHAN, DemoDataLayers.MYBATIS})
+    private String layer;
+
+    /**
+     * 准备的行数，也是游标遍历的行数
+     */
+    @Param({"10000"})
+    private int rows;
+
+    /**
+     * 每次批量插入的行数
+     */
+    @Param({"100"})
+    private int batchSize;
+
+    private DemoDataLayer dataLayer;
+
+    private List<DemoUser> batch;
+
+    /**
+     * 准备的数据的最大id，批量插入的行在每轮迭代后删除
+     */
+    private long seededMaxId;
+
+    @Setup
+    public void setup() {
+        Configuration configuration = DemoDataLayers.loadConfiguration();
+        dataLayer = DemoDataLayers.create(layer, configuration);
+        DemoDataLayers.seed(dataLayer, rows);
+        seededMaxId = dataLayer.maxId();
+        batch = DemoDataLayers.newUsers(rows, batchSize);
+    }
+
+    @TearDown(Level.Iteration)
+    public void removeInserted() {
+        dataLayer.deleteFrom(seededMaxId + 1);
+    }
+
+    @TearDown
+    public void tearDown() {
+        dataLayer.close();
+    }
+
+    @Benchmark
+    public int ping() {
+        return dataLayer.ping();
+    }
+
+    @Benchmark
+    public DemoUser selectById() {
+        return dataLayer.selectById(seededMaxId - ThreadLocalRandom.current().nextInt(rows));
+    }
+
+    @Benchmark
+    public void insertBatch() {
+        dataLayer.insertBatch(batch);
+    }
+
+    @Benchmark
+    public long streamCursor(Blackhole blackhole) {
+        return dataLayer.streamAll(blackhole::consume);
+    }
+}
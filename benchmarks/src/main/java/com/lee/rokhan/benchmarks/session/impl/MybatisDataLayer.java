@@ -0,0 +1,147 @@
+package com.lee.rokhan.benchmarks.session.impl;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import com.lee.rokhan.benchmarks.session.DemoDataLayer;
+import com.lee.rokhan.mybatis.mapper.DemoUser;
+import org.apache.ibatis.builder.xml.XMLMapperBuilder;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 上游MyBatis和Druid连接池，与demo中SqlSessionFactoryUtils的配置方式相同，连接池参数与本项目的环境信息一致
+ * @author lichujun
+ * @date 2019/8/12 18:30
+ */
+public class MybatisDataLayer implements DemoDataLayer {
+
+    private static final String MAPPER_RESOURCE = "com/lee/rokhan/mybatis/mapper/DemoMapper.xml";
+
+    private static final String NAMESPACE = "com.lee.rokhan.mybatis.mapper.DemoMapper.";
+
+    private final DruidDataSource dataSource;
+
+    private final SqlSessionFactory sqlSessionFactory;
+
+    public MybatisDataLayer(com.lee.rokhan.mybatis.mapping.Environment environment) {
+        this.dataSource = createDataSource(environment);
+        Configuration configuration = new Configuration(
+                new Environment("benchmark", new JdbcTransactionFactory(), dataSource));
+        // 本项目按列名忽略下划线匹配属性，上游需要开启驼峰映射
+        configuration.setMapUnderscoreToCamelCase(true);
+        try (InputStream input = Resources.getResourceAsStream(MAPPER_RESOURCE)) {
+            new XMLMapperBuilder(input, configuration, MAPPER_RESOURCE, configuration.getSqlFragments()).parse();
+        } catch (IOException e) {
+            throw new RuntimeException("读取mapper文件" + MAPPER_RESOURCE + "发生异常", e);
+        }
+        this.sqlSessionFactory = new SqlSessionFactoryBuilder().build(configuration);
+    }
+
+    @Override
+    public void createTable() {
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(true)) {
+            sqlSession.update(NAMESPACE + "createTable");
+        }
+    }
+
+    @Override
+    public int deleteFrom(long id) {
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(true)) {
+            return sqlSession.delete(NAMESPACE + "deleteFrom", id);
+        }
+    }
+
+    @Override
+    public void insertBatch(List<DemoUser> users) {
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH, false)) {
+            for (DemoUser user : users) {
+                sqlSession.insert(NAMESPACE + "insert", user);
+            }
+            sqlSession.commit();
+        }
+    }
+
+    @Override
+    public DemoUser selectById(long id) {
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(true)) {
+            return sqlSession.selectOne(NAMESPACE + "selectById", id);
+        }
+    }
+
+    /**
+     * Druid的Statement不支持上游MyBatis游标调用的closeOnCompletion()，改用ResultHandler逐行处理，同样不缓存所有行
+     */
+    @Override
+    public long streamAll(Consumer<DemoUser> consumer) {
+        long[] count = {0};
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(true)) {
+            sqlSession.select(NAMESPACE + "selectAll", context -> {
+                consumer.accept((DemoUser) context.getResultObject());
+                count[0]++;
+            });
+        }
+        return count[0];
+    }
+
+    @Override
+    public long count() {
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(true)) {
+            return sqlSession.<Long>selectOne(NAMESPACE + "count");
+        }
+    }
+
+    @Override
+    public long maxId() {
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(true)) {
+            return sqlSession.<Long>selectOne(NAMESPACE + "maxId");
+        }
+    }
+
+    @Override
+    public int ping() {
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(true)) {
+            return sqlSession.<Integer>selectOne(NAMESPACE + "ping");
+        }
+    }
+
+    @Override
+    public void close() {
+        dataSource.close();
+    }
+
+    private static DruidDataSource createDataSource(com.lee.rokhan.mybatis.mapping.Environment environment) {
+        DruidDataSource druid = new DruidDataSource();
+        druid.setDriverClassName(environment.getDriver());
+        druid.setUrl(environment.getUrl());
+        druid.setUsername(environment.getUserName());
+        druid.setPassword(environment.getPassword());
+        druid.setInitialSize(environment.getMinIdle());
+        druid.setMinIdle(environment.getMinIdle());
+        druid.setMaxActive(environment.getMaxPoolSize());
+        druid.setMaxWait(environment.getConnectionTimeout());
+        druid.setTestOnBorrow(false);
+        druid.setTestWhileIdle(true);
+        druid.setValidationQuery("SELECT 1");
+        if (environment.getStatementCacheSize() > 0) {
+            druid.setPoolPreparedStatements(true);
+            druid.setMaxPoolPreparedStatementPerConnectionSize(environment.getStatementCacheSize());
+        }
+        try {
+            druid.init();
+        } catch (SQLException e) {
+            throw new RuntimeException("初始化Druid连接池发生异常", e);
+        }
+        return druid;
+    }
+}
@@ -0,0 +1,99 @@
+package com.lee.rokhan.benchmarks.session.impl;
+
+import com.lee.rokhan.benchmarks.session.DemoDataLayer;
+import com.lee.rokhan.mybatis.cursor.Cursor;
+import com.lee.rokhan.mybatis.mapper.DemoUser;
+import com.lee.rokhan.mybatis.mapping.Configuration;
+import com.lee.rokhan.mybatis.session.ExecutorType;
+import com.lee.rokhan.mybatis.session.SqlSession;
+import com.lee.rokhan.mybatis.session.SqlSessionFactory;
+import com.lee.rokhan.mybatis.session.SqlSessionFactoryBuilder;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 本项目的mybatis和连接池
+ * @author lichujun
+ * @date 2019/8/12 18:20
+ */
+public class RokhanDataLayer implements DemoDataLayer {
+
+    private static final String NAMESPACE = "com.lee.rokhan.mybatis.mapper.DemoMapper.";
+
+    private final SqlSessionFactory sqlSessionFactory;
+
+    public RokhanDataLayer(Configuration configuration) {
+        this.sqlSessionFactory = SqlSessionFactoryBuilder.build(configuration);
+    }
+
+    @Override
+    public void createTable() {
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(true)) {
+            sqlSession.update(NAMESPACE + "createTable", null);
+        }
+    }
+
+    @Override
+    public int deleteFrom(long id) {
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(true)) {
+            return sqlSession.delete(NAMESPACE + "deleteFrom", id);
+        }
+    }
+
+    @Override
+    public void insertBatch(List<DemoUser> users) {
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH, false)) {
+            for (DemoUser user : users) {
+                sqlSession.insert(NAMESPACE + "insert", user);
+            }
+            sqlSession.commit();
+        }
+    }
+
+    @Override
+    public DemoUser selectById(long id) {
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(true)) {
+            return sqlSession.selectOne(NAMESPACE + "selectById", id);
+        }
+    }
+
+    @Override
+    public long streamAll(Consumer<DemoUser> consumer) {
+        long count = 0;
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(true);
+             Cursor<DemoUser> cursor = sqlSession.selectCursor(NAMESPACE + "selectAll")) {
+            for (DemoUser user : cursor) {
+                consumer.accept(user);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public long count() {
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(true)) {
+            return sqlSession.<Long>selectOne(NAMESPACE + "count");
+        }
+    }
+
+    @Override
+    public long maxId() {
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(true)) {
+            return sqlSession.<Long>selectOne(NAMESPACE + "maxId");
+        }
+    }
+
+    @Override
+    public int ping() {
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(true)) {
+            return sqlSession.<Integer>selectOne(NAMESPACE + "ping");
+        }
+    }
+
+    @Override
+    public void close() {
+        sqlSessionFactory.getDataSource().close();
+    }
+}
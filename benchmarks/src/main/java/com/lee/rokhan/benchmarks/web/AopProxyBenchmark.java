@@ -0,0 +1,84 @@
+package com.lee.rokhan.benchmarks.web;
+
+import com.lee.rokhan.benchmarks.web.app.BenchmarkAspect;
+import com.lee.rokhan.benchmarks.web.app.BenchmarkService;
+import com.lee.rokhan.benchmarks.web.app.BenchmarkUser;
+import com.lee.rokhan.benchmarks.web.app.impl.BenchmarkServiceImpl;
+import com.lee.rokhan.container.advisor.Advisor;
+import com.lee.rokhan.container.advisor.impl.AspectJPointcutAdvisor;
+import com.lee.rokhan.container.context.ApplicationContext;
+import com.lee.rokhan.container.proxy.impl.CglibDynamicAopProxy;
+import com.lee.rokhan.container.proxy.impl.JdkDynamicAopProxy;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AopProxyUtils.applyAdvices经过JDK动态代理和Cglib代理的开销，和直接调用目标对象对比
+ * advices为none时代理没有匹配到增强器，为chain时经过前置通知和环绕通知
+ * 运行：java -jar benchmarks/target/benchmarks.jar AopProxyBenchmark
+ * @author lichujun
+ * @date 2019/8/12 14:30
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AopProxyBenchmark {
+
+    @Param({"none", "chain"})
+    private String advices;
+
+    private BenchmarkService target;
+
+    private BenchmarkService jdkProxy;
+
+    private BenchmarkService cglibProxy;
+
+    private Long id = 10086L;
+
+    private String name = "lichujun";
+
+    @Setup
+    public void setup() throws Throwable {
+        ApplicationContext applicationContext = WebBenchmarks.getApplicationContext();
+        List<Advisor> matchAdvisors;
+        switch (advices) {
+            case "none":
+                matchAdvisors = Collections.emptyList();
+                break;
+            case "chain":
+                matchAdvisors = Arrays.asList(
+                        new AspectJPointcutAdvisor(BenchmarkAspect.BEFORE_ADVICE, BenchmarkAspect.EXPRESSION),
+                        new AspectJPointcutAdvisor(BenchmarkAspect.AROUND_ADVICE, BenchmarkAspect.EXPRESSION));
+                break;
+            default:
+                throw new RuntimeException("不支持的增强器：" + advices);
+        }
+        target = new BenchmarkServiceImpl();
+        jdkProxy = (BenchmarkService) new JdkDynamicAopProxy("benchmarkServiceImpl", target, matchAdvisors,
+                applicationContext).getProxy();
+        cglibProxy = (BenchmarkService) new CglibDynamicAopProxy("benchmarkServiceImpl", target, matchAdvisors,
+                applicationContext).getProxy();
+    }
+
+    @Benchmark
+    public BenchmarkUser direct() {
+        return target.process(id, name);
+    }
+
+    @Benchmark
+    public BenchmarkUser jdkProxy() {
+        return jdkProxy.process(id, name);
+    }
+
+    @Benchmark
+    public BenchmarkUser cglibProxy() {
+        return cglibProxy.process(id, name);
+    }
+}
@@ -0,0 +1,61 @@
+package com.lee.rokhan.benchmarks.web;
+
+import com.lee.rokhan.container.context.ApplicationContext;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 多线程同时通过AbstractBeanFactory.getBean获取已经创建的单例Bean
+ * sameBean所有线程获取同一个Bean，竞争同一把Bean名称的锁；distinctBeans每个线程轮流获取不同的Bean
+ * 运行：java -jar benchmarks/target/benchmarks.jar BeanFactoryBenchmark -t 16
+ * @author lichujun
+ * @date 2019/8/12 14:40
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class BeanFactoryBenchmark {
+
+    private static final String[] BEAN_NAMES = {
+            "benchmarkController", "benchmarkServiceImpl", "benchmarkAspect", "vertxWebContext"
+    };
+
+    private ApplicationContext applicationContext;
+
+    @Setup
+    public void setup() throws Throwable {
+        applicationContext = WebBenchmarks.getApplicationContext();
+        for (String beanName : BEAN_NAMES) {
+            applicationContext.getBean(beanName);
+        }
+    }
+
+    @Benchmark
+    public Object sameBean() throws Throwable {
+        return applicationContext.getBean("benchmarkController");
+    }
+
+    @Benchmark
+    public Object distinctBeans(ThreadState threadState) throws Throwable {
+        return applicationContext.getBean(BEAN_NAMES[threadState.next()]);
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+
+        private static final AtomicInteger THREAD_INDEX = new AtomicInteger();
+
+        private int index = THREAD_INDEX.getAndIncrement();
+
+        private int next() {
+            index = (index + 1) % BEAN_NAMES.length;
+            return index;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.lee.rokhan.benchmarks.web;
+
+import com.lee.rokhan.vertx.web.server.VertxWebServer;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 进程内启动VertxWebServer，通过Vert.x的HttpClient经本地回环发送请求，测量完整的一次请求：
+ * event loop解析参数、event bus分发到worker、调用Controller、序列化响应
+ * 端口和verticle数量见application.yml的server节点
+ * 运行：java -jar benchmarks/target/benchmarks.jar HttpRoundTripBenchmark -t 8
+ * @author lichujun
+ * @date 2019/8/12 14:50
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HttpRoundTripBenchmark {
+
+    private static final String HOST = "127.0.0.1";
+
+    /**
+     * 等待服务启动的最长时间，单位：毫秒
+     */
+    private static final long STARTUP_TIMEOUT = 30000;
+
+    /**
+     * 单个请求的最长等待时间，单位：毫秒
+     */
+    private static final long REQUEST_TIMEOUT = 10000;
+
+    /**
+     * 参数值按JSON解析，字符串需要带引号
+     */
+    private static final String USER_URI = WebBenchmarks.USER_PATH + "?id=10086&name=%22lichujun%22";
+
+    private VertxWebServer server;
+
+    private Vertx clientVertx;
+
+    private HttpClient client;
+
+    private int port;
+
+    @Setup
+    public void setup() throws Throwable {
+        server = new VertxWebServer();
+        server.startServer();
+        port = server.getVertxWebConfiguration().getPort();
+        clientVertx = Vertx.vertx();
+        client = clientVertx.createHttpClient(new HttpClientOptions()
+                .setKeepAlive(true)
+                .setMaxPoolSize(64));
+        // verticle异步部署，等到路由可以访问为止
+        long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT;
+        while (true) {
+            try {
+                request(WebBenchmarks.PING_PATH);
+                break;
+            } catch (ExecutionException | TimeoutException e) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new RuntimeException("等待服务启动超时", e);
+                }
+                Thread.sleep(100);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Throwable {
+        client.close();
+        clientVertx.close();
+        server.stopServer();
+    }
+
+    @Benchmark
+    public Buffer ping() throws Exception {
+        return request(WebBenchmarks.PING_PATH);
+    }
+
+    @Benchmark
+    public Buffer user() throws Exception {
+        return request(USER_URI);
+    }
+
+    private Buffer request(String uri) throws Exception {
+        CompletableFuture<Buffer> future = new CompletableFuture<>();
+        client.get(port, HOST, uri, response -> {
+            if (response.statusCode() != 200) {
+                future.completeExceptionally(new RuntimeException("请求" + uri + "返回" + response.statusCode()));
+                return;
+            }
+            response.exceptionHandler(future::completeExceptionally);
+            response.bodyHandler(future::complete);
+        }).exceptionHandler(future::completeExceptionally).end();
+        return future.get(REQUEST_TIMEOUT, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,107 @@
+package com.lee.rokhan.benchmarks.web;
+
+import com.lee.rokhan.container.context.ApplicationContext;
+import com.lee.rokhan.vertx.web.codec.HttpRequest;
+import com.lee.rokhan.vertx.web.pojo.ControllerInfo;
+import com.lee.rokhan.vertx.web.utils.CodecUtils;
+import com.lee.rokhan.vertx.web.utils.InvokeControllerUtils;
+import com.lee.rokhan.vertx.web.utils.ParseParamUtils;
+import io.vertx.core.MultiMap;
+import io.vertx.core.buffer.Buffer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 请求在worker中经过的各个步骤：解析参数、调用Controller、event bus消息的编解码
+ * Controller经过AnnotationApplicationContext创建，调用的Service带有切面增强，和真实请求的路径一致
+ * 运行：java -jar benchmarks/target/benchmarks.jar RequestPathBenchmark
+ * @author lichujun
+ * @date 2019/8/12 14:20
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RequestPathBenchmark {
+
+    private ApplicationContext applicationContext;
+
+    private ControllerInfo pingRoute;
+
+    private ControllerInfo userRoute;
+
+    /**
+     * 请求参数，和event loop从query string中取出的一致；参数值按JSON解析，字符串需要带引号
+     */
+    private Map<String, String> params;
+
+    private List<Object> paramList;
+
+    private MultiMap headers;
+
+    private HttpRequest httpRequest;
+
+    private Buffer encodedRequest;
+
+    @Setup
+    public void setup() throws Throwable {
+        applicationContext = WebBenchmarks.getApplicationContext();
+        pingRoute = WebBenchmarks.getRoute(WebBenchmarks.PING_PATH);
+        userRoute = WebBenchmarks.getRoute(WebBenchmarks.USER_PATH);
+        params = new HashMap<>(4);
+        params.put("id", "10086");
+        params.put("name", "\"lichujun\"");
+        paramList = ParseParamUtils.parse(userRoute.getMethodParamsWithHeaders().getMethodParameter(), params);
+        if (paramList == null) {
+            throw new RuntimeException("解析请求参数失败");
+        }
+        headers = MultiMap.caseInsensitiveMultiMap()
+                .add("Host", "127.0.0.1")
+                .add("User-Agent", "jmh")
+                .add("Accept", "*/*");
+        // 本地event bus不经过编解码，集群模式才会调用，headers为null时和集群模式传递的一致
+        httpRequest = new HttpRequest(paramList, null);
+        encodedRequest = Buffer.buffer();
+        CodecUtils.encode(encodedRequest, httpRequest);
+        if (CodecUtils.decode(encodedRequest, HttpRequest.class) == null) {
+            throw new RuntimeException("解码请求失败");
+        }
+    }
+
+    @Benchmark
+    public List<Object> parseParams() {
+        return ParseParamUtils.parse(userRoute.getMethodParamsWithHeaders().getMethodParameter(), params);
+    }
+
+    @Benchmark
+    public Object invokeWithoutParams() throws Throwable {
+        return InvokeControllerUtils.invokeController(pingRoute, headers, applicationContext);
+    }
+
+    /**
+     * 参数列表复制一份，和每个请求各自解析出参数列表一致
+     */
+    @Benchmark
+    public Object invokeWithParams() throws Throwable {
+        return InvokeControllerUtils.invokeController(userRoute, new ArrayList<>(paramList), headers, applicationContext);
+    }
+
+    @Benchmark
+    public Buffer encodeRequest() {
+        Buffer buffer = Buffer.buffer();
+        CodecUtils.encode(buffer, httpRequest);
+        return buffer;
+    }
+
+    @Benchmark
+    public HttpRequest decodeRequest() {
+        return CodecUtils.decode(encodedRequest, HttpRequest.class);
+    }
+}
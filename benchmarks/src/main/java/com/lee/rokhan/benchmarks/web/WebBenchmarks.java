@@ -0,0 +1,58 @@
+package com.lee.rokhan.benchmarks.web;
+
+import com.lee.rokhan.container.context.ApplicationContext;
+import com.lee.rokhan.container.context.impl.AnnotationApplicationContext;
+import com.lee.rokhan.vertx.web.context.VertxWebContext;
+import com.lee.rokhan.vertx.web.pojo.ControllerInfo;
+import com.lee.rokhan.vertx.web.pojo.PathInfo;
+import com.lee.rokhan.vertx.web.pojo.RequestMethod;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+/**
+ * web基准测试共用的应用上下文，按application.yml扫描基准测试的Controller，每个JMH进程只创建一次
+ * @author lichujun
+ * @date 2019/8/12 14:10
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class WebBenchmarks {
+
+    /**
+     * 无参数的路由
+     */
+    public static final String PING_PATH = "/bench/ping";
+
+    /**
+     * 有参数的路由
+     */
+    public static final String USER_PATH = "/bench/user";
+
+    private static ApplicationContext applicationContext;
+
+    /**
+     * 获取应用上下文，第一次获取时创建
+     * @return 应用上下文
+     * @throws Throwable 创建失败
+     */
+    public static synchronized ApplicationContext getApplicationContext() throws Throwable {
+        if (applicationContext == null) {
+            applicationContext = new AnnotationApplicationContext();
+        }
+        return applicationContext;
+    }
+
+    /**
+     * 获取GET路由对应的Controller信息
+     * @param path 请求路径
+     * @return Controller信息
+     * @throws Throwable 创建应用上下文失败
+     */
+    public static ControllerInfo getRoute(String path) throws Throwable {
+        VertxWebContext vertxWebContext = (VertxWebContext) getApplicationContext().getBean("vertxWebContext");
+        ControllerInfo controllerInfo = vertxWebContext.getRoutes().get(new PathInfo(path, RequestMethod.GET.toString()));
+        if (controllerInfo == null) {
+            throw new RuntimeException("没有注册路由：" + path);
+        }
+        return controllerInfo;
+    }
+}
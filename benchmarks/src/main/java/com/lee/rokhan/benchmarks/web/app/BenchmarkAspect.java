@@ -0,0 +1,50 @@
+package com.lee.rokhan.benchmarks.web.app;
+
+import com.lee.rokhan.container.advice.MethodBeforeAdvice;
+import com.lee.rokhan.container.advice.MethodSurroundAdvice;
+import com.lee.rokhan.container.annotation.Around;
+import com.lee.rokhan.container.annotation.Aspect;
+import com.lee.rokhan.container.annotation.Before;
+import com.lee.rokhan.container.annotation.Component;
+import com.lee.rokhan.container.annotation.Pointcut;
+
+/**
+ * 基准测试的切面，通知本身不做任何事情，只测量代理和增强链的开销
+ * @author lichujun
+ * @date 2019/8/12 14:00
+ */
+@Aspect
+@Component
+public class BenchmarkAspect {
+
+    /**
+     * 前置通知的Bean名称，由切点名称和通知类型组成
+     */
+    public static final String BEFORE_ADVICE = "process()Before";
+
+    /**
+     * 环绕通知的Bean名称
+     */
+    public static final String AROUND_ADVICE = "process()Around";
+
+    /**
+     * 切点表达式
+     */
+    public static final String EXPRESSION = "execution(* com.lee.rokhan.benchmarks.web.app..*.process(..))";
+
+    @Pointcut(EXPRESSION)
+    public void process() {
+
+    }
+
+    @Before("process()")
+    public MethodBeforeAdvice createBefore() {
+        return (method, args, target) -> {
+        };
+    }
+
+    @Around("process()")
+    public MethodSurroundAdvice createAround() {
+        return (method, args, target) -> method.invoke(target, args);
+    }
+}
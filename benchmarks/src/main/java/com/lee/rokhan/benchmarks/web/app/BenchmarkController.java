@@ -0,0 +1,36 @@
+package com.lee.rokhan.benchmarks.web.app;
+
+import com.lee.rokhan.container.annotation.Autowired;
+import com.lee.rokhan.container.annotation.Controller;
+import com.lee.rokhan.vertx.web.annotation.RequestMapping;
+import com.lee.rokhan.vertx.web.annotation.RequestParam;
+import com.lee.rokhan.vertx.web.pojo.RequestMethod;
+
+/**
+ * 基准测试的Controller
+ * @author lichujun
+ * @date 2019/8/12 14:00
+ */
+@Controller
+@RequestMapping("/bench")
+public class BenchmarkController {
+
+    @Autowired
+    private BenchmarkService benchmarkService;
+
+    /**
+     * 无参数的路由
+     */
+    @RequestMapping(value = "/ping", method = RequestMethod.GET)
+    public String ping() {
+        return "pong";
+    }
+
+    /**
+     * 有参数的路由，经过切面增强的Service
+     */
+    @RequestMapping(value = "/user", method = RequestMethod.GET)
+    public BenchmarkUser user(@RequestParam("id") Long id, @RequestParam("name") String name) {
+        return benchmarkService.process(id, name);
+    }
+}
@@ -0,0 +1,17 @@
+package com.lee.rokhan.benchmarks.web.app;
+
+/**
+ * 被切面增强的Service，用于对比JDK动态代理和Cglib代理的开销
+ * @author lichujun
+ * @date 2019/8/12 14:00
+ */
+public interface BenchmarkService {
+
+    /**
+     * 查询用户
+     * @param id 用户ID
+     * @param name 用户名
+     * @return 用户
+     */
+    BenchmarkUser process(Long id, String name);
+}
@@ -0,0 +1,22 @@
+package com.lee.rokhan.benchmarks.web.app;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 基准测试Controller返回的实体
+ * @author lichujun
+ * @date 2019/8/12 14:00
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BenchmarkUser {
+
+    private Long id;
+
+    private String name;
+
+    private Integer age;
+}
@@ -0,0 +1,18 @@
+package com.lee.rokhan.benchmarks.web.app.impl;
+
+import com.lee.rokhan.benchmarks.web.app.BenchmarkService;
+import com.lee.rokhan.benchmarks.web.app.BenchmarkUser;
+import com.lee.rokhan.container.annotation.Service;
+
+/**
+ * @author lichujun
+ * @date 2019/8/12 14:00
+ */
+@Service
+public class BenchmarkServiceImpl implements BenchmarkService {
+
+    @Override
+    public BenchmarkUser process(Long id, String name) {
+        return new BenchmarkUser(id, name, (int) (id % 100));
+    }
+}
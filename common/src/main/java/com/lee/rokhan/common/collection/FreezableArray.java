@@ -0,0 +1,259 @@
+package com.lee.rokhan.common.collection;
+
+import java.util.*;
+
+/**
+ * 可冻结的数组
+ * 冻结前写入可变的构建器（加锁），读取时发布构建器的数组快照；
+ * 冻结后发布为不可变的数组，遍历无锁，之后的写入会写时复制出新的数组。
+ * 适用于启动期间大量写入、运行期间频繁遍历、偶尔新增的场景
+ * @author lichujun
+ * @date 2019/8/4 10:15
+ */
+public class FreezableArray<E> implements Iterable<E> {
+
+    private static final Object[] EMPTY_ARRAY = new Object[0];
+
+    /**
+     * 是否去重
+     */
+    private final boolean distinct;
+
+    /**
+     * 冻结前的构建器，持有this锁访问
+     */
+    private List<E> builder = new ArrayList<>();
+
+    /**
+     * 冻结前用于去重的集合，持有this锁访问
+     */
+    private Set<E> distinctSet;
+
+    /**
+     * 构建器是否有未发布的修改，持有this锁访问
+     */
+    private boolean dirty;
+
+    /**
+     * 已经发布的数组，不会被修改
+     */
+    private volatile Object[] published = EMPTY_ARRAY;
+
+    /**
+     * 是否已经冻结
+     */
+    private volatile boolean frozen;
+
+    private FreezableArray(boolean distinct) {
+        this.distinct = distinct;
+        if (distinct) {
+            distinctSet = new HashSet<>();
+        }
+    }
+
+    /**
+     * 创建可重复元素的可冻结数组
+     * @param <E> 元素类型
+     * @return 可冻结数组
+     */
+    public static <E> FreezableArray<E> create() {
+        return new FreezableArray<>(false);
+    }
+
+    /**
+     * 创建元素不重复的可冻结数组
+     * @param <E> 元素类型
+     * @return 可冻结数组
+     */
+    public static <E> FreezableArray<E> distinct() {
+        return new FreezableArray<>(true);
+    }
+
+    /**
+     * 添加元素
+     * @param element 元素
+     * @return 是否添加成功，去重时元素已存在则返回false
+     */
+    public synchronized boolean add(E element) {
+        Objects.requireNonNull(element, "元素不能为空");
+        if (!frozen) {
+            if (distinct && !distinctSet.add(element)) {
+                return false;
+            }
+            builder.add(element);
+            dirty = true;
+            return true;
+        }
+        Object[] current = published;
+        if (distinct && indexOf(current, element) >= 0) {
+            return false;
+        }
+        Object[] copy = Arrays.copyOf(current, current.length + 1);
+        copy[current.length] = element;
+        published = copy;
+        return true;
+    }
+
+    /**
+     * 批量添加元素，冻结后只复制一次数组
+     * @param elements 元素集合
+     */
+    public synchronized void addAll(Collection<? extends E> elements) {
+        if (elements == null || elements.isEmpty()) {
+            return;
+        }
+        if (!frozen) {
+            for (E element : elements) {
+                add(element);
+            }
+            return;
+        }
+        Object[] current = published;
+        List<Object> copy = new ArrayList<>(current.length + elements.size());
+        copy.addAll(Arrays.asList(current));
+        for (E element : elements) {
+            Objects.requireNonNull(element, "元素不能为空");
+            if (!distinct || !copy.contains(element)) {
+                copy.add(element);
+            }
+        }
+        published = copy.toArray();
+    }
+
+    /**
+     * 删除元素
+     * @param element 元素
+     * @return 是否删除成功
+     */
+    public synchronized boolean remove(Object element) {
+        if (!frozen) {
+            if (builder.remove(element)) {
+                if (distinct) {
+                    distinctSet.remove(element);
+                }
+                dirty = true;
+                return true;
+            }
+            return false;
+        }
+        Object[] current = published;
+        int index = indexOf(current, element);
+        if (index < 0) {
+            return false;
+        }
+        Object[] copy = new Object[current.length - 1];
+        System.arraycopy(current, 0, copy, 0, index);
+        System.arraycopy(current, index + 1, copy, index, current.length - index - 1);
+        published = copy;
+        return true;
+    }
+
+    /**
+     * 冻结，发布不可变的数组并释放构建器
+     */
+    public synchronized void freeze() {
+        if (frozen) {
+            return;
+        }
+        published = builder.toArray();
+        builder = null;
+        distinctSet = null;
+        dirty = false;
+        frozen = true;
+    }
+
+    /**
+     * 是否已经冻结
+     * @return 是否已经冻结
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /**
+     * 元素数量
+     * @return 元素数量
+     */
+    public int size() {
+        return array().length;
+    }
+
+    /**
+     * 是否为空
+     * @return 是否为空
+     */
+    public boolean isEmpty() {
+        return array().length == 0;
+    }
+
+    /**
+     * 获取当前的快照，快照不会随着之后的写入而改变
+     * @return 只读的快照
+     */
+    @SuppressWarnings("unchecked")
+    public List<E> snapshot() {
+        return Collections.unmodifiableList(Arrays.asList((E[]) array()));
+    }
+
+    /**
+     * 遍历当前的快照，遍历期间的写入不影响本次遍历
+     * @return 迭代器
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new ArrayIterator<>(array());
+    }
+
+    /**
+     * 获取已发布的数组，冻结前需要先发布构建器的修改
+     */
+    private Object[] array() {
+        if (frozen) {
+            return published;
+        }
+        synchronized (this) {
+            if (dirty) {
+                published = builder.toArray();
+                dirty = false;
+            }
+            return published;
+        }
+    }
+
+    private static int indexOf(Object[] array, Object element) {
+        for (int i = 0; i < array.length; i++) {
+            if (array[i].equals(element)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 只读的数组迭代器
+     */
+    private static class ArrayIterator<E> implements Iterator<E> {
+
+        private final Object[] array;
+
+        private int cursor;
+
+        private ArrayIterator(Object[] array) {
+            this.array = array;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return cursor < array.length;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E next() {
+            if (cursor >= array.length) {
+                throw new NoSuchElementException();
+            }
+            return (E) array[cursor++];
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.lee.rokhan.common.metrics;
+
+import lombok.Data;
+
+/**
+ * 耗时直方图的快照，单位与记录时一致
+ * @author lichujun
+ * @date 2019/8/12 10:00
+ */
+@Data
+public class HistogramSnapshot {
+
+    /**
+     * 记录的次数
+     */
+    private long count;
+
+    /**
+     * 记录的值之和
+     */
+    private long sum;
+
+    private long min;
+
+    private long max;
+
+    private double mean;
+
+    /**
+     * 百分位数，误差不超过1/32
+     */
+    private long p50;
+
+    private long p90;
+
+    private long p99;
+
+    private long p999;
+}
@@ -0,0 +1,142 @@
+package com.lee.rokhan.common.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 耗时直方图，线程安全
+ * 按HDR直方图的方式分桶：小于64的值每个值一个桶，之后每翻一倍分32个桶，相对误差不超过1/32；
+ * 记录只需要计算桶的下标并原子加一，不加锁也不产生新对象，适合在每条SQL执行或者每个请求完成后调用。
+ * 记录的值的单位由调用方决定，超过2^40的值按2^40记录
+ * @author lichujun
+ * @date 2019/8/12 10:00
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 6;
+
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT >> 1;
+
+    private static final int MAX_BITS = 40;
+
+    private static final long MAX_VALUE = (1L << MAX_BITS) - 1;
+
+    private static final int BUCKET_LENGTH = SUB_BUCKET_COUNT + (MAX_BITS - SUB_BUCKET_BITS) * SUB_BUCKET_HALF;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_LENGTH);
+
+    private final LongAdder sum = new LongAdder();
+
+    private final LongAccumulator min = new LongAccumulator(Math::min, Long.MAX_VALUE);
+
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * 记录一个值
+     * @param value 值，小于0时按0记录
+     */
+    public void record(long value) {
+        long v = Math.min(Math.max(value, 0), MAX_VALUE);
+        counts.incrementAndGet(indexOf(v));
+        sum.add(v);
+        min.accumulate(v);
+        max.accumulate(v);
+    }
+
+    /**
+     * 获取快照，记录和获取快照并发时快照内的数据可能不完全一致
+     * @return 快照
+     */
+    public HistogramSnapshot getSnapshot() {
+        long[] copy = new long[BUCKET_LENGTH];
+        long count = 0;
+        for (int i = 0; i < BUCKET_LENGTH; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        HistogramSnapshot snapshot = new HistogramSnapshot();
+        snapshot.setCount(count);
+        if (count == 0) {
+            return snapshot;
+        }
+        long total = sum.sum();
+        long maxValue = max.get();
+        snapshot.setSum(total);
+        snapshot.setMin(min.get());
+        snapshot.setMax(maxValue);
+        snapshot.setMean((double) total / count);
+        snapshot.setP50(percentile(copy, count, 0.5, maxValue));
+        snapshot.setP90(percentile(copy, count, 0.9, maxValue));
+        snapshot.setP99(percentile(copy, count, 0.99, maxValue));
+        snapshot.setP999(percentile(copy, count, 0.999, maxValue));
+        return snapshot;
+    }
+
+    /**
+     * 按给定的上界累计记录的次数，用于导出Prometheus的直方图，只读取桶的计数，不复制整个直方图
+     * 桶的上界不超过给定的上界时才计入，跨越上界的桶计入下一个上界，误差不超过1/32
+     * @param upperBounds 从小到大排列的上界
+     * @return 长度比上界多1，最后一个为记录的总次数
+     */
+    public long[] getCumulativeCounts(long[] upperBounds) {
+        long[] cumulativeCounts = new long[upperBounds.length + 1];
+        long cumulative = 0;
+        int bound = 0;
+        for (int i = 0; i < BUCKET_LENGTH; i++) {
+            long highestValue = highestValueAt(i);
+            while (bound < upperBounds.length && highestValue > upperBounds[bound]) {
+                cumulativeCounts[bound++] = cumulative;
+            }
+            cumulative += counts.get(i);
+        }
+        while (bound <= upperBounds.length) {
+            cumulativeCounts[bound++] = cumulative;
+        }
+        return cumulativeCounts;
+    }
+
+    /**
+     * 获取记录的值之和
+     * @return 记录的值之和
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * 百分位数取所在桶的上界，不超过记录过的最大值
+     */
+    private static long percentile(long[] copy, long count, double quantile, long maxValue) {
+        long target = Math.max(1, (long) Math.ceil(quantile * count));
+        long cumulative = 0;
+        for (int i = 0; i < copy.length; i++) {
+            cumulative += copy[i];
+            if (cumulative >= target) {
+                return Math.min(highestValueAt(i), maxValue);
+            }
+        }
+        return maxValue;
+    }
+
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        int subBucket = (int) (value >>> shift);
+        return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF + (subBucket - SUB_BUCKET_HALF);
+    }
+
+    private static long highestValueAt(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int offset = index - SUB_BUCKET_COUNT;
+        int shift = offset / SUB_BUCKET_HALF + 1;
+        long subBucket = offset % SUB_BUCKET_HALF + SUB_BUCKET_HALF;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
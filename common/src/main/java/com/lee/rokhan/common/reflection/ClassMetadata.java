@@ -0,0 +1,228 @@
+package com.lee.rokhan.common.reflection;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.*;
+
+/**
+ * 类的反射元数据缓存
+ * 子类和所有父类（不包括Object）的方法、成员变量以及实现的接口只解析一次，解析结果不可变。
+ * 缓存挂在ClassValue上，随类对象一起回收，不会导致类加载器泄漏
+ * @author lichujun
+ * @date 2019/8/3 09:40
+ */
+public final class ClassMetadata {
+
+    private static final ClassValue<ClassMetadata> METADATA_CACHE = new ClassValue<ClassMetadata>() {
+        @Override
+        protected ClassMetadata computeValue(Class<?> type) {
+            return new ClassMetadata(type);
+        }
+    };
+
+    private static final Method[] EMPTY_METHODS = new Method[0];
+
+    /**
+     * 去重后的方法，子类的方法在前
+     */
+    private final Method[] methods;
+
+    /**
+     * 去重后的成员变量，子类的成员变量在前
+     */
+    private final Field[] fields;
+
+    /**
+     * 方法名称对应的方法（不去重，子类的方法在前），用于按参数类型查找方法
+     */
+    private final Map<String, Method[]> methodMap;
+
+    /**
+     * 成员变量名称对应的成员变量
+     */
+    private final Map<String, Field> fieldMap;
+
+    /**
+     * 方法的只读视图
+     */
+    private final Set<Method> methodSet;
+
+    /**
+     * 成员变量的只读视图
+     */
+    private final Set<Field> fieldSet;
+
+    /**
+     * 子类和所有父类实现的接口的只读视图
+     */
+    private final Set<Class<?>> interfaceSet;
+
+    private ClassMetadata(Class<?> type) {
+        List<Method> methodList = new ArrayList<>();
+        Set<MethodSignature> methodSignatureSet = new HashSet<>();
+        Map<String, List<Method>> methodListMap = new HashMap<>();
+        List<Field> fieldList = new ArrayList<>();
+        Map<String, Field> fieldNameMap = new HashMap<>();
+        Set<Class<?>> interfaces = new LinkedHashSet<>();
+        for (Class<?> clazz = type; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+            for (Method method : clazz.getDeclaredMethods()) {
+                if (methodSignatureSet.add(new MethodSignature(method.getName(), method.getParameterTypes()))) {
+                    methodList.add(method);
+                }
+                methodListMap.computeIfAbsent(method.getName(), k -> new ArrayList<>(1)).add(method);
+            }
+            for (Field field : clazz.getDeclaredFields()) {
+                if (fieldNameMap.putIfAbsent(field.getName(), field) == null) {
+                    fieldList.add(field);
+                }
+            }
+            interfaces.addAll(Arrays.asList(clazz.getInterfaces()));
+        }
+        this.methods = methodList.toArray(EMPTY_METHODS);
+        this.fields = fieldList.toArray(new Field[0]);
+        Map<String, Method[]> methodArrayMap = new HashMap<>(methodListMap.size() * 2);
+        methodListMap.forEach((name, list) -> methodArrayMap.put(name, list.toArray(EMPTY_METHODS)));
+        this.methodMap = methodArrayMap;
+        this.fieldMap = fieldNameMap;
+        this.methodSet = Collections.unmodifiableSet(new LinkedHashSet<>(methodList));
+        this.fieldSet = Collections.unmodifiableSet(new LinkedHashSet<>(fieldList));
+        this.interfaceSet = Collections.unmodifiableSet(interfaces);
+    }
+
+    /**
+     * 获取类的反射元数据
+     * @param clazz 类对象
+     * @return 反射元数据
+     */
+    public static ClassMetadata forClass(Class<?> clazz) {
+        Objects.requireNonNull(clazz, "类对象不能为空");
+        return METADATA_CACHE.get(clazz);
+    }
+
+    /**
+     * 获取子类和所有父类的方法，同签名的方法只保留子类的
+     * @return 只读的方法集合
+     */
+    public Set<Method> getMethods() {
+        return methodSet;
+    }
+
+    /**
+     * 获取子类和所有父类的成员变量，同名的成员变量只保留子类的
+     * @return 只读的成员变量集合
+     */
+    public Set<Field> getFields() {
+        return fieldSet;
+    }
+
+    /**
+     * 获取子类和所有父类实现的接口
+     * @return 只读的接口集合
+     */
+    public Set<Class<?>> getInterfaces() {
+        return interfaceSet;
+    }
+
+    /**
+     * 方法的数量
+     * @return 方法的数量
+     */
+    public int getMethodCount() {
+        return methods.length;
+    }
+
+    /**
+     * 按下标获取方法，可以配合{@link #getMethodCount()}无分配地遍历
+     * @param index 下标
+     * @return 方法
+     */
+    public Method getMethod(int index) {
+        return methods[index];
+    }
+
+    /**
+     * 成员变量的数量
+     * @return 成员变量的数量
+     */
+    public int getFieldCount() {
+        return fields.length;
+    }
+
+    /**
+     * 按下标获取成员变量，可以配合{@link #getFieldCount()}无分配地遍历
+     * @param index 下标
+     * @return 成员变量
+     */
+    public Field getField(int index) {
+        return fields[index];
+    }
+
+    /**
+     * 按名称获取成员变量，子类优先
+     * @param fieldName 成员变量名称
+     * @return 成员变量，不存在则返回null
+     */
+    public Field getField(String fieldName) {
+        return fieldMap.get(fieldName);
+    }
+
+    /**
+     * 按名称和参数类型获取方法，子类优先，同一个类中桥接方法靠后
+     * @param methodName 方法名称
+     * @param parameterTypes 参数类型
+     * @return 方法，不存在则返回null
+     */
+    public Method getMethod(String methodName, Class<?>... parameterTypes) {
+        Method[] candidates = methodMap.get(methodName);
+        if (candidates == null) {
+            return null;
+        }
+        Class<?>[] types = parameterTypes == null ? new Class<?>[0] : parameterTypes;
+        Method bridge = null;
+        for (Method candidate : candidates) {
+            if (candidate.getParameterCount() != types.length
+                    || !Arrays.equals(candidate.getParameterTypes(), types)) {
+                continue;
+            }
+            if (!candidate.isBridge()) {
+                return candidate;
+            }
+            if (bridge == null) {
+                bridge = candidate;
+            }
+        }
+        return bridge;
+    }
+
+    /**
+     * 方法签名
+     */
+    private static final class MethodSignature {
+
+        private final String methodName;
+
+        private final Class<?>[] methodParameters;
+
+        private final int hash;
+
+        private MethodSignature(String methodName, Class<?>[] methodParameters) {
+            this.methodName = methodName;
+            this.methodParameters = methodParameters;
+            this.hash = 31 * methodName.hashCode() + Arrays.hashCode(methodParameters);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            MethodSignature that = (MethodSignature) o;
+            return methodName.equals(that.methodName) &&
+                    Arrays.equals(methodParameters, that.methodParameters);
+        }
+    }
+}
@@ -1,17 +1,16 @@
 package com.lee.rokhan.common.utils;
 
+import com.lee.rokhan.common.reflection.ClassMetadata;
 import lombok.AccessLevel;
-import lombok.AllArgsConstructor;
 import lombok.NoArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.ArrayUtils;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.*;
 
 /**
- * 反射的工具类
+ * 反射的工具类，类的元数据通过{@link ClassMetadata}缓存，返回的集合为只读
  *
  * @author lichujun
  * @date 2019/6/18 17:22
@@ -43,46 +42,7 @@ public class ReflectionUtils {
         if (clazz == null) {
             return Collections.emptySortedSet();
         }
-        Set<Method> methodSet = new LinkedHashSet<>();
-        Set<MethodSignature> methodSignatureSet = new HashSet<>();
-        for (; clazz != Object.class; clazz = clazz.getSuperclass()) {
-            if (clazz == null) {
-                break;
-            }
-            for (Method method : clazz.getDeclaredMethods()) {
-                MethodSignature methodSignature = new MethodSignature(method.getName(), method.getParameterTypes());
-                if (methodSignatureSet.add(methodSignature)) {
-                    methodSet.add(method);
-                }
-            }
-        }
-        return methodSet;
-    }
-
-    /**
-     * 方法签名
-     */
-    @AllArgsConstructor
-    private static class MethodSignature {
-        private final String methodName;
-        private final Class<?>[] methodParameters;
-
-        @Override
-        public int hashCode() {
-            int result = Objects.hash(methodName);
-            return 31 * result + 37 * Optional.ofNullable(methodParameters)
-                    .map(it -> it.length)
-                    .orElse(0);
-        }
-
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (o == null || getClass() != o.getClass()) return false;
-            MethodSignature that = (MethodSignature) o;
-            return methodName.equals(that.methodName) &&
-                    Arrays.equals(methodParameters, that.methodParameters);
-        }
+        return ClassMetadata.forClass(clazz).getMethods();
     }
 
     /**
@@ -108,19 +68,7 @@ public class ReflectionUtils {
         if (clazz == null) {
             return Collections.emptySortedSet();
         }
-        Set<Field> fieldSet = new LinkedHashSet<>();
-        Set<String> fieldNameSet = new HashSet<>();
-        for (; clazz != Object.class; clazz = clazz.getSuperclass()) {
-            if (clazz == null) {
-                break;
-            }
-            for (Field field : clazz.getDeclaredFields()) {
-                if (fieldNameSet.add(field.getName())) {
-                    fieldSet.add(field);
-                }
-            }
-        }
-        return fieldSet;
+        return ClassMetadata.forClass(clazz).getFields();
     }
 
 
@@ -133,18 +81,7 @@ public class ReflectionUtils {
         if (clazz == null) {
             return Collections.emptySortedSet();
         }
-        Set<Class<?>> interfaceSet = new LinkedHashSet<>();
-        for (; clazz != Object.class; clazz = clazz.getSuperclass()) {
-            if (clazz == null) {
-                break;
-            }
-            Class<?>[] interfaceArr = clazz.getInterfaces();
-            if (ArrayUtils.isEmpty(interfaceArr)) {
-                continue;
-            }
-            interfaceSet.addAll(Arrays.asList(interfaceArr));
-        }
-        return interfaceSet;
+        return ClassMetadata.forClass(clazz).getInterfaces();
     }
 
     /**
@@ -156,16 +93,10 @@ public class ReflectionUtils {
      * @return 父类中的方法对象
      */
     public static Method getDeclaredMethod(Class<?> clazz, String methodName, Class<?>... parameterTypes) {
-        Method method;
-        for (; clazz != Object.class; clazz = clazz.getSuperclass()) {
-            try {
-                method = clazz.getDeclaredMethod(methodName, parameterTypes);
-                return method;
-            } catch (NoSuchMethodException e) {
-                // 这里甚么都不需要做
-            }
+        if (clazz == null) {
+            return null;
         }
-        return null;
+        return ClassMetadata.forClass(clazz).getMethod(methodName, parameterTypes);
     }
 
     /**
@@ -213,20 +144,22 @@ public class ReflectionUtils {
      * @return 父类中的属性对象
      */
     public static Field getDeclaredField(Object object, String fieldName) {
-        Field field;
-        Class<?> clazz = object.getClass();
-        for (; clazz != Object.class; clazz = clazz.getSuperclass()) {
-            if (clazz == null) {
-                break;
-            }
-            try {
-                field = clazz.getDeclaredField(fieldName);
-                return field;
-            } catch (Exception e) {
-                // 这里甚么都不需要做
-            }
+        Objects.requireNonNull(object, "获取成员变量的对象不能为空");
+        return getDeclaredField(object.getClass(), fieldName);
+    }
+
+    /**
+     * 循环向上转型, 获取类的 DeclaredField
+     *
+     * @param clazz     子类的类对象
+     * @param fieldName 父类中的属性名
+     * @return 父类中的属性对象
+     */
+    public static Field getDeclaredField(Class<?> clazz, String fieldName) {
+        if (clazz == null) {
+            return null;
         }
-        return null;
+        return ClassMetadata.forClass(clazz).getField(fieldName);
     }
 
     /**
@@ -0,0 +1,16 @@
+package com.lee.rokhan.common.utils.throwable;
+
+/**
+ * Runnable异常接口
+ * @author lichujun
+ * @date 2019/8/3 15:40
+ */
+@FunctionalInterface
+public interface ThrowRunnable<E extends Throwable> {
+
+    /**
+     * Runnable异常接口方法
+     * @throws E 异常
+     */
+    void run() throws E;
+}
@@ -0,0 +1,32 @@
+package com.lee.rokhan.demo.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 标注Mapper中按单个key查询的方法，同一个会话范围（例如一次请求）内的调用合并为一次批量查询
+ * 方法只能有一个参数（key），返回CompletableFuture；batchMethod指定的批量方法参数为key的List，
+ * 返回key对应值的Map（例如配合@MapKey），或者返回值的List并用key指定值中对应key的属性。
+ * 范围内先调用所有的单个查询、再join返回的Future时只执行一次批量查询，同一个key在范围内只查询一次
+ * @author lichujun
+ * @date 2019/8/12 15:20
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Batchable {
+
+    /**
+     * 批量查询的方法名
+     */
+    String batchMethod();
+
+    /**
+     * 批量方法返回List时，值中对应key的属性，类型需要与key一致
+     */
+    String key() default "id";
+
+    /**
+     * 每次批量查询最多的key数量，超过时拆分为多次查询
+     */
+    int maxBatchSize() default 500;
+}
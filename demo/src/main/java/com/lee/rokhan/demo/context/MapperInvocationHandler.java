@@ -1,26 +1,135 @@
 package com.lee.rokhan.demo.context;
 
+import com.lee.rokhan.container.loader.DataLoader;
+import com.lee.rokhan.demo.annotation.Batchable;
 import com.lee.rokhan.demo.jdbc.JdbcConfiguration;
-import lombok.AllArgsConstructor;
+import com.lee.rokhan.demo.jdbc.SqlSessionHolder;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.SystemMetaObject;
 import org.apache.ibatis.session.SqlSession;
 
 import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
+ * Mapper代理
+ * 在会话范围内（例如一次请求）复用当前线程绑定的SqlSession和Mapper，不在会话范围内时每次调用打开一个新的会话；
+ * 标注@Batchable的方法在会话范围内合并为批量查询，不在会话范围内时立即单独查询
  * @author lichujun
  * @date 2019/7/4 19:06
  */
-@AllArgsConstructor
 public class MapperInvocationHandler implements InvocationHandler {
 
-    private Class<?> clazz;
+    private static final String DATASOURCE_NAME = "master";
+
+    private final Class<?> clazz;
+
+    /**
+     * 标注@Batchable的方法对应的批量方法
+     */
+    private final Map<Method, BatchMethod> batchMethods = new HashMap<>();
+
+    public MapperInvocationHandler(Class<?> clazz) {
+        this.clazz = clazz;
+        for (Method method : clazz.getMethods()) {
+            Batchable batchable = method.getAnnotation(Batchable.class);
+            if (batchable != null) {
+                batchMethods.put(method, new BatchMethod(method, batchable));
+            }
+        }
+    }
 
     @Override
     public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-        try (SqlSession sqlSession = JdbcConfiguration.getSqlSessionFactoryUtils().getSqlSession("master")) {
+        if (method.getDeclaringClass() == Object.class) {
+            return method.invoke(this, args);
+        }
+        BatchMethod batchMethod = batchMethods.get(method);
+        if (batchMethod != null) {
+            return batchLoad(batchMethod, args[0]);
+        }
+        return invokeMapper(method, args);
+    }
+
+    private Object invokeMapper(Method method, Object[] args) throws Throwable {
+        if (SqlSessionHolder.isActive()) {
+            return method.invoke(SqlSessionHolder.getMapper(DATASOURCE_NAME, clazz), args);
+        }
+        try (SqlSession sqlSession = JdbcConfiguration.getSqlSessionFactoryUtils().getSqlSession(DATASOURCE_NAME)) {
             Object mapper = sqlSession.getMapper(clazz);
             return method.invoke(mapper, args);
         }
     }
+
+    private CompletableFuture<Object> batchLoad(BatchMethod batchMethod, Object key) {
+        if (SqlSessionHolder.isActive()) {
+            DataLoader<Object, Object> dataLoader = SqlSessionHolder.getDataLoaders()
+                    .getDataLoader(batchMethod.method, () -> new DataLoader<>(batchMethod::load, batchMethod.maxBatchSize));
+            return dataLoader.load(key);
+        }
+        DataLoader<Object, Object> dataLoader = new DataLoader<>(batchMethod::load, 1);
+        CompletableFuture<Object> future = dataLoader.load(key);
+        dataLoader.dispatch();
+        return future;
+    }
+
+    /**
+     * 标注@Batchable的方法对应的批量方法
+     */
+    private class BatchMethod {
+
+        private final Method method;
+
+        private final Method batchMethod;
+
+        private final String keyProperty;
+
+        private final int maxBatchSize;
+
+        private BatchMethod(Method method, Batchable batchable) {
+            String methodName = clazz.getName() + "." + method.getName();
+            if (method.getReturnType() != CompletableFuture.class || method.getParameterCount() != 1) {
+                throw new RuntimeException(String.format("@Batchable方法[%s]只能有一个参数并且返回CompletableFuture", methodName));
+            }
+            try {
+                this.batchMethod = clazz.getMethod(batchable.batchMethod(), List.class);
+            } catch (NoSuchMethodException e) {
+                throw new RuntimeException(String.format("@Batchable方法[%s]的批量方法[%s(List)]不存在",
+                        methodName, batchable.batchMethod()), e);
+            }
+            if (!List.class.isAssignableFrom(batchMethod.getReturnType())
+                    && !Map.class.isAssignableFrom(batchMethod.getReturnType())) {
+                throw new RuntimeException(String.format("@Batchable方法[%s]的批量方法只能返回List或者Map", methodName));
+            }
+            this.method = method;
+            this.keyProperty = batchable.key();
+            this.maxBatchSize = batchable.maxBatchSize();
+        }
+
+        @SuppressWarnings("unchecked")
+        private Map<Object, Object> load(List<Object> keys) throws Throwable {
+            Object result;
+            try {
+                result = invokeMapper(batchMethod, new Object[]{keys});
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (result instanceof Map) {
+                return (Map<Object, Object>) result;
+            }
+            Collection<?> values = (Collection<?>) result;
+            Map<Object, Object> valueMap = new HashMap<>(values.size() * 4 / 3 + 1);
+            for (Object value : values) {
+                MetaObject metaObject = SystemMetaObject.forObject(value);
+                valueMap.putIfAbsent(metaObject.getValue(keyProperty), value);
+            }
+            return valueMap;
+        }
+    }
 }
@@ -0,0 +1,25 @@
+package com.lee.rokhan.demo.context;
+
+import com.lee.rokhan.container.annotation.Component;
+import com.lee.rokhan.demo.jdbc.SqlSessionHolder;
+import com.lee.rokhan.vertx.web.interceptor.RequestInterceptor;
+import com.lee.rokhan.vertx.web.pojo.PathInfo;
+
+/**
+ * 每个请求开始一个会话范围，请求内的Mapper调用共用同一个连接，请求结束后归还
+ * @author lichujun
+ * @date 2019/8/11 10:20
+ */
+@Component
+public class SqlSessionScopeInterceptor implements RequestInterceptor {
+
+    @Override
+    public void preHandle(PathInfo path) {
+        SqlSessionHolder.begin();
+    }
+
+    @Override
+    public void afterCompletion(PathInfo path, Throwable e) {
+        SqlSessionHolder.end();
+    }
+}
@@ -0,0 +1,40 @@
+package com.lee.rokhan.demo.controller;
+
+import com.lee.rokhan.container.annotation.Controller;
+import com.lee.rokhan.mybatis.metrics.SqlMetrics;
+import com.lee.rokhan.mybatis.pool.DataSourcePools;
+import com.lee.rokhan.vertx.web.annotation.RequestMapping;
+import com.lee.rokhan.vertx.web.pojo.RequestMethod;
+import com.lee.rokhan.vertx.web.pojo.RequestPriority;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * SQL执行指标和连接池指标
+ * @author lichujun
+ * @date 2019/8/12 11:20
+ */
+@Controller
+@RequestMapping("/metrics")
+public class MetricsController {
+
+    /**
+     * 按总耗时从高到低排列的Statement执行指标、最近的慢SQL和连接池指标，耗时的单位为微秒
+     * 过载时也需要查看指标，使用最高优先级
+     */
+    @RequestMapping(value = "/sql", method = RequestMethod.GET, priority = RequestPriority.HIGH)
+    public Map<String, Object> sql() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("statements", SqlMetrics.getSnapshots());
+        result.put("slowQueries", SqlMetrics.getSlowQueries());
+        result.put("pools", DataSourcePools.getMetrics());
+        return result;
+    }
+
+    @RequestMapping(value = "/sql/reset", method = RequestMethod.POST, priority = RequestPriority.HIGH)
+    public String reset() {
+        SqlMetrics.reset();
+        return "ok";
+    }
+}
@@ -26,32 +26,51 @@ public class JdbcConfiguration {
         private String username;
         private String password;
 
-        private Integer initialSize = 10;
-        private Integer maxActive = 100;
+        /**
+         * 连接池配置，时间的单位为毫秒
+         */
+        private Integer maxPoolSize = 100;
         private Integer minIdle = 10;
-        private Integer maxIdle = 10;
-        private Integer maxWait = 3000;
-        private String validationQuery = "SELECT @@VERSION";
-        private Boolean testWhileIdle = true;
-        private Boolean testOnBorrow = true;
-        private Integer timeBetweenEvictionRunsMillis = 30000;
-        private Integer minEvictableIdleTimeMillis = 600000;
-        private Integer numTestsPerEvictionRun = 3;
-        private Boolean removeAbandoned = true;
-        private Integer removeAbandonedTimeout = 180;
+        private Long connectionTimeout = 3000L;
+        private Long idleTimeout = 600000L;
+        private Long maxLifetime = 1800000L;
+        private Long leakDetectionThreshold = 180000L;
+        private Long validationTimeout = 5000L;
+
         private Integer defaultQueryTimeoutSeconds = 30;
-        private Integer validationQueryTimeoutSeconds = 5;
-        private Boolean testOnReturn = true;
 
         private Boolean cacheEnabled = true;
         private Boolean useGeneratedKeys = true;
         private ExecutorType defaultExecutorType = REUSE;
         private String logImpl = "org.apache.ibatis.logging.slf4j.Slf4jImpl";
+
+        /**
+         * SQL执行指标，慢SQL阈值的单位为毫秒，小于等于0表示不记录慢SQL
+         */
+        private Boolean metricsEnabled = true;
+        private Long slowQueryThreshold = 1000L;
+        private Double slowQuerySampleRate = 1.0;
         private List<String> mappers;
     }
 
-    @Bean
+    /**
+     * 会话工厂只初始化一次，Mapper调用时直接复用
+     */
+    private static volatile SqlSessionFactoryUtils sqlSessionFactoryUtils;
+
+    @Bean(destroyMethod = "close")
     public static SqlSessionFactoryUtils getSqlSessionFactoryUtils() {
-        return new SqlSessionFactoryUtils(datasource);
+        if (sqlSessionFactoryUtils == null) {
+            synchronized (JdbcConfiguration.class) {
+                if (sqlSessionFactoryUtils == null) {
+                    if (datasource == null) {
+                        // 配置还未注入，不缓存
+                        return new SqlSessionFactoryUtils(null);
+                    }
+                    sqlSessionFactoryUtils = new SqlSessionFactoryUtils(datasource);
+                }
+            }
+        }
+        return sqlSessionFactoryUtils;
     }
 }
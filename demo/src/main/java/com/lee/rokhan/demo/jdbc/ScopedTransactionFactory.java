@@ -0,0 +1,55 @@
+package com.lee.rokhan.demo.jdbc;
+
+import org.apache.ibatis.session.TransactionIsolationLevel;
+import org.apache.ibatis.transaction.Transaction;
+import org.apache.ibatis.transaction.jdbc.JdbcTransaction;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * JDBC事务工厂，SQL的超时时间不超过当前线程中@Transactional事务剩余的时间，
+ * 打开连接的等待时间记录到SqlMetricsInterceptor
+ * @author lichujun
+ * @date 2019/8/11 15:10
+ */
+public class ScopedTransactionFactory extends JdbcTransactionFactory {
+
+    @Override
+    public Transaction newTransaction(Connection conn) {
+        return new ScopedTransaction(conn);
+    }
+
+    @Override
+    public Transaction newTransaction(DataSource ds, TransactionIsolationLevel level, boolean autoCommit) {
+        return new ScopedTransaction(ds, level, autoCommit);
+    }
+
+    private static class ScopedTransaction extends JdbcTransaction {
+
+        private ScopedTransaction(Connection connection) {
+            super(connection);
+        }
+
+        private ScopedTransaction(DataSource ds, TransactionIsolationLevel level, boolean autoCommit) {
+            super(ds, level, autoCommit);
+        }
+
+        @Override
+        protected void openConnection() throws SQLException {
+            long start = System.nanoTime();
+            try {
+                super.openConnection();
+            } finally {
+                SqlMetricsInterceptor.addPoolWait(System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public Integer getTimeout() throws SQLException {
+            return SqlSessionHolder.getTransactionTimeout();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.lee.rokhan.demo.jdbc;
+
+import com.lee.rokhan.mybatis.metrics.SlowQuery;
+import com.lee.rokhan.mybatis.metrics.SqlMetrics;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Plugin;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.type.TypeHandlerRegistry;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 记录Mybatis的SQL执行指标，和rokhan的执行器共用SqlMetrics
+ * 获取连接的等待时间由ScopedTransactionFactory在打开连接时累计到当前线程，计入该线程之后执行的第一条SQL
+ * @author lichujun
+ * @date 2019/8/12 11:00
+ */
+@Intercepts({
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class})
+})
+public class SqlMetricsInterceptor implements Interceptor {
+
+    private static final ThreadLocal<long[]> POOL_WAIT_NANOS = ThreadLocal.withInitial(() -> new long[1]);
+
+    /**
+     * 慢SQL的阈值，小于等于0表示不记录，单位：毫秒
+     */
+    private final long slowQueryThreshold;
+
+    /**
+     * 慢SQL的采样率
+     */
+    private final double slowQuerySampleRate;
+
+    public SqlMetricsInterceptor(long slowQueryThreshold, double slowQuerySampleRate) {
+        this.slowQueryThreshold = slowQueryThreshold;
+        this.slowQuerySampleRate = slowQuerySampleRate;
+    }
+
+    /**
+     * 累计当前线程获取连接的等待时间
+     * @param nanos 等待时间，单位：纳秒
+     */
+    static void addPoolWait(long nanos) {
+        POOL_WAIT_NANOS.get()[0] += nanos;
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        long start = System.nanoTime();
+        Object result = null;
+        String error = null;
+        try {
+            result = invocation.proceed();
+            return result;
+        } catch (Throwable e) {
+            error = e.toString();
+            throw e;
+        } finally {
+            long[] poolWait = POOL_WAIT_NANOS.get();
+            long poolWaitNanos = poolWait[0];
+            poolWait[0] = 0;
+            record(invocation.getArgs(), System.nanoTime() - start, poolWaitNanos, result, error);
+        }
+    }
+
+    private void record(Object[] args, long elapsedNanos, long poolWaitNanos, Object result, String error) {
+        MappedStatement mappedStatement = (MappedStatement) args[0];
+        long rows = 0;
+        if (result instanceof List) {
+            rows = ((List<?>) result).size();
+        } else if (result instanceof Integer) {
+            rows = Math.max((Integer) result, 0);
+        }
+        SqlMetrics.getStatementMetrics(mappedStatement.getId()).record(elapsedNanos, poolWaitNanos, rows,
+                error != null);
+        if (slowQueryThreshold <= 0 || elapsedNanos < TimeUnit.MILLISECONDS.toNanos(slowQueryThreshold)
+                || !SqlMetrics.sampleSlowQuery(slowQuerySampleRate)) {
+            return;
+        }
+        SlowQuery slowQuery = new SlowQuery();
+        slowQuery.setStatementId(mappedStatement.getId());
+        try {
+            BoundSql boundSql = mappedStatement.getBoundSql(args[1]);
+            slowQuery.setSql(boundSql.getSql());
+            slowQuery.setParameters(SqlMetrics.formatParameters(getParameterValues(mappedStatement, boundSql, args[1])));
+        } catch (RuntimeException e) {
+            slowQuery.setParameters("获取参数失败：" + e);
+        }
+        slowQuery.setElapsedMillis(elapsedNanos / 1000000.0);
+        slowQuery.setRows(rows);
+        slowQuery.setError(error);
+        slowQuery.setTimestamp(System.currentTimeMillis());
+        SqlMetrics.addSlowQuery(slowQuery);
+    }
+
+    /**
+     * 按DefaultParameterHandler的规则获取绑定的参数
+     */
+    private static Object[] getParameterValues(MappedStatement mappedStatement, BoundSql boundSql, Object parameter) {
+        Configuration configuration = mappedStatement.getConfiguration();
+        TypeHandlerRegistry typeHandlerRegistry = configuration.getTypeHandlerRegistry();
+        List<ParameterMapping> parameterMappings = boundSql.getParameterMappings();
+        Object[] values = new Object[parameterMappings.size()];
+        MetaObject metaObject = null;
+        for (int i = 0; i < values.length; i++) {
+            String property = parameterMappings.get(i).getProperty();
+            if (boundSql.hasAdditionalParameter(property)) {
+                values[i] = boundSql.getAdditionalParameter(property);
+            } else if (parameter == null) {
+                values[i] = null;
+            } else if (typeHandlerRegistry.hasTypeHandler(parameter.getClass())) {
+                values[i] = parameter;
+            } else {
+                if (metaObject == null) {
+                    metaObject = configuration.newMetaObject(parameter);
+                }
+                values[i] = metaObject.getValue(property);
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public Object plugin(Object target) {
+        return Plugin.wrap(target, this);
+    }
+
+    @Override
+    public void setProperties(Properties properties) {
+    }
+}
@@ -1,6 +1,7 @@
 package com.lee.rokhan.demo.jdbc;
 
-import com.alibaba.druid.pool.DruidDataSource;
+import com.lee.rokhan.mybatis.pool.DataSourcePool;
+import com.lee.rokhan.mybatis.pool.DataSourcePools;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.collections4.MapUtils;
@@ -12,7 +13,6 @@ import org.apache.ibatis.session.SqlSession;
 import org.apache.ibatis.session.SqlSessionFactory;
 import org.apache.ibatis.session.SqlSessionFactoryBuilder;
 import org.apache.ibatis.transaction.TransactionFactory;
-import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
@@ -63,6 +63,13 @@ public class SqlSessionFactoryUtils {
         return sqlSessionFactory.openSession(true);
     }
 
+    /**
+     * 应用上下文关闭时关闭所有连接池，未归还的连接在归还时关闭
+     */
+    public void close() {
+        DataSourcePools.closeAll();
+    }
+
     public static String[] getDefaultDatasource() {
         String[] arr = {defaultName};
         return arr;
@@ -80,10 +87,10 @@ public class SqlSessionFactoryUtils {
                 i++;
             }
             JdbcConfiguration.JdbcConf jdbcConf = jdbcConfEntry.getValue();
-            // 配置事务管理，这里我们使用JDBC的事务
-            TransactionFactory trcFactory = new JdbcTransactionFactory();
+            // 配置事务管理，这里我们使用JDBC的事务，SQL的超时时间受@Transactional的超时时间限制
+            TransactionFactory trcFactory = new ScopedTransactionFactory();
             // 配置Environment对象，"development"是我们给起的名字
-            Environment env = new Environment("development", trcFactory, getDruidPool(jdbcConf));
+            Environment env = new Environment("development", trcFactory, getDataSourcePool(jdbcConf));
             // 创建Configuration对象
             Configuration config = new Configuration(env);
             // <settings></settings>中的内容在此处配置
@@ -91,6 +98,8 @@ public class SqlSessionFactoryUtils {
                     .ifPresent(config::setCacheEnabled);
             Optional.ofNullable(jdbcConf.getUseGeneratedKeys())
                     .ifPresent(config::setUseGeneratedKeys);
+            Optional.ofNullable(jdbcConf.getDefaultQueryTimeoutSeconds())
+                    .ifPresent(config::setDefaultStatementTimeout);
             Optional.ofNullable(jdbcConf.getDefaultExecutorType())
                     .ifPresent(config::setDefaultExecutorType);
             if (StringUtils.isNotBlank(jdbcConf.getLogImpl())) {
@@ -102,6 +111,10 @@ public class SqlSessionFactoryUtils {
                     log.warn("设置mybatis的日志发生错误", e);
                 }
             }
+            if (Boolean.TRUE.equals(jdbcConf.getMetricsEnabled())) {
+                config.addInterceptor(new SqlMetricsInterceptor(jdbcConf.getSlowQueryThreshold(),
+                        jdbcConf.getSlowQuerySampleRate()));
+            }
             if (CollectionUtils.isNotEmpty(jdbcConf.getMappers())) {
                 for (String mapper : jdbcConf.getMappers()) {
                     Optional.ofNullable(mapper)
@@ -114,24 +127,20 @@ public class SqlSessionFactoryUtils {
         }
     }
 
-    private static DruidDataSource getDruidPool(JdbcConfiguration.JdbcConf jdbcConf) {
-        DruidDataSource druid = new DruidDataSource();
-        druid.setDriverClassName(jdbcConf.getDriver());
-        druid.setUrl(jdbcConf.getUrl());
-        druid.setUsername(jdbcConf.getUsername());
-        druid.setPassword(jdbcConf.getPassword());
-        druid.setDefaultAutoCommit(true);
-        druid.setInitialSize(jdbcConf.getInitialSize());
-        druid.setMaxActive(jdbcConf.getMaxActive());
-        druid.setMaxWait(jdbcConf.getMaxWait());
-        druid.setQueryTimeout(jdbcConf.getDefaultQueryTimeoutSeconds());
-        druid.setMinIdle(jdbcConf.getMinIdle());
-        druid.setMinEvictableIdleTimeMillis(jdbcConf.getMinEvictableIdleTimeMillis());
-        druid.setTimeBetweenEvictionRunsMillis(jdbcConf.getTimeBetweenEvictionRunsMillis());
-        druid.setTestWhileIdle(jdbcConf.getTestWhileIdle());
-        druid.setValidationQuery(jdbcConf.getValidationQuery());
-        druid.setRemoveAbandoned(jdbcConf.getRemoveAbandoned());
-        druid.setRemoveAbandonedTimeout(jdbcConf.getRemoveAbandonedTimeout());
-        return druid;
+    private static DataSourcePool getDataSourcePool(JdbcConfiguration.JdbcConf jdbcConf) {
+        com.lee.rokhan.mybatis.mapping.Environment environment = new com.lee.rokhan.mybatis.mapping.Environment();
+        environment.setDriver(jdbcConf.getDriver());
+        environment.setUrl(jdbcConf.getUrl());
+        environment.setUserName(jdbcConf.getUsername());
+        environment.setPassword(jdbcConf.getPassword());
+        environment.setAutoCommit(true);
+        environment.setMaxPoolSize(jdbcConf.getMaxPoolSize());
+        environment.setMinIdle(jdbcConf.getMinIdle());
+        environment.setConnectionTimeout(jdbcConf.getConnectionTimeout());
+        environment.setIdleTimeout(jdbcConf.getIdleTimeout());
+        environment.setMaxLifetime(jdbcConf.getMaxLifetime());
+        environment.setLeakDetectionThreshold(jdbcConf.getLeakDetectionThreshold());
+        environment.setValidationTimeout(jdbcConf.getValidationTimeout());
+        return DataSourcePools.getDataSourcePool(environment);
     }
 }
@@ -0,0 +1,325 @@
+package com.lee.rokhan.demo.jdbc;
+
+import com.lee.rokhan.container.loader.DataLoaderRegistry;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.session.SqlSession;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 绑定到当前线程的会话范围
+ * begin()和end()之间（例如一次请求）对同一个数据源的Mapper调用共用一个SqlSession，会话在第一次调用时才打开，
+ * 同一个会话的Mapper代理也只创建一次；范围可以嵌套，最外层的end()关闭所有会话并归还连接。
+ * 范围内开启事务时，已经打开和之后打开的会话的连接都关闭自动提交，由SqlSessionTransactionManager统一提交或回滚；
+ * 范围内@Batchable方法的DataLoader在最外层的end()关闭会话前加载剩余的key
+ * @author lichujun
+ * @date 2019/8/11 10:10
+ */
+@Slf4j
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class SqlSessionHolder {
+
+    private static final ThreadLocal<SessionScope> SCOPE = new ThreadLocal<>();
+
+    /**
+     * 开始会话范围，已经在范围内时增加嵌套层数
+     */
+    public static void begin() {
+        SessionScope scope = SCOPE.get();
+        if (scope == null) {
+            scope = new SessionScope(null);
+            SCOPE.set(scope);
+        }
+        scope.depth++;
+    }
+
+    /**
+     * 结束会话范围，最外层结束时关闭范围内打开的所有会话，并恢复被挂起的范围
+     */
+    public static void end() {
+        SessionScope scope = currentScope();
+        if (--scope.depth > 0) {
+            return;
+        }
+        if (scope.dataLoaders != null) {
+            try {
+                scope.dataLoaders.dispatchAll();
+            } catch (RuntimeException e) {
+                log.error("加载剩余的批量查询发生异常", e);
+            }
+        }
+        if (scope.suspended == null) {
+            SCOPE.remove();
+        } else {
+            SCOPE.set(scope.suspended);
+        }
+        for (Map.Entry<String, SessionEntry> entry : scope.sessions.entrySet()) {
+            try {
+                entry.getValue().sqlSession.close();
+            } catch (RuntimeException e) {
+                log.error("关闭[{}]的会话发生异常", entry.getKey(), e);
+            }
+        }
+    }
+
+    /**
+     * 当前线程是否在会话范围内
+     * @return 是否在会话范围内
+     */
+    public static boolean isActive() {
+        return SCOPE.get() != null;
+    }
+
+    /**
+     * 获取当前会话范围内数据源对应的SqlSession，第一次获取时打开
+     * @param name 数据源名称
+     * @return SqlSession
+     */
+    public static SqlSession getSqlSession(String name) {
+        return getSessionEntry(name).sqlSession;
+    }
+
+    /**
+     * 获取当前会话范围内数据源对应的Mapper，同一个会话的Mapper只创建一次
+     * @param name 数据源名称
+     * @param clazz Mapper接口
+     * @return Mapper
+     */
+    public static <T> T getMapper(String name, Class<T> clazz) {
+        SessionEntry sessionEntry = getSessionEntry(name);
+        return clazz.cast(sessionEntry.mappers.computeIfAbsent(clazz, sessionEntry.sqlSession::getMapper));
+    }
+
+    /**
+     * 获取当前会话范围内的DataLoader注册表，第一次获取时创建
+     * @return DataLoader注册表
+     */
+    public static DataLoaderRegistry getDataLoaders() {
+        SessionScope scope = currentScope();
+        if (scope.dataLoaders == null) {
+            scope.dataLoaders = new DataLoaderRegistry();
+        }
+        return scope.dataLoaders;
+    }
+
+    /**
+     * 当前线程是否在事务中
+     * @return 是否在事务中
+     */
+    static boolean isTransactionActive() {
+        SessionScope scope = SCOPE.get();
+        return scope != null && scope.transaction != null;
+    }
+
+    /**
+     * 挂起当前的范围，开始一个新的范围
+     */
+    static void suspendAndBegin() {
+        SessionScope scope = new SessionScope(SCOPE.get());
+        scope.depth = 1;
+        SCOPE.set(scope);
+    }
+
+    /**
+     * 在当前范围内开启事务
+     * @param readOnly 是否只读
+     * @param timeoutSeconds 超时时间，小于等于0表示不限制，单位：秒
+     */
+    static void beginTransaction(boolean readOnly, int timeoutSeconds) {
+        SessionScope scope = currentScope();
+        long deadline = timeoutSeconds > 0 ? System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds) : 0;
+        scope.transaction = new TransactionState(readOnly, deadline);
+        for (Map.Entry<String, SessionEntry> entry : scope.sessions.entrySet()) {
+            prepareTransaction(entry.getKey(), entry.getValue(), scope.transaction);
+        }
+    }
+
+    /**
+     * 标记当前事务只能回滚，加入事务的方法需要回滚时调用
+     */
+    static void setRollbackOnly() {
+        currentScope().transaction.rollbackOnly = true;
+    }
+
+    /**
+     * 当前事务是否只能回滚
+     * @return 是否只能回滚
+     */
+    static boolean isRollbackOnly() {
+        return currentScope().transaction.rollbackOnly;
+    }
+
+    /**
+     * 当前事务是否已经超时
+     * @return 是否已经超时
+     */
+    static boolean isTimedOut() {
+        TransactionState transaction = currentScope().transaction;
+        return transaction.deadline != 0 && System.nanoTime() - transaction.deadline >= 0;
+    }
+
+    /**
+     * 提交或者回滚当前事务的所有会话，然后恢复连接的自动提交和只读属性
+     * @param commit 是否提交
+     */
+    static void completeTransaction(boolean commit) {
+        SessionScope scope = currentScope();
+        TransactionState transaction = scope.transaction;
+        scope.transaction = null;
+        RuntimeException error = null;
+        for (Map.Entry<String, SessionEntry> entry : scope.sessions.entrySet()) {
+            SessionEntry sessionEntry = entry.getValue();
+            try {
+                if (commit && error == null) {
+                    sessionEntry.sqlSession.commit(true);
+                } else {
+                    sessionEntry.sqlSession.rollback(true);
+                }
+            } catch (RuntimeException e) {
+                // 多个数据源不是分布式事务，一个提交失败后其余的回滚
+                log.error("[{}]的事务{}失败", entry.getKey(), commit ? "提交" : "回滚", e);
+                if (error == null) {
+                    error = e;
+                }
+            }
+            resetConnection(entry.getKey(), sessionEntry, transaction);
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * 当前事务剩余的时间，供SQL设置超时时间
+     * @return 剩余时间，不在事务中或者不限制时为null，单位：秒
+     * @throws SQLException 事务已经超时
+     */
+    static Integer getTransactionTimeout() throws SQLException {
+        SessionScope scope = SCOPE.get();
+        if (scope == null || scope.transaction == null || scope.transaction.deadline == 0) {
+            return null;
+        }
+        long remaining = scope.transaction.deadline - System.nanoTime();
+        if (remaining <= 0) {
+            throw new SQLException("事务已经超时");
+        }
+        return (int) Math.max(1, TimeUnit.NANOSECONDS.toSeconds(remaining + TimeUnit.SECONDS.toNanos(1) - 1));
+    }
+
+    private static SessionScope currentScope() {
+        SessionScope scope = SCOPE.get();
+        if (scope == null) {
+            throw new RuntimeException("当前线程没有开始会话范围");
+        }
+        return scope;
+    }
+
+    private static SessionEntry getSessionEntry(String name) {
+        SessionScope scope = currentScope();
+        SessionEntry sessionEntry = scope.sessions.get(name);
+        if (sessionEntry == null) {
+            sessionEntry = new SessionEntry(JdbcConfiguration.getSqlSessionFactoryUtils().getSqlSession(name));
+            scope.sessions.put(name, sessionEntry);
+            if (scope.transaction != null) {
+                prepareTransaction(name, sessionEntry, scope.transaction);
+            }
+        }
+        return sessionEntry;
+    }
+
+    private static void prepareTransaction(String name, SessionEntry sessionEntry, TransactionState transaction) {
+        try {
+            Connection connection = sessionEntry.sqlSession.getConnection();
+            connection.setAutoCommit(false);
+            if (transaction.readOnly) {
+                connection.setReadOnly(true);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(String.format("[%s]开启事务失败", name), e);
+        }
+    }
+
+    private static void resetConnection(String name, SessionEntry sessionEntry, TransactionState transaction) {
+        try {
+            Connection connection = sessionEntry.sqlSession.getConnection();
+            connection.setAutoCommit(true);
+            if (transaction.readOnly) {
+                connection.setReadOnly(false);
+            }
+        } catch (RuntimeException | SQLException e) {
+            log.error("[{}]恢复连接的自动提交失败", name, e);
+        }
+    }
+
+    /**
+     * 当前线程的会话范围
+     */
+    private static class SessionScope {
+
+        /**
+         * 嵌套层数
+         */
+        private int depth;
+
+        /**
+         * 数据源名称对应的会话
+         */
+        private final Map<String, SessionEntry> sessions = new HashMap<>(2);
+
+        /**
+         * 范围内的事务，没有开启事务时为null
+         */
+        private TransactionState transaction;
+
+        /**
+         * 范围内的DataLoader，没有使用时为null
+         */
+        private DataLoaderRegistry dataLoaders;
+
+        /**
+         * 被挂起的范围，结束后恢复
+         */
+        private final SessionScope suspended;
+
+        private SessionScope(SessionScope suspended) {
+            this.suspended = suspended;
+        }
+    }
+
+    private static class SessionEntry {
+
+        private final SqlSession sqlSession;
+
+        /**
+         * Mapper接口对应的Mapper代理
+         */
+        private final Map<Class<?>, Object> mappers = new HashMap<>(8);
+
+        private SessionEntry(SqlSession sqlSession) {
+            this.sqlSession = sqlSession;
+        }
+    }
+
+    private static class TransactionState {
+
+        private final boolean readOnly;
+
+        /**
+         * 超时的时间点，为0表示不限制，单位：纳秒
+         */
+        private final long deadline;
+
+        private boolean rollbackOnly;
+
+        private TransactionState(boolean readOnly, long deadline) {
+            this.readOnly = readOnly;
+            this.deadline = deadline;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.lee.rokhan.demo.jdbc;
+
+import com.lee.rokhan.container.annotation.Component;
+import com.lee.rokhan.container.transaction.Propagation;
+import com.lee.rokhan.container.transaction.TransactionDefinition;
+import com.lee.rokhan.container.transaction.TransactionManager;
+import com.lee.rokhan.container.transaction.TransactionStatus;
+
+/**
+ * 基于SqlSessionHolder的事务管理器
+ * 事务绑定在当前线程的会话范围上，Mapper代理在事务中使用同一个连接；
+ * 已经在请求的会话范围内时直接在该范围的连接上开启事务，不额外获取连接
+ * @author lichujun
+ * @date 2019/8/11 15:00
+ */
+@Component
+public class SqlSessionTransactionManager implements TransactionManager {
+
+    private static final TransactionStatus NEW_TRANSACTION = () -> true;
+
+    private static final TransactionStatus JOINED_TRANSACTION = () -> false;
+
+    @Override
+    public TransactionStatus getTransaction(TransactionDefinition definition) {
+        if (SqlSessionHolder.isTransactionActive()) {
+            if (definition.getPropagation() == Propagation.REQUIRED) {
+                SqlSessionHolder.begin();
+                return JOINED_TRANSACTION;
+            }
+            SqlSessionHolder.suspendAndBegin();
+        } else {
+            SqlSessionHolder.begin();
+        }
+        try {
+            SqlSessionHolder.beginTransaction(definition.isReadOnly(), definition.getTimeout());
+        } catch (RuntimeException e) {
+            SqlSessionHolder.end();
+            throw e;
+        }
+        return NEW_TRANSACTION;
+    }
+
+    @Override
+    public void commit(TransactionStatus status) {
+        try {
+            if (!status.isNewTransaction()) {
+                return;
+            }
+            if (SqlSessionHolder.isRollbackOnly()) {
+                SqlSessionHolder.completeTransaction(false);
+                throw new RuntimeException("事务已经被标记为只能回滚，已经回滚");
+            }
+            if (SqlSessionHolder.isTimedOut()) {
+                SqlSessionHolder.completeTransaction(false);
+                throw new RuntimeException("事务已经超时，已经回滚");
+            }
+            SqlSessionHolder.completeTransaction(true);
+        } finally {
+            SqlSessionHolder.end();
+        }
+    }
+
+    @Override
+    public void rollback(TransactionStatus status) {
+        try {
+            if (status.isNewTransaction()) {
+                SqlSessionHolder.completeTransaction(false);
+            } else {
+                SqlSessionHolder.setRollbackOnly();
+            }
+        } finally {
+            SqlSessionHolder.end();
+        }
+    }
+}
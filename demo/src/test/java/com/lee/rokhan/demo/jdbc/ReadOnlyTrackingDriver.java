@@ -0,0 +1,86 @@
+package com.lee.rokhan.demo.jdbc;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * 包装H2的驱动，url为jdbc:tracking:h2:...
+ * H2的setReadOnly不生效，包装后的连接记录setReadOnly设置的值，用于检查事务结束后是否恢复了只读属性
+ * @author lichujun
+ * @date 2019/8/12 20:35
+ */
+public final class ReadOnlyTrackingDriver implements Driver {
+
+    private static final String PREFIX = "jdbc:tracking:";
+
+    static {
+        try {
+            DriverManager.registerDriver(new ReadOnlyTrackingDriver());
+        } catch (SQLException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    @Override
+    public Connection connect(String url, Properties info) throws SQLException {
+        if (!acceptsURL(url)) {
+            return null;
+        }
+        Connection target = DriverManager.getConnection("jdbc:" + url.substring(PREFIX.length()), info);
+        boolean[] readOnly = new boolean[1];
+        return (Connection) Proxy.newProxyInstance(ReadOnlyTrackingDriver.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "setReadOnly":
+                            readOnly[0] = (Boolean) args[0];
+                            return null;
+                        case "isReadOnly":
+                            return readOnly[0];
+                        default:
+                            try {
+                                return method.invoke(target, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                    }
+                });
+    }
+
+    @Override
+    public boolean acceptsURL(String url) {
+        return url != null && url.startsWith(PREFIX);
+    }
+
+    @Override
+    public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+        return new DriverPropertyInfo[0];
+    }
+
+    @Override
+    public int getMajorVersion() {
+        return 1;
+    }
+
+    @Override
+    public int getMinorVersion() {
+        return 0;
+    }
+
+    @Override
+    public boolean jdbcCompliant() {
+        return false;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+}
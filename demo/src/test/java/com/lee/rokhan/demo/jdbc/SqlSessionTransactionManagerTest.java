@@ -0,0 +1,201 @@
+package com.lee.rokhan.demo.jdbc;
+
+import com.lee.rokhan.container.annotation.Transactional;
+import com.lee.rokhan.container.transaction.Propagation;
+import com.lee.rokhan.container.transaction.TransactionDefinition;
+import com.lee.rokhan.container.transaction.TransactionStatus;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 基于SqlSessionHolder的事务：REQUIRED加入外层事务、REQUIRES_NEW挂起和恢复外层事务、
+ * 加入的事务失败后外层只能回滚、超时回滚，以及事务结束后恢复连接的自动提交和只读属性
+ * @author lichujun
+ * @date 2019/8/12 20:40
+ */
+public class SqlSessionTransactionManagerTest {
+
+    private static final String NAME = "transaction-test";
+
+    private static final String URL = "h2:mem:demo-transaction;DB_CLOSE_DELAY=-1";
+
+    private final SqlSessionTransactionManager transactionManager = new SqlSessionTransactionManager();
+
+    @BeforeClass
+    public static void setUpClass() throws SQLException {
+        JdbcConfiguration.JdbcConf jdbcConf = new JdbcConfiguration.JdbcConf();
+        jdbcConf.setDriver(ReadOnlyTrackingDriver.class.getName());
+        jdbcConf.setUrl("jdbc:tracking:" + URL);
+        jdbcConf.setUsername("sa");
+        jdbcConf.setPassword("");
+        jdbcConf.setMaxPoolSize(4);
+        jdbcConf.setMinIdle(1);
+        jdbcConf.setMetricsEnabled(false);
+        // 会话工厂注册到SqlSessionFactoryUtils的静态表中，SqlSessionHolder按名称获取
+        new SqlSessionFactoryUtils(Collections.singletonMap(NAME, jdbcConf));
+        try (Connection connection = DriverManager.getConnection("jdbc:" + URL, "sa", "");
+             java.sql.Statement statement = connection.createStatement()) {
+            statement.execute("create table account (name varchar(32))");
+        }
+    }
+
+    @Before
+    public void setUp() throws SQLException {
+        try (Connection connection = DriverManager.getConnection("jdbc:" + URL, "sa", "");
+             java.sql.Statement statement = connection.createStatement()) {
+            statement.execute("delete from account");
+        }
+    }
+
+    @After
+    public void tearDown() {
+        assertFalse("事务结束后应该结束会话范围", SqlSessionHolder.isActive());
+    }
+
+    @Test
+    public void joinRequiredTransaction() throws Exception {
+        TransactionStatus outer = transactionManager.getTransaction(definition("required"));
+        assertTrue(outer.isNewTransaction());
+        Connection connection = connection();
+        insert("outer");
+
+        TransactionStatus inner = transactionManager.getTransaction(definition("required"));
+        assertFalse("已经存在事务时加入", inner.isNewTransaction());
+        assertSame("加入的事务使用同一个连接", connection, connection());
+        insert("inner");
+        transactionManager.commit(inner);
+        assertEquals("加入的事务不单独提交", 0, committedRows());
+
+        transactionManager.commit(outer);
+        assertEquals(2, committedRows());
+    }
+
+    @Test
+    public void suspendAndResumeForRequiresNew() throws Exception {
+        TransactionStatus outer = transactionManager.getTransaction(definition("required"));
+        Connection outerConnection = connection();
+        insert("outer");
+
+        TransactionStatus inner = transactionManager.getTransaction(definition("requiresNew"));
+        assertTrue(inner.isNewTransaction());
+        assertNotSame("新的事务使用新的连接", outerConnection, connection());
+        insert("inner");
+        transactionManager.commit(inner);
+        assertEquals("新的事务单独提交", 1, committedRows());
+
+        assertSame("新的事务结束后恢复外层事务", outerConnection, connection());
+        assertFalse(outerConnection.getAutoCommit());
+        transactionManager.rollback(outer);
+        assertEquals("外层事务回滚不影响已提交的新事务", 1, committedRows());
+    }
+
+    @Test
+    public void rollbackOnlyAfterJoinedFailure() throws Exception {
+        TransactionStatus outer = transactionManager.getTransaction(definition("required"));
+        insert("outer");
+        TransactionStatus inner = transactionManager.getTransaction(definition("required"));
+        insert("inner");
+        transactionManager.rollback(inner);
+        try {
+            transactionManager.commit(outer);
+            fail("加入的事务回滚后外层事务只能回滚");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().contains("只能回滚"));
+        }
+        assertEquals(0, committedRows());
+    }
+
+    @Test
+    public void rollbackWhenTimedOut() throws Exception {
+        TransactionStatus status = transactionManager.getTransaction(definition("timeout"));
+        insert("slow");
+        Thread.sleep(1100);
+        try {
+            transactionManager.commit(status);
+            fail("超时的事务不能提交");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().contains("超时"));
+        }
+        assertEquals(0, committedRows());
+    }
+
+    @Test
+    public void restoreAutoCommitAndReadOnly() throws Exception {
+        SqlSessionHolder.begin();
+        try {
+            Connection connection = connection();
+            assertTrue(connection.getAutoCommit());
+            TransactionStatus status = transactionManager.getTransaction(definition("readOnly"));
+            assertSame("已经在会话范围内时在该范围的连接上开启事务", connection, connection());
+            assertFalse(connection.getAutoCommit());
+            assertTrue(connection.isReadOnly());
+
+            transactionManager.commit(status);
+            assertTrue("事务结束后恢复自动提交", connection.getAutoCommit());
+            assertFalse("事务结束后恢复只读属性", connection.isReadOnly());
+            assertTrue("外层的会话范围没有结束", SqlSessionHolder.isActive());
+        } finally {
+            SqlSessionHolder.end();
+        }
+    }
+
+    @Transactional
+    private void required() {
+    }
+
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    private void requiresNew() {
+    }
+
+    @Transactional(timeout = 1)
+    private void timeout() {
+    }
+
+    @Transactional(readOnly = true)
+    private void readOnly() {
+    }
+
+    private static TransactionDefinition definition(String methodName) throws NoSuchMethodException {
+        return new TransactionDefinition(SqlSessionTransactionManagerTest.class.getDeclaredMethod(methodName)
+                .getAnnotation(Transactional.class));
+    }
+
+    private static Connection connection() {
+        return SqlSessionHolder.getSqlSession(NAME).getConnection();
+    }
+
+    private static void insert(String name) throws SQLException {
+        try (PreparedStatement statement = connection().prepareStatement("insert into account (name) values (?)")) {
+            statement.setString(1, name);
+            statement.executeUpdate();
+        }
+    }
+
+    /**
+     * 用独立的连接查询，只能看到已提交的数据
+     */
+    private static int committedRows() throws SQLException {
+        try (Connection connection = DriverManager.getConnection("jdbc:" + URL, "sa", "");
+             java.sql.Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("select count(*) from account")) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+}
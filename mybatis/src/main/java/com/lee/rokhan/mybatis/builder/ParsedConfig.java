@@ -0,0 +1,86 @@
+package com.lee.rokhan.mybatis.builder;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 解析XML得到的原始配置，只包含字符串，写入解析缓存后XML文件没有修改时跳过解析
+ * @author lichujun
+ * @date 2019/8/9 10:00
+ */
+@Data
+class ParsedConfig {
+
+    /**
+     * 配置文件内容的摘要
+     */
+    private String configDigest;
+
+    /**
+     * settings中的配置
+     */
+    private Map<String, String> settings = new LinkedHashMap<>();
+
+    /**
+     * 默认环境的dataSource中的配置
+     */
+    private Map<String, String> environment = new LinkedHashMap<>();
+
+    /**
+     * 默认环境的replicas中每个dataSource的配置
+     */
+    private List<Map<String, String>> replicas = new ArrayList<>();
+
+    /**
+     * 按声明顺序排列的mapper
+     */
+    private List<MapperDefinition> mappers = new ArrayList<>();
+
+    /**
+     * 解析mapper文件得到的配置
+     */
+    @Data
+    static class MapperDefinition {
+
+            /**
+         * mapper文件的URL
+         */
+        private String location;
+
+        /**
+         * 解析时文件的最后修改时间和大小，用于判断缓存是否有效
+         */
+        private long lastModified;
+
+        private long length;
+
+        private String namespace;
+
+        /**
+         * cache标签的属性，没有cache标签时为null
+         */
+        private Map<String, String> cache;
+
+        private List<StatementDefinition> statements = new ArrayList<>();
+    }
+
+    /**
+     * select、insert、update、delete标签
+     */
+    @Data
+    static class StatementDefinition {
+
+            /**
+         * 标签名称
+         */
+        private String type;
+
+        private Map<String, String> attributes = new LinkedHashMap<>();
+
+        private String sql;
+    }
+}
@@ -0,0 +1,230 @@
+package com.lee.rokhan.mybatis.builder;
+
+import com.lee.rokhan.mybatis.builder.ParsedConfig.MapperDefinition;
+import com.lee.rokhan.mybatis.builder.ParsedConfig.StatementDefinition;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 解析结果的磁盘缓存
+ * 配置文件内容的摘要相同、所有mapper文件的最后修改时间和大小都没有变化时直接使用缓存，否则重新解析；
+ * 使用紧凑的二进制格式，不使用Java序列化，读取比解析XML快
+ * @author lichujun
+ * @date 2019/8/9 11:00
+ */
+@Slf4j
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+final class ParsedConfigCache {
+
+    private static final int MAGIC = 0x524B4D42;
+
+    /**
+     * 缓存格式的版本，格式变化时修改，旧版本的缓存会被忽略
+     */
+    private static final int VERSION = 2;
+
+    /**
+     * 读取缓存
+     * @param file 缓存文件
+     * @param configDigest 配置文件内容的摘要
+     * @return 缓存的解析结果，不存在或者已失效时返回null
+     */
+    static ParsedConfig load(File file, String configDigest) {
+        if (!file.isFile()) {
+            return null;
+        }
+        ParsedConfig parsed;
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(file.toPath()), 64 * 1024))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                return null;
+            }
+            if (!configDigest.equals(readString(input))) {
+                return null;
+            }
+            parsed = read(input);
+            parsed.setConfigDigest(configDigest);
+        } catch (IOException e) {
+            log.warn("读取mybatis解析缓存{}失败，重新解析", file, e);
+            return null;
+        }
+        for (MapperDefinition mapper : parsed.getMappers()) {
+            try {
+                long[] stat = stat(new URL(mapper.getLocation()));
+                if (stat[0] == 0 || stat[0] != mapper.getLastModified() || stat[1] != mapper.getLength()) {
+                    return null;
+                }
+            } catch (IOException e) {
+                return null;
+            }
+        }
+        return parsed;
+    }
+
+    /**
+     * 写入缓存，先写临时文件再替换，避免并发启动时读到写了一半的文件
+     * @param file 缓存文件
+     * @param parsed 解析结果
+     */
+    static void store(File file, ParsedConfig parsed) {
+        File dir = file.getAbsoluteFile().getParentFile();
+        try {
+            if (dir != null) {
+                Files.createDirectories(dir.toPath());
+            }
+            File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(tmp.toPath()), 64 * 1024))) {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                writeString(output, parsed.getConfigDigest());
+                write(output, parsed);
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("写入mybatis解析缓存{}失败", file, e);
+        }
+    }
+
+    /**
+     * 获取文件的最后修改时间和大小
+     * @param url 文件的URL
+     * @return 最后修改时间和大小，无法获取最后修改时间时为0
+     * @throws IOException 读取文件信息发生异常
+     */
+    static long[] stat(URL url) throws IOException {
+        if ("file".equals(url.getProtocol())) {
+            File file;
+            try {
+                file = new File(url.toURI());
+            } catch (URISyntaxException | IllegalArgumentException e) {
+                file = new File(url.getPath());
+            }
+            return new long[]{file.lastModified(), file.length()};
+        }
+        URLConnection connection = url.openConnection();
+        if (connection instanceof JarURLConnection) {
+            // jar中的文件取条目的修改时间，不读取内容
+            return new long[]{connection.getLastModified(), connection.getContentLengthLong()};
+        }
+        try (InputStream ignored = connection.getInputStream()) {
+            return new long[]{connection.getLastModified(), connection.getContentLengthLong()};
+        }
+    }
+
+    private static void write(DataOutputStream output, ParsedConfig parsed) throws IOException {
+        writeMap(output, parsed.getSettings());
+        writeMap(output, parsed.getEnvironment());
+        output.writeInt(parsed.getReplicas().size());
+        for (Map<String, String> replica : parsed.getReplicas()) {
+            writeMap(output, replica);
+        }
+        output.writeInt(parsed.getMappers().size());
+        for (MapperDefinition mapper : parsed.getMappers()) {
+            writeString(output, mapper.getLocation());
+            output.writeLong(mapper.getLastModified());
+            output.writeLong(mapper.getLength());
+            writeString(output, mapper.getNamespace());
+            output.writeBoolean(mapper.getCache() != null);
+            if (mapper.getCache() != null) {
+                writeMap(output, mapper.getCache());
+            }
+            output.writeInt(mapper.getStatements().size());
+            for (StatementDefinition statement : mapper.getStatements()) {
+                writeString(output, statement.getType());
+                writeMap(output, statement.getAttributes());
+                writeString(output, statement.getSql());
+            }
+        }
+    }
+
+    private static ParsedConfig read(DataInputStream input) throws IOException {
+        ParsedConfig parsed = new ParsedConfig();
+        parsed.setSettings(readMap(input));
+        parsed.setEnvironment(readMap(input));
+        int replicaCount = input.readInt();
+        List<Map<String, String>> replicas = new ArrayList<>(replicaCount);
+        for (int i = 0; i < replicaCount; i++) {
+            replicas.add(readMap(input));
+        }
+        parsed.setReplicas(replicas);
+        int mapperCount = input.readInt();
+        List<MapperDefinition> mappers = new ArrayList<>(mapperCount);
+        for (int i = 0; i < mapperCount; i++) {
+            MapperDefinition mapper = new MapperDefinition();
+            mapper.setLocation(readString(input));
+            mapper.setLastModified(input.readLong());
+            mapper.setLength(input.readLong());
+            mapper.setNamespace(readString(input));
+            if (input.readBoolean()) {
+                mapper.setCache(readMap(input));
+            }
+            int statementCount = input.readInt();
+            List<StatementDefinition> statements = new ArrayList<>(statementCount);
+            for (int j = 0; j < statementCount; j++) {
+                StatementDefinition statement = new StatementDefinition();
+                statement.setType(readString(input));
+                statement.setAttributes(readMap(input));
+                statement.setSql(readString(input));
+                statements.add(statement);
+            }
+            mapper.setStatements(statements);
+            mappers.add(mapper);
+        }
+        parsed.setMappers(mappers);
+        return parsed;
+    }
+
+    private static void writeMap(DataOutputStream output, Map<String, String> map) throws IOException {
+        output.writeInt(map.size());
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            writeString(output, entry.getKey());
+            writeString(output, entry.getValue());
+        }
+    }
+
+    private static Map<String, String> readMap(DataInputStream input) throws IOException {
+        int size = input.readInt();
+        Map<String, String> map = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            map.put(readString(input), readString(input));
+        }
+        return map;
+    }
+
+    /**
+     * writeUTF限制64KB，SQL可能更长，按长度加UTF-8字节写入
+     */
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(DataInputStream input) throws IOException {
+        byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
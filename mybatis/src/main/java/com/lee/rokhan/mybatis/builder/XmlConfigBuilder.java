@@ -0,0 +1,348 @@
+package com.lee.rokhan.mybatis.builder;
+
+import com.lee.rokhan.mybatis.builder.ParsedConfig.MapperDefinition;
+import com.lee.rokhan.mybatis.builder.ParsedConfig.StatementDefinition;
+import com.lee.rokhan.mybatis.cache.CacheProperties;
+import com.lee.rokhan.mybatis.mapping.Configuration;
+import com.lee.rokhan.mybatis.mapping.Environment;
+import com.lee.rokhan.mybatis.mapping.Statement;
+import com.lee.rokhan.mybatis.reflection.PropertyAccessors;
+import com.lee.rokhan.mybatis.reflection.PropertySetter;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 解析mybatis配置文件，构建Configuration
+ * 配置文件和mapper文件都使用StAX流式解析，mapper文件并行解析，SQL在构建时预编译；
+ * 指定解析缓存文件时，配置文件和mapper文件都没有修改则直接使用上次的解析结果；
+ * 默认环境中的replicas下可以配置多个从库的dataSource，mapper和SQL上可以用route指定主库或者从库
+ * @author lichujun
+ * @date 2019/8/9 11:30
+ */
+@Slf4j
+public class XmlConfigBuilder {
+
+    /**
+     * dataSource中的属性名称对应的Environment属性
+     */
+    private static final Map<String, String> ENVIRONMENT_ALIASES = new HashMap<>();
+
+    static {
+        ENVIRONMENT_ALIASES.put("username", "userName");
+    }
+
+    private final byte[] config;
+
+    /**
+     * 解析缓存文件，为null时不缓存
+     */
+    private File parsedConfigCache;
+
+    /**
+     * @param config 配置文件的输入流，读取后不关闭
+     */
+    public XmlConfigBuilder(InputStream config) {
+        if (config == null) {
+            throw new RuntimeException("mybatis配置文件不能为空");
+        }
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream(4096);
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = config.read(buffer)) != -1) {
+                output.write(buffer, 0, n);
+            }
+            this.config = output.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException("读取mybatis配置文件发生异常", e);
+        }
+    }
+
+    /**
+     * 指定解析缓存文件
+     * @param parsedConfigCache 解析缓存文件，为null时不缓存
+     * @return 当前对象
+     */
+    public XmlConfigBuilder setParsedConfigCache(File parsedConfigCache) {
+        this.parsedConfigCache = parsedConfigCache;
+        return this;
+    }
+
+    /**
+     * 解析配置
+     * @return 配置
+     */
+    public Configuration parse() {
+        long start = System.nanoTime();
+        String configDigest = digest(config);
+        ParsedConfig parsed = parsedConfigCache == null ? null : ParsedConfigCache.load(parsedConfigCache, configDigest);
+        boolean cached = parsed != null;
+        if (!cached) {
+            parsed = parseXml(configDigest);
+            if (parsedConfigCache != null) {
+                ParsedConfigCache.store(parsedConfigCache, parsed);
+            }
+        }
+        Configuration configuration = build(parsed);
+        log.info("解析mybatis配置完成，mapper：{}，SQL：{}，使用解析缓存：{}，耗时：{}ms", parsed.getMappers().size(),
+                configuration.getStatementMap().size(), cached,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return configuration;
+    }
+
+    private ParsedConfig parseXml(String configDigest) {
+        ParsedConfig parsed = new ParsedConfig();
+        parsed.setConfigDigest(configDigest);
+        List<URL> mapperUrls = new ArrayList<>();
+        try {
+            XMLStreamReader reader = XmlMapperParser.createReader(new ByteArrayInputStream(config));
+            try {
+                parseConfig(reader, parsed, mapperUrls);
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new RuntimeException("解析mybatis配置文件发生异常", e);
+        }
+        parsed.setMappers(mapperUrls.parallelStream().map(url -> {
+            try {
+                long[] stat = ParsedConfigCache.stat(url);
+                return XmlMapperParser.parse(url, stat[0], stat[1]);
+            } catch (IOException e) {
+                throw new RuntimeException("读取mapper文件" + url + "发生异常", e);
+            }
+        }).collect(Collectors.toList()));
+        return parsed;
+    }
+
+    private void parseConfig(XMLStreamReader reader, ParsedConfig parsed, List<URL> mapperUrls)
+            throws XMLStreamException {
+        String defaultEnvironment = null;
+        boolean environmentFound = false;
+        boolean inEnvironment = false;
+        boolean inDataSource = false;
+        boolean inReplicas = false;
+        Map<String, String> dataSource = null;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                if ("environment".equals(reader.getLocalName())) {
+                    inEnvironment = false;
+                } else if ("replicas".equals(reader.getLocalName())) {
+                    inReplicas = false;
+                } else if ("dataSource".equals(reader.getLocalName())) {
+                    inDataSource = false;
+                }
+                continue;
+            }
+            if (event != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+            switch (reader.getLocalName()) {
+                case "environments":
+                    defaultEnvironment = reader.getAttributeValue(null, "default");
+                    break;
+                case "environment":
+                    // 使用default指定的环境，没有指定时使用第一个
+                    String id = reader.getAttributeValue(null, "id");
+                    inEnvironment = !environmentFound
+                            && (defaultEnvironment == null || defaultEnvironment.equals(id));
+                    environmentFound |= inEnvironment;
+                    break;
+                case "replicas":
+                    inReplicas = inEnvironment;
+                    break;
+                case "dataSource":
+                    inDataSource = inEnvironment;
+                    if (inReplicas) {
+                        dataSource = new HashMap<>();
+                        parsed.getReplicas().add(dataSource);
+                    } else {
+                        dataSource = parsed.getEnvironment();
+                    }
+                    break;
+                case "property":
+                    if (inDataSource) {
+                        putNameValue(reader, dataSource);
+                    }
+                    break;
+                case "setting":
+                    putNameValue(reader, parsed.getSettings());
+                    break;
+                case "mapper":
+                    mapperUrls.add(resolveMapper(XmlMapperParser.readAttributes(reader)));
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (!environmentFound) {
+            throw new RuntimeException("mybatis配置文件中找不到环境" + (defaultEnvironment == null ? "" : defaultEnvironment));
+        }
+    }
+
+    private static void putNameValue(XMLStreamReader reader, Map<String, String> map) {
+        String name = reader.getAttributeValue(null, "name");
+        String value = reader.getAttributeValue(null, "value");
+        if (name == null || value == null) {
+            throw new RuntimeException("<" + reader.getLocalName() + ">标签需要指定name和value");
+        }
+        map.put(name, value);
+    }
+
+    /**
+     * 解析mapper标签，支持resource、url和class（与类同名的XML）
+     */
+    private URL resolveMapper(Map<String, String> attributes) {
+        String resource = attributes.get("resource");
+        String url = attributes.get("url");
+        String className = attributes.get("class");
+        if (url != null) {
+            try {
+                return new URL(url);
+            } catch (MalformedURLException e) {
+                throw new RuntimeException("mapper的url不正确：" + url, e);
+            }
+        }
+        if (resource == null && className != null) {
+            resource = className.replace('.', '/') + ".xml";
+        }
+        if (resource == null) {
+            throw new RuntimeException("mapper标签需要指定resource、url或者class");
+        }
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        URL resourceUrl = (classLoader == null ? XmlConfigBuilder.class.getClassLoader() : classLoader)
+                .getResource(resource);
+        if (resourceUrl == null) {
+            throw new RuntimeException("找不到mapper文件" + resource);
+        }
+        return resourceUrl;
+    }
+
+    private Configuration build(ParsedConfig parsed) {
+        Configuration configuration = new Configuration();
+        parsed.getSettings().forEach((name, value) -> setProperty(configuration, name, value));
+        configuration.setEnvironment(buildEnvironment(parsed.getEnvironment()));
+        for (Map<String, String> replica : parsed.getReplicas()) {
+            configuration.getReplicas().add(buildEnvironment(replica));
+        }
+
+        // 预编译SQL不依赖类加载器，与mapper一样并行处理
+        List<List<Statement>> mapperStatements = parsed.getMappers().parallelStream()
+                .map(XmlConfigBuilder::buildStatements)
+                .collect(Collectors.toList());
+        Map<String, Statement> statementMap = new HashMap<>();
+        for (int i = 0; i < mapperStatements.size(); i++) {
+            MapperDefinition mapper = parsed.getMappers().get(i);
+            for (Statement statement : mapperStatements.get(i)) {
+                if (statementMap.put(statement.getId(), statement) != null) {
+                    throw new RuntimeException("mapper文件" + mapper.getLocation() + "中的" + statement.getId() + "重复");
+                }
+                // 返回类型使用线程上下文类加载器解析，在当前线程进行
+                statement.getResultClass();
+            }
+            if (mapper.getCache() != null) {
+                CacheProperties properties = new CacheProperties();
+                mapper.getCache().forEach((name, value) -> setProperty(properties, name, value));
+                configuration.addCache(mapper.getNamespace(), properties);
+            }
+        }
+        configuration.setStatementMap(statementMap);
+        return configuration;
+    }
+
+    private static Environment buildEnvironment(Map<String, String> properties) {
+        Environment environment = new Environment();
+        properties.forEach((name, value) ->
+                setProperty(environment, ENVIRONMENT_ALIASES.getOrDefault(name, name), value));
+        return environment;
+    }
+
+    private static List<Statement> buildStatements(MapperDefinition mapper) {
+        List<Statement> statements = new ArrayList<>(mapper.getStatements().size());
+        for (StatementDefinition definition : mapper.getStatements()) {
+            Statement statement = new Statement();
+            statement.setUseCache("select".equals(definition.getType()));
+            definition.getAttributes().forEach((name, value) -> setProperty(statement, name, value));
+            statement.setId(mapper.getNamespace() + "." + definition.getAttributes().get("id"));
+            statement.setSql(definition.getSql());
+            try {
+                statement.getCompiledSql();
+            } catch (RuntimeException e) {
+                throw new RuntimeException("mapper文件" + mapper.getLocation() + "中的" + statement.getId()
+                        + "编译SQL发生异常", e);
+            }
+            statements.add(statement);
+        }
+        return statements;
+    }
+
+    /**
+     * 按属性类型转换字符串后设置属性
+     */
+    private static void setProperty(Object target, String name, String value) {
+        PropertySetter setter = PropertyAccessors.forSetter(target.getClass(), name);
+        try {
+            setter.set(target, convert(value.trim(), setter.getType()));
+        } catch (Exception e) {
+            throw new RuntimeException(target.getClass().getSimpleName() + "的属性" + name + "的值" + value + "不正确", e);
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object convert(String value, Class<?> type) {
+        if (type == String.class) {
+            return value;
+        }
+        if (type == int.class || type == Integer.class) {
+            return Integer.valueOf(value);
+        }
+        if (type == long.class || type == Long.class) {
+            return Long.valueOf(value);
+        }
+        if (type == double.class || type == Double.class) {
+            return Double.valueOf(value);
+        }
+        if (type == boolean.class || type == Boolean.class) {
+            if (!"true".equalsIgnoreCase(value) && !"false".equalsIgnoreCase(value)) {
+                throw new IllegalArgumentException("不是布尔值：" + value);
+            }
+            return Boolean.valueOf(value);
+        }
+        if (type.isEnum()) {
+            return Enum.valueOf((Class<Enum>) type, value.toUpperCase());
+        }
+        throw new IllegalArgumentException("不支持的属性类型：" + type.getName());
+    }
+
+    private static String digest(byte[] content) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(content);
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
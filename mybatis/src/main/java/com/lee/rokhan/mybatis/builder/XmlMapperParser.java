@@ -0,0 +1,190 @@
+package com.lee.rokhan.mybatis.builder;
+
+import com.lee.rokhan.mybatis.builder.ParsedConfig.MapperDefinition;
+import com.lee.rokhan.mybatis.builder.ParsedConfig.StatementDefinition;
+import com.lee.rokhan.mybatis.scripting.SqlScriptCompiler;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 使用StAX流式解析mapper文件，不构建DOM，不加载DTD
+ * @author lichujun
+ * @date 2019/8/9 10:30
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+final class XmlMapperParser {
+
+    /**
+     * 配置好的工厂，创建XMLStreamReader是线程安全的
+     */
+    private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+
+    /**
+     * 解析mapper文件
+     * @param url mapper文件的URL
+     * @param lastModified 解析前文件的最后修改时间
+     * @param length 解析前文件的大小
+     * @return mapper的配置
+     */
+    static MapperDefinition parse(URL url, long lastModified, long length) {
+        MapperDefinition mapper = new MapperDefinition();
+        mapper.setLocation(url.toString());
+        mapper.setLastModified(lastModified);
+        mapper.setLength(length);
+        try (InputStream input = url.openStream()) {
+            XMLStreamReader reader = createReader(input);
+            try {
+                parseMapper(reader, mapper);
+            } finally {
+                reader.close();
+            }
+        } catch (IOException | XMLStreamException e) {
+            throw new RuntimeException("解析mapper文件" + url + "发生异常", e);
+        }
+        if (mapper.getNamespace() == null || mapper.getNamespace().isEmpty()) {
+            throw new RuntimeException("mapper文件" + url + "没有指定namespace");
+        }
+        return mapper;
+    }
+
+    private static void parseMapper(XMLStreamReader reader, MapperDefinition mapper) throws XMLStreamException {
+        // mapper上的route作为其中SQL的默认路由
+        String route = null;
+        while (reader.hasNext()) {
+            if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+            String name = reader.getLocalName();
+            switch (name) {
+                case "mapper":
+                    mapper.setNamespace(reader.getAttributeValue(null, "namespace"));
+                    route = reader.getAttributeValue(null, "route");
+                    break;
+                case "cache":
+                    mapper.setCache(readAttributes(reader));
+                    break;
+                case "select":
+                case "insert":
+                case "update":
+                case "delete":
+                    StatementDefinition statement = parseStatement(reader, name);
+                    if (route != null) {
+                        statement.getAttributes().putIfAbsent("route", route);
+                    }
+                    mapper.getStatements().add(statement);
+                    break;
+                default:
+                    throw new RuntimeException("mapper文件" + mapper.getLocation() + "暂不支持<" + name + ">标签");
+            }
+        }
+    }
+
+    private static StatementDefinition parseStatement(XMLStreamReader reader, String type) throws XMLStreamException {
+        StatementDefinition statement = new StatementDefinition();
+        statement.setType(type);
+        statement.setAttributes(readAttributes(reader));
+        if (statement.getAttributes().get("id") == null) {
+            throw new RuntimeException("<" + type + ">标签没有指定id");
+        }
+        // 没有子标签时直接使用文本；有子标签（<if>、<foreach>等）时重新生成XML，用<script>包裹后作为动态SQL编译
+        StringBuilder sql = new StringBuilder();
+        StringBuilder script = new StringBuilder();
+        boolean dynamic = false;
+        int depth = 0;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA
+                    || event == XMLStreamConstants.SPACE) {
+                sql.append(reader.getText());
+                appendEscaped(script, reader.getText());
+            } else if (event == XMLStreamConstants.START_ELEMENT) {
+                dynamic = true;
+                depth++;
+                script.append('<').append(reader.getLocalName());
+                for (int i = 0; i < reader.getAttributeCount(); i++) {
+                    script.append(' ').append(reader.getAttributeLocalName(i)).append("=\"");
+                    appendEscaped(script, reader.getAttributeValue(i));
+                    script.append('"');
+                }
+                script.append('>');
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (depth-- == 0) {
+                    break;
+                }
+                script.append("</").append(reader.getLocalName()).append('>');
+            }
+        }
+        if (dynamic) {
+            statement.setSql(SqlScriptCompiler.SCRIPT_OPEN + script.toString().trim() + SqlScriptCompiler.SCRIPT_CLOSE);
+        } else {
+            statement.setSql(sql.toString().trim());
+        }
+        return statement;
+    }
+
+    private static void appendEscaped(StringBuilder builder, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<':
+                    builder.append("&lt;");
+                    break;
+                case '>':
+                    builder.append("&gt;");
+                    break;
+                case '&':
+                    builder.append("&amp;");
+                    break;
+                case '"':
+                    builder.append("&quot;");
+                    break;
+                default:
+                    builder.append(c);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * 读取当前标签的属性
+     * @param reader 位于START_ELEMENT的XMLStreamReader
+     * @return 属性名称对应的值
+     */
+    static Map<String, String> readAttributes(XMLStreamReader reader) {
+        int count = reader.getAttributeCount();
+        Map<String, String> attributes = new HashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            attributes.put(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+        }
+        return attributes;
+    }
+
+    /**
+     * 创建XMLStreamReader
+     * @param input 输入流
+     * @return XMLStreamReader
+     * @throws XMLStreamException 创建发生异常
+     */
+    static XMLStreamReader createReader(InputStream input) throws XMLStreamException {
+        return INPUT_FACTORY.createXMLStreamReader(input);
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        // 不处理DTD，避免解析时下载mybatis的DTD
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+}
@@ -0,0 +1,53 @@
+package com.lee.rokhan.mybatis.cache;
+
+/**
+ * 二级缓存，一个命名空间对应一个缓存，缓存查询结果
+ * 实现需要线程安全，缓存的查询结果被所有会话共享，使用方不能修改
+ * @author lichujun
+ * @date 2019/8/8 10:00
+ */
+public interface Cache {
+
+    /**
+     * 缓存的标识，即命名空间
+     * @return 标识
+     */
+    String getId();
+
+    /**
+     * 获取缓存
+     * @param key 缓存的key
+     * @return 缓存的值，不存在或者已过期时返回null
+     */
+    Object getObject(Object key);
+
+    /**
+     * 添加缓存，超出容量时按淘汰策略淘汰
+     * @param key 缓存的key
+     * @param value 缓存的值
+     */
+    void putObject(Object key, Object value);
+
+    /**
+     * 删除缓存
+     * @param key 缓存的key
+     */
+    void removeObject(Object key);
+
+    /**
+     * 清空缓存
+     */
+    void clear();
+
+    /**
+     * 缓存的数量
+     * @return 数量
+     */
+    int getSize();
+
+    /**
+     * 获取命中率等统计信息
+     * @return 统计信息的快照
+     */
+    CacheStatistics getStatistics();
+}
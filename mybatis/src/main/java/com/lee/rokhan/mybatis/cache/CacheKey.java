@@ -0,0 +1,49 @@
+package com.lee.rokhan.mybatis.cache;
+
+import java.util.Arrays;
+
+/**
+ * 查询结果的缓存key，由Statement的id、执行的SQL和按顺序绑定的参数值组成
+ * @author lichujun
+ * @date 2019/8/8 10:20
+ */
+public final class CacheKey {
+
+    private final String statementId;
+
+    private final String sql;
+
+    private final Object[] parameterValues;
+
+    private final int hashCode;
+
+    public CacheKey(String statementId, String sql, Object[] parameterValues) {
+        this.statementId = statementId;
+        this.sql = sql;
+        this.parameterValues = parameterValues;
+        this.hashCode = 31 * (31 * statementId.hashCode() + sql.hashCode()) + Arrays.deepHashCode(parameterValues);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CacheKey)) {
+            return false;
+        }
+        CacheKey that = (CacheKey) o;
+        return hashCode == that.hashCode && statementId.equals(that.statementId) && sql.equals(that.sql)
+                && Arrays.deepEquals(parameterValues, that.parameterValues);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return statementId + Arrays.deepToString(parameterValues);
+    }
+}
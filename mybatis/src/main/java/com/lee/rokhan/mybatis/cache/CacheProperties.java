@@ -0,0 +1,37 @@
+package com.lee.rokhan.mybatis.cache;
+
+import lombok.Data;
+
+/**
+ * 缓存的配置
+ * @author lichujun
+ * @date 2019/8/8 10:10
+ */
+@Data
+public class CacheProperties {
+
+    /**
+     * 淘汰策略
+     */
+    private EvictionPolicy eviction = EvictionPolicy.TINY_LFU;
+
+    /**
+     * 缓存的最大估算字节数
+     */
+    private long maxBytes = 64 * 1024 * 1024;
+
+    /**
+     * 缓存的最大数量，小于等于0表示只按字节数限制
+     */
+    private int maxEntries;
+
+    /**
+     * 写入后的存活时间，小于等于0表示不过期，单位：毫秒
+     */
+    private long timeToLive;
+
+    /**
+     * 估算字节数达到该值并且可以序列化的查询结果序列化后存放到堆外内存，减少GC的压力，小于等于0表示不使用堆外内存
+     */
+    private long offHeapThreshold;
+}
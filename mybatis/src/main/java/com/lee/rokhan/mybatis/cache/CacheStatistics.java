@@ -0,0 +1,66 @@
+package com.lee.rokhan.mybatis.cache;
+
+import lombok.Data;
+
+/**
+ * 缓存统计信息的快照，计数从缓存创建开始累计
+ * @author lichujun
+ * @date 2019/8/8 10:15
+ */
+@Data
+public class CacheStatistics {
+
+    /**
+     * 缓存的标识
+     */
+    private String cacheId;
+
+    /**
+     * 命中次数
+     */
+    private long hitCount;
+
+    /**
+     * 未命中次数
+     */
+    private long missCount;
+
+    /**
+     * 添加次数
+     */
+    private long putCount;
+
+    /**
+     * 因为超出容量被淘汰的数量
+     */
+    private long evictionCount;
+
+    /**
+     * 因为过期被删除的数量
+     */
+    private long expirationCount;
+
+    /**
+     * 当前的缓存数量
+     */
+    private int size;
+
+    /**
+     * 当前的估算字节数
+     */
+    private long weightedSize;
+
+    /**
+     * 当前存放在堆外内存的字节数
+     */
+    private long offHeapBytes;
+
+    /**
+     * 命中率
+     * @return 命中次数占查询次数的比例，没有查询时为0
+     */
+    public double getHitRate() {
+        long requestCount = hitCount + missCount;
+        return requestCount == 0 ? 0 : (double) hitCount / requestCount;
+    }
+}
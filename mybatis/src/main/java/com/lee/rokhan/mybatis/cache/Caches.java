@@ -0,0 +1,28 @@
+package com.lee.rokhan.mybatis.cache;
+
+import com.lee.rokhan.mybatis.cache.impl.LruCache;
+import com.lee.rokhan.mybatis.cache.impl.TinyLfuCache;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+/**
+ * 创建缓存
+ * @author lichujun
+ * @date 2019/8/8 15:00
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class Caches {
+
+    /**
+     * 按配置创建缓存
+     * @param id 缓存的标识，即命名空间
+     * @param properties 缓存的配置
+     * @return 缓存
+     */
+    public static Cache newCache(String id, CacheProperties properties) {
+        if (properties.getEviction() == EvictionPolicy.LRU) {
+            return new LruCache(id, properties);
+        }
+        return new TinyLfuCache(id, properties);
+    }
+}
@@ -0,0 +1,11 @@
+package com.lee.rokhan.mybatis.cache;
+
+/**
+ * 缓存的淘汰策略
+ * @author lichujun
+ * @date 2019/8/8 10:05
+ */
+public enum EvictionPolicy {
+    // 最近最少使用；W-TinyLFU，按访问频率决定新数据能否进入缓存，不会被一次性的大范围查询冲掉热点数据
+    LRU, TINY_LFU, ;
+}
@@ -0,0 +1,92 @@
+package com.lee.rokhan.mybatis.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 会话在事务中使用的缓存
+ * 查询结果和清空操作先暂存，提交事务时才写入共享的缓存，避免其他会话读到未提交的数据；
+ * 会话修改过该命名空间后，事务中的查询不再读取共享的缓存，保证读到自己写入的数据
+ * @author lichujun
+ * @date 2019/8/8 10:30
+ */
+public class TransactionalCache {
+
+    private final Cache delegate;
+
+    /**
+     * 提交时是否清空共享的缓存
+     */
+    private boolean clearOnCommit;
+
+    /**
+     * 提交时写入共享缓存的查询结果
+     */
+    private final Map<Object, Object> entriesToAdd = new HashMap<>();
+
+    public TransactionalCache(Cache delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * 获取缓存
+     * @param key 缓存的key
+     * @return 缓存的值，不存在或者事务中修改过该命名空间时返回null
+     */
+    public Object getObject(Object key) {
+        if (clearOnCommit) {
+            return null;
+        }
+        return delegate.getObject(key);
+    }
+
+    /**
+     * 暂存查询结果
+     * @param key 缓存的key
+     * @param value 查询结果
+     */
+    public void putObject(Object key, Object value) {
+        entriesToAdd.put(key, value);
+    }
+
+    /**
+     * 标记提交时清空共享的缓存，丢弃暂存的查询结果
+     */
+    public void clear() {
+        clearOnCommit = true;
+        entriesToAdd.clear();
+    }
+
+    /**
+     * 是否有需要提交的操作
+     * @return 是否有暂存的清空操作或者查询结果
+     */
+    public boolean isDirty() {
+        return clearOnCommit || !entriesToAdd.isEmpty();
+    }
+
+    /**
+     * 提交暂存的操作
+     */
+    public void commit() {
+        if (clearOnCommit) {
+            delegate.clear();
+        }
+        for (Map.Entry<Object, Object> entry : entriesToAdd.entrySet()) {
+            delegate.putObject(entry.getKey(), entry.getValue());
+        }
+        reset();
+    }
+
+    /**
+     * 丢弃暂存的操作
+     */
+    public void rollback() {
+        reset();
+    }
+
+    private void reset() {
+        clearOnCommit = false;
+        entriesToAdd.clear();
+    }
+}
@@ -0,0 +1,382 @@
+package com.lee.rokhan.mybatis.cache.impl;
+
+import com.lee.rokhan.mybatis.cache.Cache;
+import com.lee.rokhan.mybatis.cache.CacheProperties;
+import com.lee.rokhan.mybatis.cache.CacheStatistics;
+import lombok.Getter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按估算字节数和数量限制大小的缓存，负责过期、堆外存储和统计，淘汰顺序由子类的策略决定
+ * 缓存数据和淘汰策略的链表由对象锁保护；估算大小、序列化和反序列化在锁外进行
+ * @author lichujun
+ * @date 2019/8/8 11:30
+ */
+public abstract class AbstractBoundedCache implements Cache {
+
+    @Getter
+    private final String id;
+
+    protected final long maxBytes;
+
+    protected final int maxEntries;
+
+    private final long timeToLiveNanos;
+
+    private final long offHeapThreshold;
+
+    private final Map<Object, Node> data = new HashMap<>();
+
+    /**
+     * 当前的估算字节数，只在持有锁时修改
+     */
+    private long weightedSize;
+
+    private long offHeapBytes;
+
+    private final LongAdder hitCount = new LongAdder();
+
+    private final LongAdder missCount = new LongAdder();
+
+    private final LongAdder putCount = new LongAdder();
+
+    private final LongAdder evictionCount = new LongAdder();
+
+    private final LongAdder expirationCount = new LongAdder();
+
+    protected AbstractBoundedCache(String id, CacheProperties properties) {
+        if (properties.getMaxBytes() <= 0) {
+            throw new RuntimeException("缓存" + id + "的最大字节数必须大于0");
+        }
+        this.id = id;
+        this.maxBytes = properties.getMaxBytes();
+        this.maxEntries = properties.getMaxEntries();
+        this.timeToLiveNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, properties.getTimeToLive()));
+        this.offHeapThreshold = properties.getOffHeapThreshold();
+    }
+
+    @Override
+    public Object getObject(Object key) {
+        Node node;
+        synchronized (this) {
+            node = data.get(key);
+            if (node != null && node.isExpired(System.nanoTime())) {
+                removeNode(node);
+                expirationCount.increment();
+                node = null;
+            }
+            if (node == null) {
+                missCount.increment();
+                onMiss(key);
+                return null;
+            }
+            onAccess(node);
+        }
+        hitCount.increment();
+        return node.offHeap ? deserialize((ByteBuffer) node.value) : node.value;
+    }
+
+    @Override
+    public void putObject(Object key, Object value) {
+        if (value == null) {
+            return;
+        }
+        long weight = ObjectSizes.estimate(value);
+        boolean offHeap = false;
+        Object stored = value;
+        if (offHeapThreshold > 0 && weight >= offHeapThreshold && value instanceof Serializable) {
+            ByteBuffer buffer = serialize(value);
+            if (buffer != null) {
+                stored = buffer;
+                weight = buffer.capacity();
+                offHeap = true;
+            }
+        }
+        synchronized (this) {
+            Node old = data.get(key);
+            if (old != null) {
+                removeNode(old);
+            }
+            if (weight > maxBytes) {
+                // 单个查询结果超过整个缓存的容量，不缓存
+                return;
+            }
+            long expireAt = timeToLiveNanos > 0 ? System.nanoTime() + timeToLiveNanos : 0;
+            Node node = new Node(key, stored, offHeap, weight, expireAt);
+            data.put(key, node);
+            weightedSize += weight;
+            if (offHeap) {
+                offHeapBytes += weight;
+            }
+            onInsert(node);
+            evictIfNeeded();
+        }
+        putCount.increment();
+    }
+
+    @Override
+    public synchronized void removeObject(Object key) {
+        Node node = data.get(key);
+        if (node != null) {
+            removeNode(node);
+        }
+    }
+
+    @Override
+    public synchronized void clear() {
+        data.clear();
+        weightedSize = 0;
+        offHeapBytes = 0;
+        onClear();
+    }
+
+    @Override
+    public synchronized int getSize() {
+        return data.size();
+    }
+
+    @Override
+    public CacheStatistics getStatistics() {
+        CacheStatistics statistics = new CacheStatistics();
+        statistics.setCacheId(id);
+        statistics.setHitCount(hitCount.sum());
+        statistics.setMissCount(missCount.sum());
+        statistics.setPutCount(putCount.sum());
+        statistics.setEvictionCount(evictionCount.sum());
+        statistics.setExpirationCount(expirationCount.sum());
+        synchronized (this) {
+            statistics.setSize(data.size());
+            statistics.setWeightedSize(weightedSize);
+            statistics.setOffHeapBytes(offHeapBytes);
+        }
+        return statistics;
+    }
+
+    /**
+     * 超出容量时按策略淘汰，持有锁时调用
+     */
+    private void evictIfNeeded() {
+        while (weightedSize > maxBytes || (maxEntries > 0 && data.size() > maxEntries)) {
+            Node victim = selectVictim();
+            if (victim == null) {
+                return;
+            }
+            removeNode(victim);
+            evictionCount.increment();
+        }
+    }
+
+    private void removeNode(Node node) {
+        data.remove(node.key);
+        weightedSize -= node.weight;
+        if (node.offHeap) {
+            offHeapBytes -= node.weight;
+        }
+        onRemove(node);
+    }
+
+    /**
+     * 序列化到堆外内存，堆外内存在ByteBuffer被回收时释放
+     * @return 序列化失败时返回null，仍然存放在堆内
+     */
+    private ByteBuffer serialize(Object value) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(value);
+        } catch (IOException e) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.size());
+        buffer.put(bytes.toByteArray());
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * 从堆外内存反序列化，每次返回新的副本
+     */
+    private Object deserialize(ByteBuffer buffer) {
+        try (ObjectInputStream input = new ObjectInputStream(new ByteBufferInputStream(buffer.duplicate()))) {
+            return input.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new RuntimeException("缓存" + id + "反序列化查询结果发生异常", e);
+        }
+    }
+
+    /**
+     * 未命中，持有锁时调用
+     * @param key 缓存的key
+     */
+    protected void onMiss(Object key) {
+    }
+
+    /**
+     * 命中，持有锁时调用
+     * @param node 缓存节点
+     */
+    protected abstract void onAccess(Node node);
+
+    /**
+     * 新增，持有锁时调用
+     * @param node 缓存节点
+     */
+    protected abstract void onInsert(Node node);
+
+    /**
+     * 删除、过期或者淘汰，持有锁时调用
+     * @param node 缓存节点
+     */
+    protected abstract void onRemove(Node node);
+
+    /**
+     * 清空，持有锁时调用
+     */
+    protected abstract void onClear();
+
+    /**
+     * 选择淘汰的节点，持有锁时调用
+     * @return 淘汰的节点，没有可淘汰的返回null
+     */
+    protected abstract Node selectVictim();
+
+    /**
+     * 缓存节点，同时是淘汰策略双向链表的节点
+     */
+    protected static final class Node {
+
+        final Object key;
+
+        final Object value;
+
+        final boolean offHeap;
+
+        final long weight;
+
+        /**
+         * 过期时间，0表示不过期
+         */
+        final long expireAt;
+
+        Node prev;
+
+        Node next;
+
+        /**
+         * 所在的队列，由淘汰策略使用
+         */
+        int queue;
+
+        Node(Object key, Object value, boolean offHeap, long weight, long expireAt) {
+            this.key = key;
+            this.value = value;
+            this.offHeap = offHeap;
+            this.weight = weight;
+            this.expireAt = expireAt;
+        }
+
+        boolean isExpired(long now) {
+            return expireAt != 0 && now - expireAt >= 0;
+        }
+    }
+
+    /**
+     * 带哨兵的双向链表，头部最旧，尾部最新
+     */
+    protected static final class LinkedDeque {
+
+        private final Node head = new Node(null, null, false, 0, 0);
+
+        /**
+         * 链表中节点的估算字节数
+         */
+        long weight;
+
+        /**
+         * 链表中节点的数量
+         */
+        int size;
+
+        LinkedDeque() {
+            head.prev = head;
+            head.next = head;
+        }
+
+        void addLast(Node node) {
+            node.prev = head.prev;
+            node.next = head;
+            head.prev.next = node;
+            head.prev = node;
+            weight += node.weight;
+            size++;
+        }
+
+        void remove(Node node) {
+            node.prev.next = node.next;
+            node.next.prev = node.prev;
+            node.prev = null;
+            node.next = null;
+            weight -= node.weight;
+            size--;
+        }
+
+        void moveToLast(Node node) {
+            remove(node);
+            addLast(node);
+        }
+
+        Node peekFirst() {
+            return head.next == head ? null : head.next;
+        }
+
+        Node peekLast() {
+            return head.prev == head ? null : head.prev;
+        }
+
+        void clear() {
+            head.prev = head;
+            head.next = head;
+            weight = 0;
+            size = 0;
+        }
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.lee.rokhan.mybatis.cache.impl;
+
+/**
+ * 记录访问频率的Count-Min Sketch，每个计数器占4位，最大为15
+ * 每个key对应4个计数器，频率取其中的最小值；累计的次数达到预计数量的10倍时所有计数器减半，让旧的热点逐渐冷却
+ * 非线程安全，由缓存的锁保护
+ * @author lichujun
+ * @date 2019/8/8 14:10
+ */
+final class FrequencySketch {
+
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private static final int MAX_COUNT = 15;
+
+    /**
+     * 每个long存放16个计数器
+     */
+    private final long[] table;
+
+    private final int counterMask;
+
+    private final int sampleSize;
+
+    private int size;
+
+    /**
+     * @param expectedEntries 预计缓存的数量
+     */
+    FrequencySketch(int expectedEntries) {
+        int entries = Math.max(16, Math.min(expectedEntries, 1 << 20));
+        int length = Integer.highestOneBit(entries - 1) << 1;
+        this.table = new long[length];
+        this.counterMask = (length << 4) - 1;
+        this.sampleSize = 10 * entries;
+    }
+
+    /**
+     * 增加访问次数
+     * @param key 缓存的key
+     */
+    void increment(Object key) {
+        int hash = spread(key.hashCode());
+        boolean added = false;
+        for (int i = 0; i < SEEDS.length; i++) {
+            int position = indexOf(hash, i);
+            int word = position >>> 4;
+            int shift = (position & 15) << 2;
+            if (((table[word] >>> shift) & 0xF) < MAX_COUNT) {
+                table[word] += 1L << shift;
+                added = true;
+            }
+        }
+        if (added && ++size >= sampleSize) {
+            reset();
+        }
+    }
+
+    /**
+     * 估算访问次数
+     * @param key 缓存的key
+     * @return 访问次数，最大为15
+     */
+    int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int frequency = MAX_COUNT;
+        for (int i = 0; i < SEEDS.length; i++) {
+            int position = indexOf(hash, i);
+            int count = (int) ((table[position >>> 4] >>> ((position & 15) << 2)) & 0xF);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        size >>>= 1;
+    }
+
+    private int indexOf(int hash, int i) {
+        long h = (hash + SEEDS[i]) * SEEDS[i];
+        h += h >>> 32;
+        return (int) h & counterMask;
+    }
+
+    private static int spread(int hash) {
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        return (hash >>> 16) ^ hash;
+    }
+}
@@ -0,0 +1,42 @@
+package com.lee.rokhan.mybatis.cache.impl;
+
+import com.lee.rokhan.mybatis.cache.CacheProperties;
+
+/**
+ * 按最近最少使用淘汰的缓存
+ * @author lichujun
+ * @date 2019/8/8 14:00
+ */
+public class LruCache extends AbstractBoundedCache {
+
+    private final LinkedDeque deque = new LinkedDeque();
+
+    public LruCache(String id, CacheProperties properties) {
+        super(id, properties);
+    }
+
+    @Override
+    protected void onAccess(Node node) {
+        deque.moveToLast(node);
+    }
+
+    @Override
+    protected void onInsert(Node node) {
+        deque.addLast(node);
+    }
+
+    @Override
+    protected void onRemove(Node node) {
+        deque.remove(node);
+    }
+
+    @Override
+    protected void onClear() {
+        deque.clear();
+    }
+
+    @Override
+    protected Node selectVictim() {
+        return deque.peekFirst();
+    }
+}
@@ -0,0 +1,150 @@
+package com.lee.rokhan.mybatis.cache.impl;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.temporal.Temporal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 估算查询结果占用的堆内存字节数，用于按字节数限制缓存大小
+ * 只做粗略估算：集合只抽样前几个元素按平均值推算，对象只展开有限的层数
+ * @author lichujun
+ * @date 2019/8/8 11:00
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+final class ObjectSizes {
+
+    private static final int OBJECT_HEADER = 16;
+
+    private static final int REFERENCE = 8;
+
+    /**
+     * 集合抽样的元素数量
+     */
+    private static final int SAMPLE_SIZE = 8;
+
+    /**
+     * 对象展开的最大层数，超过的按一个对象头计算
+     */
+    private static final int MAX_DEPTH = 4;
+
+    /**
+     * 类的实例字段，只读取一次
+     */
+    private static final ClassValue<Field[]> FIELD_CACHE = new ClassValue<Field[]>() {
+        @Override
+        protected Field[] computeValue(Class<?> type) {
+            List<Field> fields = new ArrayList<>();
+            for (Class<?> clazz = type; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+                for (Field field : clazz.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers())) {
+                        continue;
+                    }
+                    try {
+                        field.setAccessible(true);
+                        fields.add(field);
+                    } catch (RuntimeException e) {
+                        // 无法访问的字段按一个引用计算
+                    }
+                }
+            }
+            return fields.toArray(new Field[0]);
+        }
+    };
+
+    /**
+     * 估算对象占用的字节数
+     * @param value 对象
+     * @return 估算的字节数
+     */
+    static long estimate(Object value) {
+        return estimate(value, 0);
+    }
+
+    private static long estimate(Object value, int depth) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof String) {
+            return 40 + 2L * ((String) value).length();
+        }
+        if (value instanceof Integer || value instanceof Long || value instanceof Double || value instanceof Float
+                || value instanceof Short || value instanceof Byte || value instanceof Boolean
+                || value instanceof Character) {
+            return OBJECT_HEADER;
+        }
+        if (value instanceof BigDecimal || value instanceof BigInteger) {
+            return 48;
+        }
+        if (value instanceof Date || value instanceof Temporal) {
+            return 32;
+        }
+        if (value instanceof byte[]) {
+            return OBJECT_HEADER + ((byte[]) value).length;
+        }
+        if (depth >= MAX_DEPTH) {
+            return OBJECT_HEADER;
+        }
+        if (value instanceof Collection) {
+            Collection<?> collection = (Collection<?>) value;
+            return OBJECT_HEADER + 24 + (long) REFERENCE * collection.size()
+                    + sampleSize(collection.iterator(), collection.size(), depth);
+        }
+        if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            // HashMap的数组加上每个Entry的对象头、hash和三个引用
+            long size = OBJECT_HEADER + 32 + (long) (REFERENCE + OBJECT_HEADER + 4 + 3 * REFERENCE) * map.size();
+            return size + sampleSize(map.keySet().iterator(), map.size(), depth)
+                    + sampleSize(map.values().iterator(), map.size(), depth);
+        }
+        if (value instanceof Object[]) {
+            Object[] array = (Object[]) value;
+            long size = OBJECT_HEADER + (long) REFERENCE * array.length;
+            for (Object element : array) {
+                size += estimate(element, depth + 1);
+            }
+            return size;
+        }
+        if (value.getClass().isArray()) {
+            return OBJECT_HEADER + 8L * Array.getLength(value);
+        }
+        long size = OBJECT_HEADER;
+        for (Field field : FIELD_CACHE.get(value.getClass())) {
+            if (field.getType().isPrimitive()) {
+                size += REFERENCE;
+                continue;
+            }
+            size += REFERENCE;
+            try {
+                size += estimate(field.get(value), depth + 1);
+            } catch (IllegalAccessException e) {
+                // 忽略无法读取的字段
+            }
+        }
+        return size;
+    }
+
+    /**
+     * 抽样前几个元素，按平均值推算所有元素的大小
+     */
+    private static long sampleSize(Iterator<?> iterator, int count, int depth) {
+        long sampled = 0;
+        int n = 0;
+        while (n < SAMPLE_SIZE && iterator.hasNext()) {
+            sampled += estimate(iterator.next(), depth + 1);
+            n++;
+        }
+        return n == 0 ? 0 : sampled * count / n;
+    }
+}
@@ -0,0 +1,128 @@
+package com.lee.rokhan.mybatis.cache.impl;
+
+import com.lee.rokhan.mybatis.cache.CacheProperties;
+
+/**
+ * 按W-TinyLFU淘汰的缓存
+ * 新数据先进入占容量（字节数和数量）1%的窗口（LRU），挤出窗口后进入主区的试用队列；主区分为试用队列和占80%的保护队列（SLRU），
+ * 试用队列中再次命中的进入保护队列。超出容量时比较试用队列最新的候选者和最旧的淘汰者的访问频率，频率高的留下，
+ * 因此一次性的大范围查询不会把热点数据冲掉
+ * @author lichujun
+ * @date 2019/8/8 14:30
+ */
+public class TinyLfuCache extends AbstractBoundedCache {
+
+    private static final int WINDOW = 0;
+
+    private static final int PROBATION = 1;
+
+    private static final int PROTECTED = 2;
+
+    private final LinkedDeque window = new LinkedDeque();
+
+    private final LinkedDeque probation = new LinkedDeque();
+
+    private final LinkedDeque protectedDeque = new LinkedDeque();
+
+    private final long windowMaxBytes;
+
+    private final long protectedMaxBytes;
+
+    /**
+     * 限制缓存数量时窗口和保护队列的最大数量，不限制时为Integer.MAX_VALUE
+     */
+    private final int windowMaxEntries;
+
+    private final int protectedMaxEntries;
+
+    private final FrequencySketch sketch;
+
+    public TinyLfuCache(String id, CacheProperties properties) {
+        super(id, properties);
+        this.windowMaxBytes = Math.max(1, maxBytes / 100);
+        this.protectedMaxBytes = (long) ((maxBytes - windowMaxBytes) * 0.8);
+        this.windowMaxEntries = maxEntries > 0 ? Math.max(1, maxEntries / 100) : Integer.MAX_VALUE;
+        this.protectedMaxEntries = maxEntries > 0 ? (int) ((maxEntries - windowMaxEntries) * 0.8) : Integer.MAX_VALUE;
+        this.sketch = new FrequencySketch(properties.getMaxEntries() > 0 ? properties.getMaxEntries() : 4096);
+    }
+
+    @Override
+    protected void onMiss(Object key) {
+        sketch.increment(key);
+    }
+
+    @Override
+    protected void onAccess(Node node) {
+        sketch.increment(node.key);
+        switch (node.queue) {
+            case WINDOW:
+                window.moveToLast(node);
+                break;
+            case PROBATION:
+                probation.remove(node);
+                node.queue = PROTECTED;
+                protectedDeque.addLast(node);
+                // 保护队列超出容量时最旧的降级回试用队列
+                while (protectedDeque.weight > protectedMaxBytes || protectedDeque.size > protectedMaxEntries) {
+                    Node demoted = protectedDeque.peekFirst();
+                    protectedDeque.remove(demoted);
+                    demoted.queue = PROBATION;
+                    probation.addLast(demoted);
+                }
+                break;
+            default:
+                protectedDeque.moveToLast(node);
+                break;
+        }
+    }
+
+    @Override
+    protected void onInsert(Node node) {
+        node.queue = WINDOW;
+        window.addLast(node);
+        // 挤出窗口的成为试用队列的候选者
+        while (window.weight > windowMaxBytes || window.size > windowMaxEntries) {
+            Node candidate = window.peekFirst();
+            window.remove(candidate);
+            candidate.queue = PROBATION;
+            probation.addLast(candidate);
+        }
+    }
+
+    @Override
+    protected void onRemove(Node node) {
+        switch (node.queue) {
+            case WINDOW:
+                window.remove(node);
+                break;
+            case PROBATION:
+                probation.remove(node);
+                break;
+            default:
+                protectedDeque.remove(node);
+                break;
+        }
+    }
+
+    @Override
+    protected void onClear() {
+        window.clear();
+        probation.clear();
+        protectedDeque.clear();
+    }
+
+    @Override
+    protected Node selectVictim() {
+        Node victim = probation.peekFirst();
+        Node candidate = probation.peekLast();
+        if (victim == null) {
+            victim = window.peekFirst();
+            return victim != null ? victim : protectedDeque.peekFirst();
+        }
+        if (candidate == victim) {
+            return victim;
+        }
+        // 候选者的访问频率更高才能留下，相同时淘汰候选者
+        return sketch.frequency(candidate.key) > sketch.frequency(victim.key) ? victim : candidate;
+    }
+}
@@ -0,0 +1,50 @@
+package com.lee.rokhan.mybatis.cursor;
+
+import java.io.Closeable;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 游标，遍历时才从数据库读取和转换下一行，适合一次读取大量数据
+ * 只能遍历一次，遍历完或者关闭后释放结果集和PreparedStatement
+ * @param <T> 每一行对应的Java类型
+ * @author lichujun
+ * @date 2019/8/7 16:00
+ */
+public interface Cursor<T> extends Closeable, Iterable<T> {
+
+    /**
+     * 是否还未关闭
+     * @return 是否打开
+     */
+    boolean isOpen();
+
+    /**
+     * 是否已经读取完所有行
+     * @return 是否读取完
+     */
+    boolean isConsumed();
+
+    /**
+     * 获取已经读取的行数
+     * @return 已经读取的行数
+     */
+    int getCurrentIndex();
+
+    /**
+     * 关闭游标，不抛出受检异常
+     */
+    @Override
+    void close();
+
+    /**
+     * 将游标转换为Stream，关闭Stream时关闭游标
+     * @return Stream
+     */
+    default Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(), Spliterator.ORDERED), false)
+                .onClose(this::close);
+    }
+}
@@ -0,0 +1,151 @@
+package com.lee.rokhan.mybatis.cursor.impl;
+
+import com.lee.rokhan.mybatis.cursor.Cursor;
+import com.lee.rokhan.mybatis.executor.resultset.RowMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * 默认的游标，持有只向前、只读的结果集，遍历时按行转换
+ * 非线程安全，可以在不同的线程中依次使用
+ * @param <T> 每一行对应的Java类型
+ * @author lichujun
+ * @date 2019/8/7 16:10
+ */
+@Slf4j
+public class DefaultCursor<T> implements Cursor<T> {
+
+    private final String statementId;
+
+    private final PreparedStatement preparedStatement;
+
+    private final ResultSet resultSet;
+
+    private final RowMapper<T> rowMapper;
+
+    /**
+     * 游标关闭时的回调，例如执行器不再跟踪该游标、关闭游标独占的会话
+     */
+    private final Runnable closeHandler;
+
+    private boolean iteratorRetrieved;
+
+    private boolean consumed;
+
+    private boolean closed;
+
+    private int currentIndex;
+
+    public DefaultCursor(String statementId, PreparedStatement preparedStatement, ResultSet resultSet,
+                         RowMapper<T> rowMapper, Runnable closeHandler) {
+        this.statementId = statementId;
+        this.preparedStatement = preparedStatement;
+        this.resultSet = resultSet;
+        this.rowMapper = rowMapper;
+        this.closeHandler = closeHandler;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closed;
+    }
+
+    @Override
+    public boolean isConsumed() {
+        return consumed;
+    }
+
+    @Override
+    public int getCurrentIndex() {
+        return currentIndex;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        if (iteratorRetrieved) {
+            throw new RuntimeException("游标只能遍历一次");
+        }
+        if (closed) {
+            throw new RuntimeException("游标已经关闭");
+        }
+        iteratorRetrieved = true;
+        return new CursorIterator();
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            // 关闭PreparedStatement时会关闭结果集，开启缓存时归还给连接的缓存
+            resultSet.close();
+            preparedStatement.close();
+        } catch (SQLException e) {
+            log.warn("关闭{}的游标发生异常", statementId, e);
+        } finally {
+            if (closeHandler != null) {
+                closeHandler.run();
+            }
+        }
+    }
+
+    /**
+     * 读取下一行
+     * @return 是否读取到
+     */
+    private boolean fetchNext() {
+        if (closed) {
+            return false;
+        }
+        try {
+            if (resultSet.next()) {
+                return true;
+            }
+        } catch (SQLException e) {
+            close();
+            throw new RuntimeException("读取" + statementId + "的游标发生异常", e);
+        }
+        consumed = true;
+        close();
+        return false;
+    }
+
+    private final class CursorIterator implements Iterator<T> {
+
+        /**
+         * 结果集是否已经移动到还未返回的行
+         */
+        private boolean fetched;
+
+        @Override
+        public boolean hasNext() {
+            if (!fetched) {
+                fetched = fetchNext();
+            }
+            return fetched;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            fetched = false;
+            try {
+                T row = rowMapper.mapRow(resultSet);
+                currentIndex++;
+                return row;
+            } catch (SQLException e) {
+                close();
+                throw new RuntimeException("转换" + statementId + "的游标发生异常", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.lee.rokhan.mybatis.executor;
+
+import lombok.Getter;
+
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * 批量执行失败
+ * 包含上次刷新之后已经执行成功的批次，以及失败的批次中驱动返回的部分执行结果，调用方可以据此决定重试哪些参数
+ * @author lichujun
+ * @date 2019/8/12 19:20
+ */
+@Getter
+public class BatchExecutorException extends SQLException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 上次刷新之后已经执行成功的批次
+     */
+    private final List<BatchResult> successfulBatchResults;
+
+    /**
+     * 失败的批次，updateCounts为驱动返回的部分执行结果，可能比参数对象少
+     */
+    private final BatchResult batchResult;
+
+    public BatchExecutorException(String message, BatchUpdateException cause,
+                                  List<BatchResult> successfulBatchResults, BatchResult batchResult) {
+        super(message, cause.getSQLState(), cause.getErrorCode(), cause);
+        this.successfulBatchResults = successfulBatchResults;
+        this.batchResult = batchResult;
+    }
+
+    /**
+     * 获取驱动抛出的批量执行异常
+     * @return 批量执行异常
+     */
+    public BatchUpdateException getBatchUpdateException() {
+        return (BatchUpdateException) getCause();
+    }
+
+    /**
+     * 获取失败的批次中驱动返回的每个参数对象影响的行数，失败的为Statement.EXECUTE_FAILED
+     * @return 影响的行数，驱动遇到错误就停止时只包含之前的参数对象
+     */
+    public int[] getUpdateCounts() {
+        return batchResult.getUpdateCounts();
+    }
+}
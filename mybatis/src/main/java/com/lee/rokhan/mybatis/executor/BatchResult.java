@@ -0,0 +1,38 @@
+package com.lee.rokhan.mybatis.executor;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * 一次JDBC批量执行的结果
+ * @author lichujun
+ * @date 2019/8/6 16:05
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class BatchResult {
+
+    /**
+     * 命名空间.id
+     */
+    private final String statementId;
+
+    /**
+     * 执行的SQL
+     */
+    private final String sql;
+
+    /**
+     * 按执行顺序排列的参数对象，开启了useGeneratedKeys时已设置生成的主键
+     */
+    private final List<Object> parameters;
+
+    /**
+     * 每个参数对象影响的行数，与parameters一一对应
+     */
+    private final int[] updateCounts;
+}
@@ -1,19 +1,69 @@
 package com.lee.rokhan.mybatis.executor;
 
-import com.lee.rokhan.mybatis.mapping.Configuration;
-import com.lee.rokhan.mybatis.pool.DataSourcePool;
+import com.lee.rokhan.mybatis.cursor.Cursor;
+import com.lee.rokhan.mybatis.mapping.Statement;
 
-import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.List;
 
 /**
+ * SQL执行器，非线程安全，一个执行器只属于一个会话
  * @author lichujun
  * @date 2019/7/31 14:33
  */
-public class Executor {
+public interface Executor {
 
-    private final DataSource dataSource;
+    /**
+     * 执行查询
+     * @param statement mapper数据信息
+     * @param parameter 参数对象
+     * @param <E> 返回类型
+     * @return 查询结果
+     * @throws SQLException 执行SQL发生异常
+     */
+    <E> List<E> query(Statement statement, Object parameter) throws SQLException;
 
-    public Executor(Configuration configuration) {
-        dataSource = new DataSourcePool(configuration.getEnvironment());
-    }
+    /**
+     * 执行查询，返回按行读取的游标，会话关闭时关闭未关闭的游标
+     * @param statement mapper数据信息
+     * @param parameter 参数对象
+     * @param <E> 返回类型
+     * @return 游标
+     * @throws SQLException 执行SQL发生异常
+     */
+    <E> Cursor<E> queryCursor(Statement statement, Object parameter) throws SQLException;
+
+    /**
+     * 执行新增、修改或者删除
+     * @param statement mapper数据信息
+     * @param parameter 参数对象
+     * @return 影响的行数，批量执行时在刷新前无法得知
+     * @throws SQLException 执行SQL发生异常
+     */
+    int update(Statement statement, Object parameter) throws SQLException;
+
+    /**
+     * 执行还未执行的批量SQL
+     * @return 上次刷新之后的批量执行结果
+     * @throws SQLException 执行SQL发生异常
+     */
+    List<BatchResult> flushStatements() throws SQLException;
+
+    /**
+     * 刷新批量SQL后提交事务，自动提交时只刷新
+     * @throws SQLException 提交发生异常
+     */
+    void commit() throws SQLException;
+
+    /**
+     * 丢弃还未执行的批量SQL后回滚事务
+     * @throws SQLException 回滚发生异常
+     */
+    void rollback() throws SQLException;
+
+    /**
+     * 归还连接，未提交的事务由连接池回滚；自动提交时先刷新批量SQL
+     * @throws SQLException 归还连接发生异常
+     */
+    void close() throws SQLException;
 }
@@ -0,0 +1,492 @@
+package com.lee.rokhan.mybatis.executor.impl;
+
+import com.lee.rokhan.mybatis.cursor.Cursor;
+import com.lee.rokhan.mybatis.cursor.impl.DefaultCursor;
+import com.lee.rokhan.mybatis.executor.BatchResult;
+import com.lee.rokhan.mybatis.executor.Executor;
+import com.lee.rokhan.mybatis.executor.resultset.ResultSetHandler;
+import com.lee.rokhan.mybatis.executor.resultset.impl.DefaultResultSetHandler;
+import com.lee.rokhan.mybatis.mapping.BoundSql;
+import com.lee.rokhan.mybatis.mapping.Configuration;
+import com.lee.rokhan.mybatis.mapping.Statement;
+import com.lee.rokhan.mybatis.metrics.SlowQuery;
+import com.lee.rokhan.mybatis.metrics.SqlMetrics;
+import com.lee.rokhan.mybatis.routing.DataSourceRouter;
+import com.lee.rokhan.mybatis.routing.Replica;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 执行器的公共逻辑
+ * 第一次执行SQL时从连接池获取连接，会话关闭时归还；
+ * 执行完成后关闭PreparedStatement，开启了PreparedStatement缓存的连接池会将其放回物理连接的缓存，下次执行相同的SQL时复用；
+ * 配置了从库时查询按Statement的路由使用从库的连接，从库的连接异常时摘除计数并改用主库重新查询；
+ * 开启执行指标时按Statement记录执行耗时、获取连接的等待时间、行数和失败次数，超过阈值的记录为慢SQL
+ * @author lichujun
+ * @date 2019/8/6 16:10
+ */
+public abstract class BaseExecutor implements Executor {
+
+    private static final ResultSetHandler DEFAULT_RESULT_SET_HANDLER = new DefaultResultSetHandler();
+
+    /**
+     * 游标查询未指定fetchSize时每次从数据库读取的行数，避免驱动一次读取所有行
+     */
+    private static final int DEFAULT_CURSOR_FETCH_SIZE = 1000;
+
+    protected final Configuration configuration;
+
+    private final DataSource dataSource;
+
+    /**
+     * 从库的路由，没有从库时为null
+     */
+    private final DataSourceRouter router;
+
+    private final boolean autoCommit;
+
+    private final ResultSetHandler resultSetHandler = DEFAULT_RESULT_SET_HANDLER;
+
+    /**
+     * 会话持有的主库连接
+     */
+    private Connection connection;
+
+    /**
+     * 会话持有的从库连接和从库
+     */
+    private Connection replicaConnection;
+
+    private Replica replica;
+
+    /**
+     * 是否执行过新增、修改或者删除，之后的查询走主库，避免读不到自己刚写入的数据
+     */
+    private boolean wrotePrimary;
+
+    /**
+     * 当前SQL获取连接的等待时间，单位：纳秒
+     */
+    private long poolWaitNanos;
+
+    /**
+     * 未关闭的游标
+     */
+    private final List<Cursor<?>> openCursors = new ArrayList<>(1);
+
+    private boolean closed;
+
+    protected BaseExecutor(Configuration configuration, DataSource dataSource, DataSourceRouter router,
+                           boolean autoCommit) {
+        this.configuration = configuration;
+        this.dataSource = dataSource;
+        this.router = router;
+        this.autoCommit = autoCommit;
+    }
+
+    @Override
+    public <E> List<E> query(Statement statement, Object parameter) throws SQLException {
+        checkClosed();
+        if (!configuration.isMetricsEnabled()) {
+            return doQuery(statement, parameter);
+        }
+        long start = startMetrics();
+        List<E> list = null;
+        String error = null;
+        try {
+            list = doQuery(statement, parameter);
+            return list;
+        } catch (SQLException | RuntimeException e) {
+            error = e.toString();
+            throw e;
+        } finally {
+            recordMetrics(statement, parameter, start, list == null ? 0 : list.size(), error);
+        }
+    }
+
+    @Override
+    public <E> Cursor<E> queryCursor(Statement statement, Object parameter) throws SQLException {
+        checkClosed();
+        if (!configuration.isMetricsEnabled()) {
+            return doQueryCursor(statement, parameter);
+        }
+        // 游标只记录执行查询的耗时，读取行的耗时和行数由调用方决定，不计入
+        long start = startMetrics();
+        String error = null;
+        try {
+            return doQueryCursor(statement, parameter);
+        } catch (SQLException | RuntimeException e) {
+            error = e.toString();
+            throw e;
+        } finally {
+            recordMetrics(statement, parameter, start, 0, error);
+        }
+    }
+
+    @Override
+    public int update(Statement statement, Object parameter) throws SQLException {
+        checkClosed();
+        wrotePrimary = true;
+        if (!configuration.isMetricsEnabled()) {
+            return doUpdate(statement, parameter);
+        }
+        long start = startMetrics();
+        int rows = 0;
+        String error = null;
+        try {
+            rows = doUpdate(statement, parameter);
+            return rows;
+        } catch (SQLException | RuntimeException e) {
+            error = e.toString();
+            throw e;
+        } finally {
+            // 批量执行时返回的不是影响的行数
+            recordMetrics(statement, parameter, start, Math.max(rows, 0), error);
+        }
+    }
+
+    @Override
+    public List<BatchResult> flushStatements() throws SQLException {
+        checkClosed();
+        return doFlushStatements(false);
+    }
+
+    @Override
+    public void commit() throws SQLException {
+        flushStatements();
+        if (connection != null && !autoCommit) {
+            connection.commit();
+        }
+    }
+
+    @Override
+    public void rollback() throws SQLException {
+        checkClosed();
+        try {
+            doFlushStatements(true);
+        } finally {
+            if (connection != null && !autoCommit) {
+                connection.rollback();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        if (closed) {
+            return;
+        }
+        try {
+            for (Cursor<?> cursor : new ArrayList<>(openCursors)) {
+                cursor.close();
+            }
+            // 自动提交时调用方不会再提交，未执行的批量SQL需要执行；否则事务会被回滚，直接丢弃
+            doFlushStatements(!autoCommit);
+        } finally {
+            closed = true;
+            try {
+                closeReplicaConnection();
+            } finally {
+                if (connection != null) {
+                    Connection current = connection;
+                    connection = null;
+                    current.close();
+                }
+            }
+        }
+    }
+
+    private long startMetrics() {
+        poolWaitNanos = 0;
+        return System.nanoTime();
+    }
+
+    /**
+     * 记录SQL的执行指标，超过阈值并且被采样的记录为慢SQL
+     */
+    private void recordMetrics(Statement statement, Object parameter, long start, long rows, String error) {
+        long elapsedNanos = System.nanoTime() - start;
+        SqlMetrics.getStatementMetrics(statement.getId()).record(elapsedNanos, poolWaitNanos, rows, error != null);
+        long threshold = configuration.getSlowQueryThreshold();
+        if (threshold <= 0 || elapsedNanos < TimeUnit.MILLISECONDS.toNanos(threshold)
+                || !SqlMetrics.sampleSlowQuery(configuration.getSlowQuerySampleRate())) {
+            return;
+        }
+        SlowQuery slowQuery = new SlowQuery();
+        slowQuery.setStatementId(statement.getId());
+        try {
+            BoundSql boundSql = statement.getCompiledSql().bind(parameter);
+            slowQuery.setSql(boundSql.getSql());
+            slowQuery.setParameters(SqlMetrics.formatParameters(boundSql.getParameterValues()));
+        } catch (RuntimeException e) {
+            slowQuery.setParameters("获取参数失败：" + e);
+        }
+        slowQuery.setElapsedMillis(elapsedNanos / 1000000.0);
+        slowQuery.setRows(rows);
+        slowQuery.setError(error);
+        slowQuery.setTimestamp(System.currentTimeMillis());
+        SqlMetrics.addSlowQuery(slowQuery);
+    }
+
+    /**
+     * 执行查询
+     */
+    protected abstract <E> List<E> doQuery(Statement statement, Object parameter) throws SQLException;
+
+    /**
+     * 执行查询，返回游标
+     */
+    protected abstract <E> Cursor<E> doQueryCursor(Statement statement, Object parameter) throws SQLException;
+
+    /**
+     * 执行新增、修改或者删除
+     */
+    protected abstract int doUpdate(Statement statement, Object parameter) throws SQLException;
+
+    /**
+     * 执行或者丢弃还未执行的批量SQL
+     * @param isRollback 是否丢弃
+     * @return 批量执行结果
+     */
+    protected abstract List<BatchResult> doFlushStatements(boolean isRollback) throws SQLException;
+
+    /**
+     * 创建PreparedStatement，需要获取生成的主键时指定RETURN_GENERATED_KEYS
+     * @param statement mapper数据信息
+     * @param sql 绑定参数后的SQL
+     * @return PreparedStatement
+     * @throws SQLException 创建发生异常
+     */
+    protected PreparedStatement prepareStatement(Statement statement, String sql) throws SQLException {
+        if (statement.isUseGeneratedKeys()) {
+            return getConnection().prepareStatement(sql, java.sql.Statement.RETURN_GENERATED_KEYS);
+        }
+        return getConnection().prepareStatement(sql);
+    }
+
+    /**
+     * 执行查询并处理结果集
+     * @param statement mapper数据信息
+     * @param parameter 参数对象
+     * @param <E> 返回类型
+     * @return 查询结果
+     * @throws SQLException 执行SQL发生异常
+     */
+    protected <E> List<E> executeQuery(Statement statement, Object parameter) throws SQLException {
+        BoundSql boundSql = statement.getCompiledSql().bind(parameter);
+        Connection readConnection = getReadConnection(statement);
+        if (readConnection == connection) {
+            return executeQuery(readConnection, statement, boundSql);
+        }
+        List<E> list;
+        try {
+            list = executeQuery(readConnection, statement, boundSql);
+        } catch (SQLException e) {
+            if (!isConnectionError(e)) {
+                throw e;
+            }
+            failReplica();
+            return executeQuery(getConnection(), statement, boundSql);
+        }
+        router.markSuccess(replica);
+        return list;
+    }
+
+    private <E> List<E> executeQuery(Connection readConnection, Statement statement, BoundSql boundSql)
+            throws SQLException {
+        try (PreparedStatement preparedStatement = readConnection.prepareStatement(boundSql.getSql())) {
+            boundSql.setParameters(preparedStatement);
+            int fetchSize = getFetchSize(statement);
+            if (fetchSize > 0) {
+                preparedStatement.setFetchSize(fetchSize);
+            }
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                return resultSetHandler.handleResultSet(resultSet, statement);
+            }
+        }
+    }
+
+    /**
+     * 执行查询并返回游标，结果集只向前、只读，PreparedStatement在游标关闭时关闭
+     * @param statement mapper数据信息
+     * @param parameter 参数对象
+     * @param <E> 返回类型
+     * @return 游标
+     * @throws SQLException 执行SQL发生异常
+     */
+    protected <E> Cursor<E> executeQueryCursor(Statement statement, Object parameter) throws SQLException {
+        BoundSql boundSql = statement.getCompiledSql().bind(parameter);
+        Connection readConnection = getReadConnection(statement);
+        if (readConnection == connection) {
+            return executeQueryCursor(readConnection, statement, boundSql);
+        }
+        Cursor<E> cursor;
+        try {
+            cursor = executeQueryCursor(readConnection, statement, boundSql);
+        } catch (SQLException e) {
+            if (!isConnectionError(e)) {
+                throw e;
+            }
+            failReplica();
+            return executeQueryCursor(getConnection(), statement, boundSql);
+        }
+        router.markSuccess(replica);
+        return cursor;
+    }
+
+    private <E> Cursor<E> executeQueryCursor(Connection readConnection, Statement statement, BoundSql boundSql)
+            throws SQLException {
+        // 默认创建的PreparedStatement就是TYPE_FORWARD_ONLY、CONCUR_READ_ONLY，可以使用连接的缓存
+        PreparedStatement preparedStatement = readConnection.prepareStatement(boundSql.getSql());
+        ResultSet resultSet = null;
+        try {
+            boundSql.setParameters(preparedStatement);
+            int fetchSize = getFetchSize(statement);
+            preparedStatement.setFetchSize(fetchSize > 0 ? fetchSize : DEFAULT_CURSOR_FETCH_SIZE);
+            resultSet = preparedStatement.executeQuery();
+            Cursor<E> cursor = new DefaultCursor<>(statement.getId(), preparedStatement, resultSet,
+                    resultSetHandler.getRowMapper(resultSet, statement), new CursorCloseHandler());
+            openCursors.add(cursor);
+            return cursor;
+        } catch (SQLException | RuntimeException e) {
+            if (resultSet != null) {
+                resultSet.close();
+            }
+            preparedStatement.close();
+            throw e;
+        }
+    }
+
+    private int getFetchSize(Statement statement) {
+        return statement.getFetchSize() > 0 ? statement.getFetchSize() : configuration.getDefaultFetchSize();
+    }
+
+    private Connection getConnection() throws SQLException {
+        if (connection == null) {
+            long start = System.nanoTime();
+            try {
+                connection = openConnection(dataSource);
+            } finally {
+                poolWaitNanos += System.nanoTime() - start;
+            }
+        }
+        return connection;
+    }
+
+    /**
+     * 从连接池获取连接，并设置为会话的提交方式
+     */
+    private Connection openConnection(DataSource source) throws SQLException {
+        Connection newConnection = source.getConnection();
+        try {
+            if (newConnection.getAutoCommit() != autoCommit) {
+                newConnection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            newConnection.close();
+            throw e;
+        }
+        return newConnection;
+    }
+
+    /**
+     * 获取查询使用的连接
+     * 没有从库、路由到主库或者没有可用的从库时使用主库的连接；从库获取连接失败时计数并改用主库
+     */
+    private Connection getReadConnection(Statement statement) throws SQLException {
+        if (router == null || !isReplicaRoute(statement)) {
+            return getConnection();
+        }
+        if (replicaConnection == null) {
+            Replica chosen = router.acquire();
+            if (chosen == null) {
+                return getConnection();
+            }
+            long start = System.nanoTime();
+            try {
+                // 手动提交的会话在从库上也使用事务，部分数据库只有在事务中才会按fetchSize分批读取
+                replicaConnection = openConnection(chosen.getDataSource());
+                replica = chosen;
+            } catch (SQLException e) {
+                router.release(chosen);
+                router.markFailure(chosen);
+                poolWaitNanos += System.nanoTime() - start;
+                return getConnection();
+            }
+            poolWaitNanos += System.nanoTime() - start;
+        }
+        return replicaConnection;
+    }
+
+    private boolean isReplicaRoute(Statement statement) {
+        switch (statement.getRoute()) {
+            case PRIMARY:
+                return false;
+            case REPLICA:
+                return true;
+            default:
+                // 手动提交的会话在第一次使用主库连接时才开始事务，之前的查询和自动提交一样走从库；
+                // 事务开始后的查询需要读到事务内的修改，走主库
+                return !wrotePrimary && (autoCommit || connection == null);
+        }
+    }
+
+    /**
+     * 从库的连接异常，计数后归还连接，之后的查询重新选择从库
+     */
+    private void failReplica() {
+        router.markFailure(replica);
+        try {
+            closeReplicaConnection();
+        } catch (SQLException e) {
+            // 连接已经异常，关闭失败不影响改用主库
+        }
+    }
+
+    private void closeReplicaConnection() throws SQLException {
+        if (replicaConnection == null) {
+            return;
+        }
+        Connection current = replicaConnection;
+        Replica currentReplica = replica;
+        replicaConnection = null;
+        replica = null;
+        try {
+            current.close();
+        } finally {
+            router.release(currentReplica);
+        }
+    }
+
+    private static boolean isConnectionError(SQLException e) {
+        String sqlState = e.getSQLState();
+        return e instanceof SQLNonTransientConnectionException || e instanceof SQLTransientConnectionException
+                || (sqlState != null && sqlState.startsWith("08"));
+    }
+
+    /**
+     * 游标关闭后不再跟踪
+     */
+    private final class CursorCloseHandler implements Runnable {
+
+        @Override
+        public void run() {
+            openCursors.removeIf(cursor -> !cursor.isOpen());
+        }
+    }
+
+    private void checkClosed() throws SQLException {
+        if (closed) {
+            throw new SQLException("会话已经关闭");
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.lee.rokhan.mybatis.executor.impl;
+
+import com.lee.rokhan.mybatis.cursor.Cursor;
+import com.lee.rokhan.mybatis.executor.BatchExecutorException;
+import com.lee.rokhan.mybatis.executor.BatchResult;
+import com.lee.rokhan.mybatis.mapping.BoundSql;
+import com.lee.rokhan.mybatis.mapping.Configuration;
+import com.lee.rokhan.mybatis.mapping.Statement;
+import com.lee.rokhan.mybatis.routing.DataSourceRouter;
+
+import javax.sql.DataSource;
+import java.sql.BatchUpdateException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 批量执行器
+ * 连续执行同一个Statement（动态SQL还需要生成相同的SQL）的新增、修改、删除时合并为一次JDBC批量执行，以下情况执行当前批次：
+ * 1、批次的条数达到batchSize或者参数的估算字节数达到batchMaxBytes；
+ * 2、执行其他Statement或者生成其他SQL的新增、修改、删除；
+ * 3、执行查询（包括游标查询），保证能查到之前写入的数据；
+ * 4、调用flushStatements、commit，或者自动提交的会话关闭。
+ * 批量执行的结果（每行影响的行数和设置了生成主键的参数对象）在flushStatements时返回；
+ * 批量执行失败时抛出BatchExecutorException，包含已执行成功的批次和失败批次的部分执行结果
+ * @author lichujun
+ * @date 2019/8/6 16:50
+ */
+public class BatchExecutor extends BaseExecutor {
+
+    /**
+     * 批量执行时update的返回值，真实影响的行数在刷新后通过BatchResult获取
+     */
+    public static final int BATCH_UPDATE_RETURN_VALUE = Integer.MIN_VALUE + 1002;
+
+    private final int batchSize;
+
+    private final long batchMaxBytes;
+
+    /**
+     * 当前批次的Statement
+     */
+    private Statement currentStatement;
+
+    /**
+     * 当前批次的SQL
+     */
+    private String currentSql;
+
+    private PreparedStatement currentPreparedStatement;
+
+    /**
+     * 当前批次的参数对象
+     */
+    private final List<Object> currentParameters = new ArrayList<>();
+
+    /**
+     * 当前批次参数的估算字节数
+     */
+    private long currentBytes;
+
+    /**
+     * 上次刷新之后已执行批次的结果
+     */
+    private final List<BatchResult> batchResults = new ArrayList<>();
+
+    public BatchExecutor(Configuration configuration, DataSource dataSource, boolean autoCommit) {
+        this(configuration, dataSource, null, autoCommit);
+    }
+
+    public BatchExecutor(Configuration configuration, DataSource dataSource, DataSourceRouter router,
+                         boolean autoCommit) {
+        super(configuration, dataSource, router, autoCommit);
+        this.batchSize = Math.max(1, configuration.getBatchSize());
+        this.batchMaxBytes = configuration.getBatchMaxBytes() <= 0 ? Long.MAX_VALUE : configuration.getBatchMaxBytes();
+    }
+
+    @Override
+    protected <E> List<E> doQuery(Statement statement, Object parameter) throws SQLException {
+        finishCurrentStatement();
+        return executeQuery(statement, parameter);
+    }
+
+    @Override
+    protected <E> Cursor<E> doQueryCursor(Statement statement, Object parameter) throws SQLException {
+        finishCurrentStatement();
+        return executeQueryCursor(statement, parameter);
+    }
+
+    @Override
+    protected int doUpdate(Statement statement, Object parameter) throws SQLException {
+        BoundSql boundSql = statement.getCompiledSql().bind(parameter);
+        if (currentStatement != statement || !boundSql.getSql().equals(currentSql)) {
+            finishCurrentStatement();
+            currentPreparedStatement = prepareStatement(statement, boundSql.getSql());
+            currentStatement = statement;
+            currentSql = boundSql.getSql();
+        }
+        currentBytes += boundSql.setParameters(currentPreparedStatement);
+        currentPreparedStatement.addBatch();
+        currentParameters.add(parameter);
+        if (currentParameters.size() >= batchSize || currentBytes >= batchMaxBytes) {
+            executeCurrentBatch();
+        }
+        return BATCH_UPDATE_RETURN_VALUE;
+    }
+
+    @Override
+    protected List<BatchResult> doFlushStatements(boolean isRollback) throws SQLException {
+        try {
+            if (isRollback) {
+                return Collections.emptyList();
+            }
+            executeCurrentBatch();
+            return new ArrayList<>(batchResults);
+        } finally {
+            batchResults.clear();
+            closeCurrentStatement();
+        }
+    }
+
+    /**
+     * 执行当前批次并关闭PreparedStatement
+     */
+    private void finishCurrentStatement() throws SQLException {
+        try {
+            executeCurrentBatch();
+        } finally {
+            closeCurrentStatement();
+        }
+    }
+
+    /**
+     * 执行当前批次，PreparedStatement保持打开，后续同一个Statement的参数继续添加到下一个批次
+     */
+    private void executeCurrentBatch() throws SQLException {
+        if (currentParameters.isEmpty()) {
+            return;
+        }
+        Statement statement = currentStatement;
+        List<Object> parameters = new ArrayList<>(currentParameters);
+        currentParameters.clear();
+        currentBytes = 0;
+        int[] updateCounts;
+        try {
+            updateCounts = currentPreparedStatement.executeBatch();
+        } catch (BatchUpdateException e) {
+            int[] partialCounts = e.getUpdateCounts() == null ? new int[0] : e.getUpdateCounts();
+            // 已执行成功的批次交给异常，不再在下次刷新时返回
+            List<BatchResult> successfulBatchResults = new ArrayList<>(batchResults);
+            batchResults.clear();
+            BatchExecutorException exception = new BatchExecutorException("批量执行" + statement.getId()
+                    + "发生异常，本批次" + parameters.size() + "条中驱动返回了" + partialCounts.length
+                    + "条的结果，之前已执行成功" + successfulBatchResults.size() + "个批次", e, successfulBatchResults,
+                    new BatchResult(statement.getId(), currentSql, parameters, partialCounts));
+            try {
+                closeCurrentStatement();
+            } catch (SQLException closeException) {
+                exception.addSuppressed(closeException);
+            }
+            throw exception;
+        }
+        GeneratedKeys.assign(currentPreparedStatement, statement, parameters);
+        batchResults.add(new BatchResult(statement.getId(), currentSql, parameters, updateCounts));
+    }
+
+    private void closeCurrentStatement() throws SQLException {
+        currentParameters.clear();
+        currentBytes = 0;
+        currentStatement = null;
+        currentSql = null;
+        if (currentPreparedStatement != null) {
+            PreparedStatement preparedStatement = currentPreparedStatement;
+            currentPreparedStatement = null;
+            preparedStatement.close();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.lee.rokhan.mybatis.executor.impl;
+
+import com.lee.rokhan.mybatis.cache.Cache;
+import com.lee.rokhan.mybatis.cache.CacheKey;
+import com.lee.rokhan.mybatis.cache.TransactionalCache;
+import com.lee.rokhan.mybatis.cursor.Cursor;
+import com.lee.rokhan.mybatis.executor.BatchResult;
+import com.lee.rokhan.mybatis.executor.Executor;
+import com.lee.rokhan.mybatis.mapping.BoundSql;
+import com.lee.rokhan.mybatis.mapping.Configuration;
+import com.lee.rokhan.mybatis.mapping.Statement;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 使用二级缓存的执行器，装饰SimpleExecutor或者BatchExecutor
+ * 查询结果和命名空间的清空操作在事务提交后才写入共享的缓存，回滚时丢弃；没有执行过新增、修改和删除的会话
+ * 关闭时也写入查询结果。自动提交时立即写入，批量执行的SQL在刷新后才清空缓存。游标查询不使用缓存
+ * @author lichujun
+ * @date 2019/8/8 15:30
+ */
+public class CachingExecutor implements Executor {
+
+    private final Executor delegate;
+
+    private final Configuration configuration;
+
+    private final boolean autoCommit;
+
+    /**
+     * 会话使用过的缓存对应的事务缓存
+     */
+    private final Map<Cache, TransactionalCache> transactionalCaches = new HashMap<>();
+
+    /**
+     * 事务中是否执行过新增、修改或者删除
+     */
+    private boolean dirty;
+
+    public CachingExecutor(Executor delegate, Configuration configuration, boolean autoCommit) {
+        this.delegate = delegate;
+        this.configuration = configuration;
+        this.autoCommit = autoCommit;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <E> List<E> query(Statement statement, Object parameter) throws SQLException {
+        Cache cache = configuration.getCache(statement.getNamespace());
+        if (cache == null) {
+            return delegate.query(statement, parameter);
+        }
+        TransactionalCache transactionalCache = getTransactionalCache(cache);
+        if (statement.isFlushCache()) {
+            transactionalCache.clear();
+        }
+        if (!statement.isUseCache()) {
+            List<E> list = delegate.query(statement, parameter);
+            commitIfAutoCommit(transactionalCache);
+            return list;
+        }
+        BoundSql boundSql = statement.getCompiledSql().bind(parameter);
+        CacheKey key = new CacheKey(statement.getId(), boundSql.getSql(), boundSql.getParameterValues());
+        List<E> list = (List<E>) transactionalCache.getObject(key);
+        if (list == null) {
+            list = delegate.query(statement, parameter);
+            transactionalCache.putObject(key, list);
+            commitIfAutoCommit(transactionalCache);
+        }
+        return list;
+    }
+
+    @Override
+    public <E> Cursor<E> queryCursor(Statement statement, Object parameter) throws SQLException {
+        return delegate.queryCursor(statement, parameter);
+    }
+
+    @Override
+    public int update(Statement statement, Object parameter) throws SQLException {
+        Cache cache = configuration.getCache(statement.getNamespace());
+        dirty = true;
+        TransactionalCache transactionalCache = cache == null ? null : getTransactionalCache(cache);
+        if (transactionalCache != null) {
+            transactionalCache.clear();
+        }
+        int result = delegate.update(statement, parameter);
+        // 批量执行的SQL还未执行，刷新后再清空，避免其他会话在执行前把旧数据放回缓存
+        if (transactionalCache != null && result != BatchExecutor.BATCH_UPDATE_RETURN_VALUE) {
+            commitIfAutoCommit(transactionalCache);
+        }
+        return result;
+    }
+
+    @Override
+    public List<BatchResult> flushStatements() throws SQLException {
+        List<BatchResult> results = delegate.flushStatements();
+        if (autoCommit) {
+            commitCaches();
+        }
+        return results;
+    }
+
+    @Override
+    public void commit() throws SQLException {
+        delegate.commit();
+        commitCaches();
+        dirty = false;
+    }
+
+    @Override
+    public void rollback() throws SQLException {
+        try {
+            delegate.rollback();
+        } finally {
+            rollbackCaches();
+            dirty = false;
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        try {
+            delegate.close();
+            // 自动提交时关闭会话会刷新批量SQL；只读的会话查到的都是已提交的数据
+            if (autoCommit || !dirty) {
+                commitCaches();
+            }
+        } finally {
+            rollbackCaches();
+        }
+    }
+
+    private TransactionalCache getTransactionalCache(Cache cache) {
+        return transactionalCaches.computeIfAbsent(cache, TransactionalCache::new);
+    }
+
+    private void commitIfAutoCommit(TransactionalCache transactionalCache) {
+        if (autoCommit) {
+            transactionalCache.commit();
+        }
+    }
+
+    private void commitCaches() {
+        for (TransactionalCache transactionalCache : transactionalCaches.values()) {
+            transactionalCache.commit();
+        }
+    }
+
+    private void rollbackCaches() {
+        for (TransactionalCache transactionalCache : transactionalCaches.values()) {
+            transactionalCache.rollback();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.lee.rokhan.mybatis.executor.impl;
+
+import com.lee.rokhan.mybatis.mapping.ParameterMapping;
+import com.lee.rokhan.mybatis.mapping.Statement;
+import com.lee.rokhan.mybatis.reflection.PropertyAccessors;
+import com.lee.rokhan.mybatis.reflection.PropertySetter;
+import com.lee.rokhan.mybatis.type.TypeHandlers;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.apache.commons.lang3.StringUtils;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * 将数据库生成的主键设置到参数对象
+ * 生成的主键按执行顺序返回，第n行设置到第n个参数对象，简单类型的参数对象无法设置，跳过
+ * @author lichujun
+ * @date 2019/8/6 16:30
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+class GeneratedKeys {
+
+    /**
+     * 设置生成的主键
+     * @param preparedStatement 执行完成的PreparedStatement
+     * @param statement mapper数据信息
+     * @param parameters 按执行顺序排列的参数对象
+     * @throws SQLException 读取生成的主键发生异常
+     */
+    static void assign(PreparedStatement preparedStatement, Statement statement, List<Object> parameters)
+            throws SQLException {
+        if (!statement.isUseGeneratedKeys() || StringUtils.isBlank(statement.getKeyProperty())) {
+            return;
+        }
+        String[] keyProperties = StringUtils.split(statement.getKeyProperty(), ',');
+        try (ResultSet resultSet = preparedStatement.getGeneratedKeys()) {
+            int columnCount = Math.min(keyProperties.length, resultSet.getMetaData().getColumnCount());
+            for (Object parameter : parameters) {
+                if (!resultSet.next()) {
+                    return;
+                }
+                if (parameter == null || ParameterMapping.isSimpleType(parameter.getClass())) {
+                    continue;
+                }
+                for (int i = 0; i < columnCount; i++) {
+                    PropertySetter setter = PropertyAccessors.forSetter(parameter.getClass(), keyProperties[i].trim());
+                    try {
+                        setter.set(parameter, TypeHandlers.getResult(resultSet, i + 1, setter.getType()));
+                    } catch (RuntimeException e) {
+                        throw e;
+                    } catch (Exception e) {
+                        throw new RuntimeException("设置" + statement.getId() + "生成的主键发生异常", e);
+                    }
+                }
+            }
+        }
+    }
+}
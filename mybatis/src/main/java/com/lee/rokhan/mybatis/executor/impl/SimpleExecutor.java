@@ -0,0 +1,57 @@
+package com.lee.rokhan.mybatis.executor.impl;
+
+import com.lee.rokhan.mybatis.cursor.Cursor;
+import com.lee.rokhan.mybatis.executor.BatchResult;
+import com.lee.rokhan.mybatis.mapping.BoundSql;
+import com.lee.rokhan.mybatis.mapping.Configuration;
+import com.lee.rokhan.mybatis.mapping.Statement;
+import com.lee.rokhan.mybatis.routing.DataSourceRouter;
+
+import javax.sql.DataSource;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 每次执行一条SQL的执行器
+ * @author lichujun
+ * @date 2019/8/6 16:40
+ */
+public class SimpleExecutor extends BaseExecutor {
+
+    public SimpleExecutor(Configuration configuration, DataSource dataSource, boolean autoCommit) {
+        this(configuration, dataSource, null, autoCommit);
+    }
+
+    public SimpleExecutor(Configuration configuration, DataSource dataSource, DataSourceRouter router,
+                          boolean autoCommit) {
+        super(configuration, dataSource, router, autoCommit);
+    }
+
+    @Override
+    protected <E> List<E> doQuery(Statement statement, Object parameter) throws SQLException {
+        return executeQuery(statement, parameter);
+    }
+
+    @Override
+    protected <E> Cursor<E> doQueryCursor(Statement statement, Object parameter) throws SQLException {
+        return executeQueryCursor(statement, parameter);
+    }
+
+    @Override
+    protected int doUpdate(Statement statement, Object parameter) throws SQLException {
+        BoundSql boundSql = statement.getCompiledSql().bind(parameter);
+        try (PreparedStatement preparedStatement = prepareStatement(statement, boundSql.getSql())) {
+            boundSql.setParameters(preparedStatement);
+            int count = preparedStatement.executeUpdate();
+            GeneratedKeys.assign(preparedStatement, statement, Collections.singletonList(parameter));
+            return count;
+        }
+    }
+
+    @Override
+    protected List<BatchResult> doFlushStatements(boolean isRollback) {
+        return Collections.emptyList();
+    }
+}
@@ -0,0 +1,35 @@
+package com.lee.rokhan.mybatis.executor.resultset;
+
+import com.lee.rokhan.mybatis.mapping.Statement;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * 将结果集转换为Java对象
+ * @author lichujun
+ * @date 2019/8/6 14:00
+ */
+public interface ResultSetHandler {
+
+    /**
+     * 将结果集的所有行转换为Java对象
+     * @param resultSet 结果集
+     * @param statement mapper数据信息，提供返回类型和编译好的行映射
+     * @param <E> Java类型
+     * @return Java对象列表
+     * @throws SQLException 读取结果集发生异常
+     */
+    <E> List<E> handleResultSet(ResultSet resultSet, Statement statement) throws SQLException;
+
+    /**
+     * 获取结果集每一行的转换，用于游标按行转换
+     * @param resultSet 结果集
+     * @param statement mapper数据信息
+     * @param <E> Java类型
+     * @return 行映射
+     * @throws SQLException 读取结果集元数据发生异常
+     */
+    <E> RowMapper<E> getRowMapper(ResultSet resultSet, Statement statement) throws SQLException;
+}
@@ -0,0 +1,73 @@
+package com.lee.rokhan.mybatis.executor.resultset;
+
+import lombok.Getter;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * 结果集的形状，即列名和列类型，同一个Statement的结果集形状相同时复用编译好的行映射
+ * @author lichujun
+ * @date 2019/8/7 10:25
+ */
+public final class ResultShape {
+
+    @Getter
+    private final String[] columnLabels;
+
+    @Getter
+    private final int[] columnTypes;
+
+    private final int hashCode;
+
+    private ResultShape(String[] columnLabels, int[] columnTypes) {
+        this.columnLabels = columnLabels;
+        this.columnTypes = columnTypes;
+        this.hashCode = 31 * Arrays.hashCode(columnLabels) + Arrays.hashCode(columnTypes);
+    }
+
+    /**
+     * 读取结果集的形状
+     * @param metaData 结果集的元数据
+     * @return 结果集的形状
+     * @throws SQLException 读取元数据发生异常
+     */
+    public static ResultShape of(ResultSetMetaData metaData) throws SQLException {
+        int columnCount = metaData.getColumnCount();
+        String[] columnLabels = new String[columnCount];
+        int[] columnTypes = new int[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            columnLabels[i] = metaData.getColumnLabel(i + 1);
+            columnTypes[i] = metaData.getColumnType(i + 1);
+        }
+        return new ResultShape(columnLabels, columnTypes);
+    }
+
+    public int getColumnCount() {
+        return columnLabels.length;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ResultShape)) {
+            return false;
+        }
+        ResultShape that = (ResultShape) o;
+        return hashCode == that.hashCode && Arrays.equals(columnLabels, that.columnLabels)
+                && Arrays.equals(columnTypes, that.columnTypes);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(columnLabels);
+    }
+}
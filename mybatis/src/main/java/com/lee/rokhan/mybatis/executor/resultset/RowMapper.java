@@ -0,0 +1,22 @@
+package com.lee.rokhan.mybatis.executor.resultset;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * 将结果集的当前行转换为对象
+ * @param <T> 对象类型
+ * @author lichujun
+ * @date 2019/8/7 10:20
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+
+    /**
+     * 转换当前行
+     * @param resultSet 已经移动到当前行的结果集
+     * @return 对象
+     * @throws SQLException 读取结果集发生异常
+     */
+    T mapRow(ResultSet resultSet) throws SQLException;
+}
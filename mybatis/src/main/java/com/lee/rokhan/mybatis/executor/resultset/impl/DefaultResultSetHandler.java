@@ -0,0 +1,47 @@
+package com.lee.rokhan.mybatis.executor.resultset.impl;
+
+import com.lee.rokhan.mybatis.executor.resultset.ResultSetHandler;
+import com.lee.rokhan.mybatis.executor.resultset.ResultShape;
+import com.lee.rokhan.mybatis.executor.resultset.RowMapper;
+import com.lee.rokhan.mybatis.mapping.Statement;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 默认的结果集处理
+ * 每个Statement按结果集形状缓存编译好的行映射，第一次执行或者结果集的列发生变化时编译
+ * @author lichujun
+ * @date 2019/8/6 14:10
+ */
+public class DefaultResultSetHandler implements ResultSetHandler {
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <E> List<E> handleResultSet(ResultSet resultSet, Statement statement) throws SQLException {
+        RowMapper<?> rowMapper = getRowMapper(resultSet, statement);
+        List<Object> results = new ArrayList<>();
+        while (resultSet.next()) {
+            results.add(rowMapper.mapRow(resultSet));
+        }
+        return (List<E>) results;
+    }
+
+    /**
+     * 获取结果集形状对应的行映射，不存在则编译
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <E> RowMapper<E> getRowMapper(ResultSet resultSet, Statement statement) throws SQLException {
+        ResultShape shape = ResultShape.of(resultSet.getMetaData());
+        RowMapper<?> rowMapper = statement.getRowMappers().get(shape);
+        if (rowMapper == null) {
+            Class<?> resultClass = statement.getResultClass();
+            rowMapper = statement.getRowMappers().computeIfAbsent(shape,
+                    key -> RowMapperCompiler.compile(resultClass, key));
+        }
+        return (RowMapper<E>) rowMapper;
+    }
+}
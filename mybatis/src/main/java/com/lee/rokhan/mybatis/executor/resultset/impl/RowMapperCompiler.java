@@ -0,0 +1,434 @@
+package com.lee.rokhan.mybatis.executor.resultset.impl;
+
+import com.lee.rokhan.common.reflection.ClassMetadata;
+import com.lee.rokhan.mybatis.executor.resultset.ResultShape;
+import com.lee.rokhan.mybatis.executor.resultset.RowMapper;
+import com.lee.rokhan.mybatis.mapping.ParameterMapping;
+import com.lee.rokhan.mybatis.type.ResultGetter;
+import com.lee.rokhan.mybatis.type.TypeHandlers;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.apache.commons.lang3.StringUtils;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Supplier;
+
+/**
+ * 行映射的编译
+ * 按返回类型和结果集形状编译一次，转换每一行时不再查找列和属性的对应关系，也不再按类型分支：
+ * 1、列按下标读取，每一列的读取方法在编译时按属性类型选好；
+ * 2、int、long、double类型的属性通过ResultSet.getInt等方法直接设置，不装箱；
+ * 3、构造函数和setter通过LambdaMetafactory生成实现类，JIT可以内联；
+ *    类不可访问（例如非public的类或者成员变量）时退化为MethodHandle调用
+ * @author lichujun
+ * @date 2019/8/7 10:40
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class RowMapperCompiler {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private static final MethodType SUPPLIER_TYPE = MethodType.methodType(Object.class);
+
+    private static final MethodType INT_SETTER_TYPE = MethodType.methodType(void.class, Object.class, int.class);
+
+    private static final MethodType LONG_SETTER_TYPE = MethodType.methodType(void.class, Object.class, long.class);
+
+    private static final MethodType DOUBLE_SETTER_TYPE = MethodType.methodType(void.class, Object.class, double.class);
+
+    private static final MethodType OBJECT_SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    /**
+     * 类型的成员变量，key为去掉下划线后的小写名称
+     */
+    private static final ClassValue<Map<String, Field>> COLUMN_FIELD_CACHE = new ClassValue<Map<String, Field>>() {
+        @Override
+        protected Map<String, Field> computeValue(Class<?> type) {
+            ClassMetadata metadata = ClassMetadata.forClass(type);
+            Map<String, Field> fieldMap = new HashMap<>(metadata.getFieldCount() * 2);
+            for (int i = 0; i < metadata.getFieldCount(); i++) {
+                Field field = metadata.getField(i);
+                if (Modifier.isStatic(field.getModifiers()) || Modifier.isFinal(field.getModifiers())) {
+                    continue;
+                }
+                fieldMap.putIfAbsent(normalize(field.getName()), field);
+            }
+            return fieldMap;
+        }
+    };
+
+    /**
+     * 编译行映射
+     * 简单类型取第一列；Map按列名存放所有列；JavaBean按列名匹配成员变量（忽略大小写和下划线）
+     * @param resultType 返回类型
+     * @param shape 结果集形状
+     * @return 行映射
+     */
+    public static RowMapper<?> compile(Class<?> resultType, ResultShape shape) {
+        if (resultType == Object.class || ParameterMapping.isSimpleType(resultType)) {
+            ResultGetter getter = TypeHandlers.getResultGetter(resultType);
+            return resultSet -> getter.get(resultSet, 1);
+        }
+        if (Map.class.isAssignableFrom(resultType)) {
+            return new MapRowMapper(newSupplier(resultType), shape.getColumnLabels());
+        }
+        Map<String, Field> fieldMap = COLUMN_FIELD_CACHE.get(resultType);
+        String[] columnLabels = shape.getColumnLabels();
+        List<ColumnBinding> bindings = new ArrayList<>(columnLabels.length);
+        for (int i = 0; i < columnLabels.length; i++) {
+            Field field = fieldMap.get(normalize(columnLabels[i]));
+            if (field != null) {
+                bindings.add(bind(i + 1, field));
+            }
+        }
+        return new BeanRowMapper(resultType, newSupplier(resultType), bindings.toArray(new ColumnBinding[0]));
+    }
+
+    private static ColumnBinding bind(int column, Field field) {
+        Class<?> type = field.getType();
+        MethodHandle setter = findSetter(field);
+        if (type == int.class) {
+            ObjIntConsumer<Object> consumer = generate(ObjIntConsumer.class, INT_SETTER_TYPE, setter,
+                    setter.type());
+            if (consumer == null) {
+                MethodHandle handle = setter.asType(INT_SETTER_TYPE);
+                consumer = (target, value) -> invokeSetter(handle, target, value);
+            }
+            return new IntColumnBinding(column, consumer);
+        }
+        if (type == long.class) {
+            ObjLongConsumer<Object> consumer = generate(ObjLongConsumer.class, LONG_SETTER_TYPE, setter,
+                    setter.type());
+            if (consumer == null) {
+                MethodHandle handle = setter.asType(LONG_SETTER_TYPE);
+                consumer = (target, value) -> invokeSetter(handle, target, value);
+            }
+            return new LongColumnBinding(column, consumer);
+        }
+        if (type == double.class) {
+            ObjDoubleConsumer<Object> consumer = generate(ObjDoubleConsumer.class, DOUBLE_SETTER_TYPE, setter,
+                    setter.type());
+            if (consumer == null) {
+                MethodHandle handle = setter.asType(DOUBLE_SETTER_TYPE);
+                consumer = (target, value) -> invokeSetter(handle, target, value);
+            }
+            return new DoubleColumnBinding(column, consumer);
+        }
+        // 其他基本类型以包装类传入，由生成的实现类拆箱
+        BiConsumer<Object, Object> consumer = generate(BiConsumer.class, OBJECT_SETTER_TYPE, setter,
+                setter.type().changeParameterType(1, wrap(type)));
+        if (consumer == null) {
+            MethodHandle handle = setter.asType(OBJECT_SETTER_TYPE);
+            consumer = (target, value) -> invokeSetter(handle, target, value);
+        }
+        return new ObjectColumnBinding(column, TypeHandlers.getResultGetter(type), consumer);
+    }
+
+    /**
+     * 优先使用setXxx方法，没有时直接设置成员变量
+     */
+    private static MethodHandle findSetter(Field field) {
+        Class<?> declaringClass = field.getDeclaringClass();
+        Method method = ClassMetadata.forClass(declaringClass)
+                .getMethod("set" + StringUtils.capitalize(field.getName()), field.getType());
+        try {
+            if (method != null && !Modifier.isStatic(method.getModifiers())) {
+                method.setAccessible(true);
+                // 返回this的链式setter不是void，适配后无法生成实现类，使用MethodHandle调用
+                MethodHandle handle = LOOKUP.unreflect(method);
+                return handle.asType(handle.type().changeReturnType(void.class));
+            }
+            field.setAccessible(true);
+            return LOOKUP.unreflectSetter(field);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException("获取" + declaringClass.getName() + "的属性" + field.getName()
+                    + "的设置方法发生异常", e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Supplier<Object> newSupplier(Class<?> type) {
+        if (type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+            if (Map.class.isAssignableFrom(type)) {
+                return LinkedHashMap::new;
+            }
+            throw new RuntimeException(type.getName() + "是接口或者抽象类，不能作为返回类型");
+        }
+        MethodHandle constructor;
+        try {
+            Constructor<?> declaredConstructor = type.getDeclaredConstructor();
+            declaredConstructor.setAccessible(true);
+            constructor = LOOKUP.unreflectConstructor(declaredConstructor);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new RuntimeException(type.getName() + "没有无参构造函数", e);
+        }
+        Supplier<Object> supplier = generate(Supplier.class, SUPPLIER_TYPE, constructor, constructor.type());
+        if (supplier == null) {
+            MethodHandle handle = constructor.asType(SUPPLIER_TYPE);
+            supplier = () -> {
+                try {
+                    return (Object) handle.invokeExact();
+                } catch (Throwable e) {
+                    throw new RuntimeException("创建" + type.getName() + "发生异常", e);
+                }
+            };
+        }
+        return supplier;
+    }
+
+    /**
+     * 通过LambdaMetafactory生成调用目标方法的函数式接口实现类
+     * @param functionalInterface 函数式接口，只有一个抽象方法
+     * @param erasedType 抽象方法擦除泛型后的类型
+     * @param target 目标方法
+     * @param instantiatedType 抽象方法实际的类型
+     * @return 实现类的实例，目标方法不可访问时返回null
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T generate(Class<?> functionalInterface, MethodType erasedType, MethodHandle target,
+                                  MethodType instantiatedType) {
+        Class<?> declaringClass = instantiatedType.returnType() == void.class
+                ? instantiatedType.parameterType(0) : instantiatedType.returnType();
+        if (!isVisible(declaringClass)) {
+            return null;
+        }
+        String methodName = functionalInterface == Supplier.class ? "get" : "accept";
+        try {
+            CallSite callSite = LambdaMetafactory.metafactory(LOOKUP, methodName,
+                    MethodType.methodType(functionalInterface), erasedType, target, instantiatedType);
+            return (T) callSite.getTarget().invoke();
+        } catch (Throwable e) {
+            // 私有的成员等LambdaMetafactory无法访问的情况，使用MethodHandle调用
+            return null;
+        }
+    }
+
+    /**
+     * 生成的实现类定义在本类的类加载器中，目标类对该类加载器可见并且是public时才能生成
+     */
+    private static boolean isVisible(Class<?> type) {
+        if (!Modifier.isPublic(type.getModifiers())) {
+            return false;
+        }
+        for (Class<?> enclosing = type.getEnclosingClass(); enclosing != null;
+             enclosing = enclosing.getEnclosingClass()) {
+            if (!Modifier.isPublic(enclosing.getModifiers())) {
+                return false;
+            }
+        }
+        try {
+            return Class.forName(type.getName(), false, RowMapperCompiler.class.getClassLoader()) == type;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private static void invokeSetter(MethodHandle handle, Object target, int value) {
+        try {
+            handle.invokeExact(target, value);
+        } catch (Throwable e) {
+            throw setterException(e);
+        }
+    }
+
+    private static void invokeSetter(MethodHandle handle, Object target, long value) {
+        try {
+            handle.invokeExact(target, value);
+        } catch (Throwable e) {
+            throw setterException(e);
+        }
+    }
+
+    private static void invokeSetter(MethodHandle handle, Object target, double value) {
+        try {
+            handle.invokeExact(target, value);
+        } catch (Throwable e) {
+            throw setterException(e);
+        }
+    }
+
+    private static void invokeSetter(MethodHandle handle, Object target, Object value) {
+        try {
+            handle.invokeExact(target, value);
+        } catch (Throwable e) {
+            throw setterException(e);
+        }
+    }
+
+    private static RuntimeException setterException(Throwable e) {
+        if (e instanceof RuntimeException) {
+            return (RuntimeException) e;
+        }
+        return new RuntimeException("设置属性发生异常", e);
+    }
+
+    private static Class<?> wrap(Class<?> type) {
+        if (!type.isPrimitive()) {
+            return type;
+        }
+        return MethodType.methodType(type).wrap().returnType();
+    }
+
+    private static String normalize(String name) {
+        return name.replace("_", "").toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * 简单类型以外的结果集转换为Map
+     */
+    private static final class MapRowMapper implements RowMapper<Object> {
+
+        private final Supplier<Object> constructor;
+
+        private final String[] columnLabels;
+
+        private MapRowMapper(Supplier<Object> constructor, String[] columnLabels) {
+            this.constructor = constructor;
+            this.columnLabels = columnLabels;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Object mapRow(ResultSet resultSet) throws SQLException {
+            Map<String, Object> row = (Map<String, Object>) constructor.get();
+            for (int i = 0; i < columnLabels.length; i++) {
+                row.put(columnLabels[i], resultSet.getObject(i + 1));
+            }
+            return row;
+        }
+    }
+
+    private static final class BeanRowMapper implements RowMapper<Object> {
+
+        private final Class<?> type;
+
+        private final Supplier<Object> constructor;
+
+        private final ColumnBinding[] bindings;
+
+        private BeanRowMapper(Class<?> type, Supplier<Object> constructor, ColumnBinding[] bindings) {
+            this.type = type;
+            this.constructor = constructor;
+            this.bindings = bindings;
+        }
+
+        @Override
+        public Object mapRow(ResultSet resultSet) throws SQLException {
+            Object bean = constructor.get();
+            for (ColumnBinding binding : bindings) {
+                binding.bind(resultSet, bean);
+            }
+            return bean;
+        }
+
+        @Override
+        public String toString() {
+            return "BeanRowMapper[" + type.getName() + "]";
+        }
+    }
+
+    /**
+     * 一列到一个属性的映射
+     */
+    private interface ColumnBinding {
+
+        void bind(ResultSet resultSet, Object target) throws SQLException;
+    }
+
+    private static final class IntColumnBinding implements ColumnBinding {
+
+        private final int column;
+
+        private final ObjIntConsumer<Object> setter;
+
+        private IntColumnBinding(int column, ObjIntConsumer<Object> setter) {
+            this.column = column;
+            this.setter = setter;
+        }
+
+        @Override
+        public void bind(ResultSet resultSet, Object target) throws SQLException {
+            setter.accept(target, resultSet.getInt(column));
+        }
+    }
+
+    private static final class LongColumnBinding implements ColumnBinding {
+
+        private final int column;
+
+        private final ObjLongConsumer<Object> setter;
+
+        private LongColumnBinding(int column, ObjLongConsumer<Object> setter) {
+            this.column = column;
+            this.setter = setter;
+        }
+
+        @Override
+        public void bind(ResultSet resultSet, Object target) throws SQLException {
+            setter.accept(target, resultSet.getLong(column));
+        }
+    }
+
+    private static final class DoubleColumnBinding implements ColumnBinding {
+
+        private final int column;
+
+        private final ObjDoubleConsumer<Object> setter;
+
+        private DoubleColumnBinding(int column, ObjDoubleConsumer<Object> setter) {
+            this.column = column;
+            this.setter = setter;
+        }
+
+        @Override
+        public void bind(ResultSet resultSet, Object target) throws SQLException {
+            setter.accept(target, resultSet.getDouble(column));
+        }
+    }
+
+    /**
+     * 引用类型和其他基本类型，引用类型在数据库中为NULL时保留属性的默认值，基本类型与getInt等方法一致设置为0
+     */
+    private static final class ObjectColumnBinding implements ColumnBinding {
+
+        private final int column;
+
+        private final ResultGetter getter;
+
+        private final BiConsumer<Object, Object> setter;
+
+        private ObjectColumnBinding(int column, ResultGetter getter, BiConsumer<Object, Object> setter) {
+            this.column = column;
+            this.getter = getter;
+            this.setter = setter;
+        }
+
+        @Override
+        public void bind(ResultSet resultSet, Object target) throws SQLException {
+            Object value = getter.get(resultSet, column);
+            if (value != null) {
+                setter.accept(target, value);
+            }
+        }
+    }
+}
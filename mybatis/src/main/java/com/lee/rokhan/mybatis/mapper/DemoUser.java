@@ -0,0 +1,24 @@
+package com.lee.rokhan.mybatis.mapper;
+
+import lombok.Data;
+
+import java.util.Date;
+
+/**
+ * DemoMapper.xml中demo_user表的一行
+ * @author lichujun
+ * @date 2019/8/12 18:00
+ */
+@Data
+public class DemoUser {
+
+    private Long id;
+
+    private String userName;
+
+    private Integer age;
+
+    private Double score;
+
+    private Date createdAt;
+}
@@ -0,0 +1,47 @@
+package com.lee.rokhan.mybatis.mapping;
+
+import com.lee.rokhan.mybatis.type.TypeHandlers;
+import lombok.Getter;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * 绑定参数后的SQL，一次执行只绑定一次
+ * @author lichujun
+ * @date 2019/8/12 17:20
+ */
+@Getter
+public final class BoundSql {
+
+    /**
+     * 替换占位符后的SQL，形状相同的参数返回同一个String
+     */
+    private final String sql;
+
+    /**
+     * 按占位符顺序排列的参数值
+     */
+    private final Object[] parameterValues;
+
+    public BoundSql(String sql, Object[] parameterValues) {
+        this.sql = sql;
+        this.parameterValues = parameterValues;
+    }
+
+    /**
+     * 按下标设置参数
+     * @param statement PreparedStatement
+     * @return 参数值估算的字节数
+     * @throws SQLException 设置参数发生异常
+     */
+    public long setParameters(PreparedStatement statement) throws SQLException {
+        long size = 0;
+        for (int i = 0; i < parameterValues.length; i++) {
+            Object value = parameterValues[i];
+            TypeHandlers.setParameter(statement, i + 1, value);
+            size += TypeHandlers.estimateSize(value);
+        }
+        return size;
+    }
+}
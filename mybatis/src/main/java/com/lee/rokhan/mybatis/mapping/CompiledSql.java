@@ -0,0 +1,121 @@
+package com.lee.rokhan.mybatis.mapping;
+
+import com.lee.rokhan.mybatis.scripting.DynamicSql;
+import com.lee.rokhan.mybatis.scripting.SqlScriptCompiler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 编译后的SQL
+ * #{}占位符只在编译时解析一次，替换为?并按顺序记录参数，执行时按顺序读取参数值设置到PreparedStatement，
+ * 单引号括起来的字符串常量中的#{不是占位符；
+ * &lt;script&gt;包裹的动态SQL编译为片段树，执行时按参数选择分支，相同形状的SQL文本只渲染一次
+ * @author lichujun
+ * @date 2019/8/6 10:50
+ */
+public final class CompiledSql {
+
+    private static final String PLACEHOLDER_OPEN = "#{";
+
+    private static final String PLACEHOLDER_CLOSE = "}";
+
+    /**
+     * 替换占位符后的SQL，动态SQL时为null
+     */
+    private final String sql;
+
+    private final ParameterMapping[] parameterMappings;
+
+    /**
+     * 编译后的动态SQL，不是动态SQL时为null
+     */
+    private final DynamicSql dynamicSql;
+
+    private CompiledSql(String sql, ParameterMapping[] parameterMappings, DynamicSql dynamicSql) {
+        this.sql = sql;
+        this.parameterMappings = parameterMappings;
+        this.dynamicSql = dynamicSql;
+    }
+
+    /**
+     * 编译SQL
+     * @param originalSql mapper中的SQL
+     * @return 编译后的SQL
+     */
+    public static CompiledSql compile(String originalSql) {
+        if (originalSql == null || originalSql.trim().isEmpty()) {
+            throw new RuntimeException("SQL不能为空");
+        }
+        String text = originalSql.trim();
+        if (SqlScriptCompiler.isScript(text)) {
+            return new CompiledSql(null, null, SqlScriptCompiler.compile(text));
+        }
+        StringBuilder sql = new StringBuilder(text.length());
+        List<ParameterMapping> parameterMappings = new ArrayList<>();
+        int start = 0;
+        int open = indexOfPlaceholder(text, 0);
+        while (open >= 0) {
+            int close = text.indexOf(PLACEHOLDER_CLOSE, open + PLACEHOLDER_OPEN.length());
+            if (close < 0) {
+                throw new RuntimeException("SQL中的#{没有闭合：" + text);
+            }
+            // #{name,jdbcType=VARCHAR}只取属性名称
+            String content = text.substring(open + PLACEHOLDER_OPEN.length(), close);
+            int comma = content.indexOf(',');
+            String property = (comma < 0 ? content : content.substring(0, comma)).trim();
+            if (property.isEmpty()) {
+                throw new RuntimeException("SQL中的#{}没有指定参数名称：" + text);
+            }
+            sql.append(text, start, open).append('?');
+            parameterMappings.add(new ParameterMapping(property));
+            start = close + PLACEHOLDER_CLOSE.length();
+            open = indexOfPlaceholder(text, start);
+        }
+        sql.append(text, start, text.length());
+        return new CompiledSql(sql.toString(), parameterMappings.toArray(new ParameterMapping[0]), null);
+    }
+
+    /**
+     * 查找字符串常量之外的下一个#{，from必须在字符串常量之外；常量中转义的''相当于先结束再开始，不影响判断
+     * @param text SQL
+     * @param from 开始查找的位置
+     * @return #{的位置，没有时返回-1
+     */
+    private static int indexOfPlaceholder(String text, int from) {
+        boolean quoted = false;
+        for (int i = from; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+            } else if (!quoted && text.startsWith(PLACEHOLDER_OPEN, i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 是否为动态SQL
+     * @return 是否为动态SQL
+     */
+    public boolean isDynamic() {
+        return dynamicSql != null;
+    }
+
+    /**
+     * 按参数对象生成执行的SQL和按顺序排列的参数值
+     * @param parameter 参数对象
+     * @return 绑定参数后的SQL
+     */
+    public BoundSql bind(Object parameter) {
+        if (dynamicSql != null) {
+            return dynamicSql.bind(parameter);
+        }
+        Object[] values = new Object[parameterMappings.length];
+        for (int i = 0; i < parameterMappings.length; i++) {
+            values[i] = parameterMappings[i].getValue(parameter);
+        }
+        return new BoundSql(sql, values);
+    }
+}
@@ -1,7 +1,18 @@
 package com.lee.rokhan.mybatis.mapping;
 
+import com.lee.rokhan.mybatis.cache.Cache;
+import com.lee.rokhan.mybatis.cache.CacheProperties;
+import com.lee.rokhan.mybatis.cache.CacheStatistics;
+import com.lee.rokhan.mybatis.cache.Caches;
+import com.lee.rokhan.mybatis.routing.ReplicaPolicy;
+import com.lee.rokhan.mybatis.session.ExecutorType;
 import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Mybatis的配置
@@ -13,5 +24,132 @@ public class Configuration {
 
     private Environment environment;
 
+    /**
+     * 从库的环境信息，为空时所有SQL都使用主库（environment）；
+     * 从库的connectionTimeout应该设置得小一些，从库不可用时尽快改用主库
+     */
+    private List<Environment> replicas = new ArrayList<>();
+
+    /**
+     * 从库的负载均衡策略
+     */
+    private ReplicaPolicy replicaPolicy = ReplicaPolicy.ROUND_ROBIN;
+
+    /**
+     * 从库连续失败多少次后摘除
+     */
+    private int replicaFailureThreshold = 3;
+
+    /**
+     * 从库摘除的时间，到期后重新使用，单位：毫秒
+     */
+    private long replicaEjectTime = 30000;
+
     private Map<String, Statement> statementMap;
+
+    /**
+     * 打开会话时默认的执行器类型
+     */
+    private ExecutorType defaultExecutorType = ExecutorType.SIMPLE;
+
+    /**
+     * 查询时每次从数据库读取的行数，小于等于0表示使用驱动的默认值，Statement可以单独指定
+     */
+    private int defaultFetchSize;
+
+    /**
+     * 批量执行时每批的最大条数
+     */
+    private int batchSize = 1000;
+
+    /**
+     * 批量执行时每批参数的最大估算字节数，小于等于0表示不限制
+     */
+    private long batchMaxBytes = 4 * 1024 * 1024;
+
+    /**
+     * 异步会话等待执行的最大任务数，超出时直接返回失败
+     */
+    private int asyncQueueSize = 1024;
+
+    /**
+     * 是否启用二级缓存
+     */
+    private boolean cacheEnabled = true;
+
+    /**
+     * 是否记录SQL的执行指标，见SqlMetrics
+     */
+    private boolean metricsEnabled = true;
+
+    /**
+     * 执行耗时超过该值的SQL记录为慢SQL，小于等于0表示不记录，单位：毫秒
+     */
+    private long slowQueryThreshold = 1000;
+
+    /**
+     * 慢SQL的采样率，0到1之间，采样到的慢SQL才收集绑定的参数
+     */
+    private double slowQuerySampleRate = 1.0;
+
+    /**
+     * 命名空间对应的二级缓存
+     */
+    private final Map<String, Cache> caches = new ConcurrentHashMap<>();
+
+    /**
+     * 获取mapper数据信息
+     * @param statementId 命名空间.id
+     * @return mapper数据信息
+     */
+    public Statement getStatement(String statementId) {
+        Statement statement = statementMap == null ? null : statementMap.get(statementId);
+        if (statement == null) {
+            throw new RuntimeException("找不到" + statementId + "对应的SQL");
+        }
+        return statement;
+    }
+
+    /**
+     * 为命名空间创建二级缓存，命名空间中的查询结果按参数缓存，命名空间中的新增、修改和删除提交后清空缓存
+     * @param namespace 命名空间
+     * @param properties 缓存的配置
+     * @return 缓存
+     */
+    public Cache addCache(String namespace, CacheProperties properties) {
+        return addCache(Caches.newCache(namespace, properties));
+    }
+
+    /**
+     * 添加二级缓存，以缓存的标识作为命名空间
+     * @param cache 缓存
+     * @return 缓存
+     */
+    public Cache addCache(Cache cache) {
+        if (caches.putIfAbsent(cache.getId(), cache) != null) {
+            throw new RuntimeException("命名空间" + cache.getId() + "已经存在二级缓存");
+        }
+        return cache;
+    }
+
+    /**
+     * 获取命名空间的二级缓存
+     * @param namespace 命名空间
+     * @return 缓存，未启用二级缓存或者命名空间没有缓存时返回null
+     */
+    public Cache getCache(String namespace) {
+        return cacheEnabled ? caches.get(namespace) : null;
+    }
+
+    /**
+     * 获取所有二级缓存的统计信息
+     * @return 命名空间对应的统计信息快照
+     */
+    public Map<String, CacheStatistics> getCacheStatistics() {
+        Map<String, CacheStatistics> statisticsMap = new LinkedHashMap<>();
+        for (Cache cache : caches.values()) {
+            statisticsMap.put(cache.getId(), cache.getStatistics());
+        }
+        return statisticsMap;
+    }
 }
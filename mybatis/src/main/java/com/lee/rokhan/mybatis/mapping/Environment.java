@@ -30,4 +30,59 @@ public class Environment {
      */
     private String password;
 
+    /**
+     * 连接池的最大连接数
+     */
+    private int maxPoolSize = 10;
+
+    /**
+     * 连接池保持的最小空闲连接数，创建连接池时在后台预先建立，超出部分空闲超时后关闭；
+     * 默认远小于最大连接数，流量低时不占用数据库的连接
+     */
+    private int minIdle = 2;
+
+    /**
+     * 获取连接的最长等待时间，单位：毫秒
+     */
+    private long connectionTimeout = 30000;
+
+    /**
+     * 连接的最长空闲时间，小于等于0表示不关闭空闲连接，单位：毫秒
+     */
+    private long idleTimeout = 600000;
+
+    /**
+     * 连接的最长存活时间，小于等于0表示不限制，单位：毫秒
+     */
+    private long maxLifetime = 1800000;
+
+    /**
+     * 连接借出超过该时间未归还则报告连接泄漏，小于等于0表示不检测，单位：毫秒
+     */
+    private long leakDetectionThreshold = 0;
+
+    /**
+     * 借出连接时校验连接是否可用的最长等待时间，单位：毫秒
+     */
+    private long validationTimeout = 5000;
+
+    /**
+     * 每个物理连接缓存的PreparedStatement数量，按最近最少使用淘汰，小于等于0表示不缓存
+     */
+    private int statementCacheSize = 64;
+
+    /**
+     * 是否根据借出连接的等待时间和连接使用率自动调整连接池的大小
+     */
+    private boolean adaptiveSizing = true;
+
+    /**
+     * 借出连接的平均等待时间超过该值时扩容，单位：毫秒
+     */
+    private long targetWaitTime = 1;
+
+    /**
+     * 连接默认是否自动提交事务
+     */
+    private boolean autoCommit = true;
 }
@@ -0,0 +1,96 @@
+package com.lee.rokhan.mybatis.mapping;
+
+import com.lee.rokhan.mybatis.reflection.PropertyAccessor;
+import com.lee.rokhan.mybatis.reflection.PropertyAccessors;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.temporal.Temporal;
+import java.util.Date;
+
+/**
+ * #{}占位符对应的参数
+ * 参数对象为简单类型时直接作为参数值，否则按属性路径（支持a.b）读取属性。
+ * 同一个占位符的参数对象通常是同一个类，因此缓存上一次的类型和属性读取器，命中时不再查找
+ * @author lichujun
+ * @date 2019/8/6 10:30
+ */
+public final class ParameterMapping {
+
+    /**
+     * 属性路径
+     */
+    @Getter
+    private final String property;
+
+    private final String[] path;
+
+    /**
+     * 上一次解析的参数类型和属性读取器，只缓存单层属性
+     */
+    private volatile CachedAccessor cachedAccessor;
+
+    public ParameterMapping(String property) {
+        this.property = property;
+        this.path = property.split("\\.");
+    }
+
+    /**
+     * 从参数对象中读取参数值
+     * @param parameter 参数对象
+     * @return 参数值
+     */
+    public Object getValue(Object parameter) {
+        if (parameter == null || isSimpleType(parameter.getClass())) {
+            return parameter;
+        }
+        try {
+            if (path.length == 1) {
+                Class<?> type = parameter.getClass();
+                CachedAccessor cached = cachedAccessor;
+                if (cached == null || cached.type != type) {
+                    cached = new CachedAccessor(type, PropertyAccessors.forProperty(type, property));
+                    cachedAccessor = cached;
+                }
+                return cached.accessor.get(parameter);
+            }
+            Object value = parameter;
+            for (String name : path) {
+                if (value == null) {
+                    return null;
+                }
+                value = PropertyAccessors.forProperty(value.getClass(), name).get(value);
+            }
+            return value;
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("读取参数" + property + "发生异常", e);
+        }
+    }
+
+    /**
+     * 是否为可以直接作为参数值的简单类型
+     * @param type 类型
+     * @return 是否为简单类型
+     */
+    public static boolean isSimpleType(Class<?> type) {
+        return type == String.class || type.isPrimitive() || Number.class.isAssignableFrom(type)
+                || type == Boolean.class || type == Character.class || Date.class.isAssignableFrom(type)
+                || Temporal.class.isAssignableFrom(type) || type.isEnum() || type == byte[].class
+                || type == BigDecimal.class || type == BigInteger.class;
+    }
+
+    private static final class CachedAccessor {
+
+        private final Class<?> type;
+
+        private final PropertyAccessor accessor;
+
+        private CachedAccessor(Class<?> type, PropertyAccessor accessor) {
+            this.type = type;
+            this.accessor = accessor;
+        }
+    }
+}
@@ -1,6 +1,18 @@
 package com.lee.rokhan.mybatis.mapping;
 
+import com.lee.rokhan.mybatis.executor.resultset.ResultShape;
+import com.lee.rokhan.mybatis.executor.resultset.RowMapper;
+import com.lee.rokhan.mybatis.routing.DataSourceRoute;
+import com.lee.rokhan.mybatis.type.TypeAliases;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * mapper数据信息
@@ -17,4 +29,108 @@ public class Statement {
     private String resultType;
 
     private String sql;
+
+    /**
+     * 查询时每次从数据库读取的行数，小于等于0表示使用Configuration.defaultFetchSize
+     */
+    private int fetchSize;
+
+    /**
+     * 是否获取数据库生成的主键
+     */
+    private boolean useGeneratedKeys;
+
+    /**
+     * 数据库生成的主键设置到参数对象的哪些属性，多个用逗号分隔
+     */
+    private String keyProperty;
+
+    /**
+     * 查询时是否使用命名空间的二级缓存
+     */
+    private boolean useCache = true;
+
+    /**
+     * 查询前是否清空命名空间的二级缓存，新增、修改和删除总是在提交后清空
+     */
+    private boolean flushCache;
+
+    /**
+     * 使用主库还是从库，没有配置从库时都使用主库
+     */
+    private DataSourceRoute route = DataSourceRoute.AUTO;
+
+    /**
+     * 编译后的SQL，第一次执行时编译
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private volatile CompiledSql compiledSql;
+
+    /**
+     * 解析后的返回类型
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private volatile Class<?> resultClass;
+
+    /**
+     * 结果集形状对应的编译好的行映射，第一次遇到某种形状时编译
+     */
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private final Map<ResultShape, RowMapper<?>> rowMappers = new ConcurrentHashMap<>(4);
+
+    public void setSql(String sql) {
+        this.sql = sql;
+        this.compiledSql = null;
+    }
+
+    public void setResultType(String resultType) {
+        this.resultType = resultType;
+        this.resultClass = null;
+        this.rowMappers.clear();
+    }
+
+    /**
+     * 获取命名空间，即id最后一个.之前的部分
+     * @return 命名空间，id中没有.时返回空字符串
+     */
+    public String getNamespace() {
+        int index = id == null ? -1 : id.lastIndexOf('.');
+        return index < 0 ? "" : id.substring(0, index);
+    }
+
+    /**
+     * 获取编译后的SQL，只编译一次
+     * @return 编译后的SQL
+     */
+    public CompiledSql getCompiledSql() {
+        CompiledSql compiled = compiledSql;
+        if (compiled == null) {
+            compiled = CompiledSql.compile(sql);
+            compiledSql = compiled;
+        }
+        return compiled;
+    }
+
+    /**
+     * 获取返回类型，未指定时返回Map
+     * @return 返回类型
+     */
+    public Class<?> getResultClass() {
+        Class<?> clazz = resultClass;
+        if (clazz == null) {
+            clazz = TypeAliases.resolve(resultType);
+            if (clazz == null) {
+                clazz = Map.class;
+            }
+            resultClass = clazz;
+        }
+        return clazz;
+    }
 }
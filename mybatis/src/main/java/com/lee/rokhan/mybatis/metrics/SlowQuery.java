@@ -0,0 +1,44 @@
+package com.lee.rokhan.mybatis.metrics;
+
+import lombok.Data;
+
+/**
+ * 慢SQL记录
+ * @author lichujun
+ * @date 2019/8/12 10:20
+ */
+@Data
+public class SlowQuery {
+
+    /**
+     * 命名空间.id
+     */
+    private String statementId;
+
+    private String sql;
+
+    /**
+     * 绑定的参数
+     */
+    private String parameters;
+
+    /**
+     * 执行耗时，单位：毫秒
+     */
+    private double elapsedMillis;
+
+    /**
+     * 查询返回或者影响的行数
+     */
+    private long rows;
+
+    /**
+     * 执行失败时的异常信息
+     */
+    private String error;
+
+    /**
+     * 执行完成的时间戳
+     */
+    private long timestamp;
+}
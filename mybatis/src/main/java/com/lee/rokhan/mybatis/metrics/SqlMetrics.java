@@ -0,0 +1,137 @@
+package com.lee.rokhan.mybatis.metrics;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * SQL执行指标的注册表
+ * 按Statement的标识记录执行耗时、获取连接的等待时间、行数和失败次数，并保留最近的慢SQL；
+ * 同一个进程中的所有SqlSessionFactory共用，便于统一暴露
+ * @author lichujun
+ * @date 2019/8/12 10:30
+ */
+@Slf4j
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class SqlMetrics {
+
+    /**
+     * 保留的慢SQL数量
+     */
+    private static final int SLOW_QUERY_CAPACITY = 100;
+
+    /**
+     * 慢SQL中每个参数的最大长度，防止大字段占用内存
+     */
+    private static final int MAX_PARAMETER_LENGTH = 128;
+
+    private static final Map<String, StatementMetrics> STATEMENT_METRICS = new ConcurrentHashMap<>();
+
+    private static final Deque<SlowQuery> SLOW_QUERIES = new ArrayDeque<>(SLOW_QUERY_CAPACITY);
+
+    /**
+     * 获取Statement的执行指标，不存在则新建
+     * @param statementId 命名空间.id
+     * @return 执行指标
+     */
+    public static StatementMetrics getStatementMetrics(String statementId) {
+        StatementMetrics metrics = STATEMENT_METRICS.get(statementId);
+        if (metrics == null) {
+            metrics = STATEMENT_METRICS.computeIfAbsent(statementId, StatementMetrics::new);
+        }
+        return metrics;
+    }
+
+    /**
+     * 慢SQL是否被采样，采样后才需要收集参数
+     * @param sampleRate 采样率，0到1之间
+     * @return 是否采样
+     */
+    public static boolean sampleSlowQuery(double sampleRate) {
+        return sampleRate >= 1 || (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+
+    /**
+     * 记录慢SQL，超出容量时丢弃最早的
+     * @param slowQuery 慢SQL
+     */
+    public static void addSlowQuery(SlowQuery slowQuery) {
+        log.warn("慢SQL：{}，耗时：{}ms，行数：{}，参数：{}", slowQuery.getStatementId(),
+                String.format("%.2f", slowQuery.getElapsedMillis()), slowQuery.getRows(), slowQuery.getParameters());
+        synchronized (SLOW_QUERIES) {
+            if (SLOW_QUERIES.size() >= SLOW_QUERY_CAPACITY) {
+                SLOW_QUERIES.pollLast();
+            }
+            SLOW_QUERIES.offerFirst(slowQuery);
+        }
+    }
+
+    /**
+     * 获取所有Statement的执行指标，按总耗时从高到低排列
+     * @return 执行指标的快照
+     */
+    public static List<StatementMetricsSnapshot> getSnapshots() {
+        List<StatementMetricsSnapshot> snapshots = new ArrayList<>(STATEMENT_METRICS.size());
+        for (StatementMetrics metrics : STATEMENT_METRICS.values()) {
+            snapshots.add(metrics.getSnapshot());
+        }
+        snapshots.sort(Comparator.comparingLong(
+                (StatementMetricsSnapshot snapshot) -> snapshot.getExecutionTime().getSum()).reversed());
+        return snapshots;
+    }
+
+    /**
+     * 获取最近的慢SQL，最新的在前
+     * @return 慢SQL
+     */
+    public static List<SlowQuery> getSlowQueries() {
+        synchronized (SLOW_QUERIES) {
+            return new ArrayList<>(SLOW_QUERIES);
+        }
+    }
+
+    /**
+     * 清空所有指标和慢SQL
+     */
+    public static void reset() {
+        STATEMENT_METRICS.clear();
+        synchronized (SLOW_QUERIES) {
+            SLOW_QUERIES.clear();
+        }
+    }
+
+    /**
+     * 将绑定的参数转换成字符串，过长的参数截断
+     * @param values 参数
+     * @return 参数的字符串
+     */
+    public static String formatParameters(Object[] values) {
+        StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            Object value = values[i];
+            String text;
+            if (value instanceof byte[]) {
+                text = "byte[" + ((byte[]) value).length + "]";
+            } else {
+                text = String.valueOf(value);
+            }
+            if (text.length() > MAX_PARAMETER_LENGTH) {
+                text = text.substring(0, MAX_PARAMETER_LENGTH) + "...";
+            }
+            builder.append(text);
+        }
+        return builder.append(']').toString();
+    }
+}
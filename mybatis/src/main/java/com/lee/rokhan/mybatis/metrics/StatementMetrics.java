@@ -0,0 +1,64 @@
+package com.lee.rokhan.mybatis.metrics;
+
+import com.lee.rokhan.common.metrics.LatencyHistogram;
+import lombok.Getter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个Statement的执行指标，线程安全
+ * 执行耗时和获取连接的等待时间以微秒记录
+ * @author lichujun
+ * @date 2019/8/12 10:10
+ */
+public class StatementMetrics {
+
+    @Getter
+    private final String statementId;
+
+    private final LatencyHistogram executionTime = new LatencyHistogram();
+
+    private final LatencyHistogram poolWaitTime = new LatencyHistogram();
+
+    private final LongAdder rows = new LongAdder();
+
+    private final LongAdder errors = new LongAdder();
+
+    StatementMetrics(String statementId) {
+        this.statementId = statementId;
+    }
+
+    /**
+     * 记录一次执行
+     * @param elapsedNanos 执行耗时，包含获取连接的等待时间，单位：纳秒
+     * @param poolWaitNanos 获取连接的等待时间，单位：纳秒
+     * @param rowCount 查询返回或者影响的行数，未知时传0
+     * @param error 是否执行失败
+     */
+    public void record(long elapsedNanos, long poolWaitNanos, long rowCount, boolean error) {
+        executionTime.record(TimeUnit.NANOSECONDS.toMicros(elapsedNanos));
+        poolWaitTime.record(TimeUnit.NANOSECONDS.toMicros(poolWaitNanos));
+        if (rowCount > 0) {
+            rows.add(rowCount);
+        }
+        if (error) {
+            errors.increment();
+        }
+    }
+
+    /**
+     * 获取快照
+     * @return 快照
+     */
+    public StatementMetricsSnapshot getSnapshot() {
+        StatementMetricsSnapshot snapshot = new StatementMetricsSnapshot();
+        snapshot.setStatementId(statementId);
+        snapshot.setExecutionTime(executionTime.getSnapshot());
+        snapshot.setPoolWaitTime(poolWaitTime.getSnapshot());
+        snapshot.setCount(snapshot.getExecutionTime().getCount());
+        snapshot.setRows(rows.sum());
+        snapshot.setErrors(errors.sum());
+        return snapshot;
+    }
+}
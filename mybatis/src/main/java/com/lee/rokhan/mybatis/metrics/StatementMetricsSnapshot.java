@@ -0,0 +1,43 @@
+package com.lee.rokhan.mybatis.metrics;
+
+import com.lee.rokhan.common.metrics.HistogramSnapshot;
+import lombok.Data;
+
+/**
+ * 单个Statement执行指标的快照，从启动或者上次重置开始累计
+ * @author lichujun
+ * @date 2019/8/12 10:10
+ */
+@Data
+public class StatementMetricsSnapshot {
+
+    /**
+     * 命名空间.id
+     */
+    private String statementId;
+
+    /**
+     * 执行次数
+     */
+    private long count;
+
+    /**
+     * 执行失败的次数
+     */
+    private long errors;
+
+    /**
+     * 查询返回或者影响的总行数，批量执行和游标查询不计入
+     */
+    private long rows;
+
+    /**
+     * 执行耗时，单位：微秒
+     */
+    private HistogramSnapshot executionTime;
+
+    /**
+     * 获取连接的等待时间，单位：微秒
+     */
+    private HistogramSnapshot poolWaitTime;
+}
@@ -0,0 +1,154 @@
+package com.lee.rokhan.mybatis.pool;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 连接池大小的自动调整
+ * 每个采样周期统计借出连接的平均等待时间、超时次数和连接使用率：
+ * 1、有线程在等待、出现超时、平均等待时间超过targetWaitTime或者使用率超过80%时，目标连接数增加25%（至少1个），并立即补充连接；
+ * 2、连续30个采样周期没有等待并且使用率低于50%时，目标连接数减少25%（至少1个），并关闭多余的空闲连接。
+ * 目标连接数在minIdle和maxPoolSize之间
+ * @author lichujun
+ * @date 2019/8/5 17:30
+ */
+@Slf4j
+final class AdaptivePoolSizer implements Runnable {
+
+    /**
+     * 采样周期，单位：毫秒
+     */
+    static final long SAMPLE_PERIOD = 1000;
+
+    /**
+     * 扩容的使用率阈值
+     */
+    private static final double HIGH_UTILIZATION = 0.8;
+
+    /**
+     * 缩容的使用率阈值
+     */
+    private static final double LOW_UTILIZATION = 0.5;
+
+    /**
+     * 连续空闲多少个采样周期后缩容
+     */
+    private static final int SHRINK_SAMPLES = 30;
+
+    private final DataSourcePool pool;
+
+    private final boolean enabled;
+
+    private final long targetWaitNanos;
+
+    /**
+     * 上一个采样周期结束时的累计值，只在采样线程访问
+     */
+    private long lastSampleNanos = System.nanoTime();
+
+    private long lastBorrowCount;
+
+    private long lastBorrowWaitNanos;
+
+    private long lastTimeoutCount;
+
+    private long lastUsageMillis;
+
+    /**
+     * 连续空闲的采样周期数
+     */
+    private int calmSamples;
+
+    private volatile double averageWaitMillis;
+
+    private volatile double maxWaitMillis;
+
+    private volatile double utilization;
+
+    AdaptivePoolSizer(DataSourcePool pool, boolean enabled, long targetWaitMillis) {
+        this.pool = pool;
+        this.enabled = enabled;
+        this.targetWaitNanos = TimeUnit.MILLISECONDS.toNanos(targetWaitMillis);
+    }
+
+    @Override
+    public void run() {
+        try {
+            sample();
+        } catch (Exception e) {
+            log.error("连接池{}调整连接数发生异常", pool.getPoolName(), e);
+        }
+    }
+
+    private void sample() {
+        long now = System.nanoTime();
+        long periodMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(now - lastSampleNanos));
+        lastSampleNanos = now;
+
+        long borrowCount = pool.borrowCount.sum();
+        long borrowWaitNanos = pool.borrowWaitNanos.sum();
+        long timeoutCount = pool.timeoutCount.sum();
+        long usageMillis = pool.usageMillis.sum();
+        long borrows = borrowCount - lastBorrowCount;
+        long waitNanos = borrowWaitNanos - lastBorrowWaitNanos;
+        long timeouts = timeoutCount - lastTimeoutCount;
+        long usage = usageMillis - lastUsageMillis;
+        lastBorrowCount = borrowCount;
+        lastBorrowWaitNanos = borrowWaitNanos;
+        lastTimeoutCount = timeoutCount;
+        lastUsageMillis = usageMillis;
+
+        int total = pool.getTotalConnections();
+        int active = pool.getActiveConnections();
+        int waiting = pool.getThreadsAwaitingConnection();
+        long averageWaitNanos = borrows == 0 ? 0 : waitNanos / borrows;
+        // 借出时间在归还时才累计，长时间未归还的连接用当前借出的比例补充
+        double currentUtilization = total == 0 ? 0 : Math.max((double) usage / (periodMillis * total),
+                (double) active / total);
+        averageWaitMillis = averageWaitNanos / 1000000.0;
+        maxWaitMillis = pool.maxWaitNanos.getThenReset() / 1000000.0;
+        utilization = Math.min(1.0, currentUtilization);
+
+        if (!enabled || pool.isClosed()) {
+            return;
+        }
+        int target = pool.getTargetPoolSize();
+        if (waiting > 0 || timeouts > 0 || averageWaitNanos > targetWaitNanos
+                || currentUtilization >= HIGH_UTILIZATION) {
+            calmSamples = 0;
+            int step = Math.max(1, Math.max(waiting, (int) Math.ceil(Math.max(target, total) * 0.25)));
+            int newTarget = Math.min(pool.getMaxPoolSize(), Math.max(target, total) + step);
+            if (newTarget > target) {
+                log.info("连接池{}扩容，目标连接数：{} -> {}，等待线程：{}，平均等待：{}ms，使用率：{}", pool.getPoolName(),
+                        target, newTarget, waiting, averageWaitMillis, String.format("%.2f", utilization));
+                pool.resize(newTarget);
+            }
+        } else if (currentUtilization < LOW_UTILIZATION) {
+            if (++calmSamples < SHRINK_SAMPLES) {
+                return;
+            }
+            calmSamples = 0;
+            int newTarget = Math.max(pool.getMinIdle(), target - Math.max(1, (int) Math.ceil(target * 0.25)));
+            if (newTarget < target) {
+                log.info("连接池{}缩容，目标连接数：{} -> {}，使用率：{}", pool.getPoolName(), target, newTarget,
+                        String.format("%.2f", utilization));
+                pool.resize(newTarget);
+            }
+        } else {
+            calmSamples = 0;
+        }
+    }
+
+    double getAverageWaitMillis() {
+        return averageWaitMillis;
+    }
+
+    double getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    double getUtilization() {
+        return utilization;
+    }
+}
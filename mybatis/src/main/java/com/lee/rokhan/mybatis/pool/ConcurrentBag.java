@@ -0,0 +1,234 @@
+package com.lee.rokhan.mybatis.pool;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.lee.rokhan.mybatis.pool.PoolEntry.*;
+
+/**
+ * 存放连接条目的无锁容器
+ * 借出的顺序：
+ * 1、当前线程最近归还的连接（线程亲和，通常没有竞争）；
+ * 2、遍历共享列表，CAS抢占空闲的连接；
+ * 3、在公平的交接队列上等待其他线程归还或者新建的连接，最多等待超时时间。
+ * 归还时如果有线程在等待，直接交给等待的线程，否则放回当前线程的缓存
+ * @author lichujun
+ * @date 2019/8/5 10:30
+ */
+final class ConcurrentBag {
+
+    /**
+     * 每个线程最多缓存的连接数
+     */
+    private static final int MAX_THREAD_CACHE_SIZE = 16;
+
+    /**
+     * 所有连接，只在新建和关闭连接时写入
+     */
+    private final CopyOnWriteArrayList<PoolEntry> sharedList = new CopyOnWriteArrayList<>();
+
+    /**
+     * 线程最近归还的连接，使用弱引用，连接关闭后不会因为线程缓存而无法回收
+     */
+    private final ThreadLocal<List<WeakReference<PoolEntry>>> threadList =
+            ThreadLocal.withInitial(() -> new ArrayList<>(MAX_THREAD_CACHE_SIZE));
+
+    /**
+     * 公平的交接队列，先等待的线程先拿到连接
+     */
+    private final SynchronousQueue<PoolEntry> handoffQueue = new SynchronousQueue<>(true);
+
+    /**
+     * 正在获取连接的线程数
+     */
+    private final AtomicInteger waiters = new AtomicInteger();
+
+    private final BagStateListener listener;
+
+    private volatile boolean closed;
+
+    ConcurrentBag(BagStateListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * 借出连接
+     * @param timeout 最长等待时间
+     * @param timeUnit 时间单位
+     * @return 连接条目，超时则返回null
+     * @throws InterruptedException 等待时被中断
+     */
+    PoolEntry borrow(long timeout, TimeUnit timeUnit) throws InterruptedException {
+        List<WeakReference<PoolEntry>> list = threadList.get();
+        for (int i = list.size() - 1; i >= 0; i--) {
+            PoolEntry poolEntry = list.remove(i).get();
+            if (poolEntry != null && poolEntry.compareAndSetState(STATE_NOT_IN_USE, STATE_IN_USE)) {
+                return poolEntry;
+            }
+        }
+
+        int waiting = waiters.incrementAndGet();
+        try {
+            for (PoolEntry poolEntry : sharedList) {
+                if (poolEntry.compareAndSetState(STATE_NOT_IN_USE, STATE_IN_USE)) {
+                    // 可能抢了其他等待线程的连接，为其他等待的线程补充连接
+                    if (waiting > 1) {
+                        listener.addBagItem(waiting - 1);
+                    }
+                    return poolEntry;
+                }
+            }
+
+            listener.addBagItem(waiting);
+
+            long timeoutNanos = timeUnit.toNanos(timeout);
+            do {
+                long start = System.nanoTime();
+                PoolEntry poolEntry = handoffQueue.poll(timeoutNanos, TimeUnit.NANOSECONDS);
+                if (poolEntry == null || poolEntry.compareAndSetState(STATE_NOT_IN_USE, STATE_IN_USE)) {
+                    return poolEntry;
+                }
+                timeoutNanos -= System.nanoTime() - start;
+            } while (timeoutNanos > TimeUnit.MICROSECONDS.toNanos(10));
+            return null;
+        } finally {
+            waiters.decrementAndGet();
+        }
+    }
+
+    /**
+     * 归还连接
+     * @param poolEntry 连接条目
+     */
+    void requite(PoolEntry poolEntry) {
+        poolEntry.setState(STATE_NOT_IN_USE);
+        for (int i = 0; waiters.get() > 0; i++) {
+            if (poolEntry.getState() != STATE_NOT_IN_USE || handoffQueue.offer(poolEntry)) {
+                return;
+            }
+            // 等待的线程可能还没有进入交接队列，短暂让出CPU
+            if ((i & 0xff) == 0xff) {
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(10));
+            } else {
+                Thread.yield();
+            }
+        }
+        List<WeakReference<PoolEntry>> list = threadList.get();
+        if (list.size() < MAX_THREAD_CACHE_SIZE) {
+            list.add(new WeakReference<>(poolEntry));
+        }
+    }
+
+    /**
+     * 添加新建的连接，有线程在等待时直接交给等待的线程
+     * @param poolEntry 连接条目
+     */
+    void add(PoolEntry poolEntry) {
+        if (closed) {
+            throw new IllegalStateException("连接池已关闭，不能添加连接");
+        }
+        sharedList.add(poolEntry);
+        while (waiters.get() > 0 && poolEntry.getState() == STATE_NOT_IN_USE && !handoffQueue.offer(poolEntry)) {
+            Thread.yield();
+        }
+    }
+
+    /**
+     * 移除连接，只能移除已借出或者已保留的连接
+     * @param poolEntry 连接条目
+     * @return 是否移除成功
+     */
+    boolean remove(PoolEntry poolEntry) {
+        if (!poolEntry.compareAndSetState(STATE_IN_USE, STATE_REMOVED)
+                && !poolEntry.compareAndSetState(STATE_RESERVED, STATE_REMOVED)) {
+            return false;
+        }
+        sharedList.remove(poolEntry);
+        return true;
+    }
+
+    /**
+     * 保留空闲的连接，保留后不会被借出，用于关闭空闲连接
+     * @param poolEntry 连接条目
+     * @return 是否保留成功
+     */
+    boolean reserve(PoolEntry poolEntry) {
+        return poolEntry.compareAndSetState(STATE_NOT_IN_USE, STATE_RESERVED);
+    }
+
+    /**
+     * 取消保留
+     * @param poolEntry 连接条目
+     */
+    void unreserve(PoolEntry poolEntry) {
+        if (poolEntry.compareAndSetState(STATE_RESERVED, STATE_NOT_IN_USE)) {
+            while (waiters.get() > 0 && poolEntry.getState() == STATE_NOT_IN_USE
+                    && !handoffQueue.offer(poolEntry)) {
+                Thread.yield();
+            }
+        }
+    }
+
+    /**
+     * 获取指定状态的连接
+     * @param state 状态
+     * @return 连接条目的副本
+     */
+    List<PoolEntry> values(int state) {
+        List<PoolEntry> list = new ArrayList<>(sharedList.size());
+        for (PoolEntry poolEntry : sharedList) {
+            if (poolEntry.getState() == state) {
+                list.add(poolEntry);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * 获取所有连接
+     * @return 连接条目的副本
+     */
+    List<PoolEntry> values() {
+        return new ArrayList<>(sharedList);
+    }
+
+    int getCount(int state) {
+        int count = 0;
+        for (PoolEntry poolEntry : sharedList) {
+            if (poolEntry.getState() == state) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    int size() {
+        return sharedList.size();
+    }
+
+    int getWaitingThreadCount() {
+        return waiters.get();
+    }
+
+    void close() {
+        closed = true;
+    }
+
+    /**
+     * 连接不足时通知连接池新建连接
+     */
+    interface BagStateListener {
+
+        /**
+         * 新建连接
+         * @param waiting 正在等待连接的线程数
+         */
+        void addBagItem(int waiting);
+    }
+}
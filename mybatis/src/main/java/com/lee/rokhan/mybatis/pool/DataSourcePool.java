@@ -1,25 +1,565 @@
 package com.lee.rokhan.mybatis.pool;
 
 import com.lee.rokhan.mybatis.mapping.Environment;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
 
+import java.io.Closeable;
 import java.sql.Connection;
+import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.lee.rokhan.mybatis.pool.PoolEntry.*;
 
 /**
  * 数据库连接池
+ * 借出连接优先从当前线程最近归还的连接和共享列表中无锁获取，连接不足时由后台线程新建连接，
+ * 借用线程在公平的交接队列上等待，最多等待connectionTimeout毫秒。
+ * 创建时在后台预先建立minIdle个连接，避免刚启动时的请求等待建立连接；
+ * 后台定时任务关闭超出目标连接数且空闲超时的连接，并补充连接到最小空闲数和目标连接数；
+ * 开启自动调整时，目标连接数根据借出连接的等待时间和连接使用率在minIdle和maxPoolSize之间调整，见{@link AdaptivePoolSizer}；
+ * 连接到达最大存活时间后被驱逐，空闲的立即关闭，借出的归还后关闭
  * @author lichujun
  * @date 2019/7/31 14:44
  */
-public class DataSourcePool extends AbstractDataSource {
+@Slf4j
+public class DataSourcePool extends AbstractDataSource implements Closeable {
+
+    /**
+     * 连接在该时间内使用过则借出时不再校验，单位：毫秒
+     */
+    private static final long ALIVE_BYPASS_WINDOW = 500;
+
+    /**
+     * 空闲连接检查的周期，单位：毫秒
+     */
+    private static final long HOUSEKEEPING_PERIOD = 30000;
+
+    /**
+     * 连接池编号生成器，用于线程名称
+     */
+    private static final AtomicInteger POOL_NUMBER = new AtomicInteger();
 
     private final Environment environment;
 
+    private final String poolName;
+
+    private final int maxPoolSize;
+
+    private final int minIdle;
+
+    /**
+     * 目标连接数，在minIdle和maxPoolSize之间
+     */
+    private volatile int targetPoolSize;
+
+    private final ConcurrentBag connectionBag;
+
+    /**
+     * 包括正在新建的连接在内的连接总数，用于限制最大连接数
+     */
+    private final AtomicInteger totalConnections = new AtomicInteger();
+
+    /**
+     * 新建连接的线程，队列长度为最大连接数，多余的新建请求丢弃
+     */
+    private final ThreadPoolExecutor addConnectionExecutor;
+
+    /**
+     * 关闭连接的线程，物理连接的关闭可能较慢，不阻塞归还连接的线程；连接池关闭后在调用线程关闭
+     */
+    private final ThreadPoolExecutor closeConnectionExecutor;
+
+    /**
+     * 执行空闲检查、最大存活时间和连接泄漏检测的定时线程
+     */
+    private final ScheduledThreadPoolExecutor houseKeepingExecutor;
+
+    /**
+     * 校验连接的超时时间，单位：秒
+     */
+    private final int validationTimeoutSeconds;
+
+    private final AdaptivePoolSizer poolSizer;
+
+    /**
+     * 借出连接的次数
+     */
+    final LongAdder borrowCount = new LongAdder();
+
+    /**
+     * 借出连接的总等待时间，单位：纳秒
+     */
+    final LongAdder borrowWaitNanos = new LongAdder();
+
+    /**
+     * 采样周期内借出连接的最长等待时间，单位：纳秒
+     */
+    final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * 获取连接超时的次数
+     */
+    final LongAdder timeoutCount = new LongAdder();
+
+    /**
+     * 连接被借出的总时间，单位：毫秒
+     */
+    final LongAdder usageMillis = new LongAdder();
+
+    private final LongAdder createdCount = new LongAdder();
+
+    private final LongAdder closedCount = new LongAdder();
+
+    /**
+     * 最近一次新建连接失败的异常，获取连接超时时作为原因抛出
+     */
+    private volatile Throwable lastConnectionFailure;
+
+    private volatile boolean shutdown;
+
     public DataSourcePool(Environment environment) {
+        Objects.requireNonNull(environment, "数据库环境信息不能为空");
+        if (StringUtils.isBlank(environment.getUrl())) {
+            throw new RuntimeException("数据库url不能为空");
+        }
+        if (environment.getMaxPoolSize() < 1) {
+            throw new RuntimeException("连接池的最大连接数不能小于1");
+        }
+        if (StringUtils.isNotBlank(environment.getDriver())) {
+            try {
+                Class.forName(environment.getDriver());
+            } catch (ClassNotFoundException e) {
+                throw new RuntimeException("找不到数据库驱动" + environment.getDriver(), e);
+            }
+        }
         this.environment = environment;
+        this.poolName = "rokhan-pool-" + POOL_NUMBER.incrementAndGet();
+        this.maxPoolSize = environment.getMaxPoolSize();
+        this.minIdle = environment.getMinIdle() < 0 || environment.getMinIdle() > maxPoolSize
+                ? maxPoolSize : environment.getMinIdle();
+        this.targetPoolSize = minIdle;
+        this.validationTimeoutSeconds = (int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(
+                environment.getValidationTimeout() + 999));
+        this.connectionBag = new ConcurrentBag(this::addBagItem);
+        this.addConnectionExecutor = createExecutor(poolName + "-add",
+                new ArrayBlockingQueue<>(environment.getMaxPoolSize()), new ThreadPoolExecutor.DiscardPolicy());
+        this.closeConnectionExecutor = createExecutor(poolName + "-close",
+                new LinkedBlockingQueue<>(), (task, executor) -> task.run());
+        this.houseKeepingExecutor = new ScheduledThreadPoolExecutor(1, daemonThreadFactory(poolName + "-housekeeper"));
+        this.houseKeepingExecutor.setRemoveOnCancelPolicy(true);
+        this.houseKeepingExecutor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        this.houseKeepingExecutor.scheduleWithFixedDelay(this::houseKeep, HOUSEKEEPING_PERIOD, HOUSEKEEPING_PERIOD,
+                TimeUnit.MILLISECONDS);
+        this.poolSizer = new AdaptivePoolSizer(this, environment.isAdaptiveSizing(), environment.getTargetWaitTime());
+        this.houseKeepingExecutor.scheduleAtFixedRate(poolSizer, AdaptivePoolSizer.SAMPLE_PERIOD,
+                AdaptivePoolSizer.SAMPLE_PERIOD, TimeUnit.MILLISECONDS);
+        log.info("连接池{}已创建，url：{}，最大连接数：{}，最小空闲连接数：{}，后台预热中", poolName, environment.getUrl(),
+                maxPoolSize, minIdle);
+        // 后台预热，不阻塞创建连接池的线程
+        fillPool();
     }
 
     @Override
     public Connection getConnection() throws SQLException {
-        return super.getConnection();
+        if (shutdown) {
+            throw new SQLException("连接池" + poolName + "已关闭");
+        }
+        long connectionTimeout = environment.getConnectionTimeout();
+        long startNanos = System.nanoTime();
+        long timeout = connectionTimeout;
+        try {
+            do {
+                PoolEntry poolEntry = connectionBag.borrow(timeout, TimeUnit.MILLISECONDS);
+                if (poolEntry == null) {
+                    break;
+                }
+                long now = System.currentTimeMillis();
+                if (poolEntry.isMarkedEvicted()
+                        || (now - poolEntry.lastAccessed > ALIVE_BYPASS_WINDOW && !isConnectionAlive(poolEntry))) {
+                    closeConnection(poolEntry, poolEntry.isMarkedEvicted() ? "连接已被驱逐" : "连接校验失败");
+                    timeout = connectionTimeout - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+                    continue;
+                }
+                poolEntry.lastAccessed = now;
+                poolEntry.lastBorrowed = now;
+                if (environment.getLeakDetectionThreshold() > 0) {
+                    poolEntry.leakTask = new LeakTask(poolEntry, houseKeepingExecutor,
+                            environment.getLeakDetectionThreshold());
+                }
+                long waitNanos = System.nanoTime() - startNanos;
+                borrowCount.increment();
+                borrowWaitNanos.add(waitNanos);
+                maxWaitNanos.accumulate(waitNanos);
+                return ProxyConnection.create(this, poolEntry, environment.isAutoCommit());
+            } while (timeout > 0);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("获取数据库连接时线程被中断", e);
+        }
+        timeoutCount.increment();
+        throw new SQLTransientConnectionException(String.format("获取数据库连接超时，等待了%dms，" +
+                        "连接池%s的连接总数：%d，借出：%d，空闲：%d，等待：%d",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos),
+                poolName, getTotalConnections(), getActiveConnections(), getIdleConnections(),
+                getThreadsAwaitingConnection()), lastConnectionFailure);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLException("连接池不支持指定用户名和密码获取连接");
+    }
+
+    /**
+     * 归还连接，由代理连接的close()调用
+     * @param poolEntry 连接条目
+     */
+    void recycle(PoolEntry poolEntry) {
+        LeakTask leakTask = poolEntry.leakTask;
+        if (leakTask != null) {
+            leakTask.cancel();
+            poolEntry.leakTask = null;
+        }
+        long now = System.currentTimeMillis();
+        usageMillis.add(now - poolEntry.lastBorrowed);
+        poolEntry.lastAccessed = now;
+        if (poolEntry.isMarkedEvicted() || shutdown) {
+            closeConnection(poolEntry, shutdown ? "连接池已关闭" : "连接已被驱逐");
+        } else {
+            connectionBag.requite(poolEntry);
+        }
+    }
+
+    boolean isDefaultAutoCommit() {
+        return environment.isAutoCommit();
+    }
+
+    /**
+     * 获取连接总数
+     * @return 连接总数
+     */
+    public int getTotalConnections() {
+        return connectionBag.size();
+    }
+
+    /**
+     * 获取借出的连接数
+     * @return 借出的连接数
+     */
+    public int getActiveConnections() {
+        return connectionBag.getCount(STATE_IN_USE);
+    }
+
+    /**
+     * 获取空闲的连接数
+     * @return 空闲的连接数
+     */
+    public int getIdleConnections() {
+        return connectionBag.getCount(STATE_NOT_IN_USE);
+    }
+
+    /**
+     * 获取正在等待连接的线程数
+     * @return 等待的线程数
+     */
+    public int getThreadsAwaitingConnection() {
+        return connectionBag.getWaitingThreadCount();
+    }
+
+    /**
+     * 获取连接池名称
+     * @return 连接池名称
+     */
+    public String getPoolName() {
+        return poolName;
+    }
+
+    /**
+     * 获取最大连接数
+     * @return 最大连接数
+     */
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    /**
+     * 获取最小空闲连接数
+     * @return 最小空闲连接数
+     */
+    public int getMinIdle() {
+        return minIdle;
+    }
+
+    /**
+     * 获取自动调整后的目标连接数
+     * @return 目标连接数
+     */
+    public int getTargetPoolSize() {
+        return targetPoolSize;
+    }
+
+    /**
+     * 是否已经关闭
+     * @return 是否已经关闭
+     */
+    public boolean isClosed() {
+        return shutdown;
+    }
+
+    /**
+     * 获取连接池指标的快照
+     * @return 指标快照
+     */
+    public PoolMetrics getMetrics() {
+        PoolMetrics metrics = new PoolMetrics();
+        metrics.setPoolName(poolName);
+        metrics.setMaxPoolSize(maxPoolSize);
+        metrics.setMinIdle(minIdle);
+        metrics.setTargetPoolSize(targetPoolSize);
+        metrics.setTotalConnections(getTotalConnections());
+        metrics.setActiveConnections(getActiveConnections());
+        metrics.setIdleConnections(getIdleConnections());
+        metrics.setPendingThreads(getThreadsAwaitingConnection());
+        metrics.setBorrowCount(borrowCount.sum());
+        metrics.setBorrowWaitNanos(borrowWaitNanos.sum());
+        metrics.setTimeoutCount(timeoutCount.sum());
+        metrics.setCreatedCount(createdCount.sum());
+        metrics.setClosedCount(closedCount.sum());
+        metrics.setAverageWaitMillis(poolSizer.getAverageWaitMillis());
+        metrics.setMaxWaitMillis(poolSizer.getMaxWaitMillis());
+        metrics.setUtilization(poolSizer.getUtilization());
+        return metrics;
+    }
+
+    /**
+     * 调整目标连接数，扩容时立即补充连接，缩容时关闭最久未使用的空闲连接
+     * @param newTargetPoolSize 新的目标连接数
+     */
+    void resize(int newTargetPoolSize) {
+        int target = Math.max(minIdle, Math.min(maxPoolSize, newTargetPoolSize));
+        targetPoolSize = target;
+        if (getTotalConnections() < target) {
+            fillPool();
+            return;
+        }
+        int removable = Math.min(getIdleConnections() - minIdle, getTotalConnections() - target);
+        if (removable <= 0) {
+            return;
+        }
+        List<PoolEntry> idleEntries = connectionBag.values(STATE_NOT_IN_USE);
+        idleEntries.sort(Comparator.comparingLong(poolEntry -> poolEntry.lastAccessed));
+        for (PoolEntry poolEntry : idleEntries) {
+            if (removable <= 0) {
+                break;
+            }
+            if (connectionBag.reserve(poolEntry)) {
+                closeConnection(poolEntry, "连接池缩容");
+                removable--;
+            }
+        }
+    }
+
+    /**
+     * 关闭连接池，空闲的连接立即关闭，借出的连接归还时关闭
+     */
+    @Override
+    public void close() {
+        if (shutdown) {
+            return;
+        }
+        shutdown = true;
+        connectionBag.close();
+        houseKeepingExecutor.shutdownNow();
+        addConnectionExecutor.shutdownNow();
+        for (PoolEntry poolEntry : connectionBag.values()) {
+            softEvictConnection(poolEntry, "连接池已关闭");
+        }
+        closeConnectionExecutor.shutdown();
+        try {
+            if (!closeConnectionExecutor.awaitTermination(environment.getConnectionTimeout(), TimeUnit.MILLISECONDS)) {
+                log.warn("连接池{}关闭连接超时", poolName);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("连接池{}已关闭，仍有{}个借出的连接未归还", poolName, getActiveConnections());
+    }
+
+    /**
+     * 连接不足时新建连接
+     * @param waiting 正在等待连接的线程数
+     */
+    private void addBagItem(int waiting) {
+        // 已排队的新建任务足够满足等待的线程时不再提交
+        if (waiting - addConnectionExecutor.getQueue().size() >= 0) {
+            addConnectionExecutor.execute(this::createConnectionIfNeeded);
+        }
+    }
+
+    /**
+     * 连接数未达上限，并且有线程在等待、空闲连接不足或者连接数未达到目标连接数时新建一个连接
+     */
+    private void createConnectionIfNeeded() {
+        while (!shutdown) {
+            int total = totalConnections.get();
+            if (total >= maxPoolSize) {
+                return;
+            }
+            if (connectionBag.getWaitingThreadCount() <= 0 && getIdleConnections() >= minIdle
+                    && total >= targetPoolSize) {
+                return;
+            }
+            if (totalConnections.compareAndSet(total, total + 1)) {
+                break;
+            }
+        }
+        if (shutdown) {
+            return;
+        }
+        try {
+            PoolEntry poolEntry = createPoolEntry();
+            connectionBag.add(poolEntry);
+            createdCount.increment();
+            lastConnectionFailure = null;
+            log.debug("连接池{}新建连接{}", poolName, poolEntry.connection);
+        } catch (Exception e) {
+            totalConnections.decrementAndGet();
+            lastConnectionFailure = e;
+            log.error("连接池{}新建连接发生异常", poolName, e);
+        }
+    }
+
+    private PoolEntry createPoolEntry() throws SQLException {
+        Connection connection = DriverManager.getConnection(environment.getUrl(), environment.getUserName(),
+                environment.getPassword());
+        try {
+            if (connection.getAutoCommit() != environment.isAutoCommit()) {
+                connection.setAutoCommit(environment.isAutoCommit());
+            }
+            PoolEntry poolEntry = new PoolEntry(connection, connection.getTransactionIsolation(),
+                    environment.getStatementCacheSize());
+            long maxLifetime = environment.getMaxLifetime();
+            if (maxLifetime > 0) {
+                // 随机提前最多2.5%，避免同时创建的连接同时过期
+                long variance = maxLifetime > 10000 ? ThreadLocalRandom.current().nextLong(maxLifetime / 40) : 0;
+                poolEntry.endOfLife = houseKeepingExecutor.schedule(() -> {
+                    if (softEvictConnection(poolEntry, "连接超过最大存活时间")) {
+                        addBagItem(connectionBag.getWaitingThreadCount());
+                    }
+                }, maxLifetime - variance, TimeUnit.MILLISECONDS);
+            }
+            return poolEntry;
+        } catch (SQLException | RuntimeException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 校验连接是否可用
+     */
+    private boolean isConnectionAlive(PoolEntry poolEntry) {
+        try {
+            return poolEntry.connection.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            log.warn("连接池{}校验连接{}发生异常", poolName, poolEntry.connection, e);
+            return false;
+        }
+    }
+
+    /**
+     * 驱逐连接，空闲的连接立即关闭，借出的连接归还时关闭
+     * @return 是否立即关闭
+     */
+    private boolean softEvictConnection(PoolEntry poolEntry, String reason) {
+        poolEntry.markEvicted();
+        if (connectionBag.reserve(poolEntry)) {
+            closeConnection(poolEntry, reason);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 从连接池中移除并关闭物理连接，连接必须是借出或者已保留的状态
+     */
+    private void closeConnection(PoolEntry poolEntry, String reason) {
+        if (!connectionBag.remove(poolEntry)) {
+            return;
+        }
+        totalConnections.decrementAndGet();
+        closedCount.increment();
+        ScheduledFuture<?> endOfLife = poolEntry.endOfLife;
+        if (endOfLife != null) {
+            endOfLife.cancel(false);
+        }
+        log.debug("连接池{}关闭连接{}，原因：{}", poolName, poolEntry.connection, reason);
+        closeConnectionExecutor.execute(() -> {
+            try {
+                poolEntry.connection.close();
+            } catch (SQLException e) {
+                log.warn("连接池{}关闭连接{}发生异常", poolName, poolEntry.connection, e);
+            }
+        });
+    }
+
+    /**
+     * 关闭超出最小空闲数和目标连接数并且空闲超时的连接，然后补充连接
+     */
+    private void houseKeep() {
+        try {
+            long idleTimeout = environment.getIdleTimeout();
+            if (idleTimeout > 0 && minIdle < maxPoolSize) {
+                long now = System.currentTimeMillis();
+                int removable = Math.min(getIdleConnections() - minIdle, getTotalConnections() - targetPoolSize);
+                for (PoolEntry poolEntry : connectionBag.values(STATE_NOT_IN_USE)) {
+                    if (removable <= 0) {
+                        break;
+                    }
+                    if (now - poolEntry.lastAccessed > idleTimeout && connectionBag.reserve(poolEntry)) {
+                        closeConnection(poolEntry, "连接空闲超时");
+                        removable--;
+                    }
+                }
+            }
+            fillPool();
+        } catch (Exception e) {
+            log.error("连接池{}执行空闲检查发生异常", poolName, e);
+        }
+    }
+
+    /**
+     * 补充连接到最小空闲数和目标连接数
+     */
+    private void fillPool() {
+        int total = totalConnections.get();
+        int shortage = Math.min(maxPoolSize - total, Math.max(minIdle - getIdleConnections(), targetPoolSize - total));
+        for (int i = 0; i < shortage; i++) {
+            addConnectionExecutor.execute(this::createConnectionIfNeeded);
+        }
+    }
+
+    private static ThreadPoolExecutor createExecutor(String threadName, BlockingQueue<Runnable> queue,
+                                                     RejectedExecutionHandler handler) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 5, TimeUnit.SECONDS, queue,
+                daemonThreadFactory(threadName), handler);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static ThreadFactory daemonThreadFactory(String threadName) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, threadName);
+            thread.setDaemon(true);
+            return thread;
+        };
     }
 }
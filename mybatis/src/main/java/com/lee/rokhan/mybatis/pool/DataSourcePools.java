@@ -0,0 +1,78 @@
+package com.lee.rokhan.mybatis.pool;
+
+import com.lee.rokhan.mybatis.mapping.Environment;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 连接池注册表
+ * 相同的环境信息共用一个连接池，避免每个SqlSessionFactory各自建立连接；连接池关闭后再次获取会新建连接池
+ * @author lichujun
+ * @date 2019/8/5 17:50
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class DataSourcePools {
+
+    /**
+     * 环境信息对应的连接池，key为环境信息的副本，防止外部修改环境信息后找不到连接池
+     */
+    private static final Map<Environment, DataSourcePool> POOL_MAP = new ConcurrentHashMap<>();
+
+    /**
+     * 获取环境信息对应的连接池，不存在则新建并在后台预热
+     * @param environment 环境信息
+     * @return 连接池
+     */
+    public static DataSourcePool getDataSourcePool(Environment environment) {
+        Environment key = copyOf(environment);
+        return POOL_MAP.compute(key, (k, pool) -> pool == null || pool.isClosed() ? new DataSourcePool(k) : pool);
+    }
+
+    /**
+     * 获取所有连接池的指标
+     * @return 连接池名称对应的指标快照
+     */
+    public static Map<String, PoolMetrics> getMetrics() {
+        Map<String, PoolMetrics> metricsMap = new LinkedHashMap<>();
+        for (DataSourcePool pool : POOL_MAP.values()) {
+            if (!pool.isClosed()) {
+                metricsMap.put(pool.getPoolName(), pool.getMetrics());
+            }
+        }
+        return metricsMap;
+    }
+
+    /**
+     * 关闭所有连接池
+     */
+    public static void closeAll() {
+        for (DataSourcePool pool : POOL_MAP.values()) {
+            pool.close();
+        }
+        POOL_MAP.clear();
+    }
+
+    private static Environment copyOf(Environment environment) {
+        Environment copy = new Environment();
+        copy.setDriver(environment.getDriver());
+        copy.setUrl(environment.getUrl());
+        copy.setUserName(environment.getUserName());
+        copy.setPassword(environment.getPassword());
+        copy.setMaxPoolSize(environment.getMaxPoolSize());
+        copy.setMinIdle(environment.getMinIdle());
+        copy.setConnectionTimeout(environment.getConnectionTimeout());
+        copy.setIdleTimeout(environment.getIdleTimeout());
+        copy.setMaxLifetime(environment.getMaxLifetime());
+        copy.setLeakDetectionThreshold(environment.getLeakDetectionThreshold());
+        copy.setValidationTimeout(environment.getValidationTimeout());
+        copy.setStatementCacheSize(environment.getStatementCacheSize());
+        copy.setAdaptiveSizing(environment.isAdaptiveSizing());
+        copy.setTargetWaitTime(environment.getTargetWaitTime());
+        copy.setAutoCommit(environment.isAutoCommit());
+        return copy;
+    }
+}
@@ -0,0 +1,51 @@
+package com.lee.rokhan.mybatis.pool;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 连接泄漏检测任务
+ * 借出连接时记录借出的调用栈，超过阈值仍未归还则打印调用栈，方便定位没有关闭连接的代码
+ * @author lichujun
+ * @date 2019/8/5 10:20
+ */
+@Slf4j
+final class LeakTask implements Runnable {
+
+    private final PoolEntry poolEntry;
+
+    /**
+     * 借出连接时的调用栈
+     */
+    private final Exception borrowStack;
+
+    private final ScheduledFuture<?> future;
+
+    private volatile boolean reported;
+
+    LeakTask(PoolEntry poolEntry, ScheduledExecutorService scheduler, long leakDetectionThreshold) {
+        this.poolEntry = poolEntry;
+        this.borrowStack = new Exception("连接借出时的调用栈");
+        this.future = scheduler.schedule(this, leakDetectionThreshold, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void run() {
+        reported = true;
+        log.warn("检测到连接泄漏，连接{}已借出{}ms仍未归还", poolEntry.connection,
+                System.currentTimeMillis() - poolEntry.lastBorrowed, borrowStack);
+    }
+
+    /**
+     * 连接归还时取消检测
+     */
+    void cancel() {
+        future.cancel(false);
+        if (reported) {
+            log.info("之前报告泄漏的连接{}已经归还", poolEntry.connection);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.lee.rokhan.mybatis.pool;
+
+import java.sql.Connection;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * 连接池中的连接条目，包装物理连接并记录连接的状态和时间
+ * 状态只通过CAS修改，借出和归还不需要加锁
+ * @author lichujun
+ * @date 2019/8/5 10:10
+ */
+final class PoolEntry {
+
+    /**
+     * 空闲
+     */
+    static final int STATE_NOT_IN_USE = 0;
+
+    /**
+     * 已借出
+     */
+    static final int STATE_IN_USE = 1;
+
+    /**
+     * 已移出连接池
+     */
+    static final int STATE_REMOVED = -1;
+
+    /**
+     * 被连接池保留（准备关闭），不能借出
+     */
+    static final int STATE_RESERVED = -2;
+
+    private static final AtomicIntegerFieldUpdater<PoolEntry> STATE_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(PoolEntry.class, "state");
+
+    /**
+     * 物理连接
+     */
+    final Connection connection;
+
+    /**
+     * 物理连接默认的事务隔离级别，归还时用于还原
+     */
+    final int defaultTransactionIsolation;
+
+    /**
+     * PreparedStatement缓存，未开启缓存时为null
+     */
+    final StatementCache statementCache;
+
+    /**
+     * 创建时间
+     */
+    final long createdAt = System.currentTimeMillis();
+
+    private volatile int state = STATE_NOT_IN_USE;
+
+    /**
+     * 最后一次借出或者归还的时间
+     */
+    volatile long lastAccessed = createdAt;
+
+    /**
+     * 最后一次借出的时间
+     */
+    volatile long lastBorrowed;
+
+    /**
+     * 是否已被驱逐，被驱逐的连接归还后直接关闭
+     */
+    private volatile boolean evicted;
+
+    /**
+     * 到达最大存活时间后驱逐连接的任务
+     */
+    volatile ScheduledFuture<?> endOfLife;
+
+    /**
+     * 连接泄漏检测任务
+     */
+    volatile LeakTask leakTask;
+
+    PoolEntry(Connection connection, int defaultTransactionIsolation, int statementCacheSize) {
+        this.connection = connection;
+        this.defaultTransactionIsolation = defaultTransactionIsolation;
+        this.statementCache = statementCacheSize > 0 ? new StatementCache(statementCacheSize) : null;
+    }
+
+    int getState() {
+        return state;
+    }
+
+    void setState(int state) {
+        this.state = state;
+    }
+
+    boolean compareAndSetState(int expect, int update) {
+        return STATE_UPDATER.compareAndSet(this, expect, update);
+    }
+
+    void markEvicted() {
+        evicted = true;
+    }
+
+    boolean isMarkedEvicted() {
+        return evicted;
+    }
+
+    @Override
+    public String toString() {
+        return connection + "，状态：" + state + "，空闲：" + (System.currentTimeMillis() - lastAccessed) + "ms";
+    }
+}
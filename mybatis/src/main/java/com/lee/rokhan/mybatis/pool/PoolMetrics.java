@@ -0,0 +1,93 @@
+package com.lee.rokhan.mybatis.pool;
+
+import lombok.Data;
+
+/**
+ * 连接池指标的快照
+ * 计数类的指标从连接池创建开始累计，等待时间和使用率为最近一个采样周期的值
+ * @author lichujun
+ * @date 2019/8/5 17:10
+ */
+@Data
+public class PoolMetrics {
+
+    /**
+     * 连接池名称
+     */
+    private String poolName;
+
+    /**
+     * 最大连接数
+     */
+    private int maxPoolSize;
+
+    /**
+     * 最小空闲连接数
+     */
+    private int minIdle;
+
+    /**
+     * 自动调整后的目标连接数
+     */
+    private int targetPoolSize;
+
+    /**
+     * 连接总数
+     */
+    private int totalConnections;
+
+    /**
+     * 借出的连接数
+     */
+    private int activeConnections;
+
+    /**
+     * 空闲的连接数
+     */
+    private int idleConnections;
+
+    /**
+     * 正在等待连接的线程数
+     */
+    private int pendingThreads;
+
+    /**
+     * 借出连接的次数
+     */
+    private long borrowCount;
+
+    /**
+     * 借出连接的总等待时间，单位：纳秒
+     */
+    private long borrowWaitNanos;
+
+    /**
+     * 获取连接超时的次数
+     */
+    private long timeoutCount;
+
+    /**
+     * 新建连接的次数
+     */
+    private long createdCount;
+
+    /**
+     * 关闭连接的次数
+     */
+    private long closedCount;
+
+    /**
+     * 最近一个采样周期借出连接的平均等待时间，单位：毫秒
+     */
+    private double averageWaitMillis;
+
+    /**
+     * 最近一个采样周期借出连接的最长等待时间，单位：毫秒
+     */
+    private double maxWaitMillis;
+
+    /**
+     * 最近一个采样周期的连接使用率，即连接被借出的时间占比
+     */
+    private double utilization;
+}
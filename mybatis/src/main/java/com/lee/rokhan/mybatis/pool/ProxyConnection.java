@@ -0,0 +1,265 @@
+package com.lee.rokhan.mybatis.pool;
+
+import com.lee.rokhan.mybatis.pool.StatementCache.CachedStatement;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * 借出连接的代理
+ * 调用close()时不关闭物理连接，而是关闭未关闭的Statement、回滚未提交的事务、还原被修改的连接属性后归还给连接池；
+ * 开启PreparedStatement缓存时，prepareStatement(sql)优先从物理连接的缓存中获取；
+ * 部分驱动（如H2 1.4.199）回滚后不会让复用的PreparedStatement的结果缓存失效，回滚可能写入过的事务时清空缓存
+ * @author lichujun
+ * @date 2019/8/5 11:00
+ */
+final class ProxyConnection implements InvocationHandler {
+
+    /**
+     * 连接相关错误的SQLState前缀，出现此类错误的连接不再放回连接池
+     */
+    private static final String CONNECTION_ERROR_STATE = "08";
+
+    private static final Class<?>[] PROXY_INTERFACES = {Connection.class};
+
+    /**
+     * 跟踪的Statement超过该数量时清理已关闭的，防止长时间持有连接时列表无限增长
+     */
+    private static final int PURGE_THRESHOLD = 32;
+
+    private final DataSourcePool pool;
+
+    private final PoolEntry poolEntry;
+
+    private final Connection connection;
+
+    /**
+     * 通过该连接创建的未关闭的Statement
+     */
+    private final List<Statement> openStatements = new ArrayList<>(4);
+
+    /**
+     * 当前是否自动提交事务
+     */
+    private boolean autoCommit;
+
+    /**
+     * 当前事务是否可能写入过数据，回滚时需要清空PreparedStatement缓存
+     */
+    private boolean transactionDirty;
+
+    /**
+     * 是否修改了只读属性
+     */
+    private boolean readOnlyDirty;
+
+    /**
+     * 是否修改了事务隔离级别
+     */
+    private boolean isolationDirty;
+
+    private boolean closed;
+
+    private ProxyConnection(DataSourcePool pool, PoolEntry poolEntry, boolean autoCommit) {
+        this.pool = pool;
+        this.poolEntry = poolEntry;
+        this.connection = poolEntry.connection;
+        this.autoCommit = autoCommit;
+    }
+
+    /**
+     * 为借出的连接条目创建代理连接
+     * @param pool 连接池
+     * @param poolEntry 连接条目
+     * @param autoCommit 连接当前是否自动提交事务
+     * @return 代理连接
+     */
+    static Connection create(DataSourcePool pool, PoolEntry poolEntry, boolean autoCommit) {
+        return (Connection) Proxy.newProxyInstance(ProxyConnection.class.getClassLoader(), PROXY_INTERFACES,
+                new ProxyConnection(pool, poolEntry, autoCommit));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String methodName = method.getName();
+        switch (methodName) {
+            case "close":
+                close();
+                return null;
+            case "isClosed":
+                return closed;
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "ProxyConnection[" + connection + "]";
+            default:
+                break;
+        }
+        if (closed) {
+            throw new SQLException("连接已经归还给连接池，不能再使用", CONNECTION_ERROR_STATE + "003");
+        }
+        if (poolEntry.statementCache != null && "prepareStatement".equals(methodName) && args.length == 1) {
+            return prepareCachedStatement(proxy, (String) args[0]);
+        }
+        Object result;
+        try {
+            result = method.invoke(connection, args);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            checkException(cause);
+            throw cause;
+        }
+        switch (methodName) {
+            case "createStatement":
+            case "prepareStatement":
+            case "prepareCall":
+                trackStatement((Statement) result);
+                // 不经过缓存的Statement无法得知执行了什么，按写入处理
+                markWritten();
+                break;
+            case "setAutoCommit":
+                autoCommit = (Boolean) args[0];
+                if (autoCommit) {
+                    transactionDirty = false;
+                }
+                break;
+            case "commit":
+                transactionDirty = false;
+                break;
+            case "rollback":
+                rolledBack(args == null);
+                break;
+            case "setReadOnly":
+                readOnlyDirty = true;
+                break;
+            case "setTransactionIsolation":
+                isolationDirty = true;
+                break;
+            default:
+                break;
+        }
+        return result;
+    }
+
+    /**
+     * 从物理连接的缓存中获取PreparedStatement，缓存中没有则新建并缓存；同一个SQL的缓存正在使用时新建不缓存的
+     */
+    private PreparedStatement prepareCachedStatement(Object proxy, String sql) throws SQLException {
+        StatementCache statementCache = poolEntry.statementCache;
+        CachedStatement cached = statementCache.borrow(sql);
+        if (cached == null) {
+            PreparedStatement statement;
+            try {
+                statement = connection.prepareStatement(sql);
+            } catch (SQLException e) {
+                checkException(e);
+                throw e;
+            }
+            cached = statementCache.put(sql, statement);
+            if (cached == null) {
+                trackStatement(statement);
+                markWritten();
+                return statement;
+            }
+        }
+        PreparedStatement proxyStatement = ProxyStatement.create(cached, (Connection) proxy, this);
+        trackStatement(proxyStatement);
+        return proxyStatement;
+    }
+
+    private void trackStatement(Statement statement) throws SQLException {
+        if (openStatements.size() >= PURGE_THRESHOLD) {
+            Iterator<Statement> iterator = openStatements.iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().isClosed()) {
+                    iterator.remove();
+                }
+            }
+        }
+        openStatements.add(statement);
+    }
+
+    /**
+     * 归还连接
+     */
+    private void close() throws SQLException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            for (Statement statement : openStatements) {
+                if (!statement.isClosed()) {
+                    statement.close();
+                }
+            }
+            openStatements.clear();
+            if (!autoCommit) {
+                // 无法得知Statement是否执行过，未提交的事务一律回滚，避免带给下一个使用者
+                connection.rollback();
+                rolledBack(true);
+            }
+            if (autoCommit != pool.isDefaultAutoCommit()) {
+                connection.setAutoCommit(pool.isDefaultAutoCommit());
+            }
+            if (readOnlyDirty) {
+                connection.setReadOnly(false);
+            }
+            if (isolationDirty) {
+                connection.setTransactionIsolation(poolEntry.defaultTransactionIsolation);
+            }
+        } catch (SQLException e) {
+            // 还原连接失败，连接不能再复用
+            poolEntry.markEvicted();
+            throw e;
+        } finally {
+            pool.recycle(poolEntry);
+        }
+    }
+
+    /**
+     * 手动提交事务时通过Statement写入了数据
+     */
+    void markWritten() {
+        if (!autoCommit) {
+            transactionDirty = true;
+        }
+    }
+
+    /**
+     * 回滚后清空可能缓存了回滚前结果的PreparedStatement，正在使用的在归还时关闭
+     * @param wholeTransaction 是否回滚了整个事务，回滚到保存点时事务仍然可能包含写入
+     */
+    private void rolledBack(boolean wholeTransaction) {
+        if (transactionDirty && poolEntry.statementCache != null) {
+            poolEntry.statementCache.clear();
+        }
+        if (wholeTransaction) {
+            transactionDirty = false;
+        }
+    }
+
+    /**
+     * 连接相关的错误说明物理连接已不可用，归还时直接关闭
+     * @param e 调用物理连接或者Statement抛出的异常
+     */
+    void checkException(Throwable e) {
+        if (e instanceof SQLException) {
+            String sqlState = ((SQLException) e).getSQLState();
+            if (sqlState != null && sqlState.startsWith(CONNECTION_ERROR_STATE)) {
+                poolEntry.markEvicted();
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.lee.rokhan.mybatis.pool;
+
+import com.lee.rokhan.mybatis.pool.StatementCache.CachedStatement;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * 缓存的PreparedStatement的代理
+ * 调用close()时不关闭PreparedStatement，而是清空参数、还原被修改的属性后放回连接的缓存
+ * @author lichujun
+ * @date 2019/8/6 11:40
+ */
+final class ProxyStatement implements InvocationHandler {
+
+    private static final Class<?>[] PROXY_INTERFACES = {PreparedStatement.class};
+
+    private final CachedStatement cachedStatement;
+
+    private final PreparedStatement statement;
+
+    /**
+     * 借出PreparedStatement的代理连接
+     */
+    private final Connection proxyConnection;
+
+    /**
+     * 代理连接的处理器，执行出错时检查连接是否可用，写入时标记事务
+     */
+    private final ProxyConnection owner;
+
+    /**
+     * 是否添加过批量参数，归还时需要清空
+     */
+    private boolean batched;
+
+    /**
+     * 是否修改了fetchSize、maxRows、queryTimeout，归还时需要还原，避免影响下一次使用
+     */
+    private boolean fetchSizeDirty;
+
+    private boolean maxRowsDirty;
+
+    private boolean queryTimeoutDirty;
+
+    private boolean closed;
+
+    private ProxyStatement(CachedStatement cachedStatement, Connection proxyConnection, ProxyConnection owner) {
+        this.cachedStatement = cachedStatement;
+        this.statement = cachedStatement.statement;
+        this.proxyConnection = proxyConnection;
+        this.owner = owner;
+    }
+
+    static PreparedStatement create(CachedStatement cachedStatement, Connection proxyConnection,
+                                    ProxyConnection owner) {
+        return (PreparedStatement) Proxy.newProxyInstance(ProxyStatement.class.getClassLoader(), PROXY_INTERFACES,
+                new ProxyStatement(cachedStatement, proxyConnection, owner));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "close":
+                close();
+                return null;
+            case "isClosed":
+                return closed;
+            case "getConnection":
+                return proxyConnection;
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "ProxyStatement[" + statement + "]";
+            case "addBatch":
+                batched = true;
+                break;
+            case "setFetchSize":
+                fetchSizeDirty = true;
+                break;
+            case "setMaxRows":
+                maxRowsDirty = true;
+                break;
+            case "setQueryTimeout":
+                queryTimeoutDirty = true;
+                break;
+            case "execute":
+            case "executeUpdate":
+            case "executeLargeUpdate":
+            case "executeBatch":
+            case "executeLargeBatch":
+                owner.markWritten();
+                break;
+            default:
+                break;
+        }
+        if (closed) {
+            throw new SQLException("PreparedStatement已经关闭");
+        }
+        try {
+            return method.invoke(statement, args);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            owner.checkException(cause);
+            throw cause;
+        }
+    }
+
+    private void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        boolean reusable = true;
+        try {
+            statement.clearParameters();
+            if (batched) {
+                statement.clearBatch();
+            }
+            if (fetchSizeDirty) {
+                statement.setFetchSize(0);
+            }
+            if (maxRowsDirty) {
+                statement.setMaxRows(0);
+            }
+            if (queryTimeoutDirty) {
+                statement.setQueryTimeout(0);
+            }
+        } catch (SQLException e) {
+            reusable = false;
+        }
+        cachedStatement.release(reusable);
+    }
+}
@@ -0,0 +1,149 @@
+package com.lee.rokhan.mybatis.pool;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 物理连接的PreparedStatement缓存，按最近最少使用淘汰
+ * 连接同一时间只会被一个线程借出，借出和归还通过连接条目的CAS状态建立happens-before，因此不需要加锁
+ * @author lichujun
+ * @date 2019/8/6 11:20
+ */
+@Slf4j
+final class StatementCache {
+
+    private final int maxSize;
+
+    private final LinkedHashMap<String, CachedStatement> cache;
+
+    StatementCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.cache = new LinkedHashMap<String, CachedStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                if (size() <= StatementCache.this.maxSize) {
+                    return false;
+                }
+                eldest.getValue().evict();
+                return true;
+            }
+        };
+    }
+
+    /**
+     * 获取空闲的缓存
+     * @param sql SQL
+     * @return 缓存，不存在或者正在使用时返回null
+     */
+    CachedStatement borrow(String sql) {
+        CachedStatement cached = cache.get(sql);
+        if (cached == null || cached.inUse) {
+            return null;
+        }
+        cached.inUse = true;
+        return cached;
+    }
+
+    /**
+     * 缓存新建的PreparedStatement，同一个SQL已有缓存（正在使用）时不缓存
+     * @param sql SQL
+     * @param statement 新建的PreparedStatement
+     * @return 缓存，未缓存时返回null
+     */
+    CachedStatement put(String sql, PreparedStatement statement) {
+        if (cache.containsKey(sql)) {
+            return null;
+        }
+        CachedStatement cached = new CachedStatement(this, sql, statement);
+        cached.inUse = true;
+        cache.put(sql, cached);
+        return cached;
+    }
+
+    /**
+     * 移除并关闭缓存，用于PreparedStatement无法复用的情况
+     * @param cached 缓存
+     */
+    void remove(CachedStatement cached) {
+        if (cache.get(cached.sql) == cached) {
+            cache.remove(cached.sql);
+        }
+        cached.evict();
+    }
+
+    int size() {
+        return cache.size();
+    }
+
+    /**
+     * 关闭所有缓存的PreparedStatement
+     */
+    void clear() {
+        Iterator<CachedStatement> iterator = cache.values().iterator();
+        while (iterator.hasNext()) {
+            iterator.next().evict();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * 缓存的PreparedStatement
+     */
+    static final class CachedStatement {
+
+        private final StatementCache owner;
+
+        private final String sql;
+
+        final PreparedStatement statement;
+
+        /**
+         * 是否正在使用
+         */
+        private boolean inUse;
+
+        /**
+         * 是否已被淘汰，淘汰时正在使用的在归还时关闭
+         */
+        private boolean evicted;
+
+        private CachedStatement(StatementCache owner, String sql, PreparedStatement statement) {
+            this.owner = owner;
+            this.sql = sql;
+            this.statement = statement;
+        }
+
+        /**
+         * 归还缓存
+         * @param reusable 是否可以复用
+         */
+        void release(boolean reusable) {
+            inUse = false;
+            if (!reusable) {
+                owner.remove(this);
+            } else if (evicted) {
+                closeQuietly();
+            }
+        }
+
+        private void evict() {
+            evicted = true;
+            if (!inUse) {
+                closeQuietly();
+            }
+        }
+
+        private void closeQuietly() {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                log.warn("关闭缓存的PreparedStatement发生异常", e);
+            }
+        }
+    }
+}
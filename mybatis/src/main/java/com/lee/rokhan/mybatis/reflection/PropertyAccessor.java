@@ -0,0 +1,18 @@
+package com.lee.rokhan.mybatis.reflection;
+
+/**
+ * 读取对象的属性
+ * @author lichujun
+ * @date 2019/8/6 10:10
+ */
+@FunctionalInterface
+public interface PropertyAccessor {
+
+    /**
+     * 读取属性值
+     * @param target 对象
+     * @return 属性值
+     * @throws Exception 读取发生异常
+     */
+    Object get(Object target) throws Exception;
+}
@@ -0,0 +1,162 @@
+package com.lee.rokhan.mybatis.reflection;
+
+import com.lee.rokhan.common.reflection.ClassMetadata;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.apache.commons.lang3.StringUtils;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 属性读取器的工厂，每个类的每个属性只解析一次
+ * 优先使用getter（getXxx、isXxx）和setter（setXxx），没有时直接读写成员变量
+ * @author lichujun
+ * @date 2019/8/6 10:15
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class PropertyAccessors {
+
+    private static final ClassValue<Map<String, PropertyAccessor>> ACCESSOR_CACHE =
+            new ClassValue<Map<String, PropertyAccessor>>() {
+                @Override
+                protected Map<String, PropertyAccessor> computeValue(Class<?> type) {
+                    return new ConcurrentHashMap<>();
+                }
+            };
+
+    private static final ClassValue<Map<String, PropertySetter>> SETTER_CACHE =
+            new ClassValue<Map<String, PropertySetter>>() {
+                @Override
+                protected Map<String, PropertySetter> computeValue(Class<?> type) {
+                    return new ConcurrentHashMap<>();
+                }
+            };
+
+    /**
+     * 获取类的属性读取器，Map按key读取
+     * @param type 类型
+     * @param property 属性名称
+     * @return 属性读取器
+     */
+    public static PropertyAccessor forProperty(Class<?> type, String property) {
+        if (Map.class.isAssignableFrom(type)) {
+            return target -> ((Map<?, ?>) target).get(property);
+        }
+        return ACCESSOR_CACHE.get(type).computeIfAbsent(property, name -> resolve(type, name));
+    }
+
+    /**
+     * 获取类的属性设置器，Map按key设置
+     * @param type 类型
+     * @param property 属性名称
+     * @return 属性设置器
+     */
+    public static PropertySetter forSetter(Class<?> type, String property) {
+        if (Map.class.isAssignableFrom(type)) {
+            return new MapPropertySetter(property);
+        }
+        return SETTER_CACHE.get(type).computeIfAbsent(property, name -> resolveSetter(type, name));
+    }
+
+    private static PropertyAccessor resolve(Class<?> type, String property) {
+        ClassMetadata metadata = ClassMetadata.forClass(type);
+        String capitalized = StringUtils.capitalize(property);
+        Method getter = metadata.getMethod("get" + capitalized);
+        if (getter == null) {
+            getter = metadata.getMethod("is" + capitalized);
+        }
+        if (getter != null && !Modifier.isStatic(getter.getModifiers()) && getter.getReturnType() != void.class) {
+            Method method = getter;
+            method.setAccessible(true);
+            return method::invoke;
+        }
+        Field field = metadata.getField(property);
+        if (field != null && !Modifier.isStatic(field.getModifiers())) {
+            field.setAccessible(true);
+            return field::get;
+        }
+        throw new RuntimeException(type.getName() + "中找不到属性" + property);
+    }
+
+    private static PropertySetter resolveSetter(Class<?> type, String property) {
+        ClassMetadata metadata = ClassMetadata.forClass(type);
+        Field field = metadata.getField(property);
+        if (field != null && !Modifier.isStatic(field.getModifiers())) {
+            Method setter = metadata.getMethod("set" + StringUtils.capitalize(property), field.getType());
+            if (setter != null && !Modifier.isStatic(setter.getModifiers())) {
+                setter.setAccessible(true);
+                return new MethodPropertySetter(setter, field.getType());
+            }
+            if (!Modifier.isFinal(field.getModifiers())) {
+                field.setAccessible(true);
+                return new FieldPropertySetter(field);
+            }
+        }
+        throw new RuntimeException(type.getName() + "中找不到可以设置的属性" + property);
+    }
+
+    private static final class MapPropertySetter implements PropertySetter {
+
+        private final String key;
+
+        private MapPropertySetter(String key) {
+            this.key = key;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void set(Object target, Object value) {
+            ((Map<String, Object>) target).put(key, value);
+        }
+
+        @Override
+        public Class<?> getType() {
+            return Object.class;
+        }
+    }
+
+    private static final class MethodPropertySetter implements PropertySetter {
+
+        private final Method method;
+
+        private final Class<?> type;
+
+        private MethodPropertySetter(Method method, Class<?> type) {
+            this.method = method;
+            this.type = type;
+        }
+
+        @Override
+        public void set(Object target, Object value) throws Exception {
+            method.invoke(target, value);
+        }
+
+        @Override
+        public Class<?> getType() {
+            return type;
+        }
+    }
+
+    private static final class FieldPropertySetter implements PropertySetter {
+
+        private final Field field;
+
+        private FieldPropertySetter(Field field) {
+            this.field = field;
+        }
+
+        @Override
+        public void set(Object target, Object value) throws Exception {
+            field.set(target, value);
+        }
+
+        @Override
+        public Class<?> getType() {
+            return field.getType();
+        }
+    }
+}
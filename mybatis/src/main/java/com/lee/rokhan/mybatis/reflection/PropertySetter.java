@@ -0,0 +1,23 @@
+package com.lee.rokhan.mybatis.reflection;
+
+/**
+ * 设置对象的属性
+ * @author lichujun
+ * @date 2019/8/6 16:20
+ */
+public interface PropertySetter {
+
+    /**
+     * 设置属性值
+     * @param target 对象
+     * @param value 属性值
+     * @throws Exception 设置发生异常
+     */
+    void set(Object target, Object value) throws Exception;
+
+    /**
+     * 属性的类型，用于从结果集读取对应类型的值
+     * @return 属性的类型
+     */
+    Class<?> getType();
+}
@@ -0,0 +1,11 @@
+package com.lee.rokhan.mybatis.routing;
+
+/**
+ * SQL使用主库还是从库
+ * @author lichujun
+ * @date 2019/8/10 10:00
+ */
+public enum DataSourceRoute {
+    // 自动：查询走从库，写过主库之后的查询、事务开始（第一次使用主库连接）之后的查询和新增、修改、删除走主库；强制主库；强制从库（只对查询生效）
+    AUTO, PRIMARY, REPLICA, ;
+}
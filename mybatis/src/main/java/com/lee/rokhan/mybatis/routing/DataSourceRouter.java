@@ -0,0 +1,115 @@
+package com.lee.rokhan.mybatis.routing;
+
+import com.lee.rokhan.mybatis.pool.DataSourcePool;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 从库的路由，线程安全
+ * 按策略选择从库；从库连续失败达到阈值后摘除一段时间，期间不再选择，到期后自动恢复，恢复后第一次就失败则立即重新摘除；
+ * 所有从库都不可用时返回null，由调用方改用主库
+ * @author lichujun
+ * @date 2019/8/10 10:20
+ */
+@Slf4j
+public class DataSourceRouter {
+
+    private final Replica[] replicas;
+
+    private final ReplicaPolicy policy;
+
+    private final int failureThreshold;
+
+    private final long ejectTime;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * @param replicaPools 从库的连接池
+     * @param policy 负载均衡策略
+     * @param failureThreshold 连续失败多少次后摘除
+     * @param ejectTime 摘除的时间，单位：毫秒
+     */
+    public DataSourceRouter(List<DataSourcePool> replicaPools, ReplicaPolicy policy, int failureThreshold,
+                            long ejectTime) {
+        this.replicas = replicaPools.stream().map(Replica::new).toArray(Replica[]::new);
+        this.policy = policy;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.ejectTime = ejectTime;
+    }
+
+    /**
+     * 选择从库，使用完需要调用release
+     * @return 从库，没有可用的从库时返回null
+     */
+    public Replica acquire() {
+        long now = System.currentTimeMillis();
+        int n = replicas.length;
+        if (n == 0) {
+            return null;
+        }
+        int start = (next.getAndIncrement() & Integer.MAX_VALUE) % n;
+        Replica chosen = null;
+        for (int i = 0; i < n; i++) {
+            Replica replica = replicas[(start + i) % n];
+            if (!replica.isAvailable(now)) {
+                continue;
+            }
+            if (policy == ReplicaPolicy.ROUND_ROBIN) {
+                chosen = replica;
+                break;
+            }
+            // 从轮询的位置开始比较，会话数相同时分散到不同的从库
+            if (chosen == null || replica.outstanding.get() < chosen.outstanding.get()) {
+                chosen = replica;
+            }
+        }
+        if (chosen != null) {
+            chosen.outstanding.incrementAndGet();
+        }
+        return chosen;
+    }
+
+    /**
+     * 不再使用从库
+     * @param replica 从库
+     */
+    public void release(Replica replica) {
+        replica.outstanding.decrementAndGet();
+    }
+
+    /**
+     * 记录从库执行成功
+     * @param replica 从库
+     */
+    public void markSuccess(Replica replica) {
+        if (replica.consecutiveFailures.get() != 0) {
+            replica.consecutiveFailures.set(0);
+        }
+    }
+
+    /**
+     * 记录从库获取连接失败或者连接异常，连续失败达到阈值时摘除
+     * @param replica 从库
+     */
+    public void markFailure(Replica replica) {
+        if (replica.consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            // 恢复后成功之前再失败一次就重新摘除
+            replica.consecutiveFailures.set(failureThreshold - 1);
+            replica.ejectedUntil = System.currentTimeMillis() + ejectTime;
+            log.warn("从库{}连续{}次失败，摘除{}ms", replica.getDataSource().getPoolName(), failureThreshold, ejectTime);
+        }
+    }
+
+    /**
+     * 获取所有从库
+     * @return 只读的从库列表
+     */
+    public List<Replica> getReplicas() {
+        return Collections.unmodifiableList(Arrays.asList(replicas));
+    }
+}
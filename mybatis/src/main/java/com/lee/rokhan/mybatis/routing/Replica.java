@@ -0,0 +1,57 @@
+package com.lee.rokhan.mybatis.routing;
+
+import com.lee.rokhan.mybatis.pool.DataSourcePool;
+import lombok.Getter;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 从库
+ * @author lichujun
+ * @date 2019/8/10 10:10
+ */
+public final class Replica {
+
+    @Getter
+    private final DataSourcePool dataSource;
+
+    /**
+     * 正在使用该从库的会话数
+     */
+    final AtomicInteger outstanding = new AtomicInteger();
+
+    /**
+     * 连续失败的次数
+     */
+    final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+    /**
+     * 摘除到什么时候，0表示未摘除，单位：毫秒
+     */
+    volatile long ejectedUntil;
+
+    Replica(DataSourcePool dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    boolean isAvailable(long now) {
+        long until = ejectedUntil;
+        return until == 0 || now >= until;
+    }
+
+    /**
+     * 正在使用该从库的会话数
+     * @return 会话数
+     */
+    public int getOutstanding() {
+        return outstanding.get();
+    }
+
+    /**
+     * 当前是否被摘除
+     * @return 是否被摘除
+     */
+    public boolean isEjected() {
+        return !isAvailable(System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,11 @@
+package com.lee.rokhan.mybatis.routing;
+
+/**
+ * 从库的负载均衡策略
+ * @author lichujun
+ * @date 2019/8/10 10:05
+ */
+public enum ReplicaPolicy {
+    // 轮询；选择正在使用的会话最少的从库
+    ROUND_ROBIN, LEAST_OUTSTANDING, ;
+}
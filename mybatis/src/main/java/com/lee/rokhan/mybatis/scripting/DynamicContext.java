@@ -0,0 +1,157 @@
+package com.lee.rokhan.mybatis.scripting;
+
+import java.util.Arrays;
+
+/**
+ * 一次渲染动态SQL的上下文
+ * 按顺序记录占位符的参数值和SQL的形状（每个分支的选择、每个循环的次数），形状相同的参数渲染出的SQL相同；
+ * 只在需要生成SQL文本时才输出到StringBuilder
+ * @author lichujun
+ * @date 2019/8/12 16:00
+ */
+public final class DynamicContext {
+
+    private final Object parameter;
+
+    /**
+     * foreach的item和index变量，编译时为每个变量分配下标
+     */
+    private final Object[] variables;
+
+    /**
+     * 输出的SQL，只收集参数值和形状时为null
+     */
+    private final StringBuilder sql;
+
+    private Object[] values = new Object[8];
+
+    private int valueCount;
+
+    private int[] shape = new int[8];
+
+    private int shapeLength;
+
+    public DynamicContext(Object parameter, int variableCount, StringBuilder sql) {
+        this.parameter = parameter;
+        this.variables = new Object[variableCount];
+        this.sql = sql;
+    }
+
+    public Object getParameter() {
+        return parameter;
+    }
+
+    public Object getVariable(int index) {
+        return variables[index];
+    }
+
+    public void setVariable(int index, Object value) {
+        variables[index] = value;
+    }
+
+    /**
+     * 是否需要输出SQL文本
+     * @return 是否输出
+     */
+    public boolean isRendering() {
+        return sql != null;
+    }
+
+    /**
+     * 输出的SQL，只收集参数值和形状时为null
+     * @return StringBuilder
+     */
+    public StringBuilder getSql() {
+        return sql;
+    }
+
+    /**
+     * 输出SQL文本，相邻片段之间的空白只保留一个空格
+     * @param text SQL文本
+     */
+    public void appendSql(String text) {
+        if (sql != null) {
+            int length = sql.length();
+            boolean joined = !text.isEmpty() && text.charAt(0) == ' ' && length > 0 && sql.charAt(length - 1) == ' ';
+            sql.append(text, joined ? 1 : 0, text.length());
+        }
+    }
+
+    /**
+     * 输出一个占位符并记录参数值
+     * @param value 参数值
+     */
+    public void addValue(Object value) {
+        if (sql != null) {
+            sql.append('?');
+        }
+        if (valueCount == values.length) {
+            values = Arrays.copyOf(values, valueCount << 1);
+        }
+        values[valueCount++] = value;
+    }
+
+    /**
+     * 记录形状
+     * @param value 分支的选择或者循环的次数
+     * @return 记录的位置
+     */
+    public int addShape(int value) {
+        if (shapeLength == shape.length) {
+            shape = Arrays.copyOf(shape, shapeLength << 1);
+        }
+        shape[shapeLength] = value;
+        return shapeLength++;
+    }
+
+    /**
+     * 修改已记录的形状，循环结束后才知道次数时使用
+     * @param position 记录的位置
+     * @param value 新的值
+     */
+    public void setShape(int position, int value) {
+        shape[position] = value;
+    }
+
+    /**
+     * 按顺序排列的参数值
+     * @return 参数值
+     */
+    public Object[] getValues() {
+        return valueCount == values.length ? values : Arrays.copyOf(values, valueCount);
+    }
+
+    /**
+     * 本次渲染的形状
+     * @return 形状
+     */
+    public SqlShape getShape() {
+        return new SqlShape(Arrays.copyOf(shape, shapeLength));
+    }
+
+    /**
+     * SQL的形状，作为SQL文本缓存的key
+     */
+    public static final class SqlShape {
+
+        private final int[] decisions;
+
+        private final int hash;
+
+        private SqlShape(int[] decisions) {
+            this.decisions = decisions;
+            this.hash = Arrays.hashCode(decisions);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || o instanceof SqlShape && hash == ((SqlShape) o).hash
+                    && Arrays.equals(decisions, ((SqlShape) o).decisions);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
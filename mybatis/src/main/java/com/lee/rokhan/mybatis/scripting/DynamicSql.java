@@ -0,0 +1,82 @@
+package com.lee.rokhan.mybatis.scripting;
+
+import com.lee.rokhan.mybatis.mapping.BoundSql;
+import com.lee.rokhan.mybatis.scripting.DynamicContext.SqlShape;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 编译后的动态SQL
+ * 绑定参数时先只计算分支和参数值得到SQL的形状，形状相同的参数渲染出的SQL相同，直接复用缓存的SQL文本（同一个String），
+ * 连接的PreparedStatement缓存和数据库的预编译缓存都能命中；没有缓存时才渲染到当前线程复用的StringBuilder。
+ * 每个SQL最多缓存MAX_CACHED_SHAPES种形状，超过后不再缓存，避免foreach的长度不固定时无限增长
+ * @author lichujun
+ * @date 2019/8/12 17:10
+ */
+public final class DynamicSql {
+
+    private static final int MAX_CACHED_SHAPES = 256;
+
+    /**
+     * 复用的StringBuilder超过该容量时丢弃，避免一次很长的SQL一直占用内存
+     */
+    private static final int MAX_REUSED_CAPACITY = 16 * 1024;
+
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(256));
+
+    private final SqlNode root;
+
+    /**
+     * foreach变量的数量
+     */
+    private final int variableCount;
+
+    private final Map<SqlShape, String> sqlCache = new ConcurrentHashMap<>(8);
+
+    DynamicSql(SqlNode root, int variableCount) {
+        this.root = root;
+        this.variableCount = variableCount;
+    }
+
+    /**
+     * 按参数对象生成SQL和按顺序排列的参数值
+     * @param parameter 参数对象
+     * @return 绑定参数后的SQL
+     */
+    public BoundSql bind(Object parameter) {
+        DynamicContext context = new DynamicContext(parameter, variableCount, null);
+        root.apply(context);
+        SqlShape shape = context.getShape();
+        String sql = sqlCache.get(shape);
+        if (sql == null) {
+            sql = render(parameter);
+            if (sqlCache.size() < MAX_CACHED_SHAPES) {
+                String existing = sqlCache.putIfAbsent(shape, sql);
+                if (existing != null) {
+                    sql = existing;
+                }
+            }
+        }
+        return new BoundSql(sql, context.getValues());
+    }
+
+    /**
+     * 已缓存的SQL形状数量
+     * @return 数量
+     */
+    public int getCachedShapes() {
+        return sqlCache.size();
+    }
+
+    private String render(Object parameter) {
+        StringBuilder buffer = BUFFER.get();
+        buffer.setLength(0);
+        root.apply(new DynamicContext(parameter, variableCount, buffer));
+        String sql = buffer.toString().trim();
+        if (buffer.capacity() > MAX_REUSED_CAPACITY) {
+            BUFFER.remove();
+        }
+        return sql;
+    }
+}
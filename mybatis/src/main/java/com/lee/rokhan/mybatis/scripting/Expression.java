@@ -0,0 +1,17 @@
+package com.lee.rokhan.mybatis.scripting;
+
+/**
+ * 编译后的test表达式
+ * @author lichujun
+ * @date 2019/8/12 16:00
+ */
+@FunctionalInterface
+public interface Expression {
+
+    /**
+     * 计算表达式的值
+     * @param context 动态SQL的上下文
+     * @return 表达式的值
+     */
+    Object evaluate(DynamicContext context);
+}
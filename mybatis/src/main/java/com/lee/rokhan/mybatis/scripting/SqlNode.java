@@ -0,0 +1,16 @@
+package com.lee.rokhan.mybatis.scripting;
+
+/**
+ * 编译后的动态SQL片段
+ * @author lichujun
+ * @date 2019/8/12 16:00
+ */
+@FunctionalInterface
+public interface SqlNode {
+
+    /**
+     * 按参数输出SQL片段：记录分支的选择和参数值，需要输出SQL时追加到上下文的StringBuilder
+     * @param context 动态SQL的上下文
+     */
+    void apply(DynamicContext context);
+}
@@ -0,0 +1,303 @@
+package com.lee.rokhan.mybatis.scripting;
+
+import com.lee.rokhan.mybatis.scripting.impl.ChooseSqlNode;
+import com.lee.rokhan.mybatis.scripting.impl.ExpressionParser;
+import com.lee.rokhan.mybatis.scripting.impl.ForEachSqlNode;
+import com.lee.rokhan.mybatis.scripting.impl.IfSqlNode;
+import com.lee.rokhan.mybatis.scripting.impl.MixedSqlNode;
+import com.lee.rokhan.mybatis.scripting.impl.ParameterSqlNode;
+import com.lee.rokhan.mybatis.scripting.impl.TextSqlNode;
+import com.lee.rokhan.mybatis.scripting.impl.TrimSqlNode;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 把&lt;script&gt;包裹的动态SQL编译为片段树
+ * 支持&lt;if&gt;、&lt;choose&gt;/&lt;when&gt;/&lt;otherwise&gt;、&lt;where&gt;、&lt;set&gt;、&lt;trim&gt;、&lt;foreach&gt;；
+ * 文本中的#{}（字符串常量内除外）在编译时拆分为固定文本和占位符，连续的空白（引号内除外）合并为一个空格，foreach的item、index在编译时分配变量下标
+ * @author lichujun
+ * @date 2019/8/12 17:00
+ */
+public final class SqlScriptCompiler {
+
+    public static final String SCRIPT_OPEN = "<script>";
+
+    public static final String SCRIPT_CLOSE = "</script>";
+
+    private static final String PLACEHOLDER_OPEN = "#{";
+
+    private static final String PLACEHOLDER_CLOSE = "}";
+
+    private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+
+    private final String script;
+
+    /**
+     * 当前可见的foreach变量对应的下标，内层的同名变量覆盖外层
+     */
+    private final Map<String, Integer> variables = new HashMap<>(4);
+
+    private int variableCount;
+
+    private SqlScriptCompiler(String script) {
+        this.script = script;
+    }
+
+    /**
+     * 是否为&lt;script&gt;包裹的动态SQL
+     * @param sql SQL
+     * @return 是否为动态SQL
+     */
+    public static boolean isScript(String sql) {
+        return sql.startsWith(SCRIPT_OPEN) && sql.endsWith(SCRIPT_CLOSE);
+    }
+
+    /**
+     * 编译动态SQL
+     * @param script &lt;script&gt;包裹的动态SQL
+     * @return 编译后的动态SQL
+     */
+    public static DynamicSql compile(String script) {
+        SqlScriptCompiler compiler = new SqlScriptCompiler(script);
+        try {
+            XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(new StringReader(script));
+            try {
+                reader.nextTag();
+                SqlNode root = compiler.parseContents(reader);
+                return new DynamicSql(root, compiler.variableCount);
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new RuntimeException("解析动态SQL发生异常：" + script, e);
+        }
+    }
+
+    /**
+     * 解析当前标签的内容，直到当前标签结束
+     */
+    private SqlNode parseContents(XMLStreamReader reader) throws XMLStreamException {
+        List<SqlNode> contents = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA
+                    || event == XMLStreamConstants.SPACE) {
+                text.append(reader.getText());
+            } else if (event == XMLStreamConstants.START_ELEMENT) {
+                compileText(text, contents);
+                contents.add(parseElement(reader));
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                break;
+            }
+        }
+        compileText(text, contents);
+        return contents.size() == 1 ? contents.get(0) : new MixedSqlNode(contents.toArray(new SqlNode[0]));
+    }
+
+    private SqlNode parseElement(XMLStreamReader reader) throws XMLStreamException {
+        String name = reader.getLocalName();
+        switch (name) {
+            case "if":
+                Expression test = parseTest(reader);
+                return new IfSqlNode(test, parseContents(reader));
+            case "choose":
+                return parseChoose(reader);
+            case "where":
+                return TrimSqlNode.where(parseContents(reader));
+            case "set":
+                return TrimSqlNode.set(parseContents(reader));
+            case "trim":
+                String prefix = reader.getAttributeValue(null, "prefix");
+                String suffix = reader.getAttributeValue(null, "suffix");
+                String[] prefixOverrides = splitOverrides(reader.getAttributeValue(null, "prefixOverrides"));
+                String[] suffixOverrides = splitOverrides(reader.getAttributeValue(null, "suffixOverrides"));
+                return new TrimSqlNode(parseContents(reader), prefix, suffix, prefixOverrides, suffixOverrides);
+            case "foreach":
+                return parseForEach(reader);
+            default:
+                throw new RuntimeException("动态SQL中暂不支持<" + name + ">标签：" + script);
+        }
+    }
+
+    private SqlNode parseChoose(XMLStreamReader reader) throws XMLStreamException {
+        List<Expression> tests = new ArrayList<>();
+        List<SqlNode> contents = new ArrayList<>();
+        SqlNode otherwise = null;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = reader.getLocalName();
+                if ("when".equals(name) && otherwise == null) {
+                    tests.add(parseTest(reader));
+                    contents.add(parseContents(reader));
+                } else if ("otherwise".equals(name) && otherwise == null) {
+                    otherwise = parseContents(reader);
+                } else {
+                    throw new RuntimeException("<choose>中只能按顺序包含<when>和一个<otherwise>：" + script);
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                break;
+            } else if ((event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA)
+                    && !reader.getText().trim().isEmpty()) {
+                throw new RuntimeException("<choose>中不能直接包含SQL文本：" + script);
+            }
+        }
+        return new ChooseSqlNode(tests.toArray(new Expression[0]), contents.toArray(new SqlNode[0]), otherwise);
+    }
+
+    private SqlNode parseForEach(XMLStreamReader reader) throws XMLStreamException {
+        String collection = reader.getAttributeValue(null, "collection");
+        if (collection == null || collection.isEmpty()) {
+            throw new RuntimeException("<foreach>没有指定collection：" + script);
+        }
+        ValueReader collectionReader = resolve(collection);
+        String item = reader.getAttributeValue(null, "item");
+        String index = reader.getAttributeValue(null, "index");
+        String open = reader.getAttributeValue(null, "open");
+        String close = reader.getAttributeValue(null, "close");
+        String separator = reader.getAttributeValue(null, "separator");
+        Integer shadowedItem = item == null ? null : variables.get(item);
+        Integer shadowedIndex = index == null ? null : variables.get(index);
+        int itemVariable = declare(item);
+        int indexVariable = declare(index);
+        SqlNode contents = parseContents(reader);
+        restore(item, shadowedItem);
+        restore(index, shadowedIndex);
+        return new ForEachSqlNode(collectionReader, collection, itemVariable, indexVariable, open, close, separator,
+                contents);
+    }
+
+    private Expression parseTest(XMLStreamReader reader) {
+        String test = reader.getAttributeValue(null, "test");
+        if (test == null) {
+            throw new RuntimeException("<" + reader.getLocalName() + ">没有指定test：" + script);
+        }
+        return ExpressionParser.parse(test, this::resolve);
+    }
+
+    private int declare(String name) {
+        if (name == null || name.isEmpty()) {
+            return -1;
+        }
+        int variable = variableCount++;
+        variables.put(name, variable);
+        return variable;
+    }
+
+    private void restore(String name, Integer shadowed) {
+        if (name == null || name.isEmpty()) {
+            return;
+        }
+        if (shadowed == null) {
+            variables.remove(name);
+        } else {
+            variables.put(name, shadowed);
+        }
+    }
+
+    /**
+     * 按属性路径的第一段判断从foreach变量还是参数对象读取
+     */
+    private ValueReader resolve(String path) {
+        int dot = path.indexOf('.');
+        Integer variable = variables.get(dot < 0 ? path : path.substring(0, dot));
+        if (variable == null) {
+            return ValueReader.forParameter(path);
+        }
+        return ValueReader.forVariable(variable, dot < 0 ? null : path.substring(dot + 1));
+    }
+
+    /**
+     * 把文本拆分为固定文本和占位符
+     */
+    private void compileText(StringBuilder text, List<SqlNode> contents) {
+        if (text.length() == 0) {
+            return;
+        }
+        String value = collapseWhitespace(text);
+        text.setLength(0);
+        int start = 0;
+        int open = indexOfPlaceholder(value, 0);
+        while (open >= 0) {
+            int close = value.indexOf(PLACEHOLDER_CLOSE, open + PLACEHOLDER_OPEN.length());
+            if (close < 0) {
+                throw new RuntimeException("SQL中的#{没有闭合：" + script);
+            }
+            // #{name,jdbcType=VARCHAR}只取属性名称
+            String content = value.substring(open + PLACEHOLDER_OPEN.length(), close);
+            int comma = content.indexOf(',');
+            String property = (comma < 0 ? content : content.substring(0, comma)).trim();
+            if (property.isEmpty()) {
+                throw new RuntimeException("SQL中的#{}没有指定参数名称：" + script);
+            }
+            if (open > start) {
+                contents.add(new TextSqlNode(value.substring(start, open)));
+            }
+            contents.add(new ParameterSqlNode(resolve(property)));
+            start = close + PLACEHOLDER_CLOSE.length();
+            open = indexOfPlaceholder(value, start);
+        }
+        if (start < value.length()) {
+            contents.add(new TextSqlNode(value.substring(start)));
+        }
+    }
+
+    /**
+     * 查找字符串常量之外的下一个#{，from必须在字符串常量之外
+     */
+    private static int indexOfPlaceholder(String text, int from) {
+        boolean quoted = false;
+        for (int i = from; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+            } else if (!quoted && text.startsWith(PLACEHOLDER_OPEN, i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 把引号外连续的空白合并为一个空格，生成的SQL更短，日志中也更容易阅读
+     */
+    private static String collapseWhitespace(CharSequence text) {
+        StringBuilder builder = new StringBuilder(text.length());
+        char quote = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quote == 0 && Character.isWhitespace(c)) {
+                if (builder.length() == 0 || builder.charAt(builder.length() - 1) != ' ') {
+                    builder.append(' ');
+                }
+                continue;
+            }
+            if (c == '\'' || c == '"') {
+                quote = quote == 0 ? c : quote == c ? 0 : quote;
+            }
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+
+    private static String[] splitOverrides(String overrides) {
+        return overrides == null ? null : overrides.toUpperCase().split("\\|");
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+}
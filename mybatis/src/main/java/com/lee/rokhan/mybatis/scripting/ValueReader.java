@@ -0,0 +1,79 @@
+package com.lee.rokhan.mybatis.scripting;
+
+import com.lee.rokhan.mybatis.mapping.ParameterMapping;
+
+import java.util.Collection;
+
+/**
+ * 按编译时解析好的来源读取值
+ * 属性路径的第一段是foreach变量时从变量的下标读取，_parameter表示参数对象本身，否则从参数对象中读取
+ * @author lichujun
+ * @date 2019/8/12 16:10
+ */
+public final class ValueReader {
+
+    /**
+     * 表示参数对象本身的名称
+     */
+    public static final String PARAMETER_NAME = "_parameter";
+
+    /**
+     * foreach变量的下标，从参数对象读取时为-1
+     */
+    private final int variable;
+
+    /**
+     * 变量或者参数对象中的属性，读取整个对象时为null
+     */
+    private final ParameterMapping mapping;
+
+    /**
+     * 参数对象本身是集合或者数组时，list、collection、array表示参数对象本身
+     */
+    private final boolean collectionAlias;
+
+    private ValueReader(int variable, ParameterMapping mapping, boolean collectionAlias) {
+        this.variable = variable;
+        this.mapping = mapping;
+        this.collectionAlias = collectionAlias;
+    }
+
+    /**
+     * 从参数对象中读取
+     * @param property 属性路径
+     * @return ValueReader
+     */
+    public static ValueReader forParameter(String property) {
+        if (PARAMETER_NAME.equals(property)) {
+            return new ValueReader(-1, null, false);
+        }
+        boolean collectionAlias = "list".equals(property) || "collection".equals(property) || "array".equals(property);
+        return new ValueReader(-1, new ParameterMapping(property), collectionAlias);
+    }
+
+    /**
+     * 从foreach变量中读取
+     * @param variable 变量的下标
+     * @param property 变量中的属性路径，读取整个变量时为null
+     * @return ValueReader
+     */
+    public static ValueReader forVariable(int variable, String property) {
+        return new ValueReader(variable, property == null ? null : new ParameterMapping(property), false);
+    }
+
+    /**
+     * 读取值
+     * @param context 动态SQL的上下文
+     * @return 值
+     */
+    public Object read(DynamicContext context) {
+        Object source = variable < 0 ? context.getParameter() : context.getVariable(variable);
+        if (mapping == null) {
+            return source;
+        }
+        if (collectionAlias && (source instanceof Collection || source != null && source.getClass().isArray())) {
+            return source;
+        }
+        return mapping.getValue(source);
+    }
+}
@@ -0,0 +1,43 @@
+package com.lee.rokhan.mybatis.scripting.impl;
+
+import com.lee.rokhan.mybatis.scripting.DynamicContext;
+import com.lee.rokhan.mybatis.scripting.Expression;
+import com.lee.rokhan.mybatis.scripting.SqlNode;
+
+/**
+ * &lt;choose&gt;，输出第一个条件成立的&lt;when&gt;，都不成立时输出&lt;otherwise&gt;
+ * @author lichujun
+ * @date 2019/8/12 16:20
+ */
+public final class ChooseSqlNode implements SqlNode {
+
+    private final Expression[] tests;
+
+    private final SqlNode[] contents;
+
+    /**
+     * 没有&lt;otherwise&gt;时为null
+     */
+    private final SqlNode otherwise;
+
+    public ChooseSqlNode(Expression[] tests, SqlNode[] contents, SqlNode otherwise) {
+        this.tests = tests;
+        this.contents = contents;
+        this.otherwise = otherwise;
+    }
+
+    @Override
+    public void apply(DynamicContext context) {
+        for (int i = 0; i < tests.length; i++) {
+            if (ExpressionParser.isTrue(tests[i].evaluate(context))) {
+                context.addShape(i);
+                contents[i].apply(context);
+                return;
+            }
+        }
+        context.addShape(tests.length);
+        if (otherwise != null) {
+            otherwise.apply(context);
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package com.lee.rokhan.mybatis.scripting.impl;
+
+import com.lee.rokhan.mybatis.scripting.Expression;
+import com.lee.rokhan.mybatis.scripting.ValueReader;
+
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 编译test表达式，支持OGNL常用的子集：
+ * 属性路径（a.b）、null、true、false、数字、'字符串'或者"字符串"、
+ * ==、!=、&lt;、&lt;=、&gt;、&gt;=（以及eq、neq、lt、lte、gt、gte）、and、or、&amp;&amp;、||、!、not、括号，
+ * 以及属性路径结尾的size()、isEmpty()、length()。
+ * 编译时解析为表达式树，执行时不再解析字符串
+ * @author lichujun
+ * @date 2019/8/12 16:50
+ */
+public final class ExpressionParser {
+
+    private final String text;
+
+    private final Function<String, ValueReader> resolver;
+
+    private int position;
+
+    private ExpressionParser(String text, Function<String, ValueReader> resolver) {
+        this.text = text;
+        this.resolver = resolver;
+    }
+
+    /**
+     * 编译表达式
+     * @param text 表达式
+     * @param resolver 按属性路径创建ValueReader
+     * @return 编译后的表达式
+     */
+    public static Expression parse(String text, Function<String, ValueReader> resolver) {
+        if (text == null || text.trim().isEmpty()) {
+            throw new RuntimeException("test表达式不能为空");
+        }
+        ExpressionParser parser = new ExpressionParser(text, resolver);
+        Expression expression = parser.parseOr();
+        parser.skipWhitespace();
+        if (parser.position < text.length()) {
+            throw parser.error("无法解析");
+        }
+        return expression;
+    }
+
+    /**
+     * 按OGNL的规则转换为boolean：null为false，数字为0时为false，其余非null的值为true
+     * @param value 值
+     * @return boolean
+     */
+    public static boolean isTrue(Object value) {
+        if (value == null) {
+            return false;
+        }
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        if (value instanceof Number) {
+            return isIntegral((Number) value) ? ((Number) value).longValue() != 0 : toBigDecimal(value).signum() != 0;
+        }
+        if (value instanceof Character) {
+            return (Character) value != 0;
+        }
+        return true;
+    }
+
+    private Expression parseOr() {
+        Expression left = parseAnd();
+        while (acceptWord("or") || accept("||")) {
+            Expression l = left;
+            Expression r = parseAnd();
+            left = context -> isTrue(l.evaluate(context)) || isTrue(r.evaluate(context));
+        }
+        return left;
+    }
+
+    private Expression parseAnd() {
+        Expression left = parseNot();
+        while (acceptWord("and") || accept("&&")) {
+            Expression l = left;
+            Expression r = parseNot();
+            left = context -> isTrue(l.evaluate(context)) && isTrue(r.evaluate(context));
+        }
+        return left;
+    }
+
+    private Expression parseNot() {
+        if (acceptWord("not") || !peek("!=") && accept("!")) {
+            Expression operand = parseNot();
+            return context -> !isTrue(operand.evaluate(context));
+        }
+        return parseComparison();
+    }
+
+    private Expression parseComparison() {
+        Expression left = parsePrimary();
+        String operator = parseOperator();
+        if (operator == null) {
+            return left;
+        }
+        Expression right = parsePrimary();
+        switch (operator) {
+            case "==":
+                return context -> isEqual(left.evaluate(context), right.evaluate(context));
+            case "!=":
+                return context -> !isEqual(left.evaluate(context), right.evaluate(context));
+            case "<":
+                return context -> compare(left.evaluate(context), right.evaluate(context)) < 0;
+            case "<=":
+                return context -> compare(left.evaluate(context), right.evaluate(context)) <= 0;
+            case ">":
+                return context -> compare(left.evaluate(context), right.evaluate(context)) > 0;
+            default:
+                return context -> compare(left.evaluate(context), right.evaluate(context)) >= 0;
+        }
+    }
+
+    private String parseOperator() {
+        for (String operator : new String[]{"==", "!=", "<=", ">=", "<", ">"}) {
+            if (accept(operator)) {
+                return operator;
+            }
+        }
+        String[][] words = {{"eq", "=="}, {"neq", "!="}, {"lte", "<="}, {"gte", ">="}, {"lt", "<"}, {"gt", ">"}};
+        for (String[] word : words) {
+            if (acceptWord(word[0])) {
+                return word[1];
+            }
+        }
+        return null;
+    }
+
+    private Expression parsePrimary() {
+        skipWhitespace();
+        if (position >= text.length()) {
+            throw error("缺少操作数");
+        }
+        char c = text.charAt(position);
+        if (c == '(') {
+            position++;
+            Expression expression = parseOr();
+            if (!accept(")")) {
+                throw error("缺少)");
+            }
+            return expression;
+        }
+        if (c == '\'' || c == '"') {
+            int end = text.indexOf(c, position + 1);
+            if (end < 0) {
+                throw error("字符串没有闭合");
+            }
+            String value = text.substring(position + 1, end);
+            position = end + 1;
+            return context -> value;
+        }
+        if (Character.isDigit(c) || c == '-') {
+            int start = position++;
+            while (position < text.length()
+                    && (Character.isDigit(text.charAt(position)) || text.charAt(position) == '.')) {
+                position++;
+            }
+            String number = text.substring(start, position);
+            // 整数使用Long，与整数类型的属性比较时不需要转换为BigDecimal
+            Object value = number.indexOf('.') < 0 && number.length() < 19 ? (Object) Long.parseLong(number)
+                    : new BigDecimal(number);
+            return context -> value;
+        }
+        if (!Character.isJavaIdentifierStart(c)) {
+            throw error("无法解析");
+        }
+        int start = position;
+        while (position < text.length()
+                && (Character.isJavaIdentifierPart(text.charAt(position)) || text.charAt(position) == '.')) {
+            position++;
+        }
+        String path = text.substring(start, position);
+        switch (path) {
+            case "null":
+                return context -> null;
+            case "true":
+                return context -> Boolean.TRUE;
+            case "false":
+                return context -> Boolean.FALSE;
+            default:
+                break;
+        }
+        if (accept("()")) {
+            int dot = path.lastIndexOf('.');
+            if (dot < 0) {
+                throw error("不支持的方法" + path + "()");
+            }
+            ValueReader reader = resolver.apply(path.substring(0, dot));
+            String method = path.substring(dot + 1);
+            return context -> invoke(reader.read(context), method);
+        }
+        ValueReader reader = resolver.apply(path);
+        return reader::read;
+    }
+
+    private Object invoke(Object target, String method) {
+        if (target == null) {
+            throw new RuntimeException("test表达式[" + text + "]中调用" + method + "()的对象为null");
+        }
+        int size;
+        if (target instanceof Collection) {
+            size = ((Collection<?>) target).size();
+        } else if (target instanceof Map) {
+            size = ((Map<?, ?>) target).size();
+        } else if (target instanceof CharSequence) {
+            size = ((CharSequence) target).length();
+        } else if (target.getClass().isArray()) {
+            size = Array.getLength(target);
+        } else {
+            throw new RuntimeException("test表达式[" + text + "]中不支持对" + target.getClass().getName()
+                    + "调用" + method + "()");
+        }
+        switch (method) {
+            case "size":
+            case "length":
+                return size;
+            case "isEmpty":
+                return size == 0;
+            default:
+                throw new RuntimeException("test表达式[" + text + "]中不支持的方法" + method + "()");
+        }
+    }
+
+    private static boolean isEqual(Object left, Object right) {
+        if (left == null || right == null) {
+            return left == right;
+        }
+        if (left instanceof Number && right instanceof Number) {
+            return compareNumbers((Number) left, (Number) right) == 0;
+        }
+        if (left instanceof Enum || right instanceof Enum) {
+            return left.toString().equals(right.toString());
+        }
+        if (left instanceof Character || right instanceof Character) {
+            return left.toString().equals(right.toString());
+        }
+        return left.equals(right);
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(Object left, Object right) {
+        if (left == null || right == null) {
+            throw new RuntimeException("test表达式[" + text + "]中比较大小的值为null");
+        }
+        if (left instanceof Number && right instanceof Number) {
+            return compareNumbers((Number) left, (Number) right);
+        }
+        if (left instanceof Comparable && left.getClass() == right.getClass()) {
+            return ((Comparable<Object>) left).compareTo(right);
+        }
+        throw new RuntimeException("test表达式[" + text + "]中无法比较" + left.getClass().getName()
+                + "和" + right.getClass().getName());
+    }
+
+    /**
+     * 整数之间直接比较，其余转换为BigDecimal比较
+     */
+    private static int compareNumbers(Number left, Number right) {
+        if (isIntegral(left) && isIntegral(right)) {
+            return Long.compare(left.longValue(), right.longValue());
+        }
+        return toBigDecimal(left).compareTo(toBigDecimal(right));
+    }
+
+    private static boolean isIntegral(Number number) {
+        return number instanceof Long || number instanceof Integer || number instanceof Short || number instanceof Byte;
+    }
+
+    private static BigDecimal toBigDecimal(Object number) {
+        if (number instanceof BigDecimal) {
+            return (BigDecimal) number;
+        }
+        if (number instanceof Double || number instanceof Float) {
+            return BigDecimal.valueOf(((Number) number).doubleValue());
+        }
+        return isIntegral((Number) number) ? BigDecimal.valueOf(((Number) number).longValue())
+                : new BigDecimal(number.toString());
+    }
+
+    private boolean peek(String token) {
+        skipWhitespace();
+        return text.startsWith(token, position);
+    }
+
+    private boolean accept(String token) {
+        if (peek(token)) {
+            position += token.length();
+            return true;
+        }
+        return false;
+    }
+
+    private boolean acceptWord(String word) {
+        skipWhitespace();
+        int end = position + word.length();
+        if (text.startsWith(word, position)
+                && (end == text.length() || !Character.isJavaIdentifierPart(text.charAt(end)))) {
+            position = end;
+            return true;
+        }
+        return false;
+    }
+
+    private void skipWhitespace() {
+        while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+            position++;
+        }
+    }
+
+    private RuntimeException error(String message) {
+        return new RuntimeException("test表达式[" + text + "]在第" + (position + 1) + "个字符处" + message);
+    }
+}
@@ -0,0 +1,96 @@
+package com.lee.rokhan.mybatis.scripting.impl;
+
+import com.lee.rokhan.mybatis.scripting.DynamicContext;
+import com.lee.rokhan.mybatis.scripting.SqlNode;
+import com.lee.rokhan.mybatis.scripting.ValueReader;
+
+import java.lang.reflect.Array;
+import java.util.Map;
+
+/**
+ * &lt;foreach&gt;，遍历集合、数组或者Map（index为key，item为value），集合为空时不输出
+ * item和index在编译时分配了变量下标，循环体中的#{item.xxx}直接按下标读取
+ * @author lichujun
+ * @date 2019/8/12 16:40
+ */
+public final class ForEachSqlNode implements SqlNode {
+
+    private final ValueReader collection;
+
+    private final String collectionName;
+
+    /**
+     * item和index的变量下标，没有指定时为-1
+     */
+    private final int itemVariable;
+
+    private final int indexVariable;
+
+    private final String open;
+
+    private final String close;
+
+    private final String separator;
+
+    private final SqlNode contents;
+
+    public ForEachSqlNode(ValueReader collection, String collectionName, int itemVariable, int indexVariable,
+                          String open, String close, String separator, SqlNode contents) {
+        this.collection = collection;
+        this.collectionName = collectionName;
+        this.itemVariable = itemVariable;
+        this.indexVariable = indexVariable;
+        this.open = open;
+        this.close = close;
+        this.separator = separator;
+        this.contents = contents;
+    }
+
+    @Override
+    public void apply(DynamicContext context) {
+        Object value = collection.read(context);
+        int shape = context.addShape(0);
+        int count = 0;
+        if (value == null) {
+            return;
+        }
+        if (value instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                applyItem(context, count++, entry.getKey(), entry.getValue());
+            }
+        } else if (value instanceof Iterable) {
+            for (Object item : (Iterable<?>) value) {
+                applyItem(context, count, count++, item);
+            }
+        } else if (value.getClass().isArray()) {
+            int length = Array.getLength(value);
+            for (; count < length; count++) {
+                applyItem(context, count, count, Array.get(value, count));
+            }
+        } else {
+            throw new RuntimeException("<foreach>的collection[" + collectionName + "]不是集合、数组或者Map："
+                    + value.getClass().getName());
+        }
+        context.setShape(shape, count);
+        if (count > 0 && close != null) {
+            context.appendSql(close);
+        }
+    }
+
+    private void applyItem(DynamicContext context, int count, Object index, Object item) {
+        if (count == 0) {
+            if (open != null) {
+                context.appendSql(open);
+            }
+        } else if (separator != null) {
+            context.appendSql(separator);
+        }
+        if (itemVariable >= 0) {
+            context.setVariable(itemVariable, item);
+        }
+        if (indexVariable >= 0) {
+            context.setVariable(indexVariable, index);
+        }
+        contents.apply(context);
+    }
+}
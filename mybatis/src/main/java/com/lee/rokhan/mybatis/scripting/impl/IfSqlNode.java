@@ -0,0 +1,31 @@
+package com.lee.rokhan.mybatis.scripting.impl;
+
+import com.lee.rokhan.mybatis.scripting.DynamicContext;
+import com.lee.rokhan.mybatis.scripting.Expression;
+import com.lee.rokhan.mybatis.scripting.SqlNode;
+
+/**
+ * &lt;if test=""&gt;，条件成立时输出内容
+ * @author lichujun
+ * @date 2019/8/12 16:20
+ */
+public final class IfSqlNode implements SqlNode {
+
+    private final Expression test;
+
+    private final SqlNode contents;
+
+    public IfSqlNode(Expression test, SqlNode contents) {
+        this.test = test;
+        this.contents = contents;
+    }
+
+    @Override
+    public void apply(DynamicContext context) {
+        boolean matched = ExpressionParser.isTrue(test.evaluate(context));
+        context.addShape(matched ? 1 : 0);
+        if (matched) {
+            contents.apply(context);
+        }
+    }
+}
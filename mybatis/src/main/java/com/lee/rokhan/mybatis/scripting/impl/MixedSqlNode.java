@@ -0,0 +1,25 @@
+package com.lee.rokhan.mybatis.scripting.impl;
+
+import com.lee.rokhan.mybatis.scripting.DynamicContext;
+import com.lee.rokhan.mybatis.scripting.SqlNode;
+
+/**
+ * 按顺序输出的多个片段
+ * @author lichujun
+ * @date 2019/8/12 16:20
+ */
+public final class MixedSqlNode implements SqlNode {
+
+    private final SqlNode[] contents;
+
+    public MixedSqlNode(SqlNode[] contents) {
+        this.contents = contents;
+    }
+
+    @Override
+    public void apply(DynamicContext context) {
+        for (SqlNode content : contents) {
+            content.apply(context);
+        }
+    }
+}
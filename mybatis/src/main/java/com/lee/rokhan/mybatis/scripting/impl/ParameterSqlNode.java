@@ -0,0 +1,24 @@
+package com.lee.rokhan.mybatis.scripting.impl;
+
+import com.lee.rokhan.mybatis.scripting.DynamicContext;
+import com.lee.rokhan.mybatis.scripting.SqlNode;
+import com.lee.rokhan.mybatis.scripting.ValueReader;
+
+/**
+ * #{}占位符，输出?并记录参数值
+ * @author lichujun
+ * @date 2019/8/12 16:20
+ */
+public final class ParameterSqlNode implements SqlNode {
+
+    private final ValueReader reader;
+
+    public ParameterSqlNode(ValueReader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    public void apply(DynamicContext context) {
+        context.addValue(reader.read(context));
+    }
+}
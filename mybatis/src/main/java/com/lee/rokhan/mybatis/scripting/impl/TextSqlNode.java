@@ -0,0 +1,23 @@
+package com.lee.rokhan.mybatis.scripting.impl;
+
+import com.lee.rokhan.mybatis.scripting.DynamicContext;
+import com.lee.rokhan.mybatis.scripting.SqlNode;
+
+/**
+ * 固定的SQL文本
+ * @author lichujun
+ * @date 2019/8/12 16:20
+ */
+public final class TextSqlNode implements SqlNode {
+
+    private final String text;
+
+    public TextSqlNode(String text) {
+        this.text = text;
+    }
+
+    @Override
+    public void apply(DynamicContext context) {
+        context.appendSql(text);
+    }
+}
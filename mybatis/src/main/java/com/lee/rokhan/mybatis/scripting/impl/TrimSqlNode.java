@@ -0,0 +1,121 @@
+package com.lee.rokhan.mybatis.scripting.impl;
+
+import com.lee.rokhan.mybatis.scripting.DynamicContext;
+import com.lee.rokhan.mybatis.scripting.SqlNode;
+
+/**
+ * &lt;trim&gt;、&lt;where&gt;、&lt;set&gt;
+ * 内容直接输出到上下文的StringBuilder，再在原位去掉首尾的空白和匹配的前后缀（不区分大小写），内容不为空时加上prefix和suffix
+ * @author lichujun
+ * @date 2019/8/12 16:30
+ */
+public final class TrimSqlNode implements SqlNode {
+
+    private static final String[] WHERE_PREFIX_OVERRIDES = {"AND ", "OR ", "AND\n", "OR\n", "AND\r", "OR\r",
+            "AND\t", "OR\t"};
+
+    private static final String[] SET_SUFFIX_OVERRIDES = {","};
+
+    private static final String[] NONE = {};
+
+    private final SqlNode contents;
+
+    private final String prefix;
+
+    private final String suffix;
+
+    private final String[] prefixOverrides;
+
+    private final String[] suffixOverrides;
+
+    public TrimSqlNode(SqlNode contents, String prefix, String suffix, String[] prefixOverrides,
+                       String[] suffixOverrides) {
+        this.contents = contents;
+        this.prefix = prefix;
+        this.suffix = suffix;
+        this.prefixOverrides = prefixOverrides == null ? NONE : prefixOverrides;
+        this.suffixOverrides = suffixOverrides == null ? NONE : suffixOverrides;
+    }
+
+    /**
+     * &lt;where&gt;：加上WHERE并去掉开头的AND、OR
+     * @param contents 内容
+     * @return TrimSqlNode
+     */
+    public static TrimSqlNode where(SqlNode contents) {
+        return new TrimSqlNode(contents, "WHERE", null, WHERE_PREFIX_OVERRIDES, null);
+    }
+
+    /**
+     * &lt;set&gt;：加上SET并去掉结尾的逗号
+     * @param contents 内容
+     * @return TrimSqlNode
+     */
+    public static TrimSqlNode set(SqlNode contents) {
+        return new TrimSqlNode(contents, "SET", null, null, SET_SUFFIX_OVERRIDES);
+    }
+
+    @Override
+    public void apply(DynamicContext context) {
+        StringBuilder sql = context.getSql();
+        if (sql == null) {
+            contents.apply(context);
+            return;
+        }
+        int mark = sql.length();
+        contents.apply(context);
+        int start = skipWhitespace(sql, mark, sql.length());
+        int end = trimWhitespace(sql, start, sql.length());
+        for (String override : prefixOverrides) {
+            if (override.length() <= end - start && matches(sql, start, override)) {
+                start = skipWhitespace(sql, start + override.length(), end);
+                break;
+            }
+        }
+        for (String override : suffixOverrides) {
+            if (override.length() <= end - start && matches(sql, end - override.length(), override)) {
+                end = trimWhitespace(sql, start, end - override.length());
+                break;
+            }
+        }
+        sql.setLength(end);
+        if (start == end) {
+            sql.setLength(mark);
+            return;
+        }
+        sql.delete(mark, start);
+        if (prefix != null) {
+            if (mark > 0 && !Character.isWhitespace(sql.charAt(mark - 1))) {
+                sql.insert(mark++, ' ');
+            }
+            sql.insert(mark, prefix).insert(mark + prefix.length(), ' ');
+        }
+        if (suffix != null) {
+            sql.append(' ').append(suffix);
+        }
+        sql.append(' ');
+    }
+
+    private static int skipWhitespace(StringBuilder sql, int start, int end) {
+        while (start < end && Character.isWhitespace(sql.charAt(start))) {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimWhitespace(StringBuilder sql, int start, int end) {
+        while (end > start && Character.isWhitespace(sql.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+
+    private static boolean matches(StringBuilder sql, int offset, String override) {
+        for (int i = 0; i < override.length(); i++) {
+            if (Character.toUpperCase(sql.charAt(offset + i)) != Character.toUpperCase(override.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,150 @@
+package com.lee.rokhan.mybatis.session;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * 异步会话，线程安全
+ * 每次调用在专用的JDBC线程池中打开独立的会话执行，调用线程（例如event loop）不会被JDBC阻塞；
+ * 线程数等于连接池的最大连接数，队列有界，队列满时返回失败的Future，不会无限堆积。
+ * 返回的Future在JDBC线程中完成，依赖它的回调也在JDBC线程中执行，回调中不要做耗时操作
+ * @author lichujun
+ * @date 2019/8/9 15:00
+ */
+public class AsyncSqlSession implements Closeable {
+
+    private final SqlSessionFactory sqlSessionFactory;
+
+    private final ThreadPoolExecutor jdbcExecutor;
+
+    AsyncSqlSession(SqlSessionFactory sqlSessionFactory, int threads, int queueSize) {
+        this.sqlSessionFactory = sqlSessionFactory;
+        String threadPrefix = sqlSessionFactory.getDataSource().getPoolName() + "-jdbc-";
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.jdbcExecutor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueSize)), runnable -> {
+            Thread thread = new Thread(runnable, threadPrefix + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.jdbcExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 查询一条记录
+     * @param statementId 命名空间.id
+     * @param parameter 参数对象
+     * @param <T> 返回类型
+     * @return 查询结果，没有记录时为null
+     */
+    public <T> CompletableFuture<T> selectOne(String statementId, Object parameter) {
+        return submit(true, sqlSession -> sqlSession.selectOne(statementId, parameter));
+    }
+
+    /**
+     * 查询多条记录
+     * @param statementId 命名空间.id
+     * @param parameter 参数对象
+     * @param <E> 返回类型
+     * @return 查询结果
+     */
+    public <E> CompletableFuture<List<E>> selectList(String statementId, Object parameter) {
+        return submit(true, sqlSession -> sqlSession.selectList(statementId, parameter));
+    }
+
+    /**
+     * 新增，自动提交
+     * @param statementId 命名空间.id
+     * @param parameter 参数对象
+     * @return 影响的行数
+     */
+    public CompletableFuture<Integer> insert(String statementId, Object parameter) {
+        return submit(true, sqlSession -> sqlSession.insert(statementId, parameter));
+    }
+
+    /**
+     * 修改，自动提交
+     * @param statementId 命名空间.id
+     * @param parameter 参数对象
+     * @return 影响的行数
+     */
+    public CompletableFuture<Integer> update(String statementId, Object parameter) {
+        return submit(true, sqlSession -> sqlSession.update(statementId, parameter));
+    }
+
+    /**
+     * 删除，自动提交
+     * @param statementId 命名空间.id
+     * @param parameter 参数对象
+     * @return 影响的行数
+     */
+    public CompletableFuture<Integer> delete(String statementId, Object parameter) {
+        return submit(true, sqlSession -> sqlSession.delete(statementId, parameter));
+    }
+
+    /**
+     * 在一个事务中执行多条SQL，正常返回时提交，抛出异常时回滚
+     * @param work 使用会话执行SQL，在JDBC线程中执行
+     * @param <T> 返回类型
+     * @return work的返回值
+     */
+    public <T> CompletableFuture<T> inTransaction(Function<SqlSession, T> work) {
+        return submit(false, sqlSession -> {
+            T result = work.apply(sqlSession);
+            sqlSession.commit();
+            return result;
+        });
+    }
+
+    private <T> CompletableFuture<T> submit(boolean autoCommit, Function<SqlSession, T> work) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            jdbcExecutor.execute(() -> {
+                // 未提交的事务在关闭会话时回滚
+                try (SqlSession sqlSession = sqlSessionFactory.openSession(autoCommit)) {
+                    future.complete(work.apply(sqlSession));
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(new RuntimeException(jdbcExecutor.isShutdown()
+                    ? "异步会话已关闭" : "JDBC线程池的队列已满，数据库处理不过来", e));
+        }
+        return future;
+    }
+
+    /**
+     * 等待中的任务数量
+     * @return 队列中的任务数量
+     */
+    public int getQueuedTasks() {
+        return jdbcExecutor.getQueue().size();
+    }
+
+    /**
+     * 关闭线程池，已提交的任务继续执行
+     */
+    @Override
+    public void close() {
+        jdbcExecutor.shutdown();
+    }
+
+    /**
+     * 关闭后等待已提交的任务执行完
+     * @param timeout 最长等待时间
+     * @param unit 时间单位
+     * @return 是否已经全部执行完
+     * @throws InterruptedException 等待时被中断
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return jdbcExecutor.awaitTermination(timeout, unit);
+    }
+}
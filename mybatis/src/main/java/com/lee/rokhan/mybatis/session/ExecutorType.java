@@ -0,0 +1,11 @@
+package com.lee.rokhan.mybatis.session;
+
+/**
+ * 执行器类型
+ * @author lichujun
+ * @date 2019/8/6 16:00
+ */
+public enum ExecutorType {
+    // 每次执行一条SQL；连续的新增、修改、删除合并为JDBC批量执行
+    SIMPLE, BATCH, ;
+}
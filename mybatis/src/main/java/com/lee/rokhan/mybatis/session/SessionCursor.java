@@ -0,0 +1,68 @@
+package com.lee.rokhan.mybatis.session;
+
+import com.lee.rokhan.mybatis.cursor.Cursor;
+
+import java.util.Iterator;
+
+/**
+ * 独占会话的游标，关闭游标时关闭会话
+ * @param <T> 每一行对应的Java类型
+ * @author lichujun
+ * @date 2019/8/7 16:40
+ */
+class SessionCursor<T> implements Cursor<T> {
+
+    private final Cursor<T> cursor;
+
+    private final SqlSession sqlSession;
+
+    SessionCursor(Cursor<T> cursor, SqlSession sqlSession) {
+        this.cursor = cursor;
+        this.sqlSession = sqlSession;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return cursor.isOpen();
+    }
+
+    @Override
+    public boolean isConsumed() {
+        return cursor.isConsumed();
+    }
+
+    @Override
+    public int getCurrentIndex() {
+        return cursor.getCurrentIndex();
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        Iterator<T> iterator = cursor.iterator();
+        return new Iterator<T>() {
+            @Override
+            public boolean hasNext() {
+                boolean hasNext = iterator.hasNext();
+                if (!hasNext) {
+                    // 读取完后游标自动关闭，会话也随之关闭
+                    close();
+                }
+                return hasNext;
+            }
+
+            @Override
+            public T next() {
+                return iterator.next();
+            }
+        };
+    }
+
+    @Override
+    public void close() {
+        try {
+            cursor.close();
+        } finally {
+            sqlSession.close();
+        }
+    }
+}
@@ -1,14 +1,22 @@
 package com.lee.rokhan.mybatis.session;
 
+import com.lee.rokhan.mybatis.cursor.Cursor;
+import com.lee.rokhan.mybatis.executor.BatchResult;
 import com.lee.rokhan.mybatis.executor.Executor;
 import com.lee.rokhan.mybatis.mapping.Configuration;
 
+import java.io.Closeable;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.stream.Stream;
+
 /**
  * 会话
+ * 非线程安全，一个会话只能在一个线程中使用，使用完需要关闭
  * @author lichujun
  * @date 2019/7/31 14:26
  */
-public class SqlSession {
+public class SqlSession implements Closeable {
 
     private final Configuration configuration;
 
@@ -18,4 +26,174 @@ public class SqlSession {
         this.configuration = configuration;
         this.executor = executor;
     }
+
+    /**
+     * 查询一条记录
+     * @param statementId 命名空间.id
+     * @param <T> 返回类型
+     * @return 查询结果，没有记录时返回null
+     */
+    public <T> T selectOne(String statementId) {
+        return selectOne(statementId, null);
+    }
+
+    /**
+     * 查询一条记录
+     * @param statementId 命名空间.id
+     * @param parameter 参数对象
+     * @param <T> 返回类型
+     * @return 查询结果，没有记录时返回null
+     */
+    public <T> T selectOne(String statementId, Object parameter) {
+        List<T> list = selectList(statementId, parameter);
+        if (list.size() > 1) {
+            throw new RuntimeException(statementId + "期望返回一条记录，实际返回了" + list.size() + "条");
+        }
+        return list.isEmpty() ? null : list.get(0);
+    }
+
+    /**
+     * 查询多条记录
+     * @param statementId 命名空间.id
+     * @param <E> 返回类型
+     * @return 查询结果
+     */
+    public <E> List<E> selectList(String statementId) {
+        return selectList(statementId, null);
+    }
+
+    /**
+     * 查询多条记录
+     * @param statementId 命名空间.id
+     * @param parameter 参数对象
+     * @param <E> 返回类型
+     * @return 查询结果
+     */
+    public <E> List<E> selectList(String statementId, Object parameter) {
+        try {
+            return executor.query(configuration.getStatement(statementId), parameter);
+        } catch (SQLException e) {
+            throw new RuntimeException("执行" + statementId + "发生异常", e);
+        }
+    }
+
+    /**
+     * 查询并返回游标，遍历时才读取和转换下一行，会话关闭时关闭未关闭的游标
+     * @param statementId 命名空间.id
+     * @param <T> 返回类型
+     * @return 游标
+     */
+    public <T> Cursor<T> selectCursor(String statementId) {
+        return selectCursor(statementId, null);
+    }
+
+    /**
+     * 查询并返回游标，遍历时才读取和转换下一行，会话关闭时关闭未关闭的游标
+     * @param statementId 命名空间.id
+     * @param parameter 参数对象
+     * @param <T> 返回类型
+     * @return 游标
+     */
+    public <T> Cursor<T> selectCursor(String statementId, Object parameter) {
+        try {
+            return executor.queryCursor(configuration.getStatement(statementId), parameter);
+        } catch (SQLException e) {
+            throw new RuntimeException("执行" + statementId + "发生异常", e);
+        }
+    }
+
+    /**
+     * 查询并返回按行读取的Stream，需要在会话关闭前使用，关闭Stream时关闭游标
+     * @param statementId 命名空间.id
+     * @param parameter 参数对象
+     * @param <T> 返回类型
+     * @return Stream
+     */
+    public <T> Stream<T> selectStream(String statementId, Object parameter) {
+        return this.<T>selectCursor(statementId, parameter).stream();
+    }
+
+    /**
+     * 新增
+     * @param statementId 命名空间.id
+     * @param parameter 参数对象
+     * @return 影响的行数，批量执行时为BatchExecutor.BATCH_UPDATE_RETURN_VALUE
+     */
+    public int insert(String statementId, Object parameter) {
+        return update(statementId, parameter);
+    }
+
+    /**
+     * 修改
+     * @param statementId 命名空间.id
+     * @param parameter 参数对象
+     * @return 影响的行数，批量执行时为BatchExecutor.BATCH_UPDATE_RETURN_VALUE
+     */
+    public int update(String statementId, Object parameter) {
+        try {
+            return executor.update(configuration.getStatement(statementId), parameter);
+        } catch (SQLException e) {
+            throw new RuntimeException("执行" + statementId + "发生异常", e);
+        }
+    }
+
+    /**
+     * 删除
+     * @param statementId 命名空间.id
+     * @param parameter 参数对象
+     * @return 影响的行数，批量执行时为BatchExecutor.BATCH_UPDATE_RETURN_VALUE
+     */
+    public int delete(String statementId, Object parameter) {
+        return update(statementId, parameter);
+    }
+
+    /**
+     * 执行还未执行的批量SQL
+     * @return 上次刷新之后的批量执行结果，非批量执行时为空
+     */
+    public List<BatchResult> flushStatements() {
+        try {
+            return executor.flushStatements();
+        } catch (SQLException e) {
+            throw new RuntimeException("执行批量SQL发生异常", e);
+        }
+    }
+
+    /**
+     * 提交事务
+     */
+    public void commit() {
+        try {
+            executor.commit();
+        } catch (SQLException e) {
+            throw new RuntimeException("提交事务发生异常", e);
+        }
+    }
+
+    /**
+     * 回滚事务
+     */
+    public void rollback() {
+        try {
+            executor.rollback();
+        } catch (SQLException e) {
+            throw new RuntimeException("回滚事务发生异常", e);
+        }
+    }
+
+    /**
+     * 关闭会话，归还连接，未提交的事务会被回滚
+     */
+    @Override
+    public void close() {
+        try {
+            executor.close();
+        } catch (SQLException e) {
+            throw new RuntimeException("关闭会话发生异常", e);
+        }
+    }
+
+    public Configuration getConfiguration() {
+        return configuration;
+    }
 }
@@ -1,23 +1,195 @@
 package com.lee.rokhan.mybatis.session;
 
+import com.lee.rokhan.mybatis.cursor.Cursor;
 import com.lee.rokhan.mybatis.executor.Executor;
+import com.lee.rokhan.mybatis.executor.impl.BatchExecutor;
+import com.lee.rokhan.mybatis.executor.impl.CachingExecutor;
+import com.lee.rokhan.mybatis.executor.impl.SimpleExecutor;
 import com.lee.rokhan.mybatis.mapping.Configuration;
+import com.lee.rokhan.mybatis.pool.DataSourcePool;
+import com.lee.rokhan.mybatis.pool.DataSourcePools;
+import com.lee.rokhan.mybatis.routing.DataSourceRouter;
+import com.lee.rokhan.mybatis.routing.Replica;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * SqlSession工厂
+ * 注册为Bean时把close设置为销毁方法，应用上下文关闭时先等待异步会话中的任务执行完，再关闭连接池
  * @author lichujun
  * @date 2019/7/30 11:42
  */
-public class SqlSessionFactory {
+@Slf4j
+public class SqlSessionFactory implements Closeable {
+
+    /**
+     * 关闭时等待异步会话中的任务执行完的最长时间，单位：毫秒
+     */
+    private static final long ASYNC_CLOSE_TIMEOUT = 10000;
 
     private final Configuration configuration;
 
+    /**
+     * 相同环境信息的工厂打开的会话共用一个连接池
+     */
+    private final DataSourcePool dataSource;
+
+    /**
+     * 从库的路由，没有配置从库时为null
+     */
+    private final DataSourceRouter router;
+
+    /**
+     * 异步会话，第一次使用时创建
+     */
+    private volatile AsyncSqlSession asyncSqlSession;
+
     SqlSessionFactory(Configuration configuration) {
         this.configuration = configuration;
+        this.dataSource = DataSourcePools.getDataSourcePool(configuration.getEnvironment());
+        if (configuration.getReplicas() == null || configuration.getReplicas().isEmpty()) {
+            this.router = null;
+        } else {
+            List<DataSourcePool> replicaPools = configuration.getReplicas().stream()
+                    .map(DataSourcePools::getDataSourcePool)
+                    .collect(Collectors.toList());
+            this.router = new DataSourceRouter(replicaPools, configuration.getReplicaPolicy(),
+                    configuration.getReplicaFailureThreshold(), configuration.getReplicaEjectTime());
+        }
     }
 
+    /**
+     * 打开手动提交事务的会话
+     * @return 会话
+     */
     public SqlSession openSession() {
-        Executor executor = new Executor(configuration);
+        return openSession(configuration.getDefaultExecutorType(), false);
+    }
+
+    /**
+     * 打开会话
+     * @param autoCommit 是否自动提交事务
+     * @return 会话
+     */
+    public SqlSession openSession(boolean autoCommit) {
+        return openSession(configuration.getDefaultExecutorType(), autoCommit);
+    }
+
+    /**
+     * 打开手动提交事务的会话
+     * @param executorType 执行器类型
+     * @return 会话
+     */
+    public SqlSession openSession(ExecutorType executorType) {
+        return openSession(executorType, false);
+    }
+
+    /**
+     * 打开会话
+     * @param executorType 执行器类型
+     * @param autoCommit 是否自动提交事务
+     * @return 会话
+     */
+    public SqlSession openSession(ExecutorType executorType, boolean autoCommit) {
+        Executor executor;
+        if (executorType == ExecutorType.BATCH) {
+            executor = new BatchExecutor(configuration, dataSource, router, autoCommit);
+        } else {
+            executor = new SimpleExecutor(configuration, dataSource, router, autoCommit);
+        }
+        if (configuration.isCacheEnabled() && !configuration.getCaches().isEmpty()) {
+            executor = new CachingExecutor(executor, configuration, autoCommit);
+        }
         return new SqlSession(configuration, executor);
     }
+
+    /**
+     * 打开独占会话的游标，关闭游标时关闭会话、归还连接，适合在方法外遍历（例如流式写入HTTP响应）
+     * 会话为手动提交，部分数据库（例如PostgreSQL）只有在事务中才会按fetchSize分批读取
+     * @param statementId 命名空间.id
+     * @param parameter 参数对象
+     * @param <T> 返回类型
+     * @return 游标
+     */
+    public <T> Cursor<T> openCursor(String statementId, Object parameter) {
+        SqlSession sqlSession = openSession(ExecutorType.SIMPLE, false);
+        try {
+            return new SessionCursor<>(sqlSession.selectCursor(statementId, parameter), sqlSession);
+        } catch (RuntimeException e) {
+            sqlSession.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 打开独占会话的Stream，关闭Stream时关闭游标和会话、归还连接
+     * @param statementId 命名空间.id
+     * @param parameter 参数对象
+     * @param <T> 返回类型
+     * @return Stream
+     */
+    public <T> Stream<T> openStream(String statementId, Object parameter) {
+        return this.<T>openCursor(statementId, parameter).stream();
+    }
+
+    /**
+     * 获取异步会话，JDBC线程数等于连接池的最大连接数
+     * @return 异步会话
+     */
+    public AsyncSqlSession getAsyncSession() {
+        AsyncSqlSession session = asyncSqlSession;
+        if (session == null) {
+            synchronized (this) {
+                session = asyncSqlSession;
+                if (session == null) {
+                    session = new AsyncSqlSession(this, dataSource.getMaxPoolSize(),
+                            configuration.getAsyncQueueSize());
+                    asyncSqlSession = session;
+                }
+            }
+        }
+        return session;
+    }
+
+    public DataSourcePool getDataSource() {
+        return dataSource;
+    }
+
+    /**
+     * 获取从库的路由
+     * @return 从库的路由，没有配置从库时返回null
+     */
+    public DataSourceRouter getRouter() {
+        return router;
+    }
+
+    /**
+     * 关闭异步会话，等待已提交的任务执行完后关闭主库和从库的连接池；
+     * 连接池按环境信息共用，相同环境信息的其他工厂也不能再使用
+     */
+    @Override
+    public void close() {
+        AsyncSqlSession session = asyncSqlSession;
+        if (session != null) {
+            session.close();
+            try {
+                if (!session.awaitTermination(ASYNC_CLOSE_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                    log.warn("等待异步会话的任务执行完超过{}ms，不再等待", ASYNC_CLOSE_TIMEOUT);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        dataSource.close();
+        if (router != null) {
+            for (Replica replica : router.getReplicas()) {
+                replica.getDataSource().close();
+            }
+        }
+    }
 }
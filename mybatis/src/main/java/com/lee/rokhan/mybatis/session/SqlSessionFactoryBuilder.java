@@ -1,7 +1,9 @@
 package com.lee.rokhan.mybatis.session;
 
+import com.lee.rokhan.mybatis.builder.XmlConfigBuilder;
 import com.lee.rokhan.mybatis.mapping.Configuration;
 
+import java.io.File;
 import java.io.InputStream;
 
 /**
@@ -11,8 +13,32 @@ import java.io.InputStream;
  */
 public class SqlSessionFactoryBuilder {
 
+    /**
+     * 解析mybatis配置文件创建SqlSession工厂
+     * @param config 配置文件的输入流，读取后不关闭
+     * @return SqlSession工厂
+     */
     public static SqlSessionFactory build(InputStream config) {
-        Configuration configuration = null;
+        return build(config, null);
+    }
+
+    /**
+     * 解析mybatis配置文件创建SqlSession工厂，配置文件和mapper文件都没有修改时使用上次的解析结果
+     * @param config 配置文件的输入流，读取后不关闭
+     * @param parsedConfigCache 解析缓存文件，为null时不缓存
+     * @return SqlSession工厂
+     */
+    public static SqlSessionFactory build(InputStream config, File parsedConfigCache) {
+        Configuration configuration = new XmlConfigBuilder(config).setParsedConfigCache(parsedConfigCache).parse();
+        return new SqlSessionFactory(configuration);
+    }
+
+    /**
+     * 通过已经构建好的配置创建SqlSession工厂
+     * @param configuration 配置
+     * @return SqlSession工厂
+     */
+    public static SqlSessionFactory build(Configuration configuration) {
         return new SqlSessionFactory(configuration);
     }
 }
@@ -0,0 +1,22 @@
+package com.lee.rokhan.mybatis.type;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * 按确定的Java类型读取结果集的列，编译行映射时按类型选好，读取每一行时不再判断类型
+ * @author lichujun
+ * @date 2019/8/7 10:10
+ */
+@FunctionalInterface
+public interface ResultGetter {
+
+    /**
+     * 读取列的值
+     * @param resultSet 结果集
+     * @param column 列下标，从1开始
+     * @return 列的值
+     * @throws SQLException 读取发生异常
+     */
+    Object get(ResultSet resultSet, int column) throws SQLException;
+}
@@ -0,0 +1,82 @@
+package com.lee.rokhan.mybatis.type;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.apache.commons.lang3.StringUtils;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 类型别名，mapper中的parameterType和resultType可以使用别名或者类的全限定名
+ * @author lichujun
+ * @date 2019/8/6 09:40
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class TypeAliases {
+
+    /**
+     * 别名（小写）对应的类型
+     */
+    private static final Map<String, Class<?>> ALIAS_MAP = new HashMap<>();
+
+    /**
+     * 已解析的类型名称
+     */
+    private static final Map<String, Class<?>> RESOLVED_MAP = new ConcurrentHashMap<>();
+
+    static {
+        ALIAS_MAP.put("string", String.class);
+        ALIAS_MAP.put("byte", Byte.class);
+        ALIAS_MAP.put("short", Short.class);
+        ALIAS_MAP.put("int", Integer.class);
+        ALIAS_MAP.put("integer", Integer.class);
+        ALIAS_MAP.put("long", Long.class);
+        ALIAS_MAP.put("float", Float.class);
+        ALIAS_MAP.put("double", Double.class);
+        ALIAS_MAP.put("boolean", Boolean.class);
+        ALIAS_MAP.put("_byte", byte.class);
+        ALIAS_MAP.put("_short", short.class);
+        ALIAS_MAP.put("_int", int.class);
+        ALIAS_MAP.put("_integer", int.class);
+        ALIAS_MAP.put("_long", long.class);
+        ALIAS_MAP.put("_float", float.class);
+        ALIAS_MAP.put("_double", double.class);
+        ALIAS_MAP.put("_boolean", boolean.class);
+        ALIAS_MAP.put("date", Date.class);
+        ALIAS_MAP.put("decimal", BigDecimal.class);
+        ALIAS_MAP.put("bigdecimal", BigDecimal.class);
+        ALIAS_MAP.put("biginteger", BigInteger.class);
+        ALIAS_MAP.put("object", Object.class);
+        ALIAS_MAP.put("map", Map.class);
+        ALIAS_MAP.put("hashmap", HashMap.class);
+        ALIAS_MAP.put("list", List.class);
+        ALIAS_MAP.put("arraylist", ArrayList.class);
+        ALIAS_MAP.put("collection", Collection.class);
+    }
+
+    /**
+     * 解析类型名称
+     * @param typeName 别名或者类的全限定名
+     * @return 类型，名称为空时返回null
+     */
+    public static Class<?> resolve(String typeName) {
+        if (StringUtils.isBlank(typeName)) {
+            return null;
+        }
+        return RESOLVED_MAP.computeIfAbsent(typeName.trim(), name -> {
+            Class<?> alias = ALIAS_MAP.get(name.toLowerCase(Locale.ENGLISH));
+            if (alias != null) {
+                return alias;
+            }
+            ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+            try {
+                return Class.forName(name, true, classLoader == null ? TypeAliases.class.getClassLoader() : classLoader);
+            } catch (ClassNotFoundException e) {
+                throw new RuntimeException("找不到类型" + name, e);
+            }
+        });
+    }
+}
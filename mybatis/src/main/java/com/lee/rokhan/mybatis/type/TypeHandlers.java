@@ -0,0 +1,167 @@
+package com.lee.rokhan.mybatis.type;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+/**
+ * JDBC参数设置和结果读取的类型转换
+ * @author lichujun
+ * @date 2019/8/6 09:55
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class TypeHandlers {
+
+    /**
+     * 设置PreparedStatement的参数
+     * @param statement PreparedStatement
+     * @param index 参数下标，从1开始
+     * @param value 参数值
+     * @throws SQLException 设置参数发生异常
+     */
+    public static void setParameter(PreparedStatement statement, int index, Object value) throws SQLException {
+        if (value == null) {
+            statement.setNull(index, Types.NULL);
+        } else if (value instanceof String) {
+            statement.setString(index, (String) value);
+        } else if (value instanceof Integer) {
+            statement.setInt(index, (Integer) value);
+        } else if (value instanceof Long) {
+            statement.setLong(index, (Long) value);
+        } else if (value instanceof java.util.Date && !(value instanceof java.sql.Date)
+                && !(value instanceof Time) && !(value instanceof Timestamp)) {
+            statement.setTimestamp(index, new Timestamp(((java.util.Date) value).getTime()));
+        } else if (value instanceof LocalDateTime) {
+            statement.setTimestamp(index, Timestamp.valueOf((LocalDateTime) value));
+        } else if (value instanceof LocalDate) {
+            statement.setDate(index, java.sql.Date.valueOf((LocalDate) value));
+        } else if (value instanceof LocalTime) {
+            statement.setTime(index, Time.valueOf((LocalTime) value));
+        } else if (value instanceof Enum) {
+            statement.setString(index, ((Enum<?>) value).name());
+        } else if (value instanceof Character) {
+            statement.setString(index, value.toString());
+        } else {
+            statement.setObject(index, value);
+        }
+    }
+
+    /**
+     * 按Java类型读取结果集的列
+     * @param resultSet 结果集
+     * @param column 列下标，从1开始
+     * @param type Java类型
+     * @return 列的值，数据库中为NULL时返回null（基本类型返回默认值）
+     * @throws SQLException 读取发生异常
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static Object getResult(ResultSet resultSet, int column, Class<?> type) throws SQLException {
+        Object value;
+        if (type == String.class) {
+            return resultSet.getString(column);
+        } else if (type == Integer.class || type == int.class) {
+            value = resultSet.getInt(column);
+        } else if (type == Long.class || type == long.class) {
+            value = resultSet.getLong(column);
+        } else if (type == Short.class || type == short.class) {
+            value = resultSet.getShort(column);
+        } else if (type == Byte.class || type == byte.class) {
+            value = resultSet.getByte(column);
+        } else if (type == Double.class || type == double.class) {
+            value = resultSet.getDouble(column);
+        } else if (type == Float.class || type == float.class) {
+            value = resultSet.getFloat(column);
+        } else if (type == Boolean.class || type == boolean.class) {
+            value = resultSet.getBoolean(column);
+        } else if (type == BigDecimal.class) {
+            return resultSet.getBigDecimal(column);
+        } else if (type == BigInteger.class) {
+            BigDecimal decimal = resultSet.getBigDecimal(column);
+            return decimal == null ? null : decimal.toBigInteger();
+        } else if (type == java.util.Date.class || type == Timestamp.class) {
+            return resultSet.getTimestamp(column);
+        } else if (type == java.sql.Date.class) {
+            return resultSet.getDate(column);
+        } else if (type == Time.class) {
+            return resultSet.getTime(column);
+        } else if (type == LocalDateTime.class) {
+            Timestamp timestamp = resultSet.getTimestamp(column);
+            return timestamp == null ? null : timestamp.toLocalDateTime();
+        } else if (type == LocalDate.class) {
+            java.sql.Date date = resultSet.getDate(column);
+            return date == null ? null : date.toLocalDate();
+        } else if (type == LocalTime.class) {
+            Time time = resultSet.getTime(column);
+            return time == null ? null : time.toLocalTime();
+        } else if (type == byte[].class) {
+            return resultSet.getBytes(column);
+        } else if (type == Character.class || type == char.class) {
+            String string = resultSet.getString(column);
+            value = string == null || string.isEmpty() ? (char) 0 : string.charAt(0);
+        } else if (type.isEnum()) {
+            String name = resultSet.getString(column);
+            return name == null ? null : Enum.valueOf((Class<Enum>) type, name);
+        } else {
+            return resultSet.getObject(column);
+        }
+        // 基本类型的包装类，数据库中为NULL时返回null
+        return !type.isPrimitive() && resultSet.wasNull() ? null : value;
+    }
+
+    /**
+     * 获取Java类型对应的列读取器，常用类型直接调用ResultSet对应的方法
+     * @param type Java类型
+     * @return 列读取器
+     */
+    public static ResultGetter getResultGetter(Class<?> type) {
+        if (type == String.class) {
+            return ResultSet::getString;
+        } else if (type == Integer.class) {
+            return (resultSet, column) -> {
+                int value = resultSet.getInt(column);
+                return resultSet.wasNull() ? null : value;
+            };
+        } else if (type == Long.class) {
+            return (resultSet, column) -> {
+                long value = resultSet.getLong(column);
+                return resultSet.wasNull() ? null : value;
+            };
+        } else if (type == Double.class) {
+            return (resultSet, column) -> {
+                double value = resultSet.getDouble(column);
+                return resultSet.wasNull() ? null : value;
+            };
+        } else if (type == BigDecimal.class) {
+            return ResultSet::getBigDecimal;
+        } else if (type == java.util.Date.class || type == Timestamp.class) {
+            return ResultSet::getTimestamp;
+        } else if (type == byte[].class) {
+            return ResultSet::getBytes;
+        } else if (type == Object.class) {
+            return ResultSet::getObject;
+        }
+        return (resultSet, column) -> getResult(resultSet, column, type);
+    }
+
+    /**
+     * 估算参数值占用的字节数，用于批量执行时控制一批的大小
+     * @param value 参数值
+     * @return 估算的字节数
+     */
+    public static int estimateSize(Object value) {
+        if (value == null) {
+            return 1;
+        } else if (value instanceof String) {
+            return ((String) value).length() * 2;
+        } else if (value instanceof byte[]) {
+            return ((byte[]) value).length;
+        }
+        return 8;
+    }
+}
@@ -0,0 +1,76 @@
+package com.lee.rokhan.mybatis;
+
+import com.lee.rokhan.mybatis.builder.XmlConfigBuilder;
+import com.lee.rokhan.mybatis.mapper.TestUser;
+import com.lee.rokhan.mybatis.mapping.Configuration;
+import com.lee.rokhan.mybatis.mapping.Environment;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 测试使用的H2内存数据库
+ * 每次获取环境信息都使用新的库名，测试之间的数据和连接池互不影响
+ * @author lichujun
+ * @date 2019/8/12 19:00
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class H2Databases {
+
+    public static final String USER_MAPPER = "com.lee.rokhan.mybatis.mapper.UserMapper.";
+
+    public static final String TEST_MAPPER = "com.lee.rokhan.mybatis.mapper.TestMapper.";
+
+    public static final String ROUTE_MAPPER = "com.lee.rokhan.mybatis.mapper.RouteMapper.";
+
+    private static final AtomicInteger DATABASE_NUMBER = new AtomicInteger();
+
+    /**
+     * 新的内存数据库的环境信息，库在JVM退出前一直保留
+     * @return 环境信息
+     */
+    public static Environment newEnvironment() {
+        Environment environment = new Environment();
+        environment.setDriver("org.h2.Driver");
+        environment.setUrl("jdbc:h2:mem:rokhan-test-" + DATABASE_NUMBER.incrementAndGet() + ";DB_CLOSE_DELAY=-1");
+        environment.setUserName("sa");
+        environment.setPassword("");
+        environment.setMaxPoolSize(4);
+        environment.setMinIdle(1);
+        environment.setAdaptiveSizing(false);
+        return environment;
+    }
+
+    /**
+     * 解析mybatis-test-config.xml（UserMapper.xml、TestMapper.xml和RouteMapper.xml），使用新的内存数据库
+     * @return 配置
+     */
+    public static Configuration newConfiguration() {
+        try (InputStream config = H2Databases.class.getClassLoader().getResourceAsStream("mybatis-test-config.xml")) {
+            Configuration configuration = new XmlConfigBuilder(config).parse();
+            configuration.setEnvironment(newEnvironment());
+            return configuration;
+        } catch (IOException e) {
+            throw new RuntimeException("读取mybatis-test-config.xml发生异常", e);
+        }
+    }
+
+    /**
+     * 新建demo_user表的一行，score为age的1.5倍
+     * @param userName 用户名
+     * @param age 年龄
+     * @return demo_user表的一行
+     */
+    public static TestUser newUser(String userName, Integer age) {
+        TestUser user = new TestUser();
+        user.setUserName(userName);
+        user.setAge(age);
+        user.setScore(age == null ? null : age * 1.5);
+        user.setCreatedAt(new Date(1565600000000L));
+        return user;
+    }
+}
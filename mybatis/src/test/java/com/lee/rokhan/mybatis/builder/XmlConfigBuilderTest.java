@@ -0,0 +1,170 @@
+package com.lee.rokhan.mybatis.builder;
+
+import com.lee.rokhan.mybatis.mapper.TestUser;
+import com.lee.rokhan.mybatis.mapping.Configuration;
+import com.lee.rokhan.mybatis.mapping.Statement;
+import com.lee.rokhan.mybatis.routing.DataSourceRoute;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+
+import static com.lee.rokhan.mybatis.H2Databases.TEST_MAPPER;
+import static com.lee.rokhan.mybatis.H2Databases.USER_MAPPER;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * StAX解析配置文件和mapper文件，以及配置文件或者mapper文件修改后解析缓存失效
+ * @author lichujun
+ * @date 2019/8/12 20:00
+ */
+public class XmlConfigBuilderTest {
+
+    private static final String MAPPER_NAMESPACE = "com.lee.rokhan.mybatis.mapper.FileMapper";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void parseTestConfigFromClasspath() throws IOException {
+        Configuration configuration = parseTestConfig(null);
+        assertEquals("org.h2.Driver", configuration.getEnvironment().getDriver());
+        assertEquals("jdbc:h2:mem:test;DB_CLOSE_DELAY=-1", configuration.getEnvironment().getUrl());
+        assertEquals("username对应Environment的userName", "sa", configuration.getEnvironment().getUserName());
+
+        Statement createTable = configuration.getStatement(USER_MAPPER + "createTable");
+        assertTrue(createTable.getSql().contains("create table if not exists demo_user"));
+        assertFalse("只有select使用缓存", createTable.isUseCache());
+
+        Statement insertUser = configuration.getStatement(TEST_MAPPER + "insertUser");
+        assertEquals("insert into demo_user (user_name, age, score, created_at) "
+                + "values (#{userName}, #{age}, #{score}, #{createdAt})", insertUser.getSql().trim());
+        assertTrue(insertUser.isUseGeneratedKeys());
+        assertEquals("id", insertUser.getKeyProperty());
+
+        Statement selectById = configuration.getStatement(USER_MAPPER + "selectById");
+        assertEquals("select id, user_name, age, score, created_at from demo_user where id = #{id}",
+                selectById.getSql().trim());
+        assertSame(TestUser.class, selectById.getResultClass());
+        assertTrue(selectById.isUseCache());
+        assertEquals(0, selectById.getFetchSize());
+        assertEquals(DataSourceRoute.AUTO, selectById.getRoute());
+        assertEquals("com.lee.rokhan.mybatis.mapper.UserMapper", selectById.getNamespace());
+
+        assertEquals(7, configuration.getStatement(TEST_MAPPER + "selectUsersCursor").getFetchSize());
+        assertSame(Long.class, configuration.getStatement(USER_MAPPER + "count").getResultClass());
+        assertSame(Integer.class, configuration.getStatement(USER_MAPPER + "ping").getResultClass());
+        assertEquals(5, configuration.getStatementMap().keySet().stream()
+                .filter(id -> id.startsWith(USER_MAPPER)).count());
+    }
+
+    @Test
+    public void loadSameStatementsFromCache() throws IOException {
+        File cache = new File(temporaryFolder.getRoot(), "mybatis.cache");
+        Configuration parsed = parseTestConfig(cache);
+        assertTrue(cache.isFile());
+        Configuration cached = parseTestConfig(cache);
+        assertStatementsEqual(parsed.getStatementMap(), cached.getStatementMap());
+        assertEquals(parsed.getEnvironment(), cached.getEnvironment());
+    }
+
+    @Test
+    public void invalidateCacheWhenMapperChanges() throws IOException {
+        File mapper = writeMapper("mapper.xml", "select 1");
+        File cache = new File(temporaryFolder.getRoot(), "mybatis.cache");
+        String config = config(mapper);
+        assertEquals("select 1", ping(parse(config, cache)));
+
+        // 长度和最后修改时间都不变时认为没有修改，使用缓存
+        long lastModified = mapper.lastModified();
+        writeMapper("mapper.xml", "select 2");
+        assertTrue(mapper.setLastModified(lastModified));
+        assertEquals("mapper文件的长度和最后修改时间没有变化时应该使用缓存", "select 1", ping(parse(config, cache)));
+
+        assertTrue(mapper.setLastModified(lastModified + 2000));
+        assertEquals("mapper文件的最后修改时间变化后应该重新解析", "select 2", ping(parse(config, cache)));
+
+        writeMapper("mapper.xml", "select 33");
+        assertTrue(mapper.setLastModified(lastModified + 2000));
+        assertEquals("mapper文件的长度变化后应该重新解析", "select 33", ping(parse(config, cache)));
+    }
+
+    @Test
+    public void invalidateCacheWhenConfigChanges() throws IOException {
+        File mapper = writeMapper("mapper.xml", "select 1");
+        File cache = new File(temporaryFolder.getRoot(), "mybatis.cache");
+        Configuration before = parse(config(mapper), cache);
+        assertNull(before.getStatementMap().get(MAPPER_NAMESPACE + "2.ping"));
+
+        File other = writeMapper("other.xml", MAPPER_NAMESPACE + "2", "select 2");
+        String config = config(mapper).replace("    </mappers>",
+                "        <mapper url=\"" + other.getAbsoluteFile().toURI() + "\" />\n    </mappers>");
+        Configuration after = parse(config, cache);
+        assertNotNull("配置文件修改后应该重新解析", after.getStatementMap().get(MAPPER_NAMESPACE + "2.ping"));
+        assertEquals("select 1", ping(after));
+    }
+
+    private Configuration parseTestConfig(File cache) throws IOException {
+        try (InputStream config = getClass().getClassLoader().getResourceAsStream("mybatis-test-config.xml")) {
+            return new XmlConfigBuilder(config).setParsedConfigCache(cache).parse();
+        }
+    }
+
+    private static Configuration parse(String config, File cache) {
+        return new XmlConfigBuilder(new ByteArrayInputStream(config.getBytes(StandardCharsets.UTF_8)))
+                .setParsedConfigCache(cache).parse();
+    }
+
+    private static String ping(Configuration configuration) {
+        return configuration.getStatement(MAPPER_NAMESPACE + ".ping").getSql().trim();
+    }
+
+    private File writeMapper(String name, String sql) throws IOException {
+        return writeMapper(name, MAPPER_NAMESPACE, sql);
+    }
+
+    private File writeMapper(String name, String namespace, String sql) throws IOException {
+        File mapper = new File(temporaryFolder.getRoot(), name);
+        Files.write(mapper.toPath(), ("<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n"
+                + "<mapper namespace=\"" + namespace + "\">\n"
+                + "    <select id=\"ping\" resultType=\"int\">" + sql + "</select>\n"
+                + "</mapper>\n").getBytes(StandardCharsets.UTF_8));
+        return mapper;
+    }
+
+    private static String config(File mapper) {
+        return "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n"
+                + "<configuration>\n"
+                + "    <environments default=\"h2\">\n"
+                + "        <environment id=\"h2\">\n"
+                + "            <dataSource type=\"POOLED\">\n"
+                + "                <property name=\"driver\" value=\"org.h2.Driver\" />\n"
+                + "                <property name=\"url\" value=\"jdbc:h2:mem:test\" />\n"
+                + "            </dataSource>\n"
+                + "        </environment>\n"
+                + "    </environments>\n"
+                + "    <mappers>\n"
+                + "        <mapper url=\"" + mapper.getAbsoluteFile().toURI() + "\" />\n"
+                + "    </mappers>\n"
+                + "</configuration>\n";
+    }
+
+    private static void assertStatementsEqual(Map<String, Statement> expected, Map<String, Statement> actual) {
+        assertEquals(expected.keySet(), actual.keySet());
+        for (Map.Entry<String, Statement> entry : expected.entrySet()) {
+            assertEquals(entry.getKey(), entry.getValue(), actual.get(entry.getKey()));
+        }
+    }
+}
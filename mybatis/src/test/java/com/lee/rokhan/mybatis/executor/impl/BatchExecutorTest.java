@@ -0,0 +1,192 @@
+package com.lee.rokhan.mybatis.executor.impl;
+
+import com.lee.rokhan.mybatis.H2Databases;
+import com.lee.rokhan.mybatis.executor.BatchExecutorException;
+import com.lee.rokhan.mybatis.executor.BatchResult;
+import com.lee.rokhan.mybatis.mapper.TestUser;
+import com.lee.rokhan.mybatis.mapping.Configuration;
+import com.lee.rokhan.mybatis.session.ExecutorType;
+import com.lee.rokhan.mybatis.session.SqlSession;
+import com.lee.rokhan.mybatis.session.SqlSessionFactory;
+import com.lee.rokhan.mybatis.session.SqlSessionFactoryBuilder;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.BatchUpdateException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.lee.rokhan.mybatis.H2Databases.TEST_MAPPER;
+import static com.lee.rokhan.mybatis.H2Databases.USER_MAPPER;
+import static com.lee.rokhan.mybatis.H2Databases.newUser;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * BatchExecutor的刷新时机、生成主键和失败时的部分结果
+ * @author lichujun
+ * @date 2019/8/12 19:25
+ */
+public class BatchExecutorTest {
+
+    private Configuration configuration;
+
+    private SqlSessionFactory sqlSessionFactory;
+
+    @Before
+    public void setUp() {
+        configuration = H2Databases.newConfiguration();
+        sqlSessionFactory = SqlSessionFactoryBuilder.build(configuration);
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(true)) {
+            sqlSession.update(USER_MAPPER + "createTable", null);
+            sqlSession.update(TEST_MAPPER + "createNoteTable", null);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        sqlSessionFactory.getDataSource().close();
+    }
+
+    @Test
+    public void flushWhenSqlChanges() {
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+            TestUser alice = newUser("alice", 20);
+            TestUser bob = newUser("bob", 30);
+            assertEquals(BatchExecutor.BATCH_UPDATE_RETURN_VALUE, sqlSession.insert(TEST_MAPPER + "insertUser", alice));
+            sqlSession.insert(TEST_MAPPER + "insertUser", bob);
+            Map<String, Object> parameter = new HashMap<>();
+            parameter.put("id", 0L);
+            parameter.put("age", 40);
+            sqlSession.update(TEST_MAPPER + "updateAge", parameter);
+            sqlSession.insert(TEST_MAPPER + "insertUser", newUser("carol", 50));
+
+            List<BatchResult> results = sqlSession.flushStatements();
+            assertEquals(3, results.size());
+            assertEquals(TEST_MAPPER + "insertUser", results.get(0).getStatementId());
+            assertEquals(Arrays.asList(alice, bob), results.get(0).getParameters());
+            assertArrayEquals(new int[]{1, 1}, results.get(0).getUpdateCounts());
+            assertEquals(TEST_MAPPER + "updateAge", results.get(1).getStatementId());
+            assertArrayEquals(new int[]{0}, results.get(1).getUpdateCounts());
+            assertEquals(TEST_MAPPER + "insertUser", results.get(2).getStatementId());
+            assertTrue("刷新后不再返回之前的结果", sqlSession.flushStatements().isEmpty());
+            sqlSession.commit();
+        }
+    }
+
+    @Test
+    public void flushBeforeQuery() {
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+            sqlSession.insert(TEST_MAPPER + "insertUser", newUser("alice", 20));
+            sqlSession.insert(TEST_MAPPER + "insertUser", newUser("bob", 30));
+            assertEquals("查询前应该执行之前的批次", Long.valueOf(2), sqlSession.selectOne(USER_MAPPER + "count"));
+            List<BatchResult> results = sqlSession.flushStatements();
+            assertEquals(1, results.size());
+            assertEquals(2, results.get(0).getParameters().size());
+        }
+    }
+
+    @Test
+    public void flushWhenBatchSizeReached() {
+        configuration.setBatchSize(2);
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+            for (int i = 0; i < 5; i++) {
+                sqlSession.insert(TEST_MAPPER + "insertUser", newUser("user" + i, i));
+            }
+            List<BatchResult> results = sqlSession.flushStatements();
+            assertEquals(3, results.size());
+            assertEquals(2, results.get(0).getParameters().size());
+            assertEquals(2, results.get(1).getParameters().size());
+            assertEquals(1, results.get(2).getParameters().size());
+            assertEquals(Long.valueOf(5), sqlSession.selectOne(USER_MAPPER + "count"));
+        }
+    }
+
+    @Test
+    public void flushWhenBatchBytesReached() {
+        // 每个参数估算为2000字节，第三个参数达到上限
+        configuration.setBatchMaxBytes(6000);
+        Map<String, Object> note = Collections.singletonMap("content", StringUtils.repeat('x', 1000));
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+            for (int i = 0; i < 7; i++) {
+                sqlSession.insert(TEST_MAPPER + "insertNote", note);
+            }
+            List<BatchResult> results = sqlSession.flushStatements();
+            assertEquals(3, results.size());
+            assertEquals(3, results.get(0).getParameters().size());
+            assertEquals(3, results.get(1).getParameters().size());
+            assertEquals(1, results.get(2).getParameters().size());
+        }
+    }
+
+    @Test
+    public void assignGeneratedKeysInOrder() {
+        configuration.setBatchSize(3);
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+            TestUser[] users = new TestUser[5];
+            for (int i = 0; i < users.length; i++) {
+                users[i] = newUser("user" + i, i);
+                sqlSession.insert(TEST_MAPPER + "insertUser", users[i]);
+            }
+            sqlSession.flushStatements();
+            for (int i = 0; i < users.length; i++) {
+                assertNotNull(users[i].getId());
+                if (i > 0) {
+                    assertTrue(users[i].getId() > users[i - 1].getId());
+                }
+                TestUser selected = sqlSession.selectOne(USER_MAPPER + "selectById", users[i].getId());
+                assertEquals("第" + i + "个参数对象的主键应该是第" + i + "行的主键", users[i].getUserName(),
+                        selected.getUserName());
+            }
+        }
+    }
+
+    @Test
+    public void keepPartialResultsWhenBatchFails() {
+        configuration.setBatchSize(2);
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+            TestUser alice = newUser("alice", 20);
+            TestUser bob = newUser("bob", 30);
+            TestUser carol = newUser("carol", 40);
+            // user_name不能为空
+            TestUser invalid = newUser(null, 50);
+            sqlSession.insert(TEST_MAPPER + "insertUser", alice);
+            sqlSession.insert(TEST_MAPPER + "insertUser", bob);
+            sqlSession.insert(TEST_MAPPER + "insertUser", carol);
+            try {
+                sqlSession.insert(TEST_MAPPER + "insertUser", invalid);
+                fail("批次中有参数执行失败");
+            } catch (RuntimeException e) {
+                assertTrue(e.getCause() instanceof BatchExecutorException);
+                BatchExecutorException exception = (BatchExecutorException) e.getCause();
+                assertTrue(exception.getCause() instanceof BatchUpdateException);
+                assertSame(exception.getCause(), exception.getBatchUpdateException());
+
+                assertEquals(1, exception.getSuccessfulBatchResults().size());
+                BatchResult successful = exception.getSuccessfulBatchResults().get(0);
+                assertEquals(Arrays.asList(alice, bob), successful.getParameters());
+                assertNotNull(alice.getId());
+                assertNotNull(bob.getId());
+
+                BatchResult failed = exception.getBatchResult();
+                assertEquals(TEST_MAPPER + "insertUser", failed.getStatementId());
+                assertEquals(Arrays.asList(carol, invalid), failed.getParameters());
+                int[] updateCounts = exception.getUpdateCounts();
+                assertTrue(updateCounts.length >= 1 && updateCounts.length <= 2);
+                assertEquals("失败前的参数已经执行", 1, updateCounts[0]);
+                assertNull(invalid.getId());
+            }
+            assertTrue("已执行成功的批次由异常返回，不再重复返回", sqlSession.flushStatements().isEmpty());
+        }
+    }
+}
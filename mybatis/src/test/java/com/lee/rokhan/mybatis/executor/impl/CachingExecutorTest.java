@@ -0,0 +1,177 @@
+package com.lee.rokhan.mybatis.executor.impl;
+
+import com.lee.rokhan.mybatis.H2Databases;
+import com.lee.rokhan.mybatis.cache.Cache;
+import com.lee.rokhan.mybatis.cache.CacheProperties;
+import com.lee.rokhan.mybatis.cache.EvictionPolicy;
+import com.lee.rokhan.mybatis.mapper.TestUser;
+import com.lee.rokhan.mybatis.mapping.Configuration;
+import com.lee.rokhan.mybatis.session.SqlSession;
+import com.lee.rokhan.mybatis.session.SqlSessionFactory;
+import com.lee.rokhan.mybatis.session.SqlSessionFactoryBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.lee.rokhan.mybatis.H2Databases.TEST_MAPPER;
+import static com.lee.rokhan.mybatis.H2Databases.USER_MAPPER;
+import static com.lee.rokhan.mybatis.H2Databases.newUser;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * 二级缓存的过期、按命名空间清空，以及事务回滚时丢弃暂存的查询结果
+ * @author lichujun
+ * @date 2019/8/12 19:55
+ */
+public class CachingExecutorTest {
+
+    private static final long TIME_TO_LIVE = 100;
+
+    private Configuration configuration;
+
+    private SqlSessionFactory sqlSessionFactory;
+
+    private Cache userCache;
+
+    private Cache testCache;
+
+    private TestUser alice;
+
+    @Before
+    public void setUp() {
+        configuration = H2Databases.newConfiguration();
+        userCache = configuration.addCache(namespace(USER_MAPPER), new CacheProperties());
+        testCache = configuration.addCache(namespace(TEST_MAPPER), new CacheProperties());
+        sqlSessionFactory = SqlSessionFactoryBuilder.build(configuration);
+        alice = newUser("alice", 20);
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(true)) {
+            sqlSession.update(USER_MAPPER + "createTable", null);
+            sqlSession.insert(TEST_MAPPER + "insertUser", alice);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        sqlSessionFactory.getDataSource().close();
+    }
+
+    @Test
+    public void expireAfterTimeToLive() throws Exception {
+        for (EvictionPolicy eviction : EvictionPolicy.values()) {
+            CacheProperties properties = new CacheProperties();
+            properties.setEviction(eviction);
+            properties.setTimeToLive(TIME_TO_LIVE);
+            Configuration ttlConfiguration = H2Databases.newConfiguration();
+            Cache cache = ttlConfiguration.addCache(namespace(USER_MAPPER), properties);
+            SqlSessionFactory factory = SqlSessionFactoryBuilder.build(ttlConfiguration);
+            try {
+                TestUser user = newUser("alice", 20);
+                try (SqlSession sqlSession = factory.openSession(true)) {
+                    sqlSession.update(USER_MAPPER + "createTable", null);
+                    sqlSession.insert(TEST_MAPPER + "insertUser", user);
+                }
+                TestUser cached = selectById(factory, user.getId());
+                // 绕过执行器修改数据，过期前仍然返回缓存的结果
+                execute(factory, "update demo_user set age = 21");
+                assertSame(eviction + "过期前应该命中缓存", cached, selectById(factory, user.getId()));
+
+                Thread.sleep(TIME_TO_LIVE * 2);
+                TestUser reloaded = selectById(factory, user.getId());
+                assertNotSame(cached, reloaded);
+                assertEquals(Integer.valueOf(21), reloaded.getAge());
+                assertEquals(1, cache.getStatistics().getExpirationCount());
+                assertEquals(1, cache.getStatistics().getHitCount());
+                assertSame("重新查询后再次缓存", reloaded, selectById(factory, user.getId()));
+            } finally {
+                factory.getDataSource().close();
+            }
+        }
+    }
+
+    @Test
+    public void invalidateNamespaceOnUpdate() {
+        TestUser cached = selectStar(alice.getId());
+        TestUser userCached = selectById(sqlSessionFactory, alice.getId());
+        assertSame(cached, selectStar(alice.getId()));
+        assertEquals(1, testCache.getSize());
+
+        try (SqlSession writer = sqlSessionFactory.openSession(false)) {
+            writer.update(TEST_MAPPER + "updateAge", updateAge(alice.getId(), 30));
+            assertEquals("会话读取自己写入的数据，不使用共享的缓存", Integer.valueOf(30),
+                    writer.<TestUser>selectOne(TEST_MAPPER + "selectStar", alice.getId()).getAge());
+            assertSame("提交前其他会话仍然读到已提交的数据", cached, selectStar(alice.getId()));
+
+            writer.commit();
+        }
+        assertEquals("提交后清空修改的命名空间，只保留事务中修改后查询的结果", Integer.valueOf(30),
+                selectStar(alice.getId()).getAge());
+        assertSame("其他命名空间的缓存不受影响", userCached, selectById(sqlSessionFactory, alice.getId()));
+
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(true)) {
+            sqlSession.update(TEST_MAPPER + "updateAge", updateAge(alice.getId(), 40));
+        }
+        assertEquals("自动提交时立即清空", Integer.valueOf(40), selectStar(alice.getId()).getAge());
+        assertEquals(1, userCache.getSize());
+    }
+
+    @Test
+    public void discardStagedEntriesOnRollback() {
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(false)) {
+            sqlSession.selectOne(TEST_MAPPER + "selectStar", alice.getId());
+            assertEquals("提交前查询结果只暂存在会话中", 0, testCache.getSize());
+            sqlSession.rollback();
+        }
+        assertEquals("回滚时丢弃暂存的查询结果", 0, testCache.getSize());
+
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(false)) {
+            sqlSession.update(TEST_MAPPER + "updateAge", updateAge(alice.getId(), 30));
+            assertEquals(Integer.valueOf(30),
+                    sqlSession.<TestUser>selectOne(TEST_MAPPER + "selectStar", alice.getId()).getAge());
+            sqlSession.rollback();
+        }
+        assertEquals(0, testCache.getSize());
+        assertEquals("不能缓存回滚前的数据", Integer.valueOf(20), selectStar(alice.getId()).getAge());
+
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(false)) {
+            sqlSession.selectOne(TEST_MAPPER + "selectStar", alice.getId());
+        }
+        assertEquals("只读的会话关闭时写入查询结果", 1, testCache.getSize());
+    }
+
+    private TestUser selectStar(Long id) {
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(true)) {
+            return sqlSession.selectOne(TEST_MAPPER + "selectStar", id);
+        }
+    }
+
+    private static TestUser selectById(SqlSessionFactory factory, Long id) {
+        try (SqlSession sqlSession = factory.openSession(true)) {
+            return sqlSession.selectOne(USER_MAPPER + "selectById", id);
+        }
+    }
+
+    private static void execute(SqlSessionFactory factory, String sql) throws SQLException {
+        try (Connection connection = factory.getDataSource().getConnection();
+             java.sql.Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private static Map<String, Object> updateAge(Long id, int age) {
+        Map<String, Object> parameter = new HashMap<>();
+        parameter.put("id", id);
+        parameter.put("age", age);
+        return parameter;
+    }
+
+    private static String namespace(String prefix) {
+        return prefix.substring(0, prefix.length() - 1);
+    }
+}
@@ -0,0 +1,139 @@
+package com.lee.rokhan.mybatis.executor.impl;
+
+import com.lee.rokhan.mybatis.H2Databases;
+import com.lee.rokhan.mybatis.cursor.Cursor;
+import com.lee.rokhan.mybatis.executor.BatchResult;
+import com.lee.rokhan.mybatis.mapper.TestUser;
+import com.lee.rokhan.mybatis.mapping.Configuration;
+import com.lee.rokhan.mybatis.session.SqlSession;
+import com.lee.rokhan.mybatis.session.SqlSessionFactory;
+import com.lee.rokhan.mybatis.session.SqlSessionFactoryBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static com.lee.rokhan.mybatis.H2Databases.TEST_MAPPER;
+import static com.lee.rokhan.mybatis.H2Databases.USER_MAPPER;
+import static com.lee.rokhan.mybatis.H2Databases.newUser;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 游标查询的fetchSize、关闭时机，以及批量执行器在打开游标前执行未提交的批次
+ * @author lichujun
+ * @date 2019/8/12 19:45
+ */
+public class CursorQueryTest {
+
+    private Configuration configuration;
+
+    private SqlSessionFactory sqlSessionFactory;
+
+    private RecordingDataSource recordingDataSource;
+
+    @Before
+    public void setUp() {
+        configuration = H2Databases.newConfiguration();
+        sqlSessionFactory = SqlSessionFactoryBuilder.build(configuration);
+        recordingDataSource = new RecordingDataSource(sqlSessionFactory.getDataSource());
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(true)) {
+            sqlSession.update(USER_MAPPER + "createTable", null);
+            for (int i = 0; i < 3; i++) {
+                sqlSession.insert(TEST_MAPPER + "insertUser", newUser("user" + i, i));
+            }
+        }
+    }
+
+    @After
+    public void tearDown() {
+        sqlSessionFactory.getDataSource().close();
+    }
+
+    @Test
+    public void applyStatementFetchSize() {
+        try (SqlSession sqlSession = openSession(false)) {
+            Cursor<TestUser> cursor = sqlSession.selectCursor(TEST_MAPPER + "selectUsersCursor");
+            assertEquals(7, recordingDataSource.last().fetchSize);
+            assertEquals(3, count(cursor));
+        }
+    }
+
+    @Test
+    public void applyDefaultFetchSize() {
+        try (SqlSession sqlSession = openSession(false)) {
+            sqlSession.selectCursor(TEST_MAPPER + "selectNames").close();
+            assertEquals("没有配置fetchSize时使用游标的默认值1000", 1000,
+                    recordingDataSource.last().fetchSize);
+
+            configuration.setDefaultFetchSize(25);
+            sqlSession.selectCursor(TEST_MAPPER + "selectNames").close();
+            assertEquals(25, recordingDataSource.last().fetchSize);
+        }
+    }
+
+    @Test
+    public void closeCursorWhenSessionCloses() {
+        Cursor<TestUser> cursor;
+        try (SqlSession sqlSession = openSession(false)) {
+            cursor = sqlSession.selectCursor(TEST_MAPPER + "selectUsersCursor");
+            Iterator<TestUser> iterator = cursor.iterator();
+            assertTrue(iterator.hasNext());
+            iterator.next();
+            assertFalse(recordingDataSource.last().closed);
+        }
+        assertFalse("关闭会话时应该关闭未读取完的游标", cursor.isOpen());
+        assertTrue(recordingDataSource.last().closed);
+        assertEquals(0, sqlSessionFactory.getDataSource().getActiveConnections());
+    }
+
+    @Test
+    public void releaseConnectionWhenSessionCursorCloses() {
+        Cursor<TestUser> cursor = sqlSessionFactory.openCursor(TEST_MAPPER + "selectUsersCursor", null);
+        assertEquals(1, sqlSessionFactory.getDataSource().getActiveConnections());
+        cursor.iterator().next();
+        cursor.close();
+        assertFalse(cursor.isOpen());
+        assertEquals("关闭独占会话的游标时应该归还连接", 0, sqlSessionFactory.getDataSource().getActiveConnections());
+
+        Cursor<TestUser> consumed = sqlSessionFactory.openCursor(TEST_MAPPER + "selectUsersCursor", null);
+        assertEquals(3, count(consumed));
+        assertEquals("读取完后应该归还连接", 0, sqlSessionFactory.getDataSource().getActiveConnections());
+    }
+
+    @Test
+    public void flushBatchBeforeOpeningCursor() {
+        try (SqlSession sqlSession = new SqlSession(configuration,
+                new BatchExecutor(configuration, recordingDataSource.getDataSource(), false))) {
+            sqlSession.insert(TEST_MAPPER + "insertUser", newUser("alice", 20));
+            sqlSession.insert(TEST_MAPPER + "insertUser", newUser("bob", 30));
+            List<String> names = new ArrayList<>();
+            try (Cursor<TestUser> cursor = sqlSession.selectCursor(TEST_MAPPER + "selectUsersCursor")) {
+                cursor.forEach(user -> names.add(user.getUserName()));
+            }
+            assertEquals("打开游标前应该执行之前的批次", 5, names.size());
+            assertEquals("bob", names.get(4));
+            List<BatchResult> results = sqlSession.flushStatements();
+            assertEquals("打开游标前执行的批次在刷新时返回", 1, results.size());
+            assertEquals(2, results.get(0).getParameters().size());
+            sqlSession.rollback();
+        }
+    }
+
+    private SqlSession openSession(boolean autoCommit) {
+        return new SqlSession(configuration,
+                new SimpleExecutor(configuration, recordingDataSource.getDataSource(), autoCommit));
+    }
+
+    private static int count(Cursor<?> cursor) {
+        int count = 0;
+        for (Object ignored : cursor) {
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,93 @@
+package com.lee.rokhan.mybatis.executor.impl;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.sql.DataSource;
+
+/**
+ * 记录执行器创建的PreparedStatement的数据源，用于检查设置的fetchSize和是否关闭
+ * @author lichujun
+ * @date 2019/8/12 19:45
+ */
+final class RecordingDataSource {
+
+    private final DataSource dataSource;
+
+    private final List<RecordedStatement> statements = new CopyOnWriteArrayList<>();
+
+    RecordingDataSource(DataSource target) {
+        this.dataSource = proxy(DataSource.class, target, (method, args, result) ->
+                "getConnection".equals(method.getName()) ? recordConnection((Connection) result) : result);
+    }
+
+    /**
+     * 获取记录PreparedStatement的数据源
+     * @return 数据源
+     */
+    DataSource getDataSource() {
+        return dataSource;
+    }
+
+    /**
+     * 最后创建的PreparedStatement的记录
+     * @return 记录
+     */
+    RecordedStatement last() {
+        return statements.get(statements.size() - 1);
+    }
+
+    private Connection recordConnection(Connection connection) {
+        return proxy(Connection.class, connection, (method, args, result) -> {
+            if (!"prepareStatement".equals(method.getName())) {
+                return result;
+            }
+            RecordedStatement recorded = new RecordedStatement();
+            statements.add(recorded);
+            return proxy(PreparedStatement.class, (PreparedStatement) result, (statementMethod, statementArgs, value) -> {
+                if ("setFetchSize".equals(statementMethod.getName())) {
+                    recorded.fetchSize = (Integer) statementArgs[0];
+                } else if ("close".equals(statementMethod.getName())) {
+                    recorded.closed = true;
+                }
+                return value;
+            });
+        });
+    }
+
+    private static <T> T proxy(Class<T> type, T target, ResultHandler handler) {
+        return type.cast(Proxy.newProxyInstance(RecordingDataSource.class.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    try {
+                        return handler.handle(method, args, method.invoke(target, args));
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                }));
+    }
+
+    /**
+     * 处理被代理对象的返回值
+     */
+    private interface ResultHandler {
+
+        Object handle(Method method, Object[] args, Object result);
+    }
+
+    /**
+     * 一个PreparedStatement的记录
+     */
+    static final class RecordedStatement {
+
+        /**
+         * 最后一次设置的fetchSize，没有设置时为-1
+         */
+        volatile int fetchSize = -1;
+
+        volatile boolean closed;
+    }
+}
@@ -0,0 +1,104 @@
+package com.lee.rokhan.mybatis.executor.impl;
+
+import com.lee.rokhan.mybatis.H2Databases;
+import com.lee.rokhan.mybatis.mapper.TestUser;
+import com.lee.rokhan.mybatis.session.SqlSession;
+import com.lee.rokhan.mybatis.session.SqlSessionFactory;
+import com.lee.rokhan.mybatis.session.SqlSessionFactoryBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.lee.rokhan.mybatis.H2Databases.TEST_MAPPER;
+import static com.lee.rokhan.mybatis.H2Databases.USER_MAPPER;
+import static com.lee.rokhan.mybatis.H2Databases.newUser;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * SimpleExecutor的增删改查和结果映射
+ * @author lichujun
+ * @date 2019/8/12 19:05
+ */
+public class SimpleExecutorTest {
+
+    private SqlSessionFactory sqlSessionFactory;
+
+    @Before
+    public void setUp() {
+        sqlSessionFactory = SqlSessionFactoryBuilder.build(H2Databases.newConfiguration());
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(true)) {
+            sqlSession.update(USER_MAPPER + "createTable", null);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        sqlSessionFactory.getDataSource().close();
+    }
+
+    @Test
+    public void insertSelectUpdateDelete() {
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(true)) {
+            TestUser user = newUser("alice", 20);
+            assertEquals(1, sqlSession.insert(TEST_MAPPER + "insertUser", user));
+            assertNotNull("生成的主键应该设置到参数对象", user.getId());
+
+            TestUser selected = sqlSession.selectOne(USER_MAPPER + "selectById", user.getId());
+            assertEquals(user.getId(), selected.getId());
+            assertEquals("alice", selected.getUserName());
+            assertEquals(Integer.valueOf(20), selected.getAge());
+            assertEquals(user.getScore(), selected.getScore());
+            assertEquals(user.getCreatedAt(), selected.getCreatedAt());
+
+            Map<String, Object> parameter = new HashMap<>();
+            parameter.put("id", user.getId());
+            parameter.put("age", 21);
+            assertEquals(1, sqlSession.update(TEST_MAPPER + "updateAge", parameter));
+            TestUser updated = sqlSession.selectOne(USER_MAPPER + "selectById", user.getId());
+            assertEquals(Integer.valueOf(21), updated.getAge());
+
+            assertEquals(1, sqlSession.delete(TEST_MAPPER + "deleteById", user.getId()));
+            assertNull(sqlSession.selectOne(USER_MAPPER + "selectById", user.getId()));
+            assertEquals(Long.valueOf(0), sqlSession.selectOne(USER_MAPPER + "count"));
+        }
+    }
+
+    @Test
+    public void mapRowsToMapsAndScalars() {
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(true)) {
+            TestUser alice = newUser("alice", 20);
+            TestUser bob = newUser("bob", 30);
+            sqlSession.insert(TEST_MAPPER + "insertUser", alice);
+            sqlSession.insert(TEST_MAPPER + "insertUser", bob);
+
+            List<Map<String, Object>> maps = sqlSession.selectList(TEST_MAPPER + "selectMaps");
+            assertEquals(2, maps.size());
+            assertEquals(alice.getId(), maps.get(0).get("ID"));
+            assertEquals("alice", maps.get(0).get("USER_NAME"));
+            assertEquals("bob", maps.get(1).get("USER_NAME"));
+
+            List<String> names = sqlSession.selectList(TEST_MAPPER + "selectNames");
+            assertEquals(Arrays.asList("alice", "bob"), names);
+            assertEquals(Long.valueOf(2), sqlSession.selectOne(USER_MAPPER + "count"));
+            assertEquals(bob.getId(), sqlSession.selectOne(USER_MAPPER + "maxId"));
+            assertEquals(Integer.valueOf(1), sqlSession.selectOne(USER_MAPPER + "ping"));
+        }
+    }
+
+    @Test
+    public void rollbackDiscardsUncommittedWrites() {
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(false)) {
+            sqlSession.insert(TEST_MAPPER + "insertUser", newUser("alice", 20));
+            assertEquals("事务中的查询能读到未提交的写入", Long.valueOf(1), sqlSession.selectOne(USER_MAPPER + "count"));
+            sqlSession.rollback();
+            assertEquals(Long.valueOf(0), sqlSession.selectOne(USER_MAPPER + "count"));
+        }
+    }
+}
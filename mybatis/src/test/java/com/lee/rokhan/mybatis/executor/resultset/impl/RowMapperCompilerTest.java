@@ -0,0 +1,164 @@
+package com.lee.rokhan.mybatis.executor.resultset.impl;
+
+import com.lee.rokhan.mybatis.H2Databases;
+import com.lee.rokhan.mybatis.executor.resultset.RowMapper;
+import com.lee.rokhan.mybatis.mapper.TestUser;
+import com.lee.rokhan.mybatis.mapping.Configuration;
+import com.lee.rokhan.mybatis.mapping.Statement;
+import com.lee.rokhan.mybatis.session.SqlSession;
+import com.lee.rokhan.mybatis.session.SqlSessionFactory;
+import com.lee.rokhan.mybatis.session.SqlSessionFactoryBuilder;
+import lombok.Data;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import static com.lee.rokhan.mybatis.H2Databases.TEST_MAPPER;
+import static com.lee.rokhan.mybatis.H2Databases.USER_MAPPER;
+import static com.lee.rokhan.mybatis.H2Databases.newUser;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * 编译的行映射在不同结果集形状下的转换结果
+ * @author lichujun
+ * @date 2019/8/12 19:35
+ */
+public class RowMapperCompilerTest {
+
+    private Configuration configuration;
+
+    private SqlSessionFactory sqlSessionFactory;
+
+    private TestUser alice;
+
+    private TestUser nobody;
+
+    @Before
+    public void setUp() {
+        configuration = H2Databases.newConfiguration();
+        sqlSessionFactory = SqlSessionFactoryBuilder.build(configuration);
+        alice = newUser("alice", 20);
+        nobody = newUser("nobody", null);
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(true)) {
+            sqlSession.update(USER_MAPPER + "createTable", null);
+            sqlSession.insert(TEST_MAPPER + "insertUser", alice);
+            sqlSession.insert(TEST_MAPPER + "insertUser", nobody);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        sqlSessionFactory.getDataSource().close();
+    }
+
+    @Test
+    public void matchColumnAliasesIgnoringCaseAndUnderscores() {
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(true)) {
+            TestUser user = sqlSession.selectOne(TEST_MAPPER + "selectAliased", alice.getId());
+            assertEquals(alice.getId(), user.getId());
+            assertEquals("alice", user.getUserName());
+            assertEquals(Integer.valueOf(20), user.getAge());
+            assertEquals(alice.getCreatedAt(), user.getCreatedAt());
+            assertNull("没有对应属性的列应该忽略", user.getScore());
+        }
+    }
+
+    @Test
+    public void mapNullToPrimitiveZeroAndWrapperNull() {
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(true)) {
+            PrimitiveUser user = sqlSession.selectOne(TEST_MAPPER + "selectPrimitive", alice.getId());
+            assertEquals(alice.getId().longValue(), user.getId());
+            assertEquals(20, user.getAge());
+            assertEquals(30.0, user.getScore(), 0);
+            assertEquals(20, user.getLevel());
+
+            PrimitiveUser empty = sqlSession.selectOne(TEST_MAPPER + "selectPrimitive", nobody.getId());
+            assertEquals(nobody.getId().longValue(), empty.getId());
+            assertEquals(0, empty.getAge());
+            assertEquals(0.0, empty.getScore(), 0);
+            assertEquals("基本类型为NULL时与ResultSet.getShort一致设置为0", 0, empty.getLevel());
+
+            TestUser boxed = sqlSession.selectOne(USER_MAPPER + "selectById", nobody.getId());
+            assertNull(boxed.getAge());
+            assertNull(boxed.getScore());
+        }
+    }
+
+    @Test
+    public void mapNonPublicClassWithChainedSetters() {
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(true)) {
+            HiddenUser user = sqlSession.selectOne(TEST_MAPPER + "selectHidden", alice.getId());
+            assertEquals(alice.getId(), user.id);
+            assertEquals("alice", user.userName);
+            assertEquals(20, user.age);
+            assertEquals("有setter时通过setter设置", 1, user.setterCalls);
+        }
+    }
+
+    @Test
+    public void compileAgainWhenColumnsChange() throws SQLException {
+        Statement statement = configuration.getStatement(TEST_MAPPER + "selectStar");
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(true)) {
+            TestUser before = sqlSession.selectOne(TEST_MAPPER + "selectStar", alice.getId());
+            assertEquals(Double.valueOf(30.0), before.getScore());
+            assertEquals(1, statement.getRowMappers().size());
+            RowMapper<?> cached = statement.getRowMappers().values().iterator().next();
+            sqlSession.selectOne(TEST_MAPPER + "selectStar", nobody.getId());
+            assertSame("形状相同时复用编译好的行映射", cached, statement.getRowMappers().values().iterator().next());
+        }
+
+        // 删除score之后created_at前移一列，按下标读取的旧映射不能再使用
+        try (Connection connection = sqlSessionFactory.getDataSource().getConnection();
+             java.sql.Statement ddl = connection.createStatement()) {
+            ddl.execute("alter table demo_user drop column score");
+        }
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(true)) {
+            TestUser after = sqlSession.selectOne(TEST_MAPPER + "selectStar", alice.getId());
+            assertEquals(2, statement.getRowMappers().size());
+            assertEquals("alice", after.getUserName());
+            assertEquals(Integer.valueOf(20), after.getAge());
+            assertEquals(alice.getCreatedAt(), after.getCreatedAt());
+            assertNull(after.getScore());
+        }
+    }
+
+    /**
+     * public的类，通过LambdaMetafactory生成的实现类设置属性
+     */
+    @Data
+    public static class PrimitiveUser {
+
+        private long id;
+
+        private int age;
+
+        private double score;
+
+        private short level = -1;
+    }
+
+    /**
+     * 非public的类，通过MethodHandle设置属性；setter返回this
+     */
+    static class HiddenUser {
+
+        private Long id;
+
+        private String userName;
+
+        private int age;
+
+        private int setterCalls;
+
+        HiddenUser setUserName(String userName) {
+            this.userName = userName;
+            setterCalls++;
+            return this;
+        }
+    }
+}
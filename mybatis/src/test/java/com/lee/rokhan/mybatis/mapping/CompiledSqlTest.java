@@ -0,0 +1,41 @@
+package com.lee.rokhan.mybatis.mapping;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * #{}占位符替换为?，字符串常量中的#{保持原样
+ * @author lichujun
+ * @date 2019/8/12 20:15
+ */
+public class CompiledSqlTest {
+
+    @Test
+    public void replacePlaceholders() {
+        BoundSql boundSql = CompiledSql.compile("select * from demo_user where user_name = #{name,jdbcType=VARCHAR}"
+                + " and age > #{age}").bind(parameter());
+        assertEquals("select * from demo_user where user_name = ? and age > ?", boundSql.getSql());
+        assertArrayEquals(new Object[]{"alice", 20}, boundSql.getParameterValues());
+    }
+
+    @Test
+    public void skipPlaceholdersInLiterals() {
+        BoundSql boundSql = CompiledSql.compile("select '#{name}', 'it''s #{age}' from demo_user "
+                + "where user_name = #{name} and remark <> '}'").bind(parameter());
+        assertEquals("select '#{name}', 'it''s #{age}' from demo_user where user_name = ? and remark <> '}'",
+                boundSql.getSql());
+        assertArrayEquals(new Object[]{"alice"}, boundSql.getParameterValues());
+    }
+
+    private static Map<String, Object> parameter() {
+        Map<String, Object> parameter = new HashMap<>();
+        parameter.put("name", "alice");
+        parameter.put("age", 20);
+        return parameter;
+    }
+}
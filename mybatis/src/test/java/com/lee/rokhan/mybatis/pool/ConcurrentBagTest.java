@@ -0,0 +1,165 @@
+package com.lee.rokhan.mybatis.pool;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 连接条目容器的借出顺序：线程缓存、共享列表、交接队列，以及等待超时和并发借出归还
+ * @author lichujun
+ * @date 2019/8/12 20:20
+ */
+public class ConcurrentBagTest {
+
+    private ConcurrentBag bag;
+
+    /**
+     * 容器通知新建连接时传入的等待线程数
+     */
+    private final List<Integer> addRequests = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setUp() {
+        bag = new ConcurrentBag(addRequests::add);
+    }
+
+    @Test
+    public void borrowFromThreadCacheFirst() throws Exception {
+        PoolEntry first = addEntry();
+        PoolEntry second = addEntry();
+        assertSame(first, bag.borrow(0, TimeUnit.MILLISECONDS));
+        assertSame(second, bag.borrow(0, TimeUnit.MILLISECONDS));
+        bag.requite(first);
+        bag.requite(second);
+
+        // 共享列表的顺序是first、second，线程缓存优先借出最近归还的second
+        assertSame("当前线程优先借出自己最近归还的连接", second, bag.borrow(0, TimeUnit.MILLISECONDS));
+        CompletableFuture<PoolEntry> other = CompletableFuture.supplyAsync(() -> borrow(0));
+        assertSame("其他线程没有缓存，从共享列表抢占空闲的连接", first, other.get(10, TimeUnit.SECONDS));
+        assertTrue("共享列表中有空闲的连接时不通知新建连接", addRequests.isEmpty());
+    }
+
+    @Test
+    public void handOffReturnedEntryToWaitingThread() throws Exception {
+        PoolEntry entry = addEntry();
+        assertSame(entry, bag.borrow(0, TimeUnit.MILLISECONDS));
+        CompletableFuture<PoolEntry> waiter = CompletableFuture.supplyAsync(() -> borrow(10000));
+        awaitWaiters(1);
+        assertEquals("没有空闲的连接时通知新建连接", 1, (int) addRequests.get(0));
+
+        bag.requite(entry);
+        assertSame("归还的连接直接交给等待的线程", entry, waiter.get(10, TimeUnit.SECONDS));
+        assertEquals(PoolEntry.STATE_IN_USE, entry.getState());
+        assertEquals(0, bag.getWaitingThreadCount());
+    }
+
+    @Test
+    public void handOffAddedEntryToWaitingThread() throws Exception {
+        CompletableFuture<PoolEntry> waiter = CompletableFuture.supplyAsync(() -> borrow(10000));
+        awaitWaiters(1);
+        PoolEntry entry = addEntry();
+        assertSame("新建的连接直接交给等待的线程", entry, waiter.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void returnNullWhenTimeout() throws Exception {
+        PoolEntry entry = addEntry();
+        assertSame(entry, bag.borrow(0, TimeUnit.MILLISECONDS));
+        long start = System.nanoTime();
+        assertNull(bag.borrow(100, TimeUnit.MILLISECONDS));
+        assertTrue("等待满超时时间才返回", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 90);
+        assertEquals(0, bag.getWaitingThreadCount());
+
+        bag.requite(entry);
+        assertTrue(bag.reserve(entry));
+        assertNull("保留的连接不能借出", bag.borrow(0, TimeUnit.MILLISECONDS));
+        bag.unreserve(entry);
+        assertSame(entry, bag.borrow(0, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void borrowAndReturnConcurrently() throws Exception {
+        int entries = 3;
+        int threads = 8;
+        int iterations = 2000;
+        Map<PoolEntry, AtomicBoolean> inUse = new IdentityHashMap<>();
+        for (int i = 0; i < entries; i++) {
+            inUse.put(addEntry(), new AtomicBoolean());
+        }
+        AtomicInteger failures = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < iterations; i++) {
+                        PoolEntry entry = bag.borrow(10, TimeUnit.SECONDS);
+                        // 同一个连接同时只能借给一个线程
+                        if (entry == null || !inUse.get(entry).compareAndSet(false, true)) {
+                            failures.incrementAndGet();
+                            continue;
+                        }
+                        Thread.yield();
+                        inUse.get(entry).set(false);
+                        bag.requite(entry);
+                    }
+                } catch (InterruptedException e) {
+                    failures.incrementAndGet();
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join(TimeUnit.SECONDS.toMillis(30));
+            assertFalse(worker.isAlive());
+        }
+        assertEquals(0, failures.get());
+        assertEquals(entries, bag.getCount(PoolEntry.STATE_NOT_IN_USE));
+        assertEquals(0, bag.getWaitingThreadCount());
+    }
+
+    private PoolEntry addEntry() {
+        PoolEntry entry = new PoolEntry(null, 0, 0);
+        bag.add(entry);
+        return entry;
+    }
+
+    private PoolEntry borrow(long timeoutMillis) {
+        try {
+            return bag.borrow(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 等待指定数量的线程开始等待，并且已经通知新建连接
+     */
+    private void awaitWaiters(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (bag.getWaitingThreadCount() < count || addRequests.size() < count) {
+            assertTrue("等待线程进入交接队列超时", System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+    }
+}
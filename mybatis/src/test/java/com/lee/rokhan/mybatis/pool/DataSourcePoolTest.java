@@ -0,0 +1,153 @@
+package com.lee.rokhan.mybatis.pool;
+
+import com.lee.rokhan.mybatis.H2Databases;
+import com.lee.rokhan.mybatis.mapping.Environment;
+import org.junit.After;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 连接池的并发借出归还、连接耗尽时超时、校验失败的连接被关闭，以及关闭时仍有借出的连接
+ * @author lichujun
+ * @date 2019/8/12 20:25
+ */
+public class DataSourcePoolTest {
+
+    private DataSourcePool dataSource;
+
+    @After
+    public void tearDown() {
+        if (dataSource != null) {
+            dataSource.close();
+        }
+    }
+
+    @Test
+    public void borrowAndReturnConcurrently() throws Exception {
+        dataSource = newPool(4, 10000);
+        int threads = 8;
+        int iterations = 200;
+        AtomicInteger failures = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < iterations; i++) {
+                        try (Connection connection = dataSource.getConnection()) {
+                            assertEquals(1, selectOne(connection));
+                        }
+                    }
+                } catch (Exception | AssertionError e) {
+                    failures.incrementAndGet();
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join(TimeUnit.SECONDS.toMillis(60));
+            assertFalse(worker.isAlive());
+        }
+        assertEquals(0, failures.get());
+        assertTrue("连接数不超过最大连接数", dataSource.getTotalConnections() <= 4);
+        assertEquals(0, dataSource.getActiveConnections());
+        assertEquals(threads * iterations, dataSource.getMetrics().getBorrowCount());
+        assertEquals(0, dataSource.getMetrics().getTimeoutCount());
+    }
+
+    @Test
+    public void timeoutWhenExhausted() throws SQLException {
+        dataSource = newPool(2, 200);
+        Connection first = dataSource.getConnection();
+        Connection second = dataSource.getConnection();
+        long start = System.nanoTime();
+        try {
+            dataSource.getConnection();
+            fail("连接都被借出时应该等待超时");
+        } catch (SQLTransientConnectionException e) {
+            assertTrue("等待满超时时间才失败", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 180);
+            assertTrue(e.getMessage().contains("借出：2"));
+        }
+        assertEquals(1, dataSource.getMetrics().getTimeoutCount());
+        assertEquals(2, dataSource.getTotalConnections());
+
+        Connection physical = first.unwrap(Connection.class);
+        first.close();
+        try (Connection connection = dataSource.getConnection()) {
+            assertSame("归还后再次借出同一个物理连接", physical, connection.unwrap(Connection.class));
+        }
+        second.close();
+    }
+
+    @Test
+    public void replaceBrokenIdleConnection() throws Exception {
+        dataSource = newPool(1, 10000);
+        Connection physical;
+        try (Connection connection = dataSource.getConnection()) {
+            physical = connection.unwrap(Connection.class);
+        }
+        // 模拟数据库断开空闲的连接，超过免校验的时间后借出时校验失败
+        physical.close();
+        Thread.sleep(600);
+        try (Connection connection = dataSource.getConnection()) {
+            assertNotSame("校验失败的连接应该被关闭并新建连接", physical, connection.unwrap(Connection.class));
+            assertEquals(1, selectOne(connection));
+        }
+        assertEquals(1, dataSource.getTotalConnections());
+        assertEquals(1, dataSource.getMetrics().getClosedCount());
+    }
+
+    @Test
+    public void closeWithBorrowedConnection() throws SQLException {
+        dataSource = newPool(2, 10000);
+        Connection borrowed = dataSource.getConnection();
+        Connection physical = borrowed.unwrap(Connection.class);
+        dataSource.close();
+        try {
+            dataSource.getConnection();
+            fail("连接池关闭后不能再借出连接");
+        } catch (SQLException e) {
+            assertTrue(e.getMessage().contains("已关闭"));
+        }
+        assertEquals("借出的连接在归还前仍然可用", 1, selectOne(borrowed));
+        assertFalse(physical.isClosed());
+
+        borrowed.close();
+        assertTrue("连接池关闭后归还的连接直接关闭", physical.isClosed());
+        assertEquals(0, dataSource.getTotalConnections());
+    }
+
+    private static DataSourcePool newPool(int maxPoolSize, long connectionTimeout) {
+        Environment environment = H2Databases.newEnvironment();
+        environment.setMaxPoolSize(maxPoolSize);
+        environment.setConnectionTimeout(connectionTimeout);
+        return new DataSourcePool(environment);
+    }
+
+    private static int selectOne(Connection connection) throws SQLException {
+        try (java.sql.Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("select 1")) {
+            assertTrue(resultSet.next());
+            return resultSet.getInt(1);
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.lee.rokhan.mybatis.pool;
+
+import com.lee.rokhan.mybatis.H2Databases;
+import com.lee.rokhan.mybatis.mapping.Environment;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 物理连接的PreparedStatement缓存：复用、按最近最少使用淘汰、归还时还原状态、回滚写入后清空
+ * 连接池只有一个连接，每次借出的都是同一个物理连接
+ * @author lichujun
+ * @date 2019/8/12 19:10
+ */
+public class StatementCacheTest {
+
+    private static final String INSERT = "insert into item (v) values (?)";
+
+    private static final String SELECT = "select v from item where v = ?";
+
+    private static final String COUNT = "select count(*) from item";
+
+    private DataSourcePool dataSource;
+
+    @Before
+    public void setUp() throws SQLException {
+        Environment environment = H2Databases.newEnvironment();
+        environment.setMaxPoolSize(1);
+        environment.setStatementCacheSize(2);
+        dataSource = new DataSourcePool(environment);
+        try (Connection connection = dataSource.getConnection();
+             java.sql.Statement statement = connection.createStatement()) {
+            statement.execute("create table item (v int)");
+        }
+    }
+
+    @After
+    public void tearDown() {
+        dataSource.close();
+    }
+
+    @Test
+    public void reuseCachedStatement() throws SQLException {
+        PreparedStatement first;
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(SELECT)) {
+            first = physical(statement);
+        }
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(SELECT)) {
+            assertSame("归还连接后再次执行相同的SQL应该复用PreparedStatement", first, physical(statement));
+            assertFalse(first.isClosed());
+        }
+    }
+
+    @Test
+    public void sameSqlInUseIsNotShared() throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement cached = connection.prepareStatement(SELECT);
+             PreparedStatement uncached = connection.prepareStatement(SELECT)) {
+            assertNotSame(physical(cached), physical(uncached));
+        }
+    }
+
+    @Test
+    public void evictLeastRecentlyUsedAndCloseIt() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            PreparedStatement select = prepareAndClose(connection, SELECT);
+            PreparedStatement count = prepareAndClose(connection, COUNT);
+            // 再次使用SELECT，COUNT成为最近最少使用的
+            assertSame(select, prepareAndClose(connection, SELECT));
+            PreparedStatement insert = prepareAndClose(connection, INSERT);
+
+            assertTrue("被淘汰的PreparedStatement应该关闭", count.isClosed());
+            assertFalse(select.isClosed());
+            assertFalse(insert.isClosed());
+            assertNotSame(count, prepareAndClose(connection, COUNT));
+        }
+    }
+
+    @Test
+    public void closeEvictedStatementWhenReturned() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            PreparedStatement inUse = connection.prepareStatement(SELECT);
+            PreparedStatement select = physical(inUse);
+            prepareAndClose(connection, COUNT);
+            prepareAndClose(connection, INSERT);
+            assertFalse("正在使用的PreparedStatement被淘汰时不能关闭", select.isClosed());
+            inUse.close();
+            assertTrue("被淘汰的PreparedStatement归还时应该关闭", select.isClosed());
+        }
+    }
+
+    @Test
+    public void resetStateWhenReturned() throws SQLException {
+        PreparedStatement physical;
+        int defaultFetchSize;
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(INSERT)) {
+            physical = physical(statement);
+            defaultFetchSize = statement.getFetchSize();
+            statement.setFetchSize(defaultFetchSize + 50);
+            statement.setMaxRows(5);
+            statement.setQueryTimeout(3);
+            statement.setInt(1, 1);
+            statement.addBatch();
+            statement.setInt(1, 2);
+        }
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(INSERT)) {
+            assertSame(physical, physical(statement));
+            assertEquals(defaultFetchSize, statement.getFetchSize());
+            assertEquals(0, statement.getMaxRows());
+            assertEquals(0, statement.getQueryTimeout());
+            assertEquals("归还时应该清空批量参数", 0, statement.executeBatch().length);
+            try {
+                statement.executeUpdate();
+                fail("归还时应该清空参数");
+            } catch (SQLException e) {
+                // 参数没有设置
+            }
+        }
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(COUNT);
+             ResultSet resultSet = statement.executeQuery()) {
+            assertTrue(resultSet.next());
+            assertEquals(0, resultSet.getInt(1));
+        }
+    }
+
+    @Test
+    public void proxyIsClosedAfterReturn() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            PreparedStatement statement = connection.prepareStatement(SELECT);
+            statement.close();
+            assertTrue(statement.isClosed());
+            try {
+                statement.setInt(1, 1);
+                fail("归还后不能再使用代理");
+            } catch (SQLException e) {
+                // 已经关闭
+            }
+        }
+    }
+
+    @Test
+    public void clearCacheWhenWrittenTransactionRollsBack() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement insert = connection.prepareStatement(INSERT)) {
+                insert.setInt(1, 1);
+                insert.executeUpdate();
+            }
+            PreparedStatement count = prepareAndClose(connection, COUNT);
+            assertEquals(1, count(connection));
+            connection.rollback();
+            assertTrue("回滚写入过的事务时应该关闭缓存的PreparedStatement", count.isClosed());
+            assertEquals("回滚后不能查到回滚前的结果", 0, count(connection));
+        }
+    }
+
+    @Test
+    public void clearCacheWhenWrittenTransactionIsReturned() throws SQLException {
+        PreparedStatement count;
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement insert = connection.prepareStatement(INSERT)) {
+                insert.setInt(1, 1);
+                insert.executeUpdate();
+            }
+            count = prepareAndClose(connection, COUNT);
+            assertEquals(1, count(connection));
+        }
+        assertTrue("归还时回滚未提交的写入也应该清空缓存", count.isClosed());
+        try (Connection connection = dataSource.getConnection()) {
+            assertEquals(0, count(connection));
+        }
+    }
+
+    @Test
+    public void keepCacheWhenTransactionHasNoWrites() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            PreparedStatement count = prepareAndClose(connection, COUNT);
+            assertEquals(0, count(connection));
+            connection.rollback();
+            assertSame("只读的事务回滚时保留缓存", count, prepareAndClose(connection, COUNT));
+
+            try (PreparedStatement insert = connection.prepareStatement(INSERT)) {
+                insert.setInt(1, 1);
+                insert.executeUpdate();
+            }
+            connection.commit();
+            connection.rollback();
+            assertSame("提交后的回滚没有需要撤销的写入", count, prepareAndClose(connection, COUNT));
+            assertEquals(1, count(connection));
+        }
+    }
+
+    @Test
+    public void evictConnectionOnConnectionError() throws SQLException {
+        Connection physicalConnection;
+        try (Connection connection = dataSource.getConnection();
+             java.sql.Statement statement = connection.createStatement()) {
+            physicalConnection = connection.unwrap(Connection.class);
+            statement.execute("create alias fail_connection for \"" + StatementCacheTest.class.getName()
+                    + ".failConnection\"");
+        }
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("select fail_connection()")) {
+            assertSame(physicalConnection, connection.unwrap(Connection.class));
+            statement.executeQuery();
+            fail("函数抛出连接异常");
+        } catch (SQLException e) {
+            assertEquals("08S01", e.getSQLState());
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            assertNotSame("缓存的PreparedStatement执行时出现连接异常，连接不能再放回连接池", physicalConnection,
+                    connection.unwrap(Connection.class));
+        }
+    }
+
+    /**
+     * fail_connection函数，模拟执行SQL时连接断开
+     * @return 不会返回
+     * @throws SQLException SQLState为08S01的连接异常
+     */
+    public static int failConnection() throws SQLException {
+        throw new SQLException("Communications link failure", "08S01");
+    }
+
+    private static int count(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(COUNT);
+             ResultSet resultSet = statement.executeQuery()) {
+            assertTrue(resultSet.next());
+            return resultSet.getInt(1);
+        }
+    }
+
+    private static PreparedStatement prepareAndClose(Connection connection, String sql) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            return physical(statement);
+        }
+    }
+
+    /**
+     * 代理把unwrap转发给驱动的PreparedStatement，驱动返回自身
+     */
+    private static PreparedStatement physical(PreparedStatement statement) throws SQLException {
+        return statement.unwrap(PreparedStatement.class);
+    }
+}
@@ -0,0 +1,217 @@
+package com.lee.rokhan.mybatis.routing;
+
+import com.lee.rokhan.mybatis.H2Databases;
+import com.lee.rokhan.mybatis.mapper.TestUser;
+import com.lee.rokhan.mybatis.mapping.Configuration;
+import com.lee.rokhan.mybatis.pool.DataSourcePool;
+import com.lee.rokhan.mybatis.session.AsyncSqlSession;
+import com.lee.rokhan.mybatis.session.SqlSession;
+import com.lee.rokhan.mybatis.session.SqlSessionFactory;
+import com.lee.rokhan.mybatis.session.SqlSessionFactoryBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.lee.rokhan.mybatis.H2Databases.ROUTE_MAPPER;
+import static com.lee.rokhan.mybatis.H2Databases.TEST_MAPPER;
+import static com.lee.rokhan.mybatis.H2Databases.USER_MAPPER;
+import static com.lee.rokhan.mybatis.H2Databases.newUser;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 主库和从库分别使用一个H2内存数据库，两个库的数据不同，通过查询结果判断SQL在哪个库执行
+ * @author lichujun
+ * @date 2019/8/12 20:10
+ */
+public class ReplicaRoutingTest {
+
+    private static final List<String> PRIMARY = Collections.singletonList("primary");
+
+    private static final List<String> REPLICA = Collections.singletonList("replica");
+
+    /**
+     * 从库的查询还需要抛出多少次连接异常
+     */
+    private static final AtomicInteger FAILURES = new AtomicInteger();
+
+    /**
+     * 从库的demo_user被查询的次数
+     */
+    private static final AtomicInteger REPLICA_QUERIES = new AtomicInteger();
+
+    private SqlSessionFactory sqlSessionFactory;
+
+    private Replica replica;
+
+    @Before
+    public void setUp() throws SQLException {
+        FAILURES.set(0);
+        REPLICA_QUERIES.set(0);
+        Configuration configuration = H2Databases.newConfiguration();
+        configuration.setCacheEnabled(false);
+        configuration.getReplicas().add(H2Databases.newEnvironment());
+        configuration.setReplicaFailureThreshold(2);
+        configuration.setReplicaEjectTime(60000);
+        sqlSessionFactory = SqlSessionFactoryBuilder.build(configuration);
+        replica = sqlSessionFactory.getRouter().getReplicas().get(0);
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(true)) {
+            sqlSession.update(USER_MAPPER + "createTable", null);
+            sqlSession.insert(TEST_MAPPER + "insertUser", newUser("primary", 20));
+        }
+        // 从库的demo_user是视图，每次查询都经过checkConnection，可以模拟连接异常
+        try (Connection connection = replica.getDataSource().getConnection();
+             java.sql.Statement statement = connection.createStatement()) {
+            statement.execute("create table replica_user (id bigint auto_increment primary key, "
+                    + "user_name varchar(32) not null, age int, score double, created_at timestamp)");
+            statement.execute("insert into replica_user (user_name) values ('replica')");
+            statement.execute("create alias check_connection for \"" + ReplicaRoutingTest.class.getName()
+                    + ".checkConnection\"");
+            statement.execute("create view demo_user as select * from replica_user where check_connection() = 1");
+        }
+    }
+
+    @After
+    public void tearDown() {
+        sqlSessionFactory.getDataSource().close();
+        replica.getDataSource().close();
+    }
+
+    @Test
+    public void readFromReplicaWhenAutoCommit() {
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(true)) {
+            assertEquals(REPLICA, sqlSession.selectList(TEST_MAPPER + "selectNames"));
+            assertEquals(1, replica.getOutstanding());
+        }
+        assertEquals(0, replica.getOutstanding());
+    }
+
+    @Test
+    public void readFromReplicaUntilTransactionStarts() {
+        try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+            assertEquals("手动提交的会话没有使用主库连接前查询走从库", REPLICA,
+                    sqlSession.selectList(TEST_MAPPER + "selectNames"));
+            assertEquals(1, replica.getOutstanding());
+            sqlSession.insert(TEST_MAPPER + "insertUser", newUser("alice", 30));
+            assertEquals("事务开始后的查询走主库，读到事务内的修改", Arrays.asList("primary", "alice"),
+                    sqlSession.selectList(TEST_MAPPER + "selectNames"));
+            sqlSession.rollback();
+        }
+        assertEquals(0, replica.getOutstanding());
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(false)) {
+            assertEquals(PRIMARY, sqlSession.selectList(ROUTE_MAPPER + "selectNamesFromPrimary"));
+            assertEquals("强制主库的查询开始事务后，之后的查询也走主库", PRIMARY,
+                    sqlSession.selectList(TEST_MAPPER + "selectNames"));
+        }
+    }
+
+    @Test
+    public void readFromReplicaInAsyncSession() throws Exception {
+        AsyncSqlSession asyncSession = sqlSessionFactory.getAsyncSession();
+        try {
+            assertEquals(REPLICA, asyncSession.selectList(TEST_MAPPER + "selectNames", null)
+                    .get(10, TimeUnit.SECONDS));
+            assertEquals("replica", asyncSession.<TestUser>selectOne(USER_MAPPER + "selectById", 1L)
+                    .get(10, TimeUnit.SECONDS).getUserName());
+            CompletableFuture<List<String>> names = asyncSession.inTransaction(sqlSession -> {
+                sqlSession.insert(TEST_MAPPER + "insertUser", newUser("alice", 30));
+                return sqlSession.selectList(TEST_MAPPER + "selectNames");
+            });
+            assertEquals("事务中写入后的查询走主库", Arrays.asList("primary", "alice"), names.get(10, TimeUnit.SECONDS));
+        } finally {
+            asyncSession.close();
+        }
+        assertEquals(0, replica.getOutstanding());
+    }
+
+    @Test
+    public void readYourWritesAfterPrimaryWrite() {
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(true)) {
+            assertEquals(REPLICA, sqlSession.selectList(TEST_MAPPER + "selectNames"));
+            sqlSession.insert(TEST_MAPPER + "insertUser", newUser("alice", 30));
+            assertEquals("写过主库之后的查询走主库", Arrays.asList("primary", "alice"),
+                    sqlSession.selectList(TEST_MAPPER + "selectNames"));
+        }
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(true)) {
+            assertEquals("新的会话重新使用从库", REPLICA, sqlSession.selectList(TEST_MAPPER + "selectNames"));
+        }
+    }
+
+    @Test
+    public void ejectReplicaAndRetryOnPrimary() {
+        FAILURES.set(2);
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(true)) {
+            assertEquals("从库连接异常时在主库重试", PRIMARY, sqlSession.selectList(TEST_MAPPER + "selectNames"));
+            assertFalse("连续失败次数未达到阈值", replica.isEjected());
+        }
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(true)) {
+            assertEquals(PRIMARY, sqlSession.selectList(TEST_MAPPER + "selectNames"));
+            assertTrue("连续失败达到阈值后摘除", replica.isEjected());
+        }
+        assertEquals(2, REPLICA_QUERIES.get());
+        assertEquals(0, replica.getOutstanding());
+
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(true)) {
+            assertEquals(PRIMARY, sqlSession.selectList(TEST_MAPPER + "selectNames"));
+            assertEquals(PRIMARY, sqlSession.selectList(ROUTE_MAPPER + "selectNamesFromReplica"));
+        }
+        assertEquals("摘除期间不再查询从库", 2, REPLICA_QUERIES.get());
+    }
+
+    @Test
+    public void notRetryOtherErrors() throws SQLException {
+        DataSourcePool replicaPool = replica.getDataSource();
+        try (Connection connection = replicaPool.getConnection();
+             java.sql.Statement statement = connection.createStatement()) {
+            statement.execute("drop view demo_user");
+        }
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(true)) {
+            sqlSession.selectList(TEST_MAPPER + "selectNames");
+            fail("从库的SQL错误不是连接异常，不在主库重试");
+        } catch (RuntimeException e) {
+            assertFalse("SQL错误不摘除从库", replica.isEjected());
+        }
+    }
+
+    @Test
+    public void overrideRouteByMapperAndStatement() {
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(false)) {
+            assertEquals("mapper上的route对其中的SQL生效", REPLICA,
+                    sqlSession.selectList(ROUTE_MAPPER + "selectNamesFromReplica"));
+            assertEquals("SQL上的route优先于mapper上的route", PRIMARY,
+                    sqlSession.selectList(ROUTE_MAPPER + "selectNamesFromPrimary"));
+            sqlSession.insert(TEST_MAPPER + "insertUser", newUser("alice", 30));
+            assertEquals("强制从库时写过主库也走从库", REPLICA,
+                    sqlSession.selectList(ROUTE_MAPPER + "selectNamesFromReplica"));
+            sqlSession.rollback();
+        }
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(true)) {
+            assertEquals("强制主库时自动提交也走主库", PRIMARY,
+                    sqlSession.selectList(ROUTE_MAPPER + "selectNamesFromPrimary"));
+        }
+    }
+
+    /**
+     * 从库视图调用的函数，还有剩余的失败次数时抛出连接异常
+     * @return 1
+     * @throws SQLException SQLState为08S01的连接异常
+     */
+    public static int checkConnection() throws SQLException {
+        REPLICA_QUERIES.incrementAndGet();
+        if (FAILURES.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+            throw new SQLException("Communications link failure", "08S01");
+        }
+        return 1;
+    }
+}
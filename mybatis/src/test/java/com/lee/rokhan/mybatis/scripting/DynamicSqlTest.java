@@ -0,0 +1,145 @@
+package com.lee.rokhan.mybatis.scripting;
+
+import com.lee.rokhan.mybatis.mapping.BoundSql;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * 动态SQL的where/set去掉多余的前后缀、foreach的形状、test表达式中不同数字类型的比较、字符串常量中的#{，以及相同形状复用SQL文本
+ * @author lichujun
+ * @date 2019/8/12 20:30
+ */
+public class DynamicSqlTest {
+
+    private static final DynamicSql SELECT = SqlScriptCompiler.compile("<script>"
+            + "select * from demo_user\n"
+            + "<where>\n"
+            + "    <if test=\"name != null\">and user_name = #{name}</if>\n"
+            + "    <if test=\"minAge != null\">\n"
+            + "        OR age &gt;= #{minAge}\n"
+            + "    </if>\n"
+            + "</where>\n"
+            + "order by id"
+            + "</script>");
+
+    private static final DynamicSql UPDATE = SqlScriptCompiler.compile("<script>"
+            + "update demo_user\n"
+            + "<set>\n"
+            + "    <if test=\"name != null\">user_name = #{name},</if>\n"
+            + "    <if test=\"age != null\">age = #{age},</if>\n"
+            + "</set>\n"
+            + "where id = #{id}"
+            + "</script>");
+
+    private static final DynamicSql NESTED_FOREACH = SqlScriptCompiler.compile("<script>"
+            + "select * from demo_user where 1 = 1"
+            + "<foreach collection=\"groups\" item=\"group\" open=\" and (\" separator=\" or \" close=\")\">"
+            + "<foreach collection=\"group\" item=\"id\" open=\"id in (\" separator=\", \" close=\")\">#{id}</foreach>"
+            + "</foreach>"
+            + "</script>");
+
+    private static final DynamicSql COMPARE = SqlScriptCompiler.compile("<script>"
+            + "select * from demo_user where 1 = 1"
+            + "<if test=\"age == limit\"> and age = #{age}</if>"
+            + "<if test=\"score &gt; limit\"> and score &gt; #{score}</if>"
+            + "<if test=\"score &lt; 10.5\"> and score &lt; 10.5</if>"
+            + "</script>");
+
+    @Test
+    public void trimLeadingAndOrInWhere() {
+        assertEquals("select * from demo_user WHERE user_name = ? OR age >= ? order by id",
+                SELECT.bind(parameter("name", "alice", "minAge", 18)).getSql());
+        assertEquals("开头的OR也要去掉", "select * from demo_user WHERE age >= ? order by id",
+                SELECT.bind(parameter("minAge", 18)).getSql());
+        assertEquals("条件都不成立时不加WHERE", "select * from demo_user order by id",
+                SELECT.bind(parameter()).getSql());
+    }
+
+    @Test
+    public void trimTrailingCommaInSet() {
+        BoundSql boundSql = UPDATE.bind(parameter("name", "alice", "age", 20, "id", 1L));
+        assertEquals("update demo_user SET user_name = ?, age = ? where id = ?", boundSql.getSql());
+        assertArrayEquals(new Object[]{"alice", 20, 1L}, boundSql.getParameterValues());
+        assertEquals("update demo_user SET user_name = ? where id = ?",
+                UPDATE.bind(parameter("name", "alice", "id", 1L)).getSql());
+    }
+
+    @Test
+    public void distinguishForEachShapes() {
+        BoundSql empty = NESTED_FOREACH.bind(parameter("groups", Collections.emptyList()));
+        assertEquals("select * from demo_user where 1 = 1", empty.getSql());
+        assertEquals(0, empty.getParameterValues().length);
+
+        // 外层长度和参数个数都相同，只有内层的长度不同
+        BoundSql oneTwo = NESTED_FOREACH.bind(parameter("groups", Arrays.asList(ids(1L), ids(2L, 3L))));
+        BoundSql twoOne = NESTED_FOREACH.bind(parameter("groups", Arrays.asList(ids(1L, 2L), ids(3L))));
+        assertEquals("select * from demo_user where 1 = 1 and (id in (?) or id in (?, ?))", oneTwo.getSql());
+        assertEquals("select * from demo_user where 1 = 1 and (id in (?, ?) or id in (?))", twoOne.getSql());
+        assertArrayEquals(new Object[]{1L, 2L, 3L}, oneTwo.getParameterValues());
+        assertArrayEquals(new Object[]{1L, 2L, 3L}, twoOne.getParameterValues());
+
+        BoundSql emptyInner = NESTED_FOREACH.bind(parameter("groups", Arrays.asList(ids(), ids(1L))));
+        assertNotEquals(oneTwo.getSql(), emptyInner.getSql());
+        assertEquals(4, NESTED_FOREACH.getCachedShapes());
+    }
+
+    @Test
+    public void compareMixedNumberTypes() {
+        assertEquals("Integer和Long按数值比较", "select * from demo_user where 1 = 1 and age = ?",
+                COMPARE.bind(parameter("age", 20, "limit", 20L, "score", 20)).getSql());
+        assertEquals("BigDecimal和Long、BigDecimal和BigDecimal按数值比较",
+                "select * from demo_user where 1 = 1 and age = ? and score > ?",
+                COMPARE.bind(parameter("age", 20L, "limit", new BigDecimal("20.00"), "score",
+                        new BigDecimal("20.5"))).getSql());
+        assertEquals("Integer和小数常量比较", "select * from demo_user where 1 = 1 and score < 10.5",
+                COMPARE.bind(parameter("age", 1, "limit", 20L, "score", 10)).getSql());
+    }
+
+    @Test
+    public void skipPlaceholdersInLiterals() {
+        DynamicSql select = SqlScriptCompiler.compile("<script>"
+                + "select '#{name}' from demo_user<where><if test=\"name != null\">user_name = #{name}</if></where>"
+                + "</script>");
+        BoundSql boundSql = select.bind(parameter("name", "alice"));
+        assertEquals("select '#{name}' from demo_user WHERE user_name = ?", boundSql.getSql());
+        assertArrayEquals(new Object[]{"alice"}, boundSql.getParameterValues());
+    }
+
+    @Test
+    public void reuseSqlOfSameShape() {
+        DynamicSql update = SqlScriptCompiler.compile("<script>"
+                + "update demo_user<set><if test=\"name != null\">user_name = #{name},</if></set> where id = #{id}"
+                + "</script>");
+        BoundSql first = update.bind(parameter("name", "alice", "id", 1L));
+        BoundSql second = update.bind(parameter("name", "bob", "id", 2L));
+        assertSame("形状相同时复用同一个SQL文本", first.getSql(), second.getSql());
+        assertArrayEquals(new Object[]{"bob", 2L}, second.getParameterValues());
+        assertEquals(1, update.getCachedShapes());
+
+        update.bind(parameter("id", 3L));
+        assertEquals(2, update.getCachedShapes());
+    }
+
+    private static List<Long> ids(Long... ids) {
+        return Arrays.asList(ids);
+    }
+
+    private static Map<String, Object> parameter(Object... keyValues) {
+        Map<String, Object> parameter = new HashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            parameter.put((String) keyValues[i], keyValues[i + 1]);
+        }
+        return parameter;
+    }
+}
@@ -0,0 +1,169 @@
+package com.lee.rokhan.mybatis.session;
+
+import com.lee.rokhan.mybatis.H2Databases;
+import com.lee.rokhan.mybatis.mapper.TestUser;
+import com.lee.rokhan.mybatis.mapping.Configuration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.lee.rokhan.mybatis.H2Databases.TEST_MAPPER;
+import static com.lee.rokhan.mybatis.H2Databases.USER_MAPPER;
+import static com.lee.rokhan.mybatis.H2Databases.newUser;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 异步会话的有界线程池和队列、执行失败时通过Future返回异常，以及关闭工厂时等待已提交的任务
+ * @author lichujun
+ * @date 2019/8/12 20:05
+ */
+public class AsyncSqlSessionTest {
+
+    private static final int THREADS = 2;
+
+    private static final int QUEUE_SIZE = 2;
+
+    private SqlSessionFactory sqlSessionFactory;
+
+    private AsyncSqlSession asyncSession;
+
+    @Before
+    public void setUp() {
+        Configuration configuration = H2Databases.newConfiguration();
+        configuration.getEnvironment().setMaxPoolSize(THREADS);
+        configuration.setAsyncQueueSize(QUEUE_SIZE);
+        sqlSessionFactory = SqlSessionFactoryBuilder.build(configuration);
+        asyncSession = sqlSessionFactory.getAsyncSession();
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(true)) {
+            sqlSession.update(USER_MAPPER + "createTable", null);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        asyncSession.close();
+        sqlSessionFactory.getDataSource().close();
+    }
+
+    @Test
+    public void rejectWhenQueueIsFull() throws Exception {
+        CountDownLatch started = new CountDownLatch(THREADS);
+        CountDownLatch release = new CountDownLatch(1);
+        List<CompletableFuture<Long>> accepted = new ArrayList<>();
+        for (int i = 0; i < THREADS + QUEUE_SIZE; i++) {
+            accepted.add(asyncSession.inTransaction(sqlSession -> {
+                started.countDown();
+                await(release);
+                return sqlSession.selectOne(USER_MAPPER + "count");
+            }));
+        }
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        assertEquals(QUEUE_SIZE, asyncSession.getQueuedTasks());
+
+        CompletableFuture<Long> rejected = asyncSession.selectOne(USER_MAPPER + "count", null);
+        assertTrue("线程和队列都满时应该立即返回失败的Future", rejected.isCompletedExceptionally());
+        Throwable cause = causeOf(rejected);
+        assertTrue(cause.getMessage().contains("队列已满"));
+        assertTrue(cause.getCause() instanceof RejectedExecutionException);
+
+        release.countDown();
+        for (CompletableFuture<Long> future : accepted) {
+            assertEquals("队列中的任务不受影响", Long.valueOf(0), future.get(10, TimeUnit.SECONDS));
+        }
+        assertEquals(Long.valueOf(0), asyncSession.<Long>selectOne(USER_MAPPER + "count", null)
+                .get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void rejectAfterClose() {
+        asyncSession.close();
+        CompletableFuture<Long> rejected = asyncSession.selectOne(USER_MAPPER + "count", null);
+        assertTrue(rejected.isCompletedExceptionally());
+        assertTrue(causeOf(rejected).getMessage().contains("已关闭"));
+    }
+
+    @Test
+    public void finishSubmittedTasksBeforeClosingPools() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<Long> running = asyncSession.inTransaction(sqlSession -> {
+            started.countDown();
+            sleep(200);
+            return sqlSession.selectOne(USER_MAPPER + "count");
+        });
+        CompletableFuture<Long> queued = asyncSession.selectOne(USER_MAPPER + "count", null);
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        sqlSessionFactory.close();
+        assertEquals("关闭工厂时等待已提交的任务执行完", Long.valueOf(0), running.getNow(null));
+        assertEquals(Long.valueOf(0), queued.getNow(null));
+        assertTrue(sqlSessionFactory.getDataSource().isClosed());
+        assertTrue(causeOf(asyncSession.selectOne(USER_MAPPER + "count", null)).getMessage().contains("已关闭"));
+    }
+
+    @Test
+    public void propagateFailureToFuture() throws Exception {
+        assertTrue(causeOf(asyncSession.selectList(TEST_MAPPER + "missing", null)) instanceof RuntimeException);
+        // user_name不能为空，驱动的异常通过Future返回
+        CompletableFuture<Integer> insert = asyncSession.insert(TEST_MAPPER + "insertUser", newUser(null, 20));
+        assertFalse(causeOf(insert).getMessage().isEmpty());
+
+        RuntimeException failure = new RuntimeException("业务异常");
+        CompletableFuture<Object> transaction = asyncSession.inTransaction(sqlSession -> {
+            sqlSession.insert(TEST_MAPPER + "insertUser", newUser("alice", 20));
+            throw failure;
+        });
+        assertSame(failure, causeOf(transaction));
+        assertEquals("抛出异常时回滚事务", Long.valueOf(0), asyncSession.<Long>selectOne(USER_MAPPER + "count", null)
+                .get(10, TimeUnit.SECONDS));
+
+        TestUser bob = newUser("bob", 30);
+        assertEquals(Integer.valueOf(1), asyncSession.insert(TEST_MAPPER + "insertUser", bob)
+                .get(10, TimeUnit.SECONDS));
+        assertEquals("失败后线程池仍然可用", "bob", asyncSession.<TestUser>selectOne(USER_MAPPER + "selectById",
+                bob.getId()).get(10, TimeUnit.SECONDS).getUserName());
+    }
+
+    private static Throwable causeOf(CompletableFuture<?> future) {
+        try {
+            future.get(10, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            return e.getCause();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        fail("Future应该以异常结束");
+        return null;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            if (!latch.await(10, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("等待超时");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
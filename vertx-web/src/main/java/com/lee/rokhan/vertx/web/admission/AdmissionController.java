@@ -0,0 +1,71 @@
+package com.lee.rokhan.vertx.web.admission;
+
+import com.lee.rokhan.vertx.web.admission.impl.AimdLimit;
+import com.lee.rokhan.vertx.web.admission.impl.VegasLimit;
+import com.lee.rokhan.vertx.web.configuration.AdmissionConfiguration;
+import com.lee.rokhan.vertx.web.pojo.PathInfo;
+import com.lee.rokhan.vertx.web.pojo.RequestPriority;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * web服务的准入控制，所有event loop共用
+ * 全局的并发限制使用AIMD算法，在event bus中等待worker的时间超过maxQueueTime或者请求超时时缩小；
+ * 每个路由的并发限制使用配置的算法
+ * @author lichujun
+ * @date 2019/8/12 18:35
+ */
+public class AdmissionController {
+
+    @Getter
+    private final AdmissionConfiguration configuration;
+
+    @Getter
+    private final Limiter globalLimiter;
+
+    private final Map<PathInfo, RouteAdmission> routeAdmissions = new ConcurrentHashMap<>();
+
+    public AdmissionController(AdmissionConfiguration configuration) {
+        this.configuration = configuration;
+        this.globalLimiter = new Limiter(new AimdLimit(configuration.getInitialLimit(), configuration.getMinLimit(),
+                configuration.getMaxLimit(), configuration.getBackoffRatio(),
+                TimeUnit.MILLISECONDS.toNanos(configuration.getMaxQueueTime())));
+    }
+
+    /**
+     * 获取路由的准入控制，不存在则新建
+     * @param pathInfo 路由
+     * @param priority 路由的优先级
+     * @return 路由的准入控制
+     */
+    public RouteAdmission getRouteAdmission(PathInfo pathInfo, RequestPriority priority) {
+        return routeAdmissions.computeIfAbsent(pathInfo, key -> new RouteAdmission(key.getHttpMethod(),
+                key.getHttpPath(), priority, new Limiter(newRouteLimit()), globalLimiter, configuration.isEnabled()));
+    }
+
+    /**
+     * 获取所有路由的准入控制，按路径和请求方法排列
+     * @return 路由的准入控制
+     */
+    public List<RouteAdmission> getRouteAdmissions() {
+        List<RouteAdmission> admissions = new ArrayList<>(routeAdmissions.values());
+        admissions.sort(Comparator.comparing(RouteAdmission::getHttpPath).thenComparing(RouteAdmission::getHttpMethod));
+        return admissions;
+    }
+
+    private ConcurrencyLimit newRouteLimit() {
+        if (configuration.getAlgorithm() == LimitAlgorithm.AIMD) {
+            return new AimdLimit(configuration.getInitialLimit(), configuration.getMinLimit(),
+                    configuration.getRouteMaxLimit(), configuration.getBackoffRatio(),
+                    TimeUnit.MILLISECONDS.toNanos(configuration.getLatencyThreshold()));
+        }
+        return new VegasLimit(configuration.getInitialLimit(), configuration.getMinLimit(),
+                configuration.getRouteMaxLimit());
+    }
+}
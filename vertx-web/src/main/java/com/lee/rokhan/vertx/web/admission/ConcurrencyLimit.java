@@ -0,0 +1,24 @@
+package com.lee.rokhan.vertx.web.admission;
+
+/**
+ * 自适应的并发限制，根据每个请求完成时的耗时调整允许的并发数
+ * 实现需要线程安全，getLimit在每个请求准入时调用，不能加锁
+ * @author lichujun
+ * @date 2019/8/12 18:05
+ */
+public interface ConcurrencyLimit {
+
+    /**
+     * 获取当前的并发限制
+     * @return 并发限制
+     */
+    int getLimit();
+
+    /**
+     * 记录一个完成的请求
+     * @param elapsedNanos 请求的耗时，单位：纳秒
+     * @param inFlight 请求完成前处理中的请求数量
+     * @param dropped 请求是否超时
+     */
+    void onSample(long elapsedNanos, int inFlight, boolean dropped);
+}
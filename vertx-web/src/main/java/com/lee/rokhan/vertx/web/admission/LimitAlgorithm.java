@@ -0,0 +1,11 @@
+package com.lee.rokhan.vertx.web.admission;
+
+/**
+ * 并发限制的算法
+ * @author lichujun
+ * @date 2019/8/12 18:00
+ */
+public enum LimitAlgorithm {
+    // 超时或者响应时间超过阈值时按比例缩小，否则逐步加一；按响应时间相对最小值的增长估算排队的请求数，排队少时放大、排队多时缩小
+    AIMD, VEGAS, ;
+}
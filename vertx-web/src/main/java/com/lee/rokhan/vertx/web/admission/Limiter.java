@@ -0,0 +1,70 @@
+package com.lee.rokhan.vertx.web.admission;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 按并发限制控制处理中的请求数量，准入只做一次CAS，不加锁
+ * @author lichujun
+ * @date 2019/8/12 18:25
+ */
+public class Limiter {
+
+    private final ConcurrencyLimit concurrencyLimit;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public Limiter(ConcurrencyLimit concurrencyLimit) {
+        this.concurrencyLimit = concurrencyLimit;
+    }
+
+    /**
+     * 处理中的请求数量小于限制乘以比例时准入
+     * @param share 可以使用的并发限制的比例
+     * @return 是否准入，准入的请求必须调用一次release或者cancel
+     */
+    public boolean tryAcquire(double share) {
+        int limit = Math.max(1, (int) (concurrencyLimit.getLimit() * share));
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 请求完成，用耗时调整并发限制
+     * @param elapsedNanos 请求的耗时，单位：纳秒
+     * @param dropped 请求是否超时
+     */
+    public void release(long elapsedNanos, boolean dropped) {
+        int current = inFlight.getAndDecrement();
+        concurrencyLimit.onSample(elapsedNanos, current, dropped);
+    }
+
+    /**
+     * 请求没有发送就结束（例如参数错误），不调整并发限制
+     */
+    public void cancel() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * 获取当前的并发限制
+     * @return 并发限制
+     */
+    public int getLimit() {
+        return concurrencyLimit.getLimit();
+    }
+
+    /**
+     * 获取处理中的请求数量
+     * @return 处理中的请求数量
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+}
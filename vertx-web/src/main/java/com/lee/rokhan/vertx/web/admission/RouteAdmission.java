@@ -0,0 +1,97 @@
+package com.lee.rokhan.vertx.web.admission;
+
+import com.lee.rokhan.vertx.web.pojo.RequestPriority;
+import lombok.Getter;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个路由的准入控制，先检查路由自己的并发限制，再按优先级检查全局并发限制
+ * 路由的限制按event bus往返的耗时调整，一个路由变慢只缩小它自己的限制；
+ * 全局的限制按在event bus中等待worker的时间调整，与路由本身的耗时无关
+ * @author lichujun
+ * @date 2019/8/12 18:30
+ */
+public class RouteAdmission {
+
+    @Getter
+    private final String httpMethod;
+
+    @Getter
+    private final String httpPath;
+
+    @Getter
+    private final RequestPriority priority;
+
+    @Getter
+    private final Limiter limiter;
+
+    private final Limiter globalLimiter;
+
+    private final boolean enabled;
+
+    private final LongAdder rejected = new LongAdder();
+
+    RouteAdmission(String httpMethod, String httpPath, RequestPriority priority,
+                   Limiter limiter, Limiter globalLimiter, boolean enabled) {
+        this.httpMethod = httpMethod;
+        this.httpPath = httpPath;
+        this.priority = priority;
+        this.limiter = limiter;
+        this.globalLimiter = globalLimiter;
+        this.enabled = enabled;
+    }
+
+    /**
+     * 请求准入
+     * @return 是否准入，准入的请求必须调用一次release或者cancel
+     */
+    public boolean tryAcquire() {
+        if (!enabled) {
+            return true;
+        }
+        if (!limiter.tryAcquire(1)) {
+            rejected.increment();
+            return false;
+        }
+        if (!globalLimiter.tryAcquire(priority.getShare())) {
+            limiter.cancel();
+            rejected.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 收到worker的回复或者发送失败；等待回复超时的请求在worker处理完或者丢弃之后调用
+     * @param elapsedNanos 发送到event bus到收到回复的耗时，单位：纳秒
+     * @param queueNanos 在event bus中等待worker的时间，未知时传0，单位：纳秒
+     * @param dropped 是否超时
+     */
+    public void release(long elapsedNanos, long queueNanos, boolean dropped) {
+        if (!enabled) {
+            return;
+        }
+        limiter.release(elapsedNanos, dropped);
+        globalLimiter.release(queueNanos, dropped);
+    }
+
+    /**
+     * 请求没有发送到event bus就结束
+     */
+    public void cancel() {
+        if (!enabled) {
+            return;
+        }
+        limiter.cancel();
+        globalLimiter.cancel();
+    }
+
+    /**
+     * 获取被拒绝的请求数量
+     * @return 被拒绝的请求数量
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+}
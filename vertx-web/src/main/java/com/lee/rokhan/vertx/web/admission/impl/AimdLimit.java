@@ -0,0 +1,61 @@
+package com.lee.rokhan.vertx.web.admission.impl;
+
+import com.lee.rokhan.vertx.web.admission.ConcurrencyLimit;
+
+/**
+ * 加性增、乘性减的并发限制
+ * 请求超时或者耗时超过阈值时按比例缩小；处理中的请求超过限制的一半时，每完成一个请求增加1/limit，
+ * 即每完成一轮限制数量的请求加一，请求较少时不放大，避免限制在空闲时无限增长
+ * @author lichujun
+ * @date 2019/8/12 18:10
+ */
+public class AimdLimit implements ConcurrencyLimit {
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final double backoffRatio;
+
+    private final long thresholdNanos;
+
+    /**
+     * 只在onSample中修改，修改时持有锁
+     */
+    private double limit;
+
+    private volatile int currentLimit;
+
+    /**
+     * @param initialLimit 初始值
+     * @param minLimit 最小值
+     * @param maxLimit 最大值
+     * @param backoffRatio 缩小的比例
+     * @param thresholdNanos 超过时缩小的耗时，单位：纳秒
+     */
+    public AimdLimit(int initialLimit, int minLimit, int maxLimit, double backoffRatio, long thresholdNanos) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.thresholdNanos = thresholdNanos;
+        this.limit = Math.min(Math.max(initialLimit, minLimit), maxLimit);
+        this.currentLimit = (int) limit;
+    }
+
+    @Override
+    public int getLimit() {
+        return currentLimit;
+    }
+
+    @Override
+    public synchronized void onSample(long elapsedNanos, int inFlight, boolean dropped) {
+        if (dropped || elapsedNanos > thresholdNanos) {
+            limit = Math.max(minLimit, limit * backoffRatio);
+        } else if (inFlight * 2 >= currentLimit) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        } else {
+            return;
+        }
+        currentLimit = (int) limit;
+    }
+}
@@ -0,0 +1,86 @@
+package com.lee.rokhan.vertx.web.admission.impl;
+
+import com.lee.rokhan.vertx.web.admission.ConcurrencyLimit;
+
+/**
+ * TCP Vegas方式的并发限制
+ * 以观察到的最小耗时作为没有排队时的耗时，按 limit * (1 - 最小耗时 / 本次耗时) 估算排队中的请求数：
+ * 排队数不超过log10(limit)时快速放大，小于3 * log10(limit)时放大log10(limit)，
+ * 大于6 * log10(limit)或者请求超时时缩小log10(limit)，之间保持不变；
+ * 负载变化后最小耗时可能不再准确，每完成约30轮限制数量的请求重新测量一次
+ * @author lichujun
+ * @date 2019/8/12 18:15
+ */
+public class VegasLimit implements ConcurrencyLimit {
+
+    private static final int PROBE_MULTIPLIER = 30;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    /**
+     * 以下状态只在onSample中访问，访问时持有锁
+     */
+    private long minElapsedNanos;
+
+    private long probeCountdown;
+
+    private volatile int currentLimit;
+
+    /**
+     * @param initialLimit 初始值
+     * @param minLimit 最小值
+     * @param maxLimit 最大值
+     */
+    public VegasLimit(int initialLimit, int minLimit, int maxLimit) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.currentLimit = Math.min(Math.max(initialLimit, minLimit), maxLimit);
+        this.probeCountdown = (long) PROBE_MULTIPLIER * currentLimit;
+    }
+
+    @Override
+    public int getLimit() {
+        return currentLimit;
+    }
+
+    @Override
+    public synchronized void onSample(long elapsedNanos, int inFlight, boolean dropped) {
+        int limit = currentLimit;
+        double log = Math.max(1, Math.log10(limit));
+        if (dropped) {
+            // 超时的耗时不能作为排队的依据，直接缩小
+            setLimit(limit - log);
+            return;
+        }
+        if (elapsedNanos <= 0) {
+            return;
+        }
+        if (--probeCountdown <= 0) {
+            probeCountdown = (long) PROBE_MULTIPLIER * limit;
+            minElapsedNanos = elapsedNanos;
+            return;
+        }
+        if (minElapsedNanos == 0 || elapsedNanos < minElapsedNanos) {
+            minElapsedNanos = elapsedNanos;
+            return;
+        }
+        // 请求较少时耗时不能反映容量，不调整
+        if (inFlight * 2 < limit) {
+            return;
+        }
+        long queueSize = (long) Math.ceil(limit * (1 - (double) minElapsedNanos / elapsedNanos));
+        if (queueSize <= log) {
+            setLimit(limit + 6 * log);
+        } else if (queueSize < 3 * log) {
+            setLimit(limit + log);
+        } else if (queueSize > 6 * log) {
+            setLimit(limit - log);
+        }
+    }
+
+    private void setLimit(double newLimit) {
+        currentLimit = (int) Math.min(Math.max(newLimit, minLimit), maxLimit);
+    }
+}
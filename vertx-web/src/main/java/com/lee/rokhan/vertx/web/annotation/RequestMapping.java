@@ -1,6 +1,7 @@
 package com.lee.rokhan.vertx.web.annotation;
 
 import com.lee.rokhan.vertx.web.pojo.RequestMethod;
+import com.lee.rokhan.vertx.web.pojo.RequestPriority;
 
 import java.lang.annotation.*;
 
@@ -23,4 +24,9 @@ public @interface RequestMapping {
      * 请求方法
      */
     RequestMethod method() default RequestMethod.POST;
+
+    /**
+     * 优先级，全局并发接近限制时先拒绝低优先级的请求，只在方法上生效
+     */
+    RequestPriority priority() default RequestPriority.NORMAL;
 }
\ No newline at end of file
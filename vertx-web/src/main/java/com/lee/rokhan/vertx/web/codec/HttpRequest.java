@@ -1,16 +1,36 @@
 package com.lee.rokhan.vertx.web.codec;
 
 import io.vertx.core.MultiMap;
-import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 import java.util.List;
 
 @Data
-@AllArgsConstructor
+@NoArgsConstructor
 public class HttpRequest {
 
     private List<Object> paramList;
 
     private MultiMap headers;
+
+    /**
+     * event loop发送到event bus的时间，用于统计排队耗时，只在同一个进程内有效，不参与编解码，单位：纳秒
+     */
+    private transient long sendTime;
+
+    /**
+     * 等待回复的截止时间，超过后event loop已经返回超时，worker不再处理，不参与编解码，单位：纳秒
+     */
+    private transient long deadline;
+
+    /**
+     * worker处理完或者丢弃过期的请求时调用，event loop据此释放超时请求占用的并发限制，只在同一个进程内有效，不参与编解码
+     */
+    private transient Runnable completionHandler;
+
+    public HttpRequest(List<Object> paramList, MultiMap headers) {
+        this.paramList = paramList;
+        this.headers = headers;
+    }
 }
@@ -15,4 +15,9 @@ public class HttpResponse<T> {
 
     private HttpResponseStatus status;
     private T response;
+
+    /**
+     * 请求在event bus中等待worker的时间，用于调整全局的并发限制，只在同一个进程内有效，不参与编解码，单位：纳秒
+     */
+    private transient long queueTime;
 }
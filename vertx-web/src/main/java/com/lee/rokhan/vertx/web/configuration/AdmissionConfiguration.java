@@ -0,0 +1,72 @@
+package com.lee.rokhan.vertx.web.configuration;
+
+import com.lee.rokhan.container.annotation.Configuration;
+import com.lee.rokhan.vertx.web.admission.LimitAlgorithm;
+import lombok.Data;
+
+/**
+ * 准入控制的配置，对应配置文件中的admission节点，未配置的项使用默认值
+ * 限制发送到event bus、还没有收到worker回复的请求数量，超出限制的请求直接返回503，不在event bus中排队
+ * @author lichujun
+ * @date 2019/8/12 18:00
+ */
+@Data
+@Configuration("admission")
+public class AdmissionConfiguration {
+
+    /**
+     * 是否限制并发，关闭后只保留发送超时
+     */
+    private boolean enabled = true;
+
+    /**
+     * 每个路由的并发限制算法
+     */
+    private LimitAlgorithm algorithm = LimitAlgorithm.VEGAS;
+
+    /**
+     * 并发限制的初始值，全局和每个路由相同
+     */
+    private int initialLimit = 32;
+
+    /**
+     * 并发限制的最小值
+     */
+    private int minLimit = 4;
+
+    /**
+     * 全局并发限制的最大值
+     */
+    private int maxLimit = 1000;
+
+    /**
+     * 每个路由并发限制的最大值
+     */
+    private int routeMaxLimit = 500;
+
+    /**
+     * 超出时缩小并发限制的排队时间，用于全局限制，单位：毫秒
+     */
+    private long maxQueueTime = 50;
+
+    /**
+     * 超出时缩小并发限制的响应时间，用于AIMD算法的路由限制，单位：毫秒
+     */
+    private long latencyThreshold = 1000;
+
+    /**
+     * AIMD算法缩小并发限制的比例
+     */
+    private double backoffRatio = 0.9;
+
+    /**
+     * 发送到event bus后等待worker回复的最长时间，超时返回503，worker不再处理超时的请求；
+     * 超时的请求在worker处理完或者丢弃之前继续占用并发限制，最多再占用sendTimeout，单位：毫秒
+     */
+    private long sendTimeout = 10000;
+
+    /**
+     * 拒绝请求时Retry-After响应头的值，单位：秒
+     */
+    private int retryAfter = 1;
+}
@@ -0,0 +1,80 @@
+package com.lee.rokhan.vertx.web.configuration;
+
+import com.lee.rokhan.container.annotation.Configuration;
+import lombok.Data;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 压测的配置，对应配置文件中的load节点，未配置的项使用默认值
+ * 每个路由按固定的到达速率发送请求（开放模型），不等待上一个请求完成
+ * @author lichujun
+ * @date 2019/8/12 16:00
+ */
+@Data
+@Configuration("load")
+public class LoadGeneratorConfiguration {
+
+    /**
+     * 压测的地址
+     */
+    private String host = "127.0.0.1";
+
+    /**
+     * 每个路由每秒发送的请求数
+     */
+    private int requestsPerSecond = 100;
+
+    /**
+     * 预热时间，期间的请求不计入结果，单位：秒
+     */
+    private int warmupSeconds = 5;
+
+    /**
+     * 计入结果的压测时间，单位：秒
+     */
+    private int durationSeconds = 30;
+
+    /**
+     * 发送请求的event loop数量
+     */
+    private int clientThreads = 2;
+
+    /**
+     * 每个event loop的最大连接数
+     */
+    private int maxConnections = 64;
+
+    /**
+     * 单个请求的超时时间，单位：毫秒
+     */
+    private long requestTimeout = 5000;
+
+    /**
+     * 所有路由未完成请求的上限，超过时新的请求不再发送并记为丢弃，防止服务无响应时无限堆积
+     */
+    private int maxOutstanding = 10000;
+
+    /**
+     * 只压测的路由，为空时压测所有GET和POST路由
+     */
+    private Set<String> includePaths = new HashSet<>();
+
+    /**
+     * 不压测的路由，例如有副作用的接口
+     */
+    private Set<String> excludePaths = new HashSet<>();
+
+    /**
+     * GET路由的请求参数，key为路由，value为query string；参数值按JSON解析，字符串需要带引号
+     */
+    private Map<String, String> queries = new HashMap<>();
+
+    /**
+     * POST路由的请求体，key为路由，value为JSON，或者多个参数时的表单（a=1&b=2）
+     */
+    private Map<String, String> bodies = new HashMap<>();
+}
@@ -0,0 +1,44 @@
+package com.lee.rokhan.vertx.web.configuration;
+
+import com.lee.rokhan.container.annotation.Configuration;
+import lombok.Data;
+
+/**
+ * web服务的配置，对应配置文件中的server节点，未配置的项使用默认值
+ * @author lichujun
+ * @date 2019/8/5 10:20
+ */
+@Data
+@Configuration("server")
+public class VertxWebConfiguration {
+
+    /**
+     * 监听端口
+     */
+    private int port = 9000;
+
+    /**
+     * event loop的数量
+     */
+    private int eventLoopSize = 4;
+
+    /**
+     * work-verticle的数量
+     */
+    private int workerSize = 16;
+
+    /**
+     * work-verticle单次执行的最长时间，单位：秒
+     */
+    private long maxWorkerExecuteTime = 20;
+
+    /**
+     * 关闭服务时等待处理中的请求完成的最长时间，单位：毫秒
+     */
+    private long shutdownTimeout = 30000;
+
+    /**
+     * 以Prometheus的文本格式导出请求指标的路径，由event loop直接响应，为空时不导出
+     */
+    private String metricsPath = "/metrics/prometheus";
+}
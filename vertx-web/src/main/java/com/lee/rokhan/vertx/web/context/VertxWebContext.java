@@ -7,6 +7,7 @@ import com.lee.rokhan.container.context.ApplicationContext;
 import com.lee.rokhan.vertx.web.annotation.Header;
 import com.lee.rokhan.vertx.web.annotation.RequestMapping;
 import com.lee.rokhan.vertx.web.annotation.RequestParam;
+import com.lee.rokhan.vertx.web.interceptor.RequestInterceptor;
 import com.lee.rokhan.vertx.web.pojo.*;
 import com.lee.rokhan.vertx.web.verticle.EventLoopVerticle;
 import com.lee.rokhan.vertx.web.verticle.WorkVerticle;
@@ -17,11 +18,15 @@ import org.apache.commons.lang3.StringUtils;
 import java.lang.reflect.Method;
 import java.lang.reflect.Parameter;
 import java.lang.reflect.Type;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -35,28 +40,91 @@ public class VertxWebContext implements ApplicationContextAware {
 
     private final Map<PathInfo, ControllerInfo> pathControllerMap = new ConcurrentHashMap<>();
 
+    /**
+     * 已经启动的event loop，运行期间注册的Controller需要通知它们添加路由
+     */
+    private final List<EventLoopVerticle> eventLoopVerticles = new CopyOnWriteArrayList<>();
+
+    /**
+     * 已经启动的work-verticle，运行期间注册的Controller需要通知它们添加消费者
+     */
+    private final List<WorkVerticle> workVerticles = new CopyOnWriteArrayList<>();
+
+    /**
+     * 路由表的写入锁，保证verticle启动和运行期间注册Controller不会遗漏或重复路由
+     */
+    private final Object routeLock = new Object();
+
+    /**
+     * 处理中的请求数量，从event loop接收请求开始，到响应返回为止
+     */
+    private final AtomicInteger inFlightRequests = new AtomicInteger();
+
+    /**
+     * 等待处理中的请求完成的锁
+     */
+    private final Object drainLock = new Object();
+
+    /**
+     * 是否正在关闭，关闭期间拒绝新请求
+     */
+    private volatile boolean draining;
+
+    /**
+     * 请求拦截器，按Bean的注册顺序执行
+     */
+    private final List<RequestInterceptor> requestInterceptors = new CopyOnWriteArrayList<>();
+
     @Override
     public void setApplicationContext(ApplicationContext applicationContext) throws Throwable {
         // 加载所有的Bean
         applicationContext.processAllBeanDefinition((beanName, beanDefinition) ->
                 applicationContext.getBean(beanName));
+        // 加载请求拦截器
+        for (String beanName : applicationContext.getBeanNamesByType(RequestInterceptor.class)) {
+            requestInterceptors.add((RequestInterceptor) applicationContext.getBean(beanName));
+        }
         // 加载Controller
         applicationContext.processComponentProperty(componentProperty -> {
             Class<?> clazz = componentProperty.getClazz();
             String beanName = componentProperty.getInjectionProperty().getBeanName();
-            processPathController(clazz, beanName);
+            registerController(clazz, beanName);
         }, Controller.class);
     }
 
+    /**
+     * 注册Controller，服务启动后也可以调用，新的路由会添加到已经启动的verticle中
+     * @param controllerClass Controller的Class对象
+     * @param beanName Controller的Bean名称
+     */
+    public void registerController(Class<?> controllerClass, String beanName) {
+        synchronized (routeLock) {
+            Map<PathInfo, ControllerInfo> newPathControllerMap = processPathController(controllerClass, beanName);
+            if (newPathControllerMap.isEmpty()) {
+                return;
+            }
+            pathControllerMap.putAll(newPathControllerMap);
+            for (WorkVerticle work : workVerticles) {
+                work.addReq(newPathControllerMap);
+            }
+            for (EventLoopVerticle loop : eventLoopVerticles) {
+                loop.addRoute(newPathControllerMap);
+            }
+        }
+    }
+
 
 
     /**
      * 将单个Controller的Class对象的上下文信息和Controller关系进行绑定
+     * 先全部解析再返回，存在冲突的路由时不会注册该Controller的任何路由
      * @param tClass Controller的Class对象
+     * @return 该Controller的路由
      */
-    private void processPathController(Class<?> tClass, String beanName) {
+    private Map<PathInfo, ControllerInfo> processPathController(Class<?> tClass, String beanName) {
+        Map<PathInfo, ControllerInfo> newPathControllerMap = new LinkedHashMap<>();
         if (tClass == null) {
-            return;
+            return newPathControllerMap;
         }
         // 获取类@RequestMapping注入的值，获取Controller类的上下文
         String basePath = Optional.ofNullable(tClass.getDeclaredAnnotation(
@@ -72,7 +140,7 @@ public class VertxWebContext implements ApplicationContextAware {
                 )
                 .orElse(null);
         if (CollectionUtils.isEmpty(methodList)) {
-            return;
+            return newPathControllerMap;
         }
         // 扫描所有方法的RequestMapping注解
         for (Method method : methodList) {
@@ -137,12 +205,15 @@ public class VertxWebContext implements ApplicationContextAware {
                     if (reqMethodEnum == RequestMethod.ALL) {
                         continue;
                     }
-                    putControllerInfo(httpPath, reqMethodEnum, tClass, method, methodParamsWithHeaders, beanName);
+                    putControllerInfo(newPathControllerMap, httpPath, reqMethodEnum, tClass, method,
+                            methodParamsWithHeaders, beanName);
                 }
             } else {
-                putControllerInfo(httpPath, reqMethod, tClass, method, methodParamsWithHeaders, beanName);
+                putControllerInfo(newPathControllerMap, httpPath, reqMethod, tClass, method,
+                        methodParamsWithHeaders, beanName);
             }
         }
+        return newPathControllerMap;
     }
 
     /**
@@ -159,31 +230,111 @@ public class VertxWebContext implements ApplicationContextAware {
     /**
      * 将ControllerInfo信息存放在容器中
      */
-    private void putControllerInfo(String httpPath, RequestMethod reqMethod,
+    private void putControllerInfo(Map<PathInfo, ControllerInfo> newPathControllerMap,
+                                   String httpPath, RequestMethod reqMethod,
                                    Class<?> tClass, Method method,
                                    MethodParamsWithHeaders methodParamsWithHeaders,
                                    String beanName) {
         PathInfo pathInfo = new PathInfo(httpPath, reqMethod.toString());
         ControllerInfo controllerInfo = new ControllerInfo(tClass, method, methodParamsWithHeaders, beanName);
-        if (pathControllerMap.put(pathInfo, controllerInfo) != null) {
+        if (pathControllerMap.containsKey(pathInfo) || newPathControllerMap.put(pathInfo, controllerInfo) != null) {
             throw new RuntimeException(String.format(
                     "存在相同的上下文和http请求方法，controller层的方法在：%s.%s",
                     tClass.getName(), method.getName()));
         }
     }
 
+    /**
+     * 开始处理请求，正在关闭时返回false，需要拒绝该请求
+     * @return 是否可以处理该请求
+     */
+    public boolean tryAcquireRequest() {
+        if (draining) {
+            return false;
+        }
+        inFlightRequests.incrementAndGet();
+        // 计数之后再检查一次，保证drain看到的计数不会漏掉该请求
+        if (draining) {
+            releaseRequest();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 请求处理完成，每个tryAcquireRequest成功的请求必须调用一次
+     */
+    public void releaseRequest() {
+        if (inFlightRequests.decrementAndGet() == 0 && draining) {
+            synchronized (drainLock) {
+                drainLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * 停止接收新请求，并等待处理中的请求完成
+     * @param timeoutMillis 最长等待时间，单位：毫秒
+     * @return 是否在超时之前处理完所有请求
+     * @throws InterruptedException 中断异常
+     */
+    public boolean drain(long timeoutMillis) throws InterruptedException {
+        draining = true;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        synchronized (drainLock) {
+            while (inFlightRequests.get() > 0) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(drainLock, remaining);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 获取处理中的请求数量
+     * @return 处理中的请求数量
+     */
+    public int getInFlightRequests() {
+        return inFlightRequests.get();
+    }
+
+    /**
+     * 获取已经注册的路由
+     * @return 路由对应的Controller信息，只读
+     */
+    public Map<PathInfo, ControllerInfo> getRoutes() {
+        return Collections.unmodifiableMap(pathControllerMap);
+    }
+
+    /**
+     * 获取请求拦截器
+     * @return 请求拦截器
+     */
+    public List<RequestInterceptor> getRequestInterceptors() {
+        return requestInterceptors;
+    }
+
     /**
      * 接收vertx来自event loop分发过来的请求
      */
     public void processMessage(WorkVerticle work) {
-        pathControllerMap.forEach(work::processReq);
+        synchronized (routeLock) {
+            pathControllerMap.forEach(work::processReq);
+            workVerticles.add(work);
+        }
     }
 
     /**
      * event loop路由请求
      */
     public void routeMessage(EventLoopVerticle loop) {
-        pathControllerMap.forEach(loop::routeReq);
-        loop.routeNotFound();
+        synchronized (routeLock) {
+            pathControllerMap.forEach(loop::routeReq);
+            loop.routeNotFound();
+            eventLoopVerticles.add(loop);
+        }
     }
 }
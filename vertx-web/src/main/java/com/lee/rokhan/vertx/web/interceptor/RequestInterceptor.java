@@ -0,0 +1,27 @@
+package com.lee.rokhan.vertx.web.interceptor;
+
+import com.lee.rokhan.vertx.web.pojo.PathInfo;
+
+/**
+ * 请求拦截器，注册为Bean后对所有Controller生效
+ * 在worker线程中调用Controller前后执行，可以用来绑定请求范围的资源（例如数据库会话）；
+ * Controller返回CompletionStage或者Future时，afterCompletion在Controller方法返回后立即调用，不等待异步结果
+ * @author lichujun
+ * @date 2019/8/11 10:00
+ */
+public interface RequestInterceptor {
+
+    /**
+     * 调用Controller之前执行，抛出异常时不再调用Controller，直接返回错误
+     * @param path 请求的路由
+     * @throws Throwable 异常
+     */
+    void preHandle(PathInfo path) throws Throwable;
+
+    /**
+     * Controller方法返回或者抛出异常后执行，只有preHandle成功的拦截器才会调用，按注册的相反顺序执行
+     * @param path 请求的路由
+     * @param e Controller抛出的异常，正常返回时为null
+     */
+    void afterCompletion(PathInfo path, Throwable e);
+}
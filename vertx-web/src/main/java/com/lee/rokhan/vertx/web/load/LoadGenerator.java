@@ -0,0 +1,356 @@
+package com.lee.rokhan.vertx.web.load;
+
+import com.lee.rokhan.common.metrics.LatencyHistogram;
+import com.lee.rokhan.vertx.web.configuration.LoadGeneratorConfiguration;
+import com.lee.rokhan.vertx.web.context.VertxWebContext;
+import com.lee.rokhan.vertx.web.pojo.ControllerInfo;
+import com.lee.rokhan.vertx.web.pojo.PathInfo;
+import com.lee.rokhan.vertx.web.pojo.RequestMethod;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.http.HttpClientResponse;
+import io.vertx.core.http.HttpMethod;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.collections4.MapUtils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 进程内的压测工具，通过Vert.x的HttpClient压测VertxWebContext中注册的路由
+ * 使用开放模型：每个路由按固定的到达速率计划请求，不等待上一个请求完成；
+ * 耗时从计划发送的时间开始计算，服务变慢导致请求在客户端排队的时间也计入耗时，避免协调遗漏（coordinated omission）
+ * @author lichujun
+ * @date 2019/8/12 16:20
+ */
+@Slf4j
+public class LoadGenerator {
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private static final long NANOS_PER_MICRO = TimeUnit.MICROSECONDS.toNanos(1);
+
+    /**
+     * 调度线程每次最多休眠的时间，单位：纳秒
+     */
+    private static final long MAX_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+
+    /**
+     * 压测结束后等待未完成请求的额外时间，单位：毫秒
+     */
+    private static final long DRAIN_GRACE = 1000;
+
+    private static final String JSON_CONTENT_TYPE = "application/json;charset=UTF-8";
+
+    private static final String FORM_CONTENT_TYPE = "application/x-www-form-urlencoded";
+
+    private final LoadGeneratorConfiguration configuration;
+
+    private final int port;
+
+    private final List<RouteLoad> routes = new ArrayList<>();
+
+    /**
+     * 所有路由未完成的请求数
+     */
+    private final AtomicInteger outstanding = new AtomicInteger();
+
+    /**
+     * 创建压测工具，选出可以压测的路由：GET和POST路由中没有参数的，或者配置了请求参数的
+     * @param vertxWebContext web上下文
+     * @param configuration 压测的配置
+     * @param port 服务的端口
+     */
+    public LoadGenerator(VertxWebContext vertxWebContext, LoadGeneratorConfiguration configuration, int port) {
+        if (configuration.getRequestsPerSecond() <= 0 || configuration.getDurationSeconds() <= 0) {
+            throw new RuntimeException("压测的请求速率和时间必须大于0");
+        }
+        this.configuration = configuration;
+        this.port = port;
+        List<Map.Entry<PathInfo, ControllerInfo>> entries = new ArrayList<>(vertxWebContext.getRoutes().entrySet());
+        entries.sort(Comparator.comparing((Map.Entry<PathInfo, ControllerInfo> it) -> it.getKey().getHttpPath())
+                .thenComparing(it -> it.getKey().getHttpMethod()));
+        for (Map.Entry<PathInfo, ControllerInfo> entry : entries) {
+            RouteLoad route = createRoute(entry.getKey(), entry.getValue());
+            if (route != null) {
+                routes.add(route);
+            }
+        }
+        if (routes.isEmpty()) {
+            throw new RuntimeException("没有可以压测的路由");
+        }
+    }
+
+    /**
+     * 执行压测，阻塞到压测结束并且未完成的请求返回或者超时
+     * @param label 本次压测的标识
+     * @return 压测结果
+     * @throws InterruptedException 中断异常
+     */
+    public LoadReport run(String label) throws InterruptedException {
+        int clientThreads = Math.max(1, configuration.getClientThreads());
+        Vertx vertx = Vertx.vertx(new VertxOptions().setEventLoopPoolSize(clientThreads));
+        HttpClient client = vertx.createHttpClient(new HttpClientOptions()
+                .setDefaultHost(configuration.getHost())
+                .setDefaultPort(port)
+                .setKeepAlive(true)
+                .setMaxPoolSize(configuration.getMaxConnections())
+                .setMaxWaitQueueSize(-1));
+        // 非Vert.x线程每次获取都会创建新的context，依次绑定到不同的event loop
+        Context[] contexts = new Context[clientThreads];
+        for (int i = 0; i < clientThreads; i++) {
+            contexts[i] = vertx.getOrCreateContext();
+        }
+        long startTime = System.currentTimeMillis();
+        try {
+            log.info("开始压测{}个路由，每个路由{}次/秒，预热{}秒，压测{}秒", routes.size(),
+                    configuration.getRequestsPerSecond(), configuration.getWarmupSeconds(),
+                    configuration.getDurationSeconds());
+            schedule(client, contexts);
+            awaitOutstanding();
+        } finally {
+            client.close();
+            CountDownLatch closed = new CountDownLatch(1);
+            vertx.close(res -> closed.countDown());
+            closed.await(DRAIN_GRACE, TimeUnit.MILLISECONDS);
+        }
+        LoadReport report = new LoadReport();
+        report.setLabel(label);
+        report.setStartTime(startTime);
+        report.setRequestsPerSecond(configuration.getRequestsPerSecond());
+        report.setWarmupSeconds(configuration.getWarmupSeconds());
+        report.setDurationSeconds(configuration.getDurationSeconds());
+        for (RouteLoad route : routes) {
+            report.getRoutes().add(route.toReport(configuration.getDurationSeconds()));
+        }
+        return report;
+    }
+
+    /**
+     * 在当前线程按到达速率调度请求，请求交给各个event loop发送；
+     * 每个路由的第k个请求都计划在start + k * interval发送，同一时刻的请求轮流发送给各个路由，超过上限时各个路由丢弃的比例相同
+     */
+    private void schedule(HttpClient client, Context[] contexts) {
+        long interval = Math.max(1, NANOS_PER_SECOND / configuration.getRequestsPerSecond());
+        long start = System.nanoTime();
+        long measureStart = start + TimeUnit.SECONDS.toNanos(configuration.getWarmupSeconds());
+        long end = measureStart + TimeUnit.SECONDS.toNanos(configuration.getDurationSeconds());
+        int maxOutstanding = configuration.getMaxOutstanding();
+        long scheduledCount = 0;
+        int next = 0;
+        while (true) {
+            long now = System.nanoTime();
+            if (now - end >= 0) {
+                return;
+            }
+            long due = (now - start) / interval + 1;
+            for (; scheduledCount < due; scheduledCount++) {
+                long intended = start + scheduledCount * interval;
+                boolean measured = intended - measureStart >= 0;
+                for (RouteLoad route : routes) {
+                    if (measured) {
+                        route.scheduled.increment();
+                    }
+                    if (outstanding.get() >= maxOutstanding) {
+                        if (measured) {
+                            route.dropped.increment();
+                        }
+                        continue;
+                    }
+                    outstanding.incrementAndGet();
+                    LoadRequest loadRequest = new LoadRequest(route, intended, measured);
+                    contexts[next].runOnContext(v -> loadRequest.send(client));
+                    next = next + 1 == contexts.length ? 0 : next + 1;
+                }
+            }
+            long wait = start + due * interval - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(Math.min(wait, MAX_PARK_NANOS));
+            }
+        }
+    }
+
+    /**
+     * 等待未完成的请求返回，超过请求的超时时间后不再等待
+     */
+    private void awaitOutstanding() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + configuration.getRequestTimeout() + DRAIN_GRACE;
+        while (outstanding.get() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        if (outstanding.get() > 0) {
+            log.warn("压测结束后仍有{}个请求未完成", outstanding.get());
+        }
+    }
+
+    private RouteLoad createRoute(PathInfo pathInfo, ControllerInfo controllerInfo) {
+        String path = pathInfo.getHttpPath();
+        if (!configuration.getIncludePaths().isEmpty() && !configuration.getIncludePaths().contains(path)
+                || configuration.getExcludePaths().contains(path)) {
+            return null;
+        }
+        boolean hasParams = MapUtils.isNotEmpty(controllerInfo.getMethodParamsWithHeaders().getMethodParameter());
+        if (RequestMethod.GET.toString().equals(pathInfo.getHttpMethod())) {
+            String query = configuration.getQueries().get(path);
+            if (query == null && hasParams) {
+                log.warn("GET {}有参数但没有配置请求参数，不压测该路由", path);
+                return null;
+            }
+            return new RouteLoad(HttpMethod.GET, path, query == null ? path : path + "?" + query, null);
+        }
+        if (RequestMethod.POST.toString().equals(pathInfo.getHttpMethod())) {
+            String body = configuration.getBodies().get(path);
+            if (body == null && hasParams) {
+                log.warn("POST {}有参数但没有配置请求体，不压测该路由", path);
+                return null;
+            }
+            return new RouteLoad(HttpMethod.POST, path, path, body);
+        }
+        return null;
+    }
+
+    /**
+     * 单个路由的计数和耗时，调度线程和各个event loop并发写入
+     */
+    private static class RouteLoad {
+
+        private final HttpMethod method;
+
+        private final String path;
+
+        private final String uri;
+
+        private final String body;
+
+        private final String contentType;
+
+        private final LongAdder scheduled = new LongAdder();
+
+        private final LongAdder dropped = new LongAdder();
+
+        private final LongAdder completed = new LongAdder();
+
+        private final LongAdder errors = new LongAdder();
+
+        private final Map<Integer, LongAdder> statusCounts = new ConcurrentHashMap<>();
+
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        private final LatencyHistogram serviceTime = new LatencyHistogram();
+
+        private RouteLoad(HttpMethod method, String path, String uri, String body) {
+            this.method = method;
+            this.path = path;
+            this.uri = uri;
+            this.body = body;
+            if (body == null) {
+                this.contentType = null;
+            } else {
+                String trimmed = body.trim();
+                boolean json = trimmed.startsWith("{") || trimmed.startsWith("[") || trimmed.startsWith("\"");
+                this.contentType = json ? JSON_CONTENT_TYPE : FORM_CONTENT_TYPE;
+            }
+        }
+
+        private RouteLoadReport toReport(int durationSeconds) {
+            RouteLoadReport report = new RouteLoadReport();
+            report.setHttpMethod(method.name());
+            report.setHttpPath(path);
+            report.setScheduled(scheduled.sum());
+            report.setDropped(dropped.sum());
+            report.setCompleted(completed.sum());
+            report.setErrors(errors.sum());
+            report.setThroughput((double) report.getCompleted() / durationSeconds);
+            statusCounts.forEach((status, count) -> report.getStatusCounts().put(status, count.sum()));
+            report.setLatency(latency.getSnapshot());
+            report.setServiceTime(serviceTime.getSnapshot());
+            return report;
+        }
+    }
+
+    /**
+     * 单个请求，所有回调都在发送它的event loop中执行
+     */
+    private class LoadRequest {
+
+        private final RouteLoad route;
+
+        /**
+         * 计划发送的时间，单位：纳秒
+         */
+        private final long intended;
+
+        /**
+         * 是否在预热之后，预热期间的请求不计入结果
+         */
+        private final boolean measured;
+
+        private long sent;
+
+        private boolean done;
+
+        private LoadRequest(RouteLoad route, long intended, boolean measured) {
+            this.route = route;
+            this.intended = intended;
+            this.measured = measured;
+        }
+
+        private void send(HttpClient client) {
+            sent = System.nanoTime();
+            HttpClientRequest request = client.request(route.method, route.uri, this::onResponse)
+                    .exceptionHandler(this::onError)
+                    .setTimeout(configuration.getRequestTimeout());
+            if (route.body == null) {
+                request.end();
+            } else {
+                request.putHeader("Content-Type", route.contentType).end(route.body);
+            }
+        }
+
+        private void onResponse(HttpClientResponse response) {
+            if (measured) {
+                route.statusCounts.computeIfAbsent(response.statusCode(), k -> new LongAdder()).increment();
+            }
+            response.exceptionHandler(this::onError);
+            response.endHandler(v -> complete(false));
+        }
+
+        private void onError(Throwable e) {
+            if (!done && log.isDebugEnabled()) {
+                log.debug("压测请求{} {}失败", route.method, route.uri, e);
+            }
+            complete(true);
+        }
+
+        private void complete(boolean error) {
+            if (done) {
+                return;
+            }
+            done = true;
+            outstanding.decrementAndGet();
+            if (!measured) {
+                return;
+            }
+            if (error) {
+                route.errors.increment();
+                return;
+            }
+            long now = System.nanoTime();
+            route.completed.increment();
+            route.latency.record((now - intended) / NANOS_PER_MICRO);
+            route.serviceTime.record((now - sent) / NANOS_PER_MICRO);
+        }
+    }
+}
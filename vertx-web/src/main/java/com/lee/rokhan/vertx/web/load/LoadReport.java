@@ -0,0 +1,36 @@
+package com.lee.rokhan.vertx.web.load;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 一次压测的结果，可以保存为JSON文件和其它构建的结果对比
+ * @author lichujun
+ * @date 2019/8/12 16:10
+ */
+@Data
+public class LoadReport {
+
+    /**
+     * 本次压测的标识，例如构建版本
+     */
+    private String label;
+
+    /**
+     * 开始时间，单位：毫秒
+     */
+    private long startTime;
+
+    /**
+     * 每个路由每秒发送的请求数
+     */
+    private int requestsPerSecond;
+
+    private int warmupSeconds;
+
+    private int durationSeconds;
+
+    private List<RouteLoadReport> routes = new ArrayList<>();
+}
@@ -0,0 +1,134 @@
+package com.lee.rokhan.vertx.web.load;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.serializer.SerializerFeature;
+import com.lee.rokhan.common.metrics.HistogramSnapshot;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 压测结果的读写、格式化和对比
+ * @author lichujun
+ * @date 2019/8/12 16:30
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class LoadReports {
+
+    private static final String ROW_FORMAT = "%-40s %10s %10s %8s %10s %10s %10s %10s %10s%n";
+
+    private static final String COMPARE_FORMAT = "%-40s %-6s %12s %12s %9s%n";
+
+    /**
+     * 保存压测结果
+     * @param report 压测结果
+     * @param file 文件路径
+     * @throws IOException 写入失败
+     */
+    public static void write(LoadReport report, String file) throws IOException {
+        Files.write(Paths.get(file), JSON.toJSONString(report, SerializerFeature.PrettyFormat,
+                SerializerFeature.WriteNonStringKeyAsString)
+                .getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 读取压测结果
+     * @param file 文件路径
+     * @return 压测结果
+     * @throws IOException 读取失败
+     */
+    public static LoadReport read(String file) throws IOException {
+        return JSON.parseObject(new String(Files.readAllBytes(Paths.get(file)), StandardCharsets.UTF_8),
+                LoadReport.class);
+    }
+
+    /**
+     * 格式化压测结果，耗时为修正了协调遗漏的耗时，单位：毫秒
+     * @param report 压测结果
+     * @return 表格
+     */
+    public static String format(LoadReport report) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("压测[%s]：每个路由%d次/秒，压测%d秒%n", report.getLabel(),
+                report.getRequestsPerSecond(), report.getDurationSeconds()));
+        builder.append(String.format(ROW_FORMAT, "Route", "Completed", "Req/s", "Errors",
+                "p50(ms)", "p90(ms)", "p99(ms)", "p99.9(ms)", "max(ms)"));
+        for (RouteLoadReport route : report.getRoutes()) {
+            HistogramSnapshot latency = route.getLatency();
+            builder.append(String.format(ROW_FORMAT, key(route), route.getCompleted(),
+                    String.format("%.1f", route.getThroughput()), route.getErrors() + route.getDropped(),
+                    millis(latency.getP50()), millis(latency.getP90()), millis(latency.getP99()),
+                    millis(latency.getP999()), millis(latency.getMax())));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 对比两次压测每个路由的耗时百分位数和错误率
+     * @param baseline 作为基准的压测结果
+     * @param current 本次压测结果
+     * @return 表格
+     */
+    public static String compare(LoadReport baseline, LoadReport current) {
+        Map<String, RouteLoadReport> baselineRoutes = new LinkedHashMap<>();
+        for (RouteLoadReport route : baseline.getRoutes()) {
+            baselineRoutes.put(key(route), route);
+        }
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("对比[%s]和[%s]%n", baseline.getLabel(), current.getLabel()));
+        if (baseline.getRequestsPerSecond() != current.getRequestsPerSecond()) {
+            builder.append(String.format("注意：两次压测的请求速率不同，%d次/秒和%d次/秒%n",
+                    baseline.getRequestsPerSecond(), current.getRequestsPerSecond()));
+        }
+        builder.append(String.format(COMPARE_FORMAT, "Route", "Metric", "Baseline", "Current", "Change"));
+        for (RouteLoadReport route : current.getRoutes()) {
+            String key = key(route);
+            RouteLoadReport old = baselineRoutes.remove(key);
+            if (old == null) {
+                builder.append(String.format(COMPARE_FORMAT, key, "-", "-", "-", "new"));
+                continue;
+            }
+            HistogramSnapshot oldLatency = old.getLatency();
+            HistogramSnapshot latency = route.getLatency();
+            appendChange(builder, key, "p50", oldLatency.getP50(), latency.getP50());
+            appendChange(builder, key, "p99", oldLatency.getP99(), latency.getP99());
+            appendChange(builder, key, "p99.9", oldLatency.getP999(), latency.getP999());
+            builder.append(String.format(COMPARE_FORMAT, key, "errors",
+                    percent(errorRate(old)), percent(errorRate(route)), ""));
+        }
+        for (String key : baselineRoutes.keySet()) {
+            builder.append(String.format(COMPARE_FORMAT, key, "-", "-", "-", "removed"));
+        }
+        return builder.toString();
+    }
+
+    private static void appendChange(StringBuilder builder, String key, String metric, long oldValue, long value) {
+        String change = oldValue == 0 ? "" : String.format("%+.1f%%", (double) (value - oldValue) / oldValue * 100);
+        builder.append(String.format(COMPARE_FORMAT, key, metric, millis(oldValue), millis(value), change));
+    }
+
+    /**
+     * 失败和丢弃的请求占计划请求的比例
+     */
+    private static double errorRate(RouteLoadReport route) {
+        return route.getScheduled() == 0 ? 0 : (double) (route.getErrors() + route.getDropped()) / route.getScheduled();
+    }
+
+    private static String key(RouteLoadReport route) {
+        return route.getHttpMethod() + " " + route.getHttpPath();
+    }
+
+    private static String millis(long micros) {
+        return String.format("%.3f", micros / 1000.0);
+    }
+
+    private static String percent(double rate) {
+        return String.format("%.2f%%", rate * 100);
+    }
+}
@@ -0,0 +1,79 @@
+package com.lee.rokhan.vertx.web.load;
+
+import com.lee.rokhan.container.context.ApplicationContext;
+import com.lee.rokhan.vertx.web.configuration.LoadGeneratorConfiguration;
+import com.lee.rokhan.vertx.web.server.VertxWebServer;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * 在当前进程启动VertxWebServer并压测所有路由，服务和压测的配置都来自classpath中的application.yml
+ * 结果保存为JSON文件，指定了基准结果时输出和基准的对比
+ * 运行：java -cp 应用的classpath [-Dload.label=标识] com.lee.rokhan.vertx.web.load.LoadTest [结果文件] [基准结果文件]
+ * @author lichujun
+ * @date 2019/8/12 16:40
+ */
+@Slf4j
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class LoadTest {
+
+    private static final String DEFAULT_REPORT_FILE = "load-report.json";
+
+    private static final String LABEL_PROPERTY = "load.label";
+
+    /**
+     * 等待服务开始监听端口的最长时间，单位：毫秒
+     */
+    private static final long STARTUP_TIMEOUT = 30000;
+
+    public static void main(String[] args) throws Throwable {
+        String reportFile = args.length > 0 ? args[0] : DEFAULT_REPORT_FILE;
+        String baselineFile = args.length > 1 ? args[1] : null;
+        String label = System.getProperty(LABEL_PROPERTY,
+                new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date()));
+        VertxWebServer server = new VertxWebServer();
+        server.startServer();
+        LoadReport report;
+        try {
+            ApplicationContext applicationContext = server.getApplicationContext();
+            LoadGeneratorConfiguration configuration = (LoadGeneratorConfiguration) applicationContext
+                    .getBean(applicationContext.getBeanNameByType(LoadGeneratorConfiguration.class));
+            int port = server.getVertxWebConfiguration().getPort();
+            awaitListening(configuration.getHost(), port);
+            report = new LoadGenerator(server.getVertxWebContext(), configuration, port).run(label);
+        } finally {
+            server.stopServer();
+        }
+        LoadReports.write(report, reportFile);
+        System.out.println(LoadReports.format(report));
+        log.info("压测结果已保存到{}", reportFile);
+        if (baselineFile != null) {
+            System.out.println(LoadReports.compare(LoadReports.read(baselineFile), report));
+        }
+    }
+
+    /**
+     * verticle异步部署，等到端口可以连接为止
+     */
+    private static void awaitListening(String host, int port) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT;
+        while (true) {
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress(host, port), 1000);
+                return;
+            } catch (IOException e) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new RuntimeException(String.format("等待服务监听%s:%d超时", host, port), e);
+                }
+                Thread.sleep(100);
+            }
+        }
+    }
+}
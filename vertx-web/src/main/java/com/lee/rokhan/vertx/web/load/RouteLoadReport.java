@@ -0,0 +1,60 @@
+package com.lee.rokhan.vertx.web.load;
+
+import com.lee.rokhan.common.metrics.HistogramSnapshot;
+import lombok.Data;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 单个路由的压测结果，只统计预热之后计划发送的请求
+ * @author lichujun
+ * @date 2019/8/12 16:10
+ */
+@Data
+public class RouteLoadReport {
+
+    private String httpMethod;
+
+    private String httpPath;
+
+    /**
+     * 按到达速率计划发送的请求数
+     */
+    private long scheduled;
+
+    /**
+     * 未完成的请求超过上限而没有发送的请求数
+     */
+    private long dropped;
+
+    /**
+     * 收到响应的请求数
+     */
+    private long completed;
+
+    /**
+     * 连接失败或者超时的请求数
+     */
+    private long errors;
+
+    /**
+     * 每秒收到的响应数
+     */
+    private double throughput;
+
+    /**
+     * 响应状态码对应的数量
+     */
+    private Map<Integer, Long> statusCounts = new TreeMap<>();
+
+    /**
+     * 从计划发送的时间到收到响应的耗时，包含请求在客户端排队的时间，修正了协调遗漏，单位：微秒
+     */
+    private HistogramSnapshot latency;
+
+    /**
+     * 从实际发送到收到响应的耗时，单位：微秒
+     */
+    private HistogramSnapshot serviceTime;
+}
@@ -0,0 +1,64 @@
+package com.lee.rokhan.vertx.web.metrics;
+
+import com.lee.rokhan.vertx.web.pojo.PathInfo;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * HTTP请求指标的注册表
+ * 路由的指标在注册路由时获取一次，处理请求时直接记录，不再查找注册表；
+ * 同一个进程中的所有web服务共用，便于统一暴露
+ * @author lichujun
+ * @date 2019/8/12 17:10
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class HttpMetrics {
+
+    private static final Map<PathInfo, RouteMetrics> ROUTE_METRICS = new ConcurrentHashMap<>();
+
+    private static final Map<String, WorkerPoolMetrics> WORKER_POOL_METRICS = new ConcurrentHashMap<>();
+
+    /**
+     * 获取路由的指标，不存在则新建
+     * @param pathInfo 路由
+     * @return 路由的指标
+     */
+    public static RouteMetrics getRouteMetrics(PathInfo pathInfo) {
+        return ROUTE_METRICS.computeIfAbsent(pathInfo,
+                key -> new RouteMetrics(key.getHttpMethod(), key.getHttpPath()));
+    }
+
+    /**
+     * 获取worker线程池的指标，不存在则新建
+     * @param poolName 线程池名称
+     * @return 线程池的指标
+     */
+    public static WorkerPoolMetrics getWorkerPoolMetrics(String poolName) {
+        return WORKER_POOL_METRICS.computeIfAbsent(poolName, WorkerPoolMetrics::new);
+    }
+
+    /**
+     * 获取所有路由的指标，按路径和请求方法排列
+     * @return 路由的指标
+     */
+    public static List<RouteMetrics> getRouteMetrics() {
+        List<RouteMetrics> routeMetrics = new ArrayList<>(ROUTE_METRICS.values());
+        routeMetrics.sort(Comparator.comparing(RouteMetrics::getHttpPath).thenComparing(RouteMetrics::getHttpMethod));
+        return routeMetrics;
+    }
+
+    /**
+     * 获取所有worker线程池的指标
+     * @return 线程池的指标
+     */
+    public static Collection<WorkerPoolMetrics> getWorkerPoolMetrics() {
+        return WORKER_POOL_METRICS.values();
+    }
+}
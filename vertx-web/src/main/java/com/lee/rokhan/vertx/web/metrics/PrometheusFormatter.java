@@ -0,0 +1,179 @@
+package com.lee.rokhan.vertx.web.metrics;
+
+import com.lee.rokhan.common.metrics.LatencyHistogram;
+import com.lee.rokhan.vertx.web.admission.AdmissionController;
+import com.lee.rokhan.vertx.web.admission.Limiter;
+import com.lee.rokhan.vertx.web.admission.RouteAdmission;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 将HTTP请求指标转换成Prometheus的文本格式
+ * 只读取LongAdder和直方图的计数，不加锁，与处理请求并发时同一次导出的数据可能不完全一致
+ * @author lichujun
+ * @date 2019/8/12 17:20
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class PrometheusFormatter {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    /**
+     * 直方图的上界，单位：微秒
+     */
+    private static final long[] BUCKET_BOUNDS = {100, 250, 500, 1000, 2500, 5000, 10000, 25000, 50000,
+            100000, 250000, 500000, 1000000, 2500000, 5000000, 10000000};
+
+    private static final String[] BUCKET_LABELS = new String[BUCKET_BOUNDS.length + 1];
+
+    private static final double MICROS_PER_SECOND = 1000000.0;
+
+    static {
+        for (int i = 0; i < BUCKET_BOUNDS.length; i++) {
+            BUCKET_LABELS[i] = seconds(BUCKET_BOUNDS[i]);
+        }
+        BUCKET_LABELS[BUCKET_BOUNDS.length] = "+Inf";
+    }
+
+    /**
+     * 导出所有路由、worker线程池和准入控制的指标
+     * @param inFlightRequests web服务处理中的请求数量
+     * @param admissionController 准入控制
+     * @return Prometheus的文本格式
+     */
+    public static String format(int inFlightRequests, AdmissionController admissionController) {
+        List<RouteMetrics> routeMetrics = HttpMetrics.getRouteMetrics();
+        StringBuilder builder = new StringBuilder(4096);
+
+        header(builder, "http_server_requests_total", "counter", "按路由和状态码统计的请求数量");
+        for (RouteMetrics route : routeMetrics) {
+            for (Map.Entry<Integer, LongAdder> entry : route.getStatusCounts().entrySet()) {
+                routeLabels(builder.append("http_server_requests_total{"), route)
+                        .append(",status=\"").append(entry.getKey()).append("\"} ")
+                        .append(entry.getValue().sum()).append('\n');
+            }
+        }
+
+        header(builder, "http_server_requests_in_flight", "gauge", "按路由统计的处理中的请求数量");
+        for (RouteMetrics route : routeMetrics) {
+            routeLabels(builder.append("http_server_requests_in_flight{"), route)
+                    .append("} ").append(route.getInFlight()).append('\n');
+        }
+
+        header(builder, "http_server_request_duration_seconds", "histogram", "按路由统计的各阶段耗时");
+        for (RouteMetrics route : routeMetrics) {
+            for (RequestPhase phase : RequestPhase.values()) {
+                histogram(builder, route, phase);
+            }
+        }
+
+        header(builder, "http_server_worker_pool_requests", "gauge", "按worker线程池统计的排队中和处理中的请求数量");
+        for (WorkerPoolMetrics pool : HttpMetrics.getWorkerPoolMetrics()) {
+            poolLine(builder, pool, "queued", pool.getQueued());
+            poolLine(builder, pool, "executing", pool.getExecuting());
+        }
+
+        header(builder, "http_server_in_flight_requests", "gauge", "web服务处理中的请求数量");
+        builder.append("http_server_in_flight_requests ").append(inFlightRequests).append('\n');
+        admission(builder, admissionController);
+        return builder.toString();
+    }
+
+    private static void admission(StringBuilder builder, AdmissionController admissionController) {
+        List<RouteAdmission> routeAdmissions = admissionController.getRouteAdmissions();
+        Limiter globalLimiter = admissionController.getGlobalLimiter();
+
+        header(builder, "http_server_admission_limit", "gauge", "全局的并发限制");
+        builder.append("http_server_admission_limit ").append(globalLimiter.getLimit()).append('\n');
+        header(builder, "http_server_admission_in_flight", "gauge", "全局发送到event bus、还没有收到回复的请求数量");
+        builder.append("http_server_admission_in_flight ").append(globalLimiter.getInFlight()).append('\n');
+
+        header(builder, "http_server_route_admission_limit", "gauge", "按路由统计的并发限制");
+        for (RouteAdmission route : routeAdmissions) {
+            admissionLabels(builder.append("http_server_route_admission_limit{"), route)
+                    .append("} ").append(route.getLimiter().getLimit()).append('\n');
+        }
+        header(builder, "http_server_route_admission_in_flight", "gauge",
+                "按路由统计的发送到event bus、还没有收到回复的请求数量");
+        for (RouteAdmission route : routeAdmissions) {
+            admissionLabels(builder.append("http_server_route_admission_in_flight{"), route)
+                    .append("} ").append(route.getLimiter().getInFlight()).append('\n');
+        }
+        header(builder, "http_server_admission_rejected_total", "counter", "按路由统计的超出并发限制被拒绝的请求数量");
+        for (RouteAdmission route : routeAdmissions) {
+            admissionLabels(builder.append("http_server_admission_rejected_total{"), route)
+                    .append("} ").append(route.getRejected()).append('\n');
+        }
+    }
+
+    private static void histogram(StringBuilder builder, RouteMetrics route, RequestPhase phase) {
+        LatencyHistogram histogram = route.getPhase(phase);
+        long[] cumulativeCounts = histogram.getCumulativeCounts(BUCKET_BOUNDS);
+        long count = cumulativeCounts[BUCKET_BOUNDS.length];
+        if (count == 0) {
+            return;
+        }
+        for (int i = 0; i < cumulativeCounts.length; i++) {
+            phaseLabels(builder.append("http_server_request_duration_seconds_bucket{"), route, phase)
+                    .append(",le=\"").append(BUCKET_LABELS[i]).append("\"} ")
+                    .append(cumulativeCounts[i]).append('\n');
+        }
+        phaseLabels(builder.append("http_server_request_duration_seconds_sum{"), route, phase)
+                .append("} ").append(seconds(histogram.getSum())).append('\n');
+        phaseLabels(builder.append("http_server_request_duration_seconds_count{"), route, phase)
+                .append("} ").append(count).append('\n');
+    }
+
+    private static void poolLine(StringBuilder builder, WorkerPoolMetrics pool, String state, long value) {
+        builder.append("http_server_worker_pool_requests{pool=\"");
+        escape(builder, pool.getPoolName()).append("\",state=\"").append(state).append("\"} ")
+                .append(value).append('\n');
+    }
+
+    private static void header(StringBuilder builder, String name, String type, String help) {
+        builder.append("# HELP ").append(name).append(' ').append(help).append('\n')
+                .append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static StringBuilder routeLabels(StringBuilder builder, RouteMetrics route) {
+        builder.append("method=\"");
+        escape(builder, route.getHttpMethod()).append("\",route=\"");
+        return escape(builder, route.getHttpPath()).append('"');
+    }
+
+    private static StringBuilder admissionLabels(StringBuilder builder, RouteAdmission route) {
+        builder.append("method=\"");
+        escape(builder, route.getHttpMethod()).append("\",route=\"");
+        return escape(builder, route.getHttpPath()).append("\",priority=\"")
+                .append(route.getPriority().name().toLowerCase()).append('"');
+    }
+
+    private static StringBuilder phaseLabels(StringBuilder builder, RouteMetrics route, RequestPhase phase) {
+        return routeLabels(builder, route).append(",phase=\"").append(phase.getLabel()).append('"');
+    }
+
+    /**
+     * 标签值中的反斜杠、双引号和换行需要转义
+     */
+    private static StringBuilder escape(StringBuilder builder, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' || c == '"') {
+                builder.append('\\').append(c);
+            } else if (c == '\n') {
+                builder.append("\\n");
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder;
+    }
+
+    private static String seconds(long micros) {
+        return Double.toString(micros / MICROS_PER_SECOND);
+    }
+}
@@ -0,0 +1,24 @@
+package com.lee.rokhan.vertx.web.metrics;
+
+/**
+ * 请求处理的阶段
+ * TOTAL：event loop接收请求到响应结束；BIND：event loop解析请求参数；
+ * QUEUE：发送到event bus到worker开始处理；INVOKE：worker执行拦截器和controller，异步返回时到完成为止；
+ * SERIALIZE：event loop将controller的返回值序列化为JSON
+ * @author lichujun
+ * @date 2019/8/12 17:00
+ */
+public enum RequestPhase {
+    // 请求处理的阶段枚举
+    TOTAL, BIND, QUEUE, INVOKE, SERIALIZE, ;
+
+    private final String label = name().toLowerCase();
+
+    /**
+     * 导出指标时的标签值
+     * @return 小写的阶段名称
+     */
+    public String getLabel() {
+        return label;
+    }
+}
@@ -0,0 +1,104 @@
+package com.lee.rokhan.vertx.web.metrics;
+
+import com.lee.rokhan.common.metrics.LatencyHistogram;
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个路由的请求指标，线程安全
+ * 计数使用LongAdder，多个event loop和worker线程同时记录时分散到不同的单元，不竞争同一个变量；
+ * 各阶段的耗时以微秒记录在HDR直方图中
+ * @author lichujun
+ * @date 2019/8/12 17:00
+ */
+public class RouteMetrics {
+
+    @Getter
+    private final String httpMethod;
+
+    @Getter
+    private final String httpPath;
+
+    private final LatencyHistogram[] phases = new LatencyHistogram[RequestPhase.values().length];
+
+    /**
+     * 响应状态码对应的请求数量
+     */
+    private final Map<Integer, LongAdder> statusCounts = new ConcurrentHashMap<>();
+
+    /**
+     * 处理中的请求数量
+     */
+    private final LongAdder inFlight = new LongAdder();
+
+    RouteMetrics(String httpMethod, String httpPath) {
+        this.httpMethod = httpMethod;
+        this.httpPath = httpPath;
+        for (int i = 0; i < phases.length; i++) {
+            phases[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * event loop开始处理请求
+     * @return 开始时间，响应结束时传给complete，单位：纳秒
+     */
+    public long start() {
+        inFlight.increment();
+        return System.nanoTime();
+    }
+
+    /**
+     * 响应结束，每个start必须调用一次
+     * @param status 响应的状态码
+     * @param startNanos start返回的开始时间，单位：纳秒
+     */
+    public void complete(int status, long startNanos) {
+        record(RequestPhase.TOTAL, System.nanoTime() - startNanos);
+        LongAdder count = statusCounts.get(status);
+        if (count == null) {
+            count = statusCounts.computeIfAbsent(status, key -> new LongAdder());
+        }
+        count.increment();
+        inFlight.decrement();
+    }
+
+    /**
+     * 记录一个阶段的耗时
+     * @param phase 阶段
+     * @param elapsedNanos 耗时，单位：纳秒
+     */
+    public void record(RequestPhase phase, long elapsedNanos) {
+        phases[phase.ordinal()].record(TimeUnit.NANOSECONDS.toMicros(elapsedNanos));
+    }
+
+    /**
+     * 获取阶段的耗时直方图，单位：微秒
+     * @param phase 阶段
+     * @return 耗时直方图
+     */
+    public LatencyHistogram getPhase(RequestPhase phase) {
+        return phases[phase.ordinal()];
+    }
+
+    /**
+     * 获取各状态码的请求数量
+     * @return 状态码对应的请求数量，只读
+     */
+    public Map<Integer, LongAdder> getStatusCounts() {
+        return Collections.unmodifiableMap(statusCounts);
+    }
+
+    /**
+     * 获取处理中的请求数量
+     * @return 处理中的请求数量
+     */
+    public long getInFlight() {
+        return inFlight.sum();
+    }
+}
@@ -0,0 +1,70 @@
+package com.lee.rokhan.vertx.web.metrics;
+
+import lombok.Getter;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个worker线程池的请求数量，线程安全
+ * event loop发送到event bus时dispatched加一，收到回复或者失败时减一；worker开始处理时executing加一，回复时减一。
+ * 排队中的请求数量由两者相减得到，消息发送失败时不会漏减
+ * @author lichujun
+ * @date 2019/8/12 17:00
+ */
+public class WorkerPoolMetrics {
+
+    @Getter
+    private final String poolName;
+
+    private final LongAdder dispatched = new LongAdder();
+
+    private final LongAdder executing = new LongAdder();
+
+    WorkerPoolMetrics(String poolName) {
+        this.poolName = poolName;
+    }
+
+    /**
+     * event loop将请求发送到event bus
+     */
+    public void dispatched() {
+        dispatched.increment();
+    }
+
+    /**
+     * event loop收到worker的回复或者发送失败
+     */
+    public void replied() {
+        dispatched.decrement();
+    }
+
+    /**
+     * worker开始处理请求
+     */
+    public void executionStarted() {
+        executing.increment();
+    }
+
+    /**
+     * worker回复请求
+     */
+    public void executionCompleted() {
+        executing.decrement();
+    }
+
+    /**
+     * 获取worker正在处理的请求数量
+     * @return 正在处理的请求数量
+     */
+    public long getExecuting() {
+        return Math.max(executing.sum(), 0);
+    }
+
+    /**
+     * 获取在event bus中排队、还没有被worker处理的请求数量
+     * @return 排队中的请求数量
+     */
+    public long getQueued() {
+        return Math.max(dispatched.sum() - executing.sum(), 0);
+    }
+}
@@ -0,0 +1,25 @@
+package com.lee.rokhan.vertx.web.pojo;
+
+/**
+ * 路由的优先级，全局并发接近限制时先拒绝低优先级的请求
+ * @author lichujun
+ * @date 2019/8/12 18:20
+ */
+public enum RequestPriority {
+    // 可以使用全部、90%、50%的全局并发限制
+    HIGH(1.0), NORMAL(0.9), LOW(0.5), ;
+
+    private final double share;
+
+    RequestPriority(double share) {
+        this.share = share;
+    }
+
+    /**
+     * 可以使用的全局并发限制的比例
+     * @return 比例
+     */
+    public double getShare() {
+        return share;
+    }
+}
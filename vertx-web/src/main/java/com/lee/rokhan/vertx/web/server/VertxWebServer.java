@@ -2,23 +2,45 @@ package com.lee.rokhan.vertx.web.server;
 
 import com.lee.rokhan.container.context.ApplicationContext;
 import com.lee.rokhan.container.context.impl.AnnotationApplicationContext;
+import com.lee.rokhan.vertx.web.admission.AdmissionController;
 import com.lee.rokhan.vertx.web.codec.HttpRequest;
 import com.lee.rokhan.vertx.web.codec.HttpRequestCodec;
 import com.lee.rokhan.vertx.web.codec.HttpResponse;
 import com.lee.rokhan.vertx.web.codec.HttpResponseCodec;
+import com.lee.rokhan.vertx.web.configuration.AdmissionConfiguration;
+import com.lee.rokhan.vertx.web.configuration.VertxWebConfiguration;
 import com.lee.rokhan.vertx.web.context.VertxWebContext;
 import com.lee.rokhan.vertx.web.verticle.EventLoopVerticle;
 import com.lee.rokhan.vertx.web.verticle.WorkVerticle;
 import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Vertx;
+import lombok.extern.slf4j.Slf4j;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * @author lichujun
  * @date 2019/7/9 10:56
  */
+@Slf4j
 public class VertxWebServer implements WebServer {
 
+    /**
+     * 关闭Vert.x的最长等待时间，单位：毫秒
+     */
+    private static final long VERTX_CLOSE_TIMEOUT = 5000;
+
+    private final AtomicBoolean stopped = new AtomicBoolean();
+
+    private volatile Vertx vertx;
+
+    private volatile ApplicationContext applicationContext;
+
+    private volatile VertxWebContext vertxWebContext;
+
+    private volatile VertxWebConfiguration vertxWebConfiguration;
+
     @Override
     public void startServer() throws Throwable {
         Vertx vertx = Vertx.vertx();
@@ -30,25 +52,95 @@ public class VertxWebServer implements WebServer {
         ApplicationContext applicationContext = new AnnotationApplicationContext();
 
         VertxWebContext vertxWebContext = (VertxWebContext) applicationContext.getBean("vertxWebContext");
-        
+        VertxWebConfiguration vertxWebConfiguration = (VertxWebConfiguration) applicationContext
+                .getBean(applicationContext.getBeanNameByType(VertxWebConfiguration.class));
+        AdmissionConfiguration admissionConfiguration = (AdmissionConfiguration) applicationContext
+                .getBean(applicationContext.getBeanNameByType(AdmissionConfiguration.class));
+        // 所有event loop共用准入控制
+        AdmissionController admissionController = new AdmissionController(admissionConfiguration);
+
+        this.vertx = vertx;
+        this.applicationContext = applicationContext;
+        this.vertxWebContext = vertxWebContext;
+        this.vertxWebConfiguration = vertxWebConfiguration;
+        // JVM退出时优雅关闭
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                stopServer();
+            } catch (Throwable e) {
+                log.error("关闭服务发生异常", e);
+            }
+        }, "web-server-shutdown"));
 
         // 启动work-verticle线程组
-        for (int i = 0; i < 16; i++) {
+        for (int i = 0; i < vertxWebConfiguration.getWorkerSize(); i++) {
             WorkVerticle workVerticle = new WorkVerticle(applicationContext, vertxWebContext);
             vertx.deployVerticle(workVerticle, new DeploymentOptions()
                     .setWorker(true)
-                    .setWorkerPoolName("work-pool")
+                    .setWorkerPoolName(WorkVerticle.WORKER_POOL_NAME)
                     .setMaxWorkerExecuteTimeUnit(TimeUnit.SECONDS)
-                    .setMaxWorkerExecuteTime(20));
+                    .setMaxWorkerExecuteTime(vertxWebConfiguration.getMaxWorkerExecuteTime()));
         }
 
         // 启动event loop线程组
-        for (int i = 0; i < 4; i++) {
-            EventLoopVerticle eventLoopVerticle = new EventLoopVerticle(vertxWebContext);
+        for (int i = 0; i < vertxWebConfiguration.getEventLoopSize(); i++) {
+            EventLoopVerticle eventLoopVerticle = new EventLoopVerticle(vertxWebContext, vertxWebConfiguration,
+                    admissionController);
             vertx.deployVerticle(eventLoopVerticle);
         }
     }
 
+    /**
+     * 1、停止接收新请求，新请求返回503并关闭连接；
+     * 2、等待处理中的请求完成，最多等待shutdownTimeout毫秒；
+     * 3、关闭Vert.x（关闭端口和所有verticle）；
+     * 4、关闭应用上下文，按依赖关系的逆序销毁Bean
+     */
+    @Override
+    public void stopServer() throws Throwable {
+        if (vertx == null || !stopped.compareAndSet(false, true)) {
+            return;
+        }
+        long shutdownTimeout = vertxWebConfiguration.getShutdownTimeout();
+        log.info("开始关闭服务，等待{}个处理中的请求完成", vertxWebContext.getInFlightRequests());
+        if (vertxWebContext.drain(shutdownTimeout)) {
+            log.info("处理中的请求已全部完成");
+        } else {
+            log.warn("等待{}ms后仍有{}个请求未完成，强制关闭", shutdownTimeout, vertxWebContext.getInFlightRequests());
+        }
+        CountDownLatch vertxClosed = new CountDownLatch(1);
+        vertx.close(res -> vertxClosed.countDown());
+        if (!vertxClosed.await(VERTX_CLOSE_TIMEOUT, TimeUnit.MILLISECONDS)) {
+            log.warn("关闭Vert.x超过{}ms，不再等待", VERTX_CLOSE_TIMEOUT);
+        }
+        applicationContext.close();
+        log.info("服务已关闭");
+    }
+
+    /**
+     * 获取应用上下文，服务启动后才有值
+     * @return 应用上下文
+     */
+    public ApplicationContext getApplicationContext() {
+        return applicationContext;
+    }
+
+    /**
+     * 获取web上下文，服务启动后才有值
+     * @return web上下文
+     */
+    public VertxWebContext getVertxWebContext() {
+        return vertxWebContext;
+    }
+
+    /**
+     * 获取web服务的配置，服务启动后才有值
+     * @return web服务的配置
+     */
+    public VertxWebConfiguration getVertxWebConfiguration() {
+        return vertxWebConfiguration;
+    }
+
     public static void main(String[] args) throws Throwable {
         new VertxWebServer().startServer();
     }
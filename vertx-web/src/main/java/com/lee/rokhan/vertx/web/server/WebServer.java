@@ -8,4 +8,10 @@ package com.lee.rokhan.vertx.web.server;
 public interface WebServer {
 
     void startServer() throws Throwable;
+
+    /**
+     * 优雅关闭：停止接收新请求，等待处理中的请求完成（不超过配置的超时时间），再关闭应用上下文
+     * @throws Throwable 异常
+     */
+    void stopServer() throws Throwable;
 }
@@ -1,9 +1,18 @@
 package com.lee.rokhan.vertx.web.verticle;
 
 import com.alibaba.fastjson.JSON;
+import com.lee.rokhan.vertx.web.admission.AdmissionController;
+import com.lee.rokhan.vertx.web.admission.RouteAdmission;
+import com.lee.rokhan.vertx.web.annotation.RequestMapping;
 import com.lee.rokhan.vertx.web.codec.HttpRequest;
+import com.lee.rokhan.vertx.web.configuration.VertxWebConfiguration;
 import com.lee.rokhan.vertx.web.codec.HttpResponse;
 import com.lee.rokhan.vertx.web.context.VertxWebContext;
+import com.lee.rokhan.vertx.web.metrics.HttpMetrics;
+import com.lee.rokhan.vertx.web.metrics.PrometheusFormatter;
+import com.lee.rokhan.vertx.web.metrics.RequestPhase;
+import com.lee.rokhan.vertx.web.metrics.RouteMetrics;
+import com.lee.rokhan.vertx.web.metrics.WorkerPoolMetrics;
 import com.lee.rokhan.vertx.web.pojo.*;
 import com.lee.rokhan.vertx.web.utils.AsyncResultUtils;
 import com.lee.rokhan.vertx.web.utils.ParseParamUtils;
@@ -12,7 +21,10 @@ import io.netty.handler.codec.http.HttpResponseStatus;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.MultiMap;
 import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.DeliveryOptions;
 import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.eventbus.ReplyFailure;
 import io.vertx.core.http.HttpServerOptions;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
@@ -22,6 +34,8 @@ import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.collections4.MapUtils;
 import org.apache.commons.lang3.StringUtils;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * event loop
@@ -34,14 +48,40 @@ public class EventLoopVerticle extends AbstractVerticle {
 
     private VertxWebContext vertxWebContext;
 
-    public EventLoopVerticle(VertxWebContext vertxWebContext) {
+    private VertxWebConfiguration vertxWebConfiguration;
+
+    private AdmissionController admissionController;
+
+    /**
+     * 发送到event bus的选项，设置等待回复的超时时间
+     */
+    private final DeliveryOptions deliveryOptions;
+
+    private final long sendTimeout;
+
+    private final long sendTimeoutNanos;
+
+    private final String retryAfter;
+
+    private final WorkerPoolMetrics workerPoolMetrics = HttpMetrics.getWorkerPoolMetrics(WorkVerticle.WORKER_POOL_NAME);
+
+    public EventLoopVerticle(VertxWebContext vertxWebContext, VertxWebConfiguration vertxWebConfiguration,
+                             AdmissionController admissionController) {
         this.router = Router.router(vertx);
         this.vertxWebContext = vertxWebContext;
+        this.vertxWebConfiguration = vertxWebConfiguration;
+        this.admissionController = admissionController;
+        this.sendTimeout = admissionController.getConfiguration().getSendTimeout();
+        this.deliveryOptions = new DeliveryOptions().setSendTimeout(sendTimeout);
+        this.sendTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeout);
+        this.retryAfter = String.valueOf(admissionController.getConfiguration().getRetryAfter());
     }
 
 
     @Override
     public void start() {
+        // 导出请求指标，先于Controller的路由注册
+        routeMetrics();
         // 路由请求
         vertxWebContext.routeMessage(this);
 
@@ -52,7 +92,7 @@ public class EventLoopVerticle extends AbstractVerticle {
                 .setTcpKeepAlive(true)
                 .setReuseAddress(true))
                 .requestHandler(router)
-                .listen(9000);
+                .listen(vertxWebConfiguration.getPort());
     }
 
     /**
@@ -67,10 +107,33 @@ public class EventLoopVerticle extends AbstractVerticle {
     }
 
     /**
-     * 404请求
+     * 运行期间添加路由，在该verticle的event loop线程中执行
+     * @param pathControllerMap 新的路由
+     */
+    public void addRoute(Map<PathInfo, ControllerInfo> pathControllerMap) {
+        context.runOnContext(v -> pathControllerMap.forEach(this::routeReq));
+    }
+
+    /**
+     * 在event loop中直接导出Prometheus格式的请求指标，不经过event bus
+     */
+    private void routeMetrics() {
+        String metricsPath = vertxWebConfiguration.getMetricsPath();
+        if (StringUtils.isBlank(metricsPath)) {
+            return;
+        }
+        router.get(metricsPath)
+                .handler(rc -> rc.response()
+                        .putHeader("Content-type", PrometheusFormatter.CONTENT_TYPE)
+                        .end(PrometheusFormatter.format(vertxWebContext.getInFlightRequests(), admissionController)));
+    }
+
+    /**
+     * 404请求，始终排在最后，运行期间添加的路由也会先于它匹配
      */
     public void routeNotFound() {
         router.route()
+                .last()
                 // 跨域
                 .handler(CorsHandler.create("*").allowedMethod(io.vertx.core.http.HttpMethod.POST))
                 .handler(CorsHandler.create("*").allowedMethod(io.vertx.core.http.HttpMethod.GET))
@@ -83,11 +146,12 @@ public class EventLoopVerticle extends AbstractVerticle {
      * 路由GET请求
      */
     private void routeGetReq(PathInfo pathInfo, ControllerInfo controllerInfo) {
+        RouteHandle route = new RouteHandle(pathInfo, controllerInfo);
         router.get(pathInfo.getHttpPath())
                 // 跨域
                 .handler(CorsHandler.create("*").allowedMethod(io.vertx.core.http.HttpMethod.GET))
                 .handler(rc ->
-                    processRoute(pathInfo, controllerInfo, rc, RequestMethod.GET)
+                    handleRoute(route, rc, RequestMethod.GET)
                 );
     }
 
@@ -95,55 +159,146 @@ public class EventLoopVerticle extends AbstractVerticle {
      * 路由POST请求
      */
     private void routePostReq(PathInfo pathInfo, ControllerInfo controllerInfo) {
+        RouteHandle route = new RouteHandle(pathInfo, controllerInfo);
         router.post(pathInfo.getHttpPath())
                 // 跨域
                 .handler(CorsHandler.create("*").allowedMethod(io.vertx.core.http.HttpMethod.POST))
                 // 为获取post请求的body，必须要加
                 .handler(BodyHandler.create())
                 .handler(rc ->
-                        processRoute(pathInfo, controllerInfo, rc, RequestMethod.POST)
+                        handleRoute(route, rc, RequestMethod.POST)
                 );
     }
 
     /**
-     * EventBus发送消息
+     * EventBus发送消息，超过sendTimeout没有回复时返回503
+     * 超时的请求继续占用并发限制，直到worker处理完或者丢弃它，见{@link AdmissionPermit}
+     * controller返回Stream或者游标时流式写入响应，写完后才释放请求
      */
-    private void sendMessage(EventBus eb, String path, Object msg, RoutingContext rc) {
-        eb.send(path, msg, res -> {
+    private void sendMessage(EventBus eb, RouteHandle route, HttpRequest msg, RoutingContext rc, long startNanos) {
+        RouteMetrics routeMetrics = route.metrics;
+        workerPoolMetrics.dispatched();
+        long sendTime = System.nanoTime();
+        AdmissionPermit permit = new AdmissionPermit(route.admission, sendTime);
+        msg.setSendTime(sendTime);
+        msg.setDeadline(sendTime + sendTimeoutNanos);
+        msg.setCompletionHandler(permit);
+        eb.send(route.address, msg, deliveryOptions, res -> {
+            workerPoolMetrics.replied();
+            long elapsedNanos = System.nanoTime() - sendTime;
+            if (res.failed()) {
+                boolean timeout = res.cause() instanceof ReplyException
+                        && ((ReplyException) res.cause()).failureType() == ReplyFailure.TIMEOUT;
+                if (timeout) {
+                    permit.timeout();
+                } else {
+                    permit.replied(elapsedNanos, 0);
+                }
+                vertxWebContext.releaseRequest();
+                if (timeout) {
+                    reject(rc, routeMetrics, startNanos);
+                } else {
+                    endWithStatus(rc, HttpResponseStatus.INTERNAL_SERVER_ERROR, routeMetrics, startNanos);
+                }
+                return;
+            }
             HttpResponse httpResponse = AsyncResultUtils.transResponse(res);
+            permit.replied(elapsedNanos, httpResponse.getQueueTime());
+            if (HttpResponseStatus.OK.equals(httpResponse.getStatus())
+                    && StreamingResponseWriter.isStreaming(httpResponse.getResponse())) {
+                StreamingResponseWriter.write(vertx, rc.response(), httpResponse.getResponse(), () -> {
+                    routeMetrics.complete(HttpResponseStatus.OK.code(), startNanos);
+                    vertxWebContext.releaseRequest();
+                });
+                return;
+            }
+            vertxWebContext.releaseRequest();
             if (HttpResponseStatus.OK.equals(httpResponse.getStatus())) {
+                long serializeStart = System.nanoTime();
+                Buffer body = Buffer.buffer(JSON.toJSONBytes(httpResponse.getResponse()));
+                routeMetrics.record(RequestPhase.SERIALIZE, System.nanoTime() - serializeStart);
                 rc.response()
                         .putHeader("Content-type", "text/plain;charset=UTF-8")
-                        .end(Buffer.buffer(JSON.toJSONBytes(httpResponse.getResponse())))
+                        .end(body)
                         ;
+                routeMetrics.complete(HttpResponseStatus.OK.code(), startNanos);
             } else {
                 HttpResponseStatus status = httpResponse.getStatus();
                 if (status == null) {
                     status = HttpResponseStatus.INTERNAL_SERVER_ERROR;
                 }
-                rc.response()
-                        .setStatusCode(status.code())
-                        .end();
+                endWithStatus(rc, status, routeMetrics, startNanos);
             }
         });
     }
 
+    /**
+     * 超出并发限制或者等待回复超时，返回503，客户端在Retry-After秒后重试
+     */
+    private void reject(RoutingContext rc, RouteMetrics routeMetrics, long startNanos) {
+        rc.response().putHeader("Retry-After", retryAfter);
+        endWithStatus(rc, HttpResponseStatus.SERVICE_UNAVAILABLE, routeMetrics, startNanos);
+    }
+
+    /**
+     * 返回没有内容的响应并记录状态码
+     */
+    private void endWithStatus(RoutingContext rc, HttpResponseStatus status,
+                               RouteMetrics routeMetrics, long startNanos) {
+        rc.response()
+                .setStatusCode(status.code())
+                .end();
+        routeMetrics.complete(status.code(), startNanos);
+    }
+
+    /**
+     * 记录处理中的请求，正在关闭时返回503并关闭连接；超出并发限制时在解析参数之前返回503
+     */
+    private void handleRoute(RouteHandle route, RoutingContext rc, RequestMethod requestMethod) {
+        RouteMetrics routeMetrics = route.metrics;
+        long startNanos = routeMetrics.start();
+        if (!vertxWebContext.tryAcquireRequest()) {
+            rc.response().putHeader("Connection", "close");
+            endWithStatus(rc, HttpResponseStatus.SERVICE_UNAVAILABLE, routeMetrics, startNanos);
+            return;
+        }
+        if (!route.admission.tryAcquire()) {
+            vertxWebContext.releaseRequest();
+            reject(rc, routeMetrics, startNanos);
+            return;
+        }
+        boolean sent = false;
+        try {
+            sent = processRoute(route, startNanos, rc, requestMethod);
+        } catch (RuntimeException e) {
+            // 解析参数失败时由vert.x返回500，这里只记录状态码
+            routeMetrics.complete(HttpResponseStatus.INTERNAL_SERVER_ERROR.code(), startNanos);
+            throw e;
+        } finally {
+            // 已经发送到event bus的请求在收到响应时释放
+            if (!sent) {
+                route.admission.cancel();
+                vertxWebContext.releaseRequest();
+            }
+        }
+    }
+
     /**
      * 进行请求解析参数和分发请求
+     * @return 是否已经发送到event bus
      */
-    private void processRoute(PathInfo pathInfo, ControllerInfo controllerInfo,
-                       RoutingContext rc, RequestMethod requestMethod) {
+    private boolean processRoute(RouteHandle route, long startNanos, RoutingContext rc, RequestMethod requestMethod) {
         EventBus eb = vertx.eventBus();
-        // event bus传递消息的路径
-        String path = pathInfo.getHttpMethod() + pathInfo.getHttpPath();
-        MethodParamsWithHeaders methodParamsWithHeaders = controllerInfo.getMethodParamsWithHeaders();
+        RouteMetrics routeMetrics = route.metrics;
+        MethodParamsWithHeaders methodParamsWithHeaders = route.controllerInfo.getMethodParamsWithHeaders();
         Map<String, MethodParam> paramMap = methodParamsWithHeaders.getMethodParameter();
         // 获取headers
         MultiMap headers = rc.request().headers();
         // 入参为空，则无需解析请求参数
         if (MapUtils.isEmpty(paramMap)) {
-            sendMessage(eb, path, new HttpRequest(null, headers), rc);
-            return;
+            routeMetrics.record(RequestPhase.BIND, System.nanoTime() - startNanos);
+            sendMessage(eb, route, new HttpRequest(null, headers), rc, startNanos);
+            return true;
         }
         final Map<String, String> params = new HashMap<>();
         List<Object> paramList = null;
@@ -180,14 +335,120 @@ public class EventLoopVerticle extends AbstractVerticle {
                 paramList = ParseParamUtils.parse(methodParamsWithHeaders.getMethodParameter(), params);
             }
         }
+        routeMetrics.record(RequestPhase.BIND, System.nanoTime() - startNanos);
         if (CollectionUtils.isEmpty(paramList)) {
-            rc.response()
-                    .setStatusCode(HttpResponseStatus.BAD_REQUEST.code())
-                    .end();
-            return;
+            endWithStatus(rc, HttpResponseStatus.BAD_REQUEST, routeMetrics, startNanos);
+            return false;
         }
         HttpRequest httpRequest = new HttpRequest(paramList, headers);
-        sendMessage(eb, path, httpRequest, rc);
+        sendMessage(eb, route, httpRequest, rc, startNanos);
+        return true;
+    }
+
+    /**
+     * 已发送到event bus的请求占用的路由和全局并发限制，只释放一次
+     * 收到回复时立即释放；等待回复超时时worker可能还在排队或者处理，立即释放会低估处理中的请求数量，
+     * 让更多请求进入已经处理不过来的worker，所以继续占用到worker处理完或者丢弃过期的请求后通知。
+     * 其他节点上的worker收到的是解码后的请求，无法通知，超时后最多再等待一个sendTimeout就释放，
+     * 低估的只有超过两倍sendTimeout仍未结束的请求
+     */
+    private final class AdmissionPermit implements Runnable {
+
+        private final RouteAdmission admission;
+
+        private final long sendTime;
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        /**
+         * worker是否已经处理完或者丢弃请求，在worker线程中设置
+         */
+        private volatile boolean workerDone;
+
+        /**
+         * 是否等待回复超时，在event loop线程中设置
+         */
+        private volatile boolean timedOut;
+
+        /**
+         * 超时后兜底释放的定时器，只在event loop线程中访问
+         */
+        private long timerId = -1;
+
+        private AdmissionPermit(RouteAdmission admission, long sendTime) {
+            this.admission = admission;
+            this.sendTime = sendTime;
+        }
+
+        /**
+         * 收到worker的回复或者发送失败，在event loop线程中调用
+         */
+        private void replied(long elapsedNanos, long queueNanos) {
+            if (released.compareAndSet(false, true)) {
+                admission.release(elapsedNanos, queueNanos, false);
+            }
+        }
+
+        /**
+         * 等待回复超时，在event loop线程中调用
+         */
+        private void timeout() {
+            timedOut = true;
+            if (workerDone) {
+                releaseDropped();
+            } else {
+                timerId = vertx.setTimer(sendTimeout, id -> releaseDropped());
+            }
+        }
+
+        /**
+         * worker处理完或者丢弃请求，在worker线程或者controller异步完成的线程中调用
+         */
+        @Override
+        public void run() {
+            workerDone = true;
+            // 与timeout()各自先写后读volatile变量，至少有一方能看到对方，重复释放由released保证只执行一次
+            if (timedOut) {
+                context.runOnContext(v -> releaseDropped());
+            }
+        }
+
+        private void releaseDropped() {
+            if (timerId != -1) {
+                vertx.cancelTimer(timerId);
+                timerId = -1;
+            }
+            if (released.compareAndSet(false, true)) {
+                admission.release(System.nanoTime() - sendTime, 0, true);
+            }
+        }
     }
 
+    /**
+     * 注册路由时确定的信息，处理请求时不再查找
+     */
+    private class RouteHandle {
+
+        private final ControllerInfo controllerInfo;
+
+        /**
+         * event bus传递消息的路径
+         */
+        private final String address;
+
+        private final RouteMetrics metrics;
+
+        private final RouteAdmission admission;
+
+        private RouteHandle(PathInfo pathInfo, ControllerInfo controllerInfo) {
+            this.controllerInfo = controllerInfo;
+            this.address = pathInfo.getHttpMethod() + pathInfo.getHttpPath();
+            this.metrics = HttpMetrics.getRouteMetrics(pathInfo);
+            RequestPriority priority = Optional.ofNullable(controllerInfo.getInvokeMethod())
+                    .map(it -> it.getDeclaredAnnotation(RequestMapping.class))
+                    .map(RequestMapping::priority)
+                    .orElse(RequestPriority.NORMAL);
+            this.admission = admissionController.getRouteAdmission(pathInfo, priority);
+        }
+    }
 }
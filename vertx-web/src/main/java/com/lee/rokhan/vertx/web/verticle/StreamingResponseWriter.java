@@ -0,0 +1,215 @@
+package com.lee.rokhan.vertx.web.verticle;
+
+import com.alibaba.fastjson.JSON;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerResponse;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * 流式响应
+ * controller返回Stream或者可关闭的Iterable（例如数据库游标）时，不在内存中生成完整的响应：
+ * 在worker线程中每次读取约64KB的数据并序列化为JSON数组的一段，在event loop中分块写入HTTP响应；
+ * 写队列满时等待客户端读取后再读取下一段，写完、出错或者客户端断开时关闭数据源
+ * @author lichujun
+ * @date 2019/8/7 17:00
+ */
+@Slf4j
+final class StreamingResponseWriter {
+
+    /**
+     * 每一段的大小，超过该值后写入响应
+     */
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private static final byte[] ARRAY_START = {'['};
+
+    private static final byte[] ARRAY_END = {']'};
+
+    private static final byte[] SEPARATOR = {','};
+
+    private final Vertx vertx;
+
+    private final HttpServerResponse response;
+
+    private final AutoCloseable source;
+
+    private final Iterator<?> iterator;
+
+    /**
+     * 响应结束时的回调
+     */
+    private final Runnable endHandler;
+
+    /**
+     * 以下两个状态在worker线程中读取数据时访问，相邻两次读取通过event loop串行，不会并发
+     */
+    private boolean first = true;
+
+    private boolean exhausted;
+
+    /**
+     * 以下状态只在event loop线程中访问
+     */
+    private boolean written;
+
+    /**
+     * 是否正在worker线程中读取数据，读取中不能关闭数据源，等读取结束后再关闭
+     */
+    private boolean reading;
+
+    private boolean sourceClosed;
+
+    /**
+     * 响应是否已经结束（写完、出错或者客户端断开），worker线程读取数据时检查，提前结束读取
+     */
+    private volatile boolean ended;
+
+    private StreamingResponseWriter(Vertx vertx, HttpServerResponse response, Object body, Runnable endHandler) {
+        this.vertx = vertx;
+        this.response = response;
+        this.endHandler = endHandler;
+        if (body instanceof Stream) {
+            Stream<?> stream = (Stream<?>) body;
+            this.source = stream;
+            this.iterator = stream.iterator();
+        } else {
+            this.source = (AutoCloseable) body;
+            this.iterator = ((Iterable<?>) body).iterator();
+        }
+    }
+
+    /**
+     * 是否需要流式响应
+     * @param body controller的返回值
+     * @return 是否为Stream或者可关闭的Iterable
+     */
+    static boolean isStreaming(Object body) {
+        return body instanceof Stream || (body instanceof Iterable && body instanceof AutoCloseable);
+    }
+
+    /**
+     * 开始写入响应，在event loop线程中调用
+     * @param vertx vertx
+     * @param response HTTP响应
+     * @param body Stream或者可关闭的Iterable
+     * @param endHandler 响应结束时的回调
+     */
+    static void write(Vertx vertx, HttpServerResponse response, Object body, Runnable endHandler) {
+        StreamingResponseWriter writer;
+        try {
+            writer = new StreamingResponseWriter(vertx, response, body, endHandler);
+        } catch (RuntimeException e) {
+            closeQuietly((AutoCloseable) body);
+            endHandler.run();
+            throw e;
+        }
+        writer.start();
+    }
+
+    private void start() {
+        response.setChunked(true)
+                .putHeader("Content-type", "text/plain;charset=UTF-8")
+                .closeHandler(v -> finish());
+        writeNextChunk();
+    }
+
+    private void writeNextChunk() {
+        reading = true;
+        vertx.<Buffer>executeBlocking(future -> future.complete(readChunk()), false, res -> {
+            reading = false;
+            if (ended) {
+                closeSource();
+                return;
+            }
+            if (res.failed()) {
+                log.error("流式响应读取数据发生异常", res.cause());
+                if (written) {
+                    // 响应头已经发送，只能断开连接，客户端收到的是不完整的响应
+                    response.close();
+                } else {
+                    response.setChunked(false)
+                            .setStatusCode(HttpResponseStatus.INTERNAL_SERVER_ERROR.code())
+                            .end();
+                }
+                finish();
+                return;
+            }
+            written = true;
+            if (exhausted) {
+                response.end(res.result());
+                finish();
+                return;
+            }
+            response.write(res.result());
+            if (response.writeQueueFull()) {
+                response.drainHandler(v -> {
+                    response.drainHandler(null);
+                    writeNextChunk();
+                });
+            } else {
+                writeNextChunk();
+            }
+        });
+    }
+
+    /**
+     * 读取一段数据，在worker线程中调用
+     */
+    private Buffer readChunk() {
+        Buffer buffer = Buffer.buffer(CHUNK_SIZE + 1024);
+        if (first) {
+            buffer.appendBytes(ARRAY_START);
+        }
+        while (buffer.length() < CHUNK_SIZE && !ended && iterator.hasNext()) {
+            if (first) {
+                first = false;
+            } else {
+                buffer.appendBytes(SEPARATOR);
+            }
+            buffer.appendBytes(JSON.toJSONBytes(iterator.next()));
+        }
+        if (!ended && !iterator.hasNext()) {
+            exhausted = true;
+            buffer.appendBytes(ARRAY_END);
+        }
+        return buffer;
+    }
+
+    /**
+     * 结束响应，没有正在读取的数据时关闭数据源
+     */
+    private void finish() {
+        if (ended) {
+            return;
+        }
+        ended = true;
+        if (!reading) {
+            closeSource();
+        }
+    }
+
+    private void closeSource() {
+        if (sourceClosed) {
+            return;
+        }
+        sourceClosed = true;
+        // 关闭游标可能需要访问数据库，不在event loop中执行
+        vertx.executeBlocking(future -> {
+            closeQuietly(source);
+            future.complete();
+        }, false, res -> endHandler.run());
+    }
+
+    private static void closeQuietly(AutoCloseable source) {
+        try {
+            source.close();
+        } catch (Exception e) {
+            log.warn("关闭流式响应的数据源发生异常", e);
+        }
+    }
+}
@@ -4,18 +4,26 @@ import com.lee.rokhan.container.context.ApplicationContext;
 import com.lee.rokhan.vertx.web.codec.HttpRequest;
 import com.lee.rokhan.vertx.web.codec.HttpResponse;
 import com.lee.rokhan.vertx.web.context.VertxWebContext;
+import com.lee.rokhan.vertx.web.interceptor.RequestInterceptor;
+import com.lee.rokhan.vertx.web.metrics.HttpMetrics;
+import com.lee.rokhan.vertx.web.metrics.RequestPhase;
+import com.lee.rokhan.vertx.web.metrics.RouteMetrics;
+import com.lee.rokhan.vertx.web.metrics.WorkerPoolMetrics;
 import com.lee.rokhan.vertx.web.pojo.ControllerInfo;
 import com.lee.rokhan.vertx.web.pojo.MethodParamsWithHeaders;
 import com.lee.rokhan.vertx.web.pojo.PathInfo;
 import com.lee.rokhan.vertx.web.utils.InvokeControllerUtils;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
 import io.vertx.core.MultiMap;
 import io.vertx.core.eventbus.Message;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections4.MapUtils;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -26,6 +34,13 @@ import java.util.concurrent.atomic.AtomicInteger;
 @Slf4j
 public class WorkVerticle extends AbstractVerticle {
 
+    /**
+     * work-verticle所在的worker线程池名称
+     */
+    public static final String WORKER_POOL_NAME = "work-pool";
+
+    private final WorkerPoolMetrics workerPoolMetrics = HttpMetrics.getWorkerPoolMetrics(WORKER_POOL_NAME);
+
     private ApplicationContext applicationContext;
 
     private static AtomicInteger count = new AtomicInteger(0);
@@ -46,16 +61,49 @@ public class WorkVerticle extends AbstractVerticle {
         vertxWebContext.processMessage(this);
     }
 
+    /**
+     * 运行期间添加请求的消费者，在该verticle的线程中执行
+     * @param pathControllerMap 新的路由
+     */
+    public void addReq(Map<PathInfo, ControllerInfo> pathControllerMap) {
+        context.runOnContext(v -> pathControllerMap.forEach(this::processReq));
+    }
+
     /**
      * 处理event bus分发过来的请求
+     * controller返回CompletionStage或者Future时不占用worker线程等待，完成后再回复
+     * 调用controller前后在当前worker线程中执行请求拦截器
      *
      * @param path 上下文信息
      * @param controller controller信息
      */
     public void processReq(PathInfo path, ControllerInfo controller) {
+        RouteMetrics routeMetrics = HttpMetrics.getRouteMetrics(path);
         vertx.eventBus().consumer(path.getHttpMethod() + path.getHttpPath(), message -> {
-            HttpResponse httpResponse = null;
+            long startNanos = System.nanoTime();
+            HttpRequest request = (HttpRequest) message.body();
+            // event loop已经返回超时的请求不再处理
+            if (request != null && request.getDeadline() != 0 && startNanos - request.getDeadline() > 0) {
+                message.reply(HttpResponse.builder()
+                        .status(HttpResponseStatus.SERVICE_UNAVAILABLE)
+                        .build());
+                complete(request);
+                return;
+            }
+            workerPoolMetrics.executionStarted();
+            // 从其他节点发送过来的请求没有发送时间，不统计排队耗时
+            long queueNanos = request == null || request.getSendTime() == 0 ? 0 : startNanos - request.getSendTime();
+            if (queueNanos != 0) {
+                routeMetrics.record(RequestPhase.QUEUE, queueNanos);
+            }
+            List<RequestInterceptor> interceptors = vertxWebContext.getRequestInterceptors();
+            int handled = 0;
+            Object res;
             try {
+                for (RequestInterceptor interceptor : interceptors) {
+                    interceptor.preHandle(path);
+                    handled++;
+                }
                 // 获取event bus传递过来的参数
                 Optional<HttpRequest> httpRequest = Optional.of(message)
                         .map(Message::body)
@@ -63,7 +111,6 @@ public class WorkVerticle extends AbstractVerticle {
 
                 MultiMap headers = httpRequest.map(HttpRequest::getHeaders)
                         .orElse(null);
-                Object res;
                 MethodParamsWithHeaders methodParamsWithHeaders = controller.getMethodParamsWithHeaders();
                 // 如果无参，直接调用
                 if (MapUtils.isEmpty(methodParamsWithHeaders.getMethodParameter())) {
@@ -73,17 +120,67 @@ public class WorkVerticle extends AbstractVerticle {
                             .orElse(null);
                     res = InvokeControllerUtils.invokeController(controller, paramList, headers, applicationContext);
                 }
-                httpResponse = HttpResponse.builder()
-                        .status(HttpResponseStatus.OK)
-                        .response(res)
-                        .build();
             } catch (Throwable e) {
-                httpResponse = HttpResponse.builder()
-                        .status(HttpResponseStatus.INTERNAL_SERVER_ERROR)
-                        .build();
-            } finally {
-                message.reply(httpResponse);
+                afterCompletion(interceptors, handled, path, e);
+                reply(message, path, routeMetrics, startNanos, queueNanos, null, e);
+                return;
+            }
+            afterCompletion(interceptors, handled, path, null);
+            if (res instanceof CompletionStage) {
+                ((CompletionStage<?>) res).whenComplete((result, e) ->
+                        reply(message, path, routeMetrics, startNanos, queueNanos, result, e));
+            } else if (res instanceof Future) {
+                ((Future<?>) res).setHandler(ar ->
+                        reply(message, path, routeMetrics, startNanos, queueNanos, ar.result(), ar.cause()));
+            } else {
+                reply(message, path, routeMetrics, startNanos, queueNanos, res, null);
             }
         });
     }
+
+    /**
+     * 按相反顺序执行preHandle成功的拦截器的afterCompletion，拦截器的异常不影响请求的响应
+     */
+    private void afterCompletion(List<RequestInterceptor> interceptors, int handled, PathInfo path, Throwable e) {
+        for (int i = handled - 1; i >= 0; i--) {
+            try {
+                interceptors.get(i).afterCompletion(path, e);
+            } catch (Throwable t) {
+                log.error("请求拦截器执行afterCompletion发生异常，路由：{}", path, t);
+            }
+        }
+    }
+
+    /**
+     * 回复event loop，可以在任意线程调用
+     */
+    private void reply(Message<Object> message, PathInfo path, RouteMetrics routeMetrics, long startNanos,
+                       long queueNanos, Object res, Throwable e) {
+        routeMetrics.record(RequestPhase.INVOKE, System.nanoTime() - startNanos);
+        workerPoolMetrics.executionCompleted();
+        HttpResponse httpResponse;
+        if (e == null) {
+            httpResponse = HttpResponse.builder()
+                    .status(HttpResponseStatus.OK)
+                    .response(res)
+                    .build();
+        } else {
+            log.error("处理请求发生异常，路由：{}", path, e);
+            httpResponse = HttpResponse.builder()
+                    .status(HttpResponseStatus.INTERNAL_SERVER_ERROR)
+                    .build();
+        }
+        httpResponse.setQueueTime(queueNanos);
+        message.reply(httpResponse);
+        complete((HttpRequest) message.body());
+    }
+
+    /**
+     * 通知event loop请求已经处理完或者被丢弃，超时的请求此时才释放并发限制
+     */
+    private static void complete(HttpRequest request) {
+        if (request != null && request.getCompletionHandler() != null) {
+            request.getCompletionHandler().run();
+        }
+    }
 }
@@ -0,0 +1,84 @@
+package com.lee.rokhan.vertx.web.admission;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 按比例使用并发限制，release记录一次样本并释放，cancel只释放不记录样本
+ * @author lichujun
+ * @date 2019/8/12 20:55
+ */
+public class LimiterTest {
+
+    @Test
+    public void acquireUpToShareOfLimit() {
+        Limiter limiter = new Limiter(new FixedLimit(10));
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiter.tryAcquire(0.5));
+        }
+        assertFalse("超过限制的一半时拒绝", limiter.tryAcquire(0.5));
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiter.tryAcquire(1));
+        }
+        assertFalse(limiter.tryAcquire(1));
+        assertEquals(10, limiter.getInFlight());
+    }
+
+    @Test
+    public void acquireAtLeastOne() {
+        Limiter limiter = new Limiter(new FixedLimit(1));
+        assertTrue("比例很小时也至少准入一个请求", limiter.tryAcquire(0.1));
+        assertFalse(limiter.tryAcquire(0.1));
+    }
+
+    @Test
+    public void releaseSamplesOnceAndCancelDoesNot() {
+        FixedLimit limit = new FixedLimit(10);
+        Limiter limiter = new Limiter(limit);
+        assertTrue(limiter.tryAcquire(1));
+        assertTrue(limiter.tryAcquire(1));
+
+        limiter.release(100, false);
+        assertEquals(1, limiter.getInFlight());
+        assertEquals(1, limit.samples.size());
+        assertEquals("样本的处理中数量包含自己", 2, (int) limit.samples.get(0));
+
+        limiter.cancel();
+        assertEquals(0, limiter.getInFlight());
+        assertEquals("取消的请求不调整并发限制", 1, limit.samples.size());
+        assertTrue(limiter.tryAcquire(1));
+    }
+
+    /**
+     * 固定的并发限制，记录每个样本的处理中数量
+     */
+    static class FixedLimit implements ConcurrencyLimit {
+
+        private final int limit;
+
+        final List<Integer> samples = new ArrayList<>();
+
+        final List<Long> elapsed = new ArrayList<>();
+
+        FixedLimit(int limit) {
+            this.limit = limit;
+        }
+
+        @Override
+        public int getLimit() {
+            return limit;
+        }
+
+        @Override
+        public void onSample(long elapsedNanos, int inFlight, boolean dropped) {
+            samples.add(inFlight);
+            elapsed.add(elapsedNanos);
+        }
+    }
+}
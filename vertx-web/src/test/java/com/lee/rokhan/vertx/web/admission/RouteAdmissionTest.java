@@ -0,0 +1,97 @@
+package com.lee.rokhan.vertx.web.admission;
+
+import com.lee.rokhan.vertx.web.pojo.RequestPriority;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 路由按优先级使用全局并发限制，被全局限制拒绝时归还路由的并发，每个准入的请求只释放一次
+ * @author lichujun
+ * @date 2019/8/12 21:00
+ */
+public class RouteAdmissionTest {
+
+    @Test
+    public void shareGlobalLimitByPriority() {
+        Limiter global = new Limiter(new LimiterTest.FixedLimit(10));
+        RouteAdmission low = newAdmission(RequestPriority.LOW, global);
+        RouteAdmission normal = newAdmission(RequestPriority.NORMAL, global);
+        RouteAdmission high = newAdmission(RequestPriority.HIGH, global);
+
+        assertEquals(5, acquireAll(low));
+        assertEquals("低优先级占用的并发也计入全局", 4, acquireAll(normal));
+        assertEquals(1, acquireAll(high));
+        assertEquals(10, global.getInFlight());
+        assertEquals(1, low.getRejected());
+        assertEquals(1, normal.getRejected());
+        assertEquals(1, high.getRejected());
+    }
+
+    @Test
+    public void returnRoutePermitWhenGlobalRejects() {
+        Limiter global = new Limiter(new LimiterTest.FixedLimit(1));
+        Limiter other = new Limiter(new LimiterTest.FixedLimit(10));
+        RouteAdmission admission = new RouteAdmission("GET", "/test", RequestPriority.HIGH, other, global, true);
+        assertTrue(admission.tryAcquire());
+        assertFalse(admission.tryAcquire());
+        assertEquals("被全局限制拒绝时归还路由的并发", 1, other.getInFlight());
+        assertEquals(1, admission.getRejected());
+    }
+
+    @Test
+    public void releaseExactlyOnce() {
+        LimiterTest.FixedLimit routeLimit = new LimiterTest.FixedLimit(10);
+        LimiterTest.FixedLimit globalLimit = new LimiterTest.FixedLimit(10);
+        Limiter global = new Limiter(globalLimit);
+        RouteAdmission admission = new RouteAdmission("GET", "/test", RequestPriority.NORMAL,
+                new Limiter(routeLimit), global, true);
+
+        assertTrue(admission.tryAcquire());
+        admission.release(300, 100, false);
+        assertEquals(0, admission.getLimiter().getInFlight());
+        assertEquals(0, global.getInFlight());
+        assertEquals("路由的限制使用往返的耗时", Long.valueOf(300), routeLimit.elapsed.get(0));
+        assertEquals("全局的限制使用排队的时间", Long.valueOf(100), globalLimit.elapsed.get(0));
+
+        assertTrue(admission.tryAcquire());
+        admission.cancel();
+        assertEquals(0, admission.getLimiter().getInFlight());
+        assertEquals(0, global.getInFlight());
+        assertEquals("取消的请求不记录样本", 1, routeLimit.samples.size());
+        assertEquals(1, globalLimit.samples.size());
+    }
+
+    @Test
+    public void admitAllWhenDisabled() {
+        Limiter global = new Limiter(new LimiterTest.FixedLimit(1));
+        RouteAdmission admission = new RouteAdmission("GET", "/test", RequestPriority.LOW,
+                new Limiter(new LimiterTest.FixedLimit(1)), global, false);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(admission.tryAcquire());
+        }
+        admission.release(100, 100, false);
+        admission.cancel();
+        assertEquals("关闭时不占用并发", 0, global.getInFlight());
+        assertEquals(0, admission.getLimiter().getInFlight());
+    }
+
+    private static RouteAdmission newAdmission(RequestPriority priority, Limiter global) {
+        return new RouteAdmission("GET", "/" + priority.name().toLowerCase(), priority,
+                new Limiter(new LimiterTest.FixedLimit(100)), global, true);
+    }
+
+    /**
+     * 一直准入直到被拒绝
+     * @return 准入的请求数量
+     */
+    private static int acquireAll(RouteAdmission admission) {
+        int acquired = 0;
+        while (admission.tryAcquire()) {
+            acquired++;
+        }
+        return acquired;
+    }
+}
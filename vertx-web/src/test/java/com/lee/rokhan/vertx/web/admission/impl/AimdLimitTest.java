@@ -0,0 +1,61 @@
+package com.lee.rokhan.vertx.web.admission.impl;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * AIMD并发限制在繁忙时加性增、超时或者变慢时乘性减，空闲时不放大，并且不超出最小值和最大值
+ * @author lichujun
+ * @date 2019/8/12 20:45
+ */
+public class AimdLimitTest {
+
+    private static final long THRESHOLD = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+
+    @Test
+    public void growAdditivelyWhenBusy() {
+        AimdLimit limit = new AimdLimit(10, 1, 20, 0.5, THRESHOLD);
+        sample(limit, 5, FAST, 10);
+        assertEquals("每个请求只增加1/limit", 10, limit.getLimit());
+        sample(limit, 25, FAST, 10);
+        assertEquals(12, limit.getLimit());
+    }
+
+    @Test
+    public void keepLimitWhenIdle() {
+        AimdLimit limit = new AimdLimit(10, 1, 20, 0.5, THRESHOLD);
+        sample(limit, 100, FAST, 4);
+        assertEquals("处理中的请求不到限制的一半时不放大", 10, limit.getLimit());
+    }
+
+    @Test
+    public void backoffWhenDroppedOrSlow() {
+        AimdLimit limit = new AimdLimit(10, 1, 20, 0.5, THRESHOLD);
+        limit.onSample(FAST, 10, true);
+        assertEquals("超时时按比例缩小", 5, limit.getLimit());
+        limit.onSample(THRESHOLD + 1, 5, false);
+        assertEquals("耗时超过阈值时按比例缩小", 2, limit.getLimit());
+        limit.onSample(FAST, 1, true);
+        limit.onSample(FAST, 1, true);
+        assertEquals("不小于最小值", 1, limit.getLimit());
+    }
+
+    @Test
+    public void clampToMaxLimit() {
+        AimdLimit limit = new AimdLimit(30, 1, 20, 0.5, THRESHOLD);
+        assertEquals("初始值不超过最大值", 20, limit.getLimit());
+        sample(limit, 1000, FAST, 20);
+        assertEquals(20, limit.getLimit());
+    }
+
+    private static void sample(AimdLimit limit, int times, long elapsedNanos, int inFlight) {
+        for (int i = 0; i < times; i++) {
+            limit.onSample(elapsedNanos, inFlight, false);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.lee.rokhan.vertx.web.admission.impl;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Vegas并发限制按估算的排队数放大或者缩小，超时时缩小，请求较少时不调整，并且不超出最小值和最大值
+ * @author lichujun
+ * @date 2019/8/12 20:50
+ */
+public class VegasLimitTest {
+
+    private static final long MIN_ELAPSED = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void growWithoutQueueAndBackoffWithQueue() {
+        VegasLimit limit = new VegasLimit(10, 1, 100);
+        limit.onSample(MIN_ELAPSED, 10, false);
+        assertEquals("第一个请求只记录最小耗时", 10, limit.getLimit());
+
+        limit.onSample(MIN_ELAPSED, 10, false);
+        assertEquals("没有排队时快速放大", 16, limit.getLimit());
+
+        // 排队数 ceil(16 * 0.9) = 15，大于 6 * log10(16)
+        limit.onSample(MIN_ELAPSED * 10, 16, false);
+        assertEquals(14, limit.getLimit());
+
+        // 排队数 ceil(14 * (1 - 1 / 1.15)) = 2，在 log10(14) 和 3 * log10(14) 之间
+        limit.onSample(MIN_ELAPSED * 115 / 100, 14, false);
+        assertEquals(15, limit.getLimit());
+    }
+
+    @Test
+    public void keepLimitWhenIdle() {
+        VegasLimit limit = new VegasLimit(10, 1, 100);
+        limit.onSample(MIN_ELAPSED, 10, false);
+        limit.onSample(MIN_ELAPSED * 10, 4, false);
+        limit.onSample(MIN_ELAPSED, 4, false);
+        assertEquals("处理中的请求不到限制的一半时不调整", 10, limit.getLimit());
+    }
+
+    @Test
+    public void backoffWhenDropped() {
+        VegasLimit limit = new VegasLimit(14, 1, 100);
+        limit.onSample(MIN_ELAPSED, 14, true);
+        assertEquals("超时时缩小log10(limit)", 12, limit.getLimit());
+
+        VegasLimit minimum = new VegasLimit(1, 1, 100);
+        minimum.onSample(MIN_ELAPSED, 1, true);
+        assertEquals("不小于最小值", 1, minimum.getLimit());
+    }
+
+    @Test
+    public void clampToMaxLimit() {
+        VegasLimit limit = new VegasLimit(98, 1, 100);
+        limit.onSample(MIN_ELAPSED, 98, false);
+        limit.onSample(MIN_ELAPSED, 98, false);
+        assertEquals(100, limit.getLimit());
+    }
+}
@@ -0,0 +1,154 @@
+package com.lee.rokhan.vertx.web.verticle;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServer;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 流式响应写完或者客户端断开时关闭数据源
+ * @author lichujun
+ * @date 2019/8/12 19:50
+ */
+public class StreamingResponseWriterTest {
+
+    private Vertx vertx;
+
+    private HttpServer server;
+
+    private volatile Iterable<?> body;
+
+    private CountDownLatch ended;
+
+    @Before
+    public void setUp() throws Exception {
+        vertx = Vertx.vertx();
+        ended = new CountDownLatch(1);
+        CompletableFuture<HttpServer> listening = new CompletableFuture<>();
+        vertx.createHttpServer()
+                .requestHandler(request -> StreamingResponseWriter.write(vertx, request.response(), body,
+                        ended::countDown))
+                .listen(0, "127.0.0.1", res -> {
+                    if (res.succeeded()) {
+                        listening.complete(res.result());
+                    } else {
+                        listening.completeExceptionally(res.cause());
+                    }
+                });
+        server = listening.get(10, TimeUnit.SECONDS);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        CountDownLatch closed = new CountDownLatch(1);
+        vertx.close(res -> closed.countDown());
+        closed.await(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void writeJsonArrayAndCloseSource() throws Exception {
+        CloseableSource source = new CloseableSource(3);
+        body = source;
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:"
+                + server.actualPort() + "/").openConnection();
+        try (InputStream in = connection.getInputStream()) {
+            assertEquals(200, connection.getResponseCode());
+            assertEquals("[\"row0\",\"row1\",\"row2\"]", read(in));
+        } finally {
+            connection.disconnect();
+        }
+        assertTrue("写完后应该执行结束回调", ended.await(10, TimeUnit.SECONDS));
+        assertTrue("写完后应该关闭数据源", source.closed.await(0, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void closeSourceWhenClientDisconnects() throws Exception {
+        // 无限的数据源，只有客户端断开时才会结束
+        CloseableSource source = new CloseableSource(Integer.MAX_VALUE);
+        body = source;
+        try (Socket socket = new Socket("127.0.0.1", server.actualPort())) {
+            OutputStream out = socket.getOutputStream();
+            out.write("GET / HTTP/1.1\r\nHost: 127.0.0.1\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            InputStream in = socket.getInputStream();
+            byte[] buffer = new byte[8192];
+            int total = 0;
+            while (total < 128 * 1024) {
+                int read = in.read(buffer);
+                assertTrue("数据源没有结束前响应不应该结束", read > 0);
+                total += read;
+            }
+        }
+        assertTrue("客户端断开后应该关闭数据源", source.closed.await(10, TimeUnit.SECONDS));
+        assertTrue("客户端断开后应该执行结束回调", ended.await(10, TimeUnit.SECONDS));
+        int produced = source.produced.get();
+        Thread.sleep(200);
+        assertEquals("关闭后不应该继续读取数据源", produced, source.produced.get());
+    }
+
+    private static String read(InputStream in) throws IOException {
+        byte[] buffer = new byte[8192];
+        StringBuilder builder = new StringBuilder();
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            builder.append(new String(Arrays.copyOf(buffer, read), StandardCharsets.UTF_8));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 可关闭的数据源，模拟数据库游标
+     */
+    private static class CloseableSource implements Iterable<String>, AutoCloseable {
+
+        private final int size;
+
+        private final AtomicInteger produced = new AtomicInteger();
+
+        private final CountDownLatch closed = new CountDownLatch(1);
+
+        private CloseableSource(int size) {
+            this.size = size;
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            return new Iterator<String>() {
+                @Override
+                public boolean hasNext() {
+                    return closed.getCount() > 0 && produced.get() < size;
+                }
+
+                @Override
+                public String next() {
+                    int index = produced.getAndIncrement();
+                    return size == Integer.MAX_VALUE ? StringUtils.repeat('x', 1024) : "row" + index;
+                }
+            };
+        }
+
+        @Override
+        public void close() {
+            closed.countDown();
+        }
+    }
+}